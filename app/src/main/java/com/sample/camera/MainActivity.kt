@@ -19,6 +19,8 @@ class MainActivity : AppCompatActivity(), EasyPermissions.PermissionCallbacks {
     override fun onResume() {
         super.onResume()
         if (null != cameraView) {
+            // 预览 Surface 就绪前准备拍照输出, 已授权时同时提前打开相机, 未授权时打开会回调 onCameraError
+            cameraView.prewarm(hasPermissions())
             cameraView.openCamera()
         }
     }
@@ -35,10 +37,13 @@ class MainActivity : AppCompatActivity(), EasyPermissions.PermissionCallbacks {
         cameraView.takePicture()
     }
 
+    private fun hasPermissions(): Boolean {
+        return EasyPermissions.hasPermissions(this, android.Manifest.permission.CAMERA, android.Manifest.permission.WRITE_EXTERNAL_STORAGE)
+    }
+
     fun requestPremission() {
 
-        val hasPermissions = EasyPermissions.hasPermissions(this, android.Manifest.permission.CAMERA, android.Manifest.permission.WRITE_EXTERNAL_STORAGE)
-        if (!hasPermissions) {
+        if (!hasPermissions()) {
             EasyPermissions.requestPermissions(this, "请允许权限", 1, android.Manifest.permission.CAMERA, android.Manifest.permission.WRITE_EXTERNAL_STORAGE)
         }
     }
@@ -0,0 +1,25 @@
+package com.sample.camera.camera;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 连拍回调, 在相机线程中调用
+ */
+public interface BurstListener {
+
+    /**
+     * 连拍进度, 每处理一帧回调一次
+     * @param capturedCount 已交给保存的帧数
+     * @param droppedCount  丢弃的帧数
+     * @param fps           持续帧率
+     */
+    void onBurstProgress(int capturedCount, int droppedCount, float fps);
+
+    /**
+     * 连拍结束, 已发出的请求的帧都已处理
+     * @param capturedCount 已交给保存的帧数
+     * @param droppedCount  丢弃的帧数
+     * @param fps           持续帧率
+     */
+    void onBurstFinished(int capturedCount, int droppedCount, float fps);
+}
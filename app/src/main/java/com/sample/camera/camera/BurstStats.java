@@ -0,0 +1,124 @@
+package com.sample.camera.camera;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 连拍统计, 记录已接收帧数、丢帧数和持续帧率
+ * 只在相机线程中更新, 其它线程可以读取. 停止连拍后还在处理中的帧仍会到达, 直到请求序列结束且这些帧都已到达才算排空
+ */
+final class BurstStats {
+
+    private static final float NANOS_PER_SECOND = 1_000_000_000f;
+
+    /**
+     * 目标帧数, 0 表示按时长连拍
+     */
+    private final int mTargetCount;
+    private volatile int mCapturedCount;
+    private volatile int mDroppedCount;
+    private volatile long mFirstFrameNanos;
+    private volatile long mLastFrameNanos;
+    /**
+     * 已完成拍摄但图像还未到达的帧数, 图像可能先于拍摄结果到达, 此时为负数
+     */
+    private int mPendingImages;
+    /**
+     * 已停止连拍, 不再发起新的请求
+     */
+    private boolean mFinished;
+    /**
+     * 连拍请求序列已完成或中止, 不会再有新的拍摄结果
+     */
+    private boolean mSequenceEnded;
+
+    BurstStats(int targetCount) {
+        this.mTargetCount = targetCount;
+    }
+
+    /**
+     * 成功交给保存流水线的帧
+     * @param timestampNanos 接收时间
+     */
+    void onFrameCaptured(long timestampNanos) {
+
+        if (mCapturedCount == 0) {
+            mFirstFrameNanos = timestampNanos;
+        }
+        mLastFrameNanos = timestampNanos;
+        mCapturedCount++;
+    }
+
+    /**
+     * 写入来不及或拍摄失败而丢弃的帧
+     */
+    void onFrameDropped() {
+        mDroppedCount++;
+    }
+
+    /**
+     * 拍摄结果已返回, 对应的图像稍后到达
+     */
+    void onResultCompleted() {
+        mPendingImages++;
+    }
+
+    /**
+     * 图像已到达, 不论是否交给保存
+     */
+    void onImageReceived() {
+        mPendingImages--;
+    }
+
+    /**
+     * 连拍请求序列已完成或中止
+     */
+    void onSequenceEnded() {
+        mSequenceEnded = true;
+    }
+
+    /**
+     * 停止连拍, 之后到达的帧仍按连拍保存
+     */
+    void finish() {
+        mFinished = true;
+    }
+
+    boolean isFinished() {
+        return mFinished;
+    }
+
+    /**
+     * 已停止连拍, 请求序列已结束且所有图像都已到达
+     */
+    boolean isDrained() {
+        return mFinished && mSequenceEnded && mPendingImages <= 0;
+    }
+
+    /**
+     * 按数量连拍时, 所有帧是否都已处理
+     */
+    boolean isComplete() {
+        return mTargetCount > 0 && mCapturedCount + mDroppedCount >= mTargetCount;
+    }
+
+    int getCapturedCount() {
+        return mCapturedCount;
+    }
+
+    int getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * 首帧到末帧之间的持续帧率
+     */
+    float getFramesPerSecond() {
+
+        int captured = mCapturedCount;
+        long elapsed = mLastFrameNanos - mFirstFrameNanos;
+        if (captured < 2 || elapsed <= 0) {
+            return 0f;
+        }
+        return (captured - 1) * NANOS_PER_SECOND / elapsed;
+    }
+}
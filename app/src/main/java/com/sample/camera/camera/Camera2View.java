@@ -3,12 +3,14 @@ package com.sample.camera.camera;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.RectF;
 import android.graphics.SurfaceTexture;
 import android.hardware.camera2.CameraAccessException;
 import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraConstrainedHighSpeedCaptureSession;
 import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
@@ -17,16 +19,16 @@ import android.hardware.camera2.CaptureFailure;
 import android.hardware.camera2.CaptureRequest;
 import android.hardware.camera2.CaptureResult;
 import android.hardware.camera2.TotalCaptureResult;
-import android.hardware.camera2.params.StreamConfigurationMap;
 import android.media.ExifInterface;
 import android.media.Image;
 import android.media.ImageReader;
 import android.os.Build;
 import android.os.Environment;
 import android.os.Handler;
-import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.AttributeSet;
+import android.util.Range;
 import android.util.Size;
 import android.view.OrientationEventListener;
 import android.view.Surface;
@@ -39,7 +41,7 @@ import androidx.core.content.ContextCompat;
 
 import com.sample.camera.R;
 
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -47,7 +49,14 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author mzp
@@ -69,6 +78,18 @@ public class Camera2View extends TextureView implements CameraInterface {
     public static final int FLASH_MODEL_AUTO = 2;
     public static final int FLASH_MODEL_ALWAYS = 3;
 
+    /**
+     * 预览性能模式
+     * PREVIEW_MODE_BATTERY_SAVER : 省电, 使用较低的帧率
+     * PREVIEW_MODE_BALANCED : 均衡, 尽量保持 30fps, 默认
+     * PREVIEW_MODE_HIGH_FPS : 普通会话支持的最高帧率, 例如 60fps
+     * PREVIEW_MODE_HIGH_SPEED : 高速会话(constrained high speed), 只有预览输出, 不能拍照和分析帧, 不支持时同 PREVIEW_MODE_HIGH_FPS
+     */
+    public static final int PREVIEW_MODE_BATTERY_SAVER = 0;
+    public static final int PREVIEW_MODE_BALANCED = 1;
+    public static final int PREVIEW_MODE_HIGH_FPS = 2;
+    public static final int PREVIEW_MODE_HIGH_SPEED = 3;
+
     /**
      * Max preview width that is guaranteed by Camera2 API
      */
@@ -78,17 +99,87 @@ public class Camera2View extends TextureView implements CameraInterface {
      */
     private static final int MAX_PREVIEW_HEIGHT = 1080;
     /**
-     * An additional thread for running tasks that shouldn't block the UI.
+     * 预览尺寸选择, 不超过 {@link #MAX_PREVIEW_WIDTH} x {@link #MAX_PREVIEW_HEIGHT}
+     */
+    private static final PreviewSizeSelector PREVIEW_SIZE_SELECTOR =
+            new PreviewSizeSelector(MAX_PREVIEW_WIDTH, MAX_PREVIEW_HEIGHT);
+    /**
+     * Default max number of images the {@link ImageReader} can hold
+     */
+    private static final int DEFAULT_MAX_IMAGES = 2;
+    /**
+     * Number of full resolution frames kept for zero shutter lag capture
+     */
+    private static final int ZSL_RING_SIZE = 4;
+    /**
+     * ZSL 优先挑选清晰帧时, 与点击时间相差在此范围内的帧参与比较
+     */
+    private static final long ZSL_SHARPNESS_WINDOW_NS = 100_000_000L;
+    /**
+     * Max size of the frames delivered to {@link FrameAnalyzer}
+     */
+    private static final int MAX_ANALYSIS_WIDTH = 640;
+    private static final int MAX_ANALYSIS_HEIGHT = 480;
+    /**
+     * 分析中一帧、等待中一帧、接收中一帧
+     */
+    private static final int ANALYSIS_MAX_IMAGES = 3;
+    /**
+     * Max number of captures waiting to be written
+     */
+    private static final int SAVE_QUEUE_CAPACITY = 4;
+    /**
+     * 回调给 {@link ThumbnailListener#onThumbnail} 的缩略图长边的最大像素
+     */
+    private static final int THUMBNAIL_MAX_SIZE = 320;
+    /**
+     * 未设置 JPEG 质量时 YUV 编码使用的质量
+     */
+    private static final int DEFAULT_ENCODE_QUALITY = 95;
+    /**
+     * 计算预览帧率使用的帧数
+     */
+    private static final int PREVIEW_FPS_WINDOW = 30;
+    /**
+     * 计算帧统计百分位使用的帧数
+     */
+    private static final int FRAME_STATS_WINDOW = 120;
+    /**
+     * {@link #mRequestCache} 中的请求类型
      */
-    private HandlerThread mBackgroundThread;
+    private static final int REQUEST_PREVIEW = 0;
+    private static final int REQUEST_STILL = 1;
+    private static final int REQUEST_BURST = 2;
+    private static final int REQUEST_HIGH_SPEED = 3;
+    private static final int REQUEST_MULTI_FRAME = 4;
     /**
      * A {@link Handler} for running tasks in the background.
+     * 进程内共享的相机线程, 见 {@link CameraThread}, 相机打开期间不为 null
+     */
+    private volatile Handler mBackgroundHandler;
+    /**
+     * 相机命令队列, 公开的相机操作都提交到这里, 在相机线程中串行执行.
+     * 除标注的以外, 相机状态只在相机线程中读写
+     */
+    private final CameraCommandQueue mCommandQueue = new CameraCommandQueue();
+    /**
+     * 正在打开相机, 等待 {@link #mCameraDeviceCallback} 回调
+     */
+    private boolean mCameraOpening;
+    /**
+     * 已为当前相机创建预览会话
      */
-    private Handler mBackgroundHandler;
+    private boolean mPreviewSessionStarted;
     /**
      * A {@link Semaphore} to prevent the app from exiting before closing the camera.
+     * 同一时间只有一次 openCamera 在进行中, 在相机线程中 tryAcquire, 不阻塞等待,
+     * 收到这次打开的第一个 {@link #mCameraDeviceCallback} 回调时释放
+     */
+    private final Semaphore mCameraOpenCloseLock = new Semaphore(1);
+    /**
+     * 持有 {@link #mCameraOpenCloseLock} 的正在打开的相机
      */
-    private Semaphore mCameraOpenCloseLock = new Semaphore(1);
+    private String mOpeningCameraId;
     /**
      * The {@link Size} of camera preview.
      */
@@ -98,16 +189,182 @@ public class Camera2View extends TextureView implements CameraInterface {
      */
     private ImageReader mImageReader;
     /**
-     * Whether the current camera device supports Flash or not.
-     * 相机是否支持闪光灯
+     * JPEG 数据缓冲池, 大小由 {@link #mImageReader} 的最大尺寸决定
+     */
+    private JpegBufferPool mJpegBufferPool;
+    /**
+     * 拍照数据保存流水线, 避免磁盘写入阻塞相机线程
+     */
+    private CaptureSavePipeline mSavePipeline;
+    /**
+     * {@link ImageReader} 可同时持有的图像数, 连拍时作为环形缓冲区.
+     * 以下 volatile 的设置可以在任意线程中修改, 由相机, 写入和分析线程读取, 不经过 {@link #mCommandQueue}
+     */
+    private volatile int mMaxImages = DEFAULT_MAX_IMAGES;
+    /**
+     * 预览性能模式
+     */
+    private int mPreviewMode = PREVIEW_MODE_BALANCED;
+    /**
+     * 当前预览使用的帧率范围, 相机没有提供时为 null
+     */
+    private Range<Integer> mPreviewFpsRange;
+    /**
+     * 当前预览使用高速会话
+     */
+    private boolean mHighSpeedPreview;
+    /**
+     * 预览实际帧率, 由 onCaptureCompleted 的传感器时间戳计算
+     */
+    private final FrameRateMeter mPreviewFrameRateMeter = new FrameRateMeter(PREVIEW_FPS_WINDOW);
+    /**
+     * 预览帧统计, 由 {@link #mCaptureCallback} 写入
+     */
+    private final FrameStatsCollector mFrameStatsCollector = new FrameStatsCollector(FRAME_STATS_WINDOW);
+    /**
+     * 帧统计定时回调, 只在相机线程中读写
+     */
+    private FrameStatsListener mFrameStatsListener;
+    private long mFrameStatsIntervalMs;
+    /**
+     * 拍照尺寸策略, 默认最大尺寸
+     */
+    private volatile CaptureSizePolicy mCaptureSizePolicy = CaptureSizePolicy.largest();
+    /**
+     * 设置的拍照格式
+     */
+    private volatile int mCaptureFormat = ImageFormat.JPEG;
+    /**
+     * {@link #mImageReader} 实际使用的格式, 相机不支持设置的格式时为 JPEG
+     */
+    private int mActiveCaptureFormat = ImageFormat.JPEG;
+    /**
+     * 拍照格式为 YUV_420_888 时的编码器
+     */
+    private volatile CaptureEncoder mCaptureEncoder = new YuvImageEncoder();
+    /**
+     * JPEG / HEIC 质量 1 ~ 100, 0 表示使用 HAL 默认值
+     */
+    private int mJpegQuality;
+    /**
+     * 只在相机线程中使用, 复制 YUV 拍照数据
+     */
+    private final YuvFrame mCaptureYuvFrame = new YuvFrame();
+    /**
+     * 当前连拍统计, 停止连拍后保留到排空, 之后到达的帧仍按连拍保存, 未连拍时为 null
+     */
+    private BurstStats mBurstStats;
+    private volatile BurstListener mBurstListener;
+    private volatile ThumbnailListener mThumbnailListener;
+    /**
+     * 预览帧分析, 为 null 时不输出分析帧
+     */
+    private volatile FrameAnalyzer mFrameAnalyzer;
+    /**
+     * 分析帧输出, 低分辨率 YUV_420_888
+     */
+    private ImageReader mAnalysisImageReader;
+    /**
+     * 分析帧调度, 分析线程忙时只保留最新一帧
+     */
+    private final LatestFrameScheduler<Image> mAnalysisScheduler = new LatestFrameScheduler<>(
+            newSingleThreadExecutor("FrameAnalyzer"), new LatestFrameScheduler.Consumer<Image>() {
+        /**
+         * 只在分析线程中使用, 每帧复用
+         */
+        private final YuvFrame mYuvFrame = new YuvFrame();
+
+        @Override
+        public void process(Image frame) {
+            FrameAnalyzer analyzer = mFrameAnalyzer;
+            if (null != analyzer) {
+                analyzer.analyze(mYuvFrame.set(frame));
+            }
+        }
+
+        @Override
+        public void release(Image frame) {
+            frame.close();
+        }
+    });
+    /**
+     * 拍照耗时追踪
+     */
+    private final CaptureTracer mCaptureTracer = new CaptureTracer();
+    /**
+     * 最近一次拍照的追踪, 只在相机线程中读写, 提交保存请求后由请求继续持有
+     */
+    private CaptureTracer.Span mCaptureSpan;
+    /**
+     * 设置的零延时拍照(ZSL)开关, 配置输出时才复制到 {@link #mZslEnabled}
+     */
+    private volatile boolean mZslRequested;
+    /**
+     * 当前输出实际使用的 ZSL, 预览时持续将全分辨率帧保存到 {@link #mZslRing}.
+     * 只在相机线程中读写, 与 {@link #mImageReader} 的 maxImages 一致
+     */
+    private boolean mZslEnabled;
+    /**
+     * ZSL 缓冲区为空时改走普通拍照, 拍照请求输出的那一帧不放入缓冲区
+     */
+    private boolean mZslFallbackPending;
+    /**
+     * 普通拍照那一帧的传感器时间戳, 拍照请求开始曝光前为 -1
+     */
+    private long mZslFallbackTimestamp = -1;
+    /**
+     * ZSL 拍照时是否在点击时间附近优先选择最清晰的帧
+     */
+    private volatile boolean mZslPreferSharpest;
+    /**
+     * ZSL 帧环形缓冲区
+     */
+    private final FrameRing<Image> mZslRing = new FrameRing<>(ZSL_RING_SIZE, new FrameRing.Evictor<Image>() {
+        @Override
+        public void onEvicted(Image frame) {
+            frame.close();
+        }
+    });
+    /**
+     * 多帧降噪拍照的帧数, 0 或 1 表示关闭
      */
-    private boolean mFlashSupported;
+    private volatile int mMultiFrameCount;
+    /**
+     * 多帧降噪拍照输出, 关闭时为 null
+     */
+    private MultiFrameCapture mMultiFrameCapture;
+    /**
+     * 当前相机的闪光灯配置表, 见 {@link FlashConfigTable}
+     */
+    private FlashConfigTable mFlashTable;
+    /**
+     * 屏幕补光回调
+     */
+    private volatile ScreenFlashListener mScreenFlashListener;
+    /**
+     * 屏幕补光已点亮
+     */
+    private boolean mScreenFlashEnabled;
     /**
      * The current state of camera state for taking pictures.
+     * 拍照状态, 对焦, 测光阶段的状态转换见 {@link CaptureStateMachine}
      *
      * @see #mCaptureCallback
      */
-    private int mState = -1;
+    private final CaptureStateMachine mCaptureStateMachine = new CaptureStateMachine(new CaptureStateMachine.Callback() {
+        @Override
+        public void onRunPrecapture() {
+            mCaptureTracer.mark(mCaptureSpan, CaptureTracer.PHASE_AF_LOCKED);
+            runPrecaptureSequence();
+        }
+
+        @Override
+        public void onCaptureStill(int fromState) {
+            mCaptureTracer.mark(mCaptureSpan, fromState == STATE_WAITING_LOCK
+                    ? CaptureTracer.PHASE_AF_LOCKED : CaptureTracer.PHASE_PRECAPTURE_END);
+            captureStillPicture();
+        }
+    });
     /**
      * 闪光灯状态, 默认自动模式
      */
@@ -119,9 +376,25 @@ public class Camera2View extends TextureView implements CameraInterface {
 
     private Context mContext;
     /**
-     * 图像输出路径
+     * 固定的图像输出路径, 每次拍照覆盖, 为 null 时由 {@link #mCaptureStore} 分配
+     */
+    private volatile String outImagePath;
+    /**
+     * 拍照文件目录和索引
+     */
+    private CaptureStore mCaptureStore;
+    /**
+     * 拍照存储配额和剩余空间检查
+     */
+    private CaptureStorageManager mStorageManager;
+    /**
+     * 拍照数据的内存交付回调, 为 null 时不交付
+     */
+    private volatile CaptureBufferListener mCaptureBufferListener;
+    /**
+     * 设置了 {@link #mCaptureBufferListener} 时是否仍然写入存储
      */
-    private String outImagePath;
+    private volatile boolean mPersistCaptures = true;
     /**
      * 输出图片方向
      */
@@ -138,19 +411,43 @@ public class Camera2View extends TextureView implements CameraInterface {
 
 //    private SurfaceTexture mTexture;
     private Surface mPreviewSurface;
+    /**
+     * 创建 {@link #mPreviewSurface} 时使用的 SurfaceTexture
+     */
+    private SurfaceTexture mPreviewSurfaceTexture;
+    /**
+     * 切换摄像头开始时间, 收到新摄像头第一帧预览后清零
+     */
+    private volatile long mSwitchStartNanos;
+    /**
+     * 最近一次切换摄像头从调用到出现第一帧预览的耗时
+     */
+    private volatile long mLastSwitchLatencyMs = -1;
 
-    private CameraListener mCameraListener;
+    private volatile CameraListener mCameraListener;
     private WindowManager mWindowManager;
     private CameraManager mCameraManager;
     private String mCameraId;
     private String frontCameraId;
-    private CameraCharacteristics frontCameraCharacteristics;
+    private CameraInfo frontCameraInfo;
     private String backCameraId;
-    private CameraCharacteristics backCameraCharacteristics;
+    private CameraInfo backCameraInfo;
 
     private CameraDevice mCameraDevice;
     private CameraCaptureSession mCaptureSession;
+    /**
+     * 当前预览请求的 Builder, 来自 {@link #mRequestCache}, 对焦 / 测光触发在其上临时设置
+     */
     private CaptureRequest.Builder mPreviewRequestBuilder;
+    /**
+     * 当前会话的请求缓存
+     */
+    private final CaptureRequestCache mRequestCache = new CaptureRequestCache(new CaptureRequestCache.Factory() {
+        @Override
+        public CaptureRequest.Builder create(int kind) throws CameraAccessException {
+            return createRequestBuilder(kind);
+        }
+    });
 
     public Camera2View(Context context) {
         super(context);
@@ -170,7 +467,13 @@ public class Camera2View extends TextureView implements CameraInterface {
     private void initView(Context context, AttributeSet attrs) {
 
         this.mContext = context;
-        this.outImagePath = mContext.getExternalFilesDir(Environment.DIRECTORY_PICTURES) + mContext.getPackageName() + ".jpg";
+        File picturesDir = mContext.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
+        if (null == picturesDir) {
+            // 外部存储不可用
+            picturesDir = new File(mContext.getFilesDir(), Environment.DIRECTORY_PICTURES);
+        }
+        this.mCaptureStore = new CaptureStore(picturesDir);
+        this.mStorageManager = new CaptureStorageManager(mCaptureStore);
 
         boolean isCircle = false;
         int radius = 0;
@@ -202,6 +505,9 @@ public class Camera2View extends TextureView implements CameraInterface {
 
         mWindowManager = (WindowManager) mContext.getSystemService(Context.WINDOW_SERVICE);
         mCameraManager = (CameraManager) mContext.getSystemService(Context.CAMERA_SERVICE);
+        mSavePipeline = new CaptureSavePipeline(mStorageManager.guard(new FileChannelSink()), SAVE_QUEUE_CAPACITY, mSaveCallback);
+        mSavePipeline.setTracer(mCaptureTracer);
+        mSavePipeline.setThumbnailGenerator(new ThumbnailGenerator(THUMBNAIL_MAX_SIZE));
         checkCameras();
 
         //监听设备方向
@@ -220,19 +526,17 @@ public class Camera2View extends TextureView implements CameraInterface {
     private void checkCameras() {
 
         try {
-            // 获取前置和后置摄像头
-            for (String cameraId : mCameraManager.getCameraIdList()) {
+            // 获取前置和后置摄像头, 摄像头信息在进程内缓存
+            for (String cameraId : CameraInfoCache.getCameraIdList(mCameraManager)) {
                 if (!TextUtils.isEmpty(cameraId)) {
-                    CameraCharacteristics cameraCharacteristics = mCameraManager.getCameraCharacteristics(cameraId);
-                    Integer facing = cameraCharacteristics.get(CameraCharacteristics.LENS_FACING);
-                    if (null != facing) {
-                        if (TextUtils.isEmpty(frontCameraId) && facing == CameraCharacteristics.LENS_FACING_FRONT) {
-                            frontCameraId = cameraId;
-                            frontCameraCharacteristics = cameraCharacteristics;
-                        } else if (TextUtils.isEmpty(backCameraId) && facing == CameraCharacteristics.LENS_FACING_BACK) {
-                            backCameraId = cameraId;
-                            backCameraCharacteristics = cameraCharacteristics;
-                        }
+                    CameraInfo cameraInfo = CameraInfoCache.get(mCameraManager, cameraId);
+                    int facing = cameraInfo.getFacing();
+                    if (TextUtils.isEmpty(frontCameraId) && facing == CameraCharacteristics.LENS_FACING_FRONT) {
+                        frontCameraId = cameraId;
+                        frontCameraInfo = cameraInfo;
+                    } else if (TextUtils.isEmpty(backCameraId) && facing == CameraCharacteristics.LENS_FACING_BACK) {
+                        backCameraId = cameraId;
+                        backCameraInfo = cameraInfo;
                     }
                 }
             }
@@ -244,35 +548,144 @@ public class Camera2View extends TextureView implements CameraInterface {
         }
     }
 
+    /**
+     * 预览 Surface 未就绪时返回已完成的 Future(false), 就绪后自动打开
+     */
     @Override
-    public void openCamera() {
+    public Future<Boolean> openCamera() {
 
-        if (isAvailable()) {
-            startBackgroundThread();
-            setUpCameraOutputs(getWidth(), getHeight());
-            configureTransform(getWidth(), getHeight());
-            if (null != mCameraManager) {
-                try {
-                    boolean haveCameraPer = ContextCompat.checkSelfPermission(mContext, android.Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED;
-                    boolean haveStoragePer = ContextCompat.checkSelfPermission(mContext, android.Manifest.permission.WRITE_EXTERNAL_STORAGE) == PackageManager.PERMISSION_GRANTED;
-                    if (haveCameraPer && haveStoragePer) {
+        if (!isAvailable()) {
+            setSurfaceTextureListener(mSurfaceTextureListener);
+            return CameraCommandQueue.completed(false);
+        }
+        startBackgroundThread();
+        final int width = getWidth();
+        final int height = getHeight();
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                setUpCameraOutputs(width, height);
+                post(mConfigureTransformRunnable);
+                if (null == mCameraDevice) {
+                    if (!mCameraOpening) {
+                        openCameraDevice();
+                    }
+                } else if (!mPreviewSessionStarted) {
+                    // 相机已经预热打开, 预览 Surface 就绪后直接创建会话
+                    createCameraPreviewSession();
+                }
+                return true;
+            }
+        });
+    }
+
+    @Override
+    public Future<Boolean> prewarm(final boolean openDevice) {
+
+        startBackgroundThread();
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                setUpStillOutputs(getCameraInfo(mCameraId));
+                if (openDevice && null == mCameraDevice && !mCameraOpening) {
+                    openCameraDevice();
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * 检查权限并打开 {@link #mCameraId} 对应的相机
+     */
+    private void openCameraDevice() {
+
+        if (null != mCameraManager) {
+            try {
+                boolean haveCameraPer = ContextCompat.checkSelfPermission(mContext, android.Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED;
+                boolean haveStoragePer = ContextCompat.checkSelfPermission(mContext, android.Manifest.permission.WRITE_EXTERNAL_STORAGE) == PackageManager.PERMISSION_GRANTED;
+                if (haveCameraPer && haveStoragePer && !TextUtils.isEmpty(mCameraId)) {
+                    mCameraOpening = true;
+                    if (!mCameraOpenCloseLock.tryAcquire()) {
+                        // 上一次打开还没有回调, 在回调中接着处理, 相机线程不能阻塞等待
+                        return;
+                    }
+                    mOpeningCameraId = mCameraId;
+                    boolean requested = false;
+                    try {
                         mCameraManager.openCamera(mCameraId, mCameraDeviceCallback, mBackgroundHandler);
-                    } else if (null != mCameraListener) {
-                            mCameraListener.onCameraError();
+                        requested = true;
+                    } finally {
+                        if (!requested) {
+                            // CameraAccessException, IllegalArgumentException, SecurityException 等都不会再有回调, 撤销打开状态
+                            mCameraOpening = false;
+                            releaseOpenLock(mOpeningCameraId);
+                        }
                     }
-                } catch (CameraAccessException e) {
-                    e.printStackTrace();
+                } else {
+                    notifyCameraError();
                 }
+            } catch (CameraAccessException e) {
+                e.printStackTrace();
+                notifyCameraError();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                notifyCameraError();
             }
-        } else {
-            setSurfaceTextureListener(mSurfaceTextureListener);
         }
     }
 
+    /**
+     * 正在打开的相机收到第一个回调, 释放 {@link #mCameraOpenCloseLock}
+     * @return cameraId 是正在打开的相机
+     */
+    private boolean releaseOpenLock(String cameraId) {
+
+        if (null == mOpeningCameraId || !mOpeningCameraId.equals(cameraId)) {
+            return false;
+        }
+        mOpeningCameraId = null;
+        mCameraOpenCloseLock.release();
+        return true;
+    }
+
+    /**
+     * 需要等待相机关闭时在其他线程中调用 Future.get()
+     */
     @Override
-    public void closeCamera() {
+    public Future<Boolean> closeCamera() {
 
+        if (null == mBackgroundHandler) {
+            return CameraCommandQueue.completed(false);
+        }
+        // 关闭操作在相机线程中异步执行, 不阻塞主线程
+        final Handler handler = mBackgroundHandler;
+        Future<Boolean> result = mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                closeCameraDevice(handler);
+                return true;
+            }
+        });
         stopBackgroundThread();
+        return result;
+    }
+
+    /**
+     * 在相机线程中关闭相机和输出
+     * @param handler 相机线程的 Handler
+     */
+    private void closeCameraDevice(Handler handler) {
+
+        handler.removeCallbacks(mStopBurstRunnable);
+        handler.removeCallbacks(mCaptureTimeoutRunnable);
+        mBurstStats = null;
+        mZslFallbackPending = false;
+        setScreenFlash(false);
+        mRequestCache.invalidate();
+        setCaptureState(-1);
+        mPreviewSessionStarted = false;
+        mPreviewSize = null;
         try {
             if (null != mCaptureSession) {
                 mCaptureSession.stopRepeating();
@@ -283,122 +696,571 @@ public class Camera2View extends TextureView implements CameraInterface {
                 mCameraDevice.close();
                 mCameraDevice = null;
             }
+            mCameraOpening = false;
+            mZslRing.clear();
             if (null != mImageReader) {
                 mImageReader.close();
                 mImageReader = null;
             }
+            closeMultiFrameOutput();
+            closeAnalysisOutput();
         } catch (CameraAccessException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * 上一次拍照还在对焦 / 测光或者正在连拍时不处理, Future 的结果为 false
+     */
     @Override
-    public void takePicture() {
+    public Future<Boolean> takePicture() {
 
-        lockFocus();
+        // 点击时间在调用线程中记录
+        final long startNanos = System.nanoTime();
+        final long tapTimestamp = SystemClock.elapsedRealtimeNanos();
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return startCapture(startNanos, tapTimestamp);
+            }
+        });
     }
 
-    @Override
-    public void switchCamera() {
+    /**
+     * 在相机线程中开始拍照
+     * @param startNanos   调用 {@link #takePicture()} 的 System.nanoTime()
+     * @param tapTimestamp 调用 {@link #takePicture()} 的 elapsedRealtimeNanos()
+     * @return 是否开始拍照
+     */
+    private boolean startCapture(long startNanos, long tapTimestamp) {
 
-        mIsfaceFront = !mIsfaceFront;
-        mCameraId = mIsfaceFront ? frontCameraId : backCameraId;
-        closeCamera();
-        openCamera();
+        if (mHighSpeedPreview) {
+            // 高速会话没有拍照输出
+            notifyCameraError();
+            return false;
+        }
+        if (null == mCaptureSession || getCaptureState() != STATE_PREVIEW || null != mBurstStats) {
+            // 连拍排空前的帧按连拍保存
+            return false;
+        }
+        mCaptureSpan = mCaptureTracer.begin(startNanos);
+        if (mZslEnabled) {
+            takeZslPicture(getZslTapTimestamp(tapTimestamp));
+            return true;
+        }
+        if (null != mFlashTable) {
+            // 屏幕补光在对焦, 测光前点亮, 测光在补光下收敛
+            setScreenFlash(mFlashTable.get(mFlashModel, false).screenFlash);
+        }
+        lockFocus();
+        return true;
     }
 
     /**
-     * Starts a background thread and its {@link Handler}.
+     * 相机未打开时只记录摄像头, 下次打开时使用, Future 的结果为 false.
+     * 设备只有一个方向的摄像头时不切换, 结果同样为 false
      */
-    private void startBackgroundThread() {
-        mOrientationEventListener.enable();
-        mBackgroundThread = new HandlerThread("CameraBackground");
-        mBackgroundThread.start();
-        mBackgroundHandler = new Handler(mBackgroundThread.getLooper());
+    @Override
+    public Future<Boolean> switchCamera() {
+
+        final long startNanos = SystemClock.elapsedRealtimeNanos();
+        final boolean available = isAvailable();
+        final int width = getWidth();
+        final int height = getHeight();
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                String cameraId = mIsfaceFront ? backCameraId : frontCameraId;
+                if (TextUtils.isEmpty(cameraId)) {
+                    // 没有另一个方向的摄像头, 保留当前摄像头
+                    return false;
+                }
+                mIsfaceFront = !mIsfaceFront;
+                mCameraId = cameraId;
+                if (null == mBackgroundHandler || !available) {
+                    // 相机未打开, 下次打开时使用新的摄像头
+                    return false;
+                }
+                mSwitchStartNanos = startNanos;
+                switchCameraDevice(width, height);
+                return true;
+            }
+        });
     }
 
     /**
-     * Stops the background thread and its {@link Handler}.
+     * 在相机线程中切换摄像头, 保留相机线程, 尺寸一致时复用 {@link #mImageReader} 和预览 Surface.
+     * 旧相机调用 close() 后不等待 onClosed 就打开新相机, 关闭和打开在 HAL 中重叠进行
      */
-    private void stopBackgroundThread() {
-        mOrientationEventListener.disable();
-        mBackgroundThread.quitSafely();
-        try {
-            mBackgroundThread.join();
-            mBackgroundThread = null;
-            mBackgroundHandler = null;
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    private void switchCameraDevice(int width, int height) {
+
+        if (getCaptureState() == STATE_BURST) {
+            finishBurst();
+        }
+        if (null != mBurstStats) {
+            // 会话关闭, 不再等待剩余的帧
+            endBurst();
+        }
+        setCaptureState(-1);
+        mPreviewSessionStarted = false;
+        if (null != mCaptureSession) {
+            mCaptureSession.close();
+            mCaptureSession = null;
         }
+        mZslRing.clear();
+        if (null != mMultiFrameCapture) {
+            mMultiFrameCapture.onSessionClosed();
+        }
+        if (null != mCameraDevice) {
+            mCameraDevice.close();
+            mCameraDevice = null;
+        }
+        setUpCameraOutputs(width, height);
+        post(mConfigureTransformRunnable);
+        openCameraDevice();
     }
 
-    /**
-     * 创建相机会话
-     */
-    private void createCameraPreviewSession() {
+    @Override
+    public Future<Boolean> startBurst(final int count) {
 
-        try {
-            if (null != mPreviewSize) {
-                SurfaceTexture texture = getSurfaceTexture();
-                texture.setDefaultBufferSize(mPreviewSize.getWidth(), mPreviewSize.getHeight());
-                mPreviewSurface = new Surface(texture);
-                mCameraDevice.createCaptureSession(Arrays.asList(mPreviewSurface, mImageReader.getSurface()), mCaptureSessionCallback, mBackgroundHandler);
+        if (count <= 0) {
+            return CameraCommandQueue.completed(false);
+        }
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return startBurst(count, 0);
             }
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
+        });
+    }
+
+    @Override
+    public Future<Boolean> startBurstForDuration(final long durationMs) {
+
+        if (durationMs <= 0) {
+            return CameraCommandQueue.completed(false);
         }
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return startBurst(0, durationMs);
+            }
+        });
     }
 
     @Override
-    public void cameraPreview() {
+    public Future<Boolean> stopBurst() {
 
-        if (null != mCameraDevice) {
-            try {
-                mCaptureSession.stopRepeating();
-                mPreviewRequestBuilder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
-                setAutoFlash(mPreviewRequestBuilder, true);
-                mPreviewRequestBuilder.addTarget(mPreviewSurface);
-                CaptureRequest previewBuilder = mPreviewRequestBuilder.build();
-                mCaptureSession.setRepeatingRequest(previewBuilder, mCaptureCallback, mBackgroundHandler);
-                mState = STATE_PREVIEW;
-            } catch (CameraAccessException e) {
-                e.printStackTrace();
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return finishBurst();
             }
-        }
+        });
     }
 
     /**
-     * Lock the focus as the first step for a still image capture.
-     * 拍照第一步 雀氏纸尿裤(锁定焦点)
+     * 在相机线程中停止连拍, 恢复预览, 已发出的请求的帧到达后才回调 {@link BurstListener#onBurstFinished}
+     * @return 正在连拍
      */
-    private void lockFocus() {
+    private boolean finishBurst() {
 
+        BurstStats stats = mBurstStats;
+        if (getCaptureState() != STATE_BURST || null == stats || stats.isFinished()) {
+            return false;
+        }
+        stats.finish();
+        if (null != mBackgroundHandler) {
+            mBackgroundHandler.removeCallbacks(mStopBurstRunnable);
+        }
         try {
-            // This is how to tell the camera to lock focus.
-            // 设置如何锁定相机焦点
-            mPreviewRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER, CameraMetadata.CONTROL_AF_TRIGGER_START);
-            mState = STATE_WAITING_LOCK;
-            mCaptureSession.capture(mPreviewRequestBuilder.build(), mCaptureCallback, mBackgroundHandler);
+            //丢弃还未执行的连拍请求
+            mCaptureSession.abortCaptures();
         } catch (CameraAccessException e) {
             e.printStackTrace();
         }
+        startPreview();
+        if (stats.isDrained()) {
+            endBurst();
+        }
+        return true;
     }
 
     /**
-     * Run the precapture sequence for capturing a still image. This method should be called when
-     * we get a response in {@link #mCaptureCallback} from {@link #lockFocus()}.
+     * 连拍排空, 回调结束
      */
-    private void runPrecaptureSequence() {
-        try {
-            // This is how to tell the camera to trigger.
-            mPreviewRequestBuilder.set(CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER,
-                    CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER_START);
-            // Tell #mCaptureCallback to wait for the precapture sequence to be set.
-            mState = STATE_WAITING_PRECAPTURE;
-            mCaptureSession.capture(mPreviewRequestBuilder.build(), mCaptureCallback,
-                    mBackgroundHandler);
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
+    private void endBurst() {
+
+        BurstStats stats = mBurstStats;
+        mBurstStats = null;
+        BurstListener listener = mBurstListener;
+        if (null != listener) {
+            listener.onBurstFinished(stats.getCapturedCount(), stats.getDroppedCount(), stats.getFramesPerSecond());
+        }
+    }
+
+    /**
+     * 开始连拍, 按数量时使用 captureBurst, 按时长时使用重复请求
+     * @param count      连拍张数, 0 表示按时长
+     * @param durationMs 连拍时长
+     * @return 是否开始连拍
+     */
+    private boolean startBurst(int count, long durationMs) {
+
+        if (mZslEnabled || mHighSpeedPreview || null == mCameraDevice || null == mCaptureSession
+                || getCaptureState() != STATE_PREVIEW || null != mBurstStats) {
+            return false;
+        }
+        try {
+            jpegOrientation = getJpegOrientation(getCameraInfo(mCameraId), deviceOrientation);
+            CaptureRequest burstRequest = getCachedRequest(REQUEST_BURST, getStillVariant()).request;
+
+            mBurstStats = new BurstStats(count);
+            setCaptureState(STATE_BURST);
+            if (count > 0) {
+                mCaptureSession.captureBurst(Collections.nCopies(count, burstRequest), mBurstCaptureCallback, mBackgroundHandler);
+            } else {
+                mCaptureSession.setRepeatingRequest(burstRequest, mBurstCaptureCallback, mBackgroundHandler);
+                mBackgroundHandler.postDelayed(mStopBurstRunnable, durationMs);
+            }
+            return true;
+        } catch (CameraAccessException e) {
+            e.printStackTrace();
+            mBurstStats = null;
+            setCaptureState(STATE_PREVIEW);
+            return false;
+        }
+    }
+
+    /**
+     * 按时长连拍结束
+     */
+    private final Runnable mStopBurstRunnable = new Runnable() {
+        @Override
+        public void run() {
+            finishBurst();
+        }
+    };
+
+    /**
+     * 连拍帧处理完成, 回调进度, 按数量连拍完成后恢复预览, 停止后排空时结束连拍
+     */
+    private void onBurstFrame(BurstStats stats) {
+
+        BurstListener listener = mBurstListener;
+        if (null != listener) {
+            listener.onBurstProgress(stats.getCapturedCount(), stats.getDroppedCount(), stats.getFramesPerSecond());
+        }
+        if (stats.isComplete()) {
+            finishBurst();
+        }
+        if (stats == mBurstStats && stats.isDrained()) {
+            endBurst();
+        }
+    }
+
+    /**
+     * 点击拍照时对应的传感器时间戳, 传感器时间与 elapsedRealtime 不同源时返回 Long.MAX_VALUE, 即取最新的一帧
+     * @param tapNanos 点击时的 elapsedRealtimeNanos()
+     */
+    private long getZslTapTimestamp(long tapNanos) {
+
+        CameraInfo cameraInfo = getCameraInfo(mCameraId);
+        if (null != cameraInfo && cameraInfo.getTimestampSource() == CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME) {
+            return tapNanos;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * 从 ZSL 缓冲区中取出点击时刻的帧直接保存, 不发起新的拍照请求
+     * @param tapTimestamp 点击时间
+     */
+    private void takeZslPicture(long tapTimestamp) {
+
+        Image image = mZslPreferSharpest
+                ? mZslRing.removeSharpest(tapTimestamp, ZSL_SHARPNESS_WINDOW_NS)
+                : mZslRing.removeClosest(tapTimestamp);
+        if (null == image) {
+            // 缓冲区还没有帧, 走普通拍照流程
+            mZslFallbackPending = true;
+            mZslFallbackTimestamp = -1;
+            lockFocus();
+            return;
+        }
+        jpegOrientation = getJpegOrientation(getCameraInfo(mCameraId), deviceOrientation);
+        mCaptureTracer.mark(mCaptureSpan, CaptureTracer.PHASE_IMAGE_AVAILABLE);
+        if (!submitImage(image, nextImagePath(mActiveCaptureFormat))) {
+            notifyCameraError();
+        }
+    }
+
+    /**
+     * Acquires the shared camera thread and its {@link Handler}.
+     */
+    private void startBackgroundThread() {
+        mOrientationEventListener.enable();
+        if (null == mBackgroundHandler) {
+            mBackgroundHandler = mCommandQueue.start();
+        }
+        mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return scheduleFrameStats();
+            }
+        });
+    }
+
+    /**
+     * Releases the shared camera thread without waiting for it.
+     */
+    private void stopBackgroundThread() {
+        mOrientationEventListener.disable();
+        if (null != mBackgroundHandler) {
+            mBackgroundHandler.removeCallbacks(mFrameStatsRunnable);
+            mBackgroundHandler = null;
+            mCommandQueue.stop();
+        }
+    }
+
+    /**
+     * 创建相机会话
+     */
+    private void createCameraPreviewSession() {
+
+        try {
+            if (null != mPreviewSize) {
+                mPreviewSessionStarted = true;
+                SurfaceTexture texture = getSurfaceTexture();
+                texture.setDefaultBufferSize(mPreviewSize.getWidth(), mPreviewSize.getHeight());
+                // 同一个 SurfaceTexture 的预览 Surface 可以复用
+                if (null == mPreviewSurface || texture != mPreviewSurfaceTexture) {
+                    if (null != mPreviewSurface) {
+                        mPreviewSurface.release();
+                    }
+                    mPreviewSurface = new Surface(texture);
+                    mPreviewSurfaceTexture = texture;
+                }
+                mPreviewFrameRateMeter.reset();
+                mFrameStatsCollector.resetSequence();
+                // 输出 Surface 可能变化
+                mRequestCache.invalidate();
+                if (mHighSpeedPreview && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                    // 高速会话只能有预览输出
+                    mCameraDevice.createConstrainedHighSpeedCaptureSession(Collections.singletonList(mPreviewSurface),
+                            mCaptureSessionCallback, mBackgroundHandler);
+                    return;
+                }
+                List<Surface> outputs = new ArrayList<>(Arrays.asList(mPreviewSurface, mImageReader.getSurface()));
+                if (null != mAnalysisImageReader) {
+                    outputs.add(mAnalysisImageReader.getSurface());
+                }
+                if (null != mMultiFrameCapture) {
+                    outputs.add(mMultiFrameCapture.getSurface());
+                    if (mMultiFrameCapture.isReprocess() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                        // 合成结果作为重处理输入, 由 HAL 编码为 JPEG
+                        mMultiFrameCapture.createReprocessableSession(mCameraDevice, outputs,
+                                mCaptureSessionCallback, mBackgroundHandler);
+                        return;
+                    }
+                }
+                mCameraDevice.createCaptureSession(outputs, mCaptureSessionCallback, mBackgroundHandler);
+            }
+        } catch (CameraAccessException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public Future<Boolean> cameraPreview() {
+
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return startPreview();
+            }
+        });
+    }
+
+    /**
+     * 在相机线程中提交预览请求
+     * @return 是否已提交
+     */
+    private boolean startPreview() {
+
+        if (null != mCameraDevice && null != mCaptureSession) {
+            try {
+                // 重新提交预览请求, 中间的帧号不计为丢帧
+                mFrameStatsCollector.resetSequence();
+                if (mHighSpeedPreview && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                    startHighSpeedPreview();
+                    setCaptureState(STATE_PREVIEW);
+                    return true;
+                }
+                CaptureRequestCache.Entry preview = getCachedRequest(REQUEST_PREVIEW, 0);
+                mPreviewRequestBuilder = preview.builder;
+                setScreenFlash(mFlashTable.get(mFlashModel, true).screenFlash);
+                // setRepeatingRequest 直接替换当前的重复请求, 不需要 stopRepeating, 预览不会中断
+                mCaptureSession.setRepeatingRequest(preview.request, mCaptureCallback, mBackgroundHandler);
+                setCaptureState(STATE_PREVIEW);
+                return true;
+            } catch (CameraAccessException e) {
+                e.printStackTrace();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 高速会话预览, 请求需要由 createHighSpeedRequestList 拆分为一组后重复提交
+     */
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    private void startHighSpeedPreview() throws CameraAccessException {
+
+        CaptureRequestCache.Entry preview = getCachedRequest(REQUEST_HIGH_SPEED, 0);
+        mPreviewRequestBuilder = preview.builder;
+        CameraConstrainedHighSpeedCaptureSession session = (CameraConstrainedHighSpeedCaptureSession) mCaptureSession;
+        session.setRepeatingBurst(session.createHighSpeedRequestList(preview.request),
+                mCaptureCallback, mBackgroundHandler);
+    }
+
+    /**
+     * 从 {@link #mRequestCache} 中获取当前相机和闪光灯模式的请求
+     * @param kind    REQUEST_*
+     * @param variant 同一类型的其他参数
+     */
+    private CaptureRequestCache.Entry getCachedRequest(int kind, int variant) throws CameraAccessException {
+        return mRequestCache.get(mCameraId, kind, mFlashModel, variant);
+    }
+
+    /**
+     * 拍照和连拍请求的缓存变体, 只有 HEIC 在请求中设置 JPEG_ORIENTATION, 方向不同才是不同的请求,
+     * JPEG 的方向写入 EXIF, 所有方向共用一个请求
+     */
+    private int getStillVariant() {
+        return mActiveCaptureFormat == ImageFormat.HEIC ? jpegOrientation / 90 : 0;
+    }
+
+    /**
+     * 缓存未命中时创建请求, 使用当前的闪光灯模式, 帧率范围和输出参数
+     * @param kind REQUEST_*
+     */
+    private CaptureRequest.Builder createRequestBuilder(int kind) throws CameraAccessException {
+
+        CaptureRequest.Builder builder;
+        switch (kind) {
+            case REQUEST_STILL: {
+                // This is the CaptureRequest.Builder that we use to take a picture.
+                builder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
+                builder.addTarget(mImageReader.getSurface());
+                // Use the same AE and AF modes as the preview.
+                builder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+                applyFlashConfig(builder, false);
+                // 让 HAL 在 EXIF 中生成缩略图, 回调缩略图时不需要解码整张图片
+                Size thumbnailSize = getCameraInfo(mCameraId).getThumbnailSize();
+                if (null != thumbnailSize) {
+                    builder.set(CaptureRequest.JPEG_THUMBNAIL_SIZE, thumbnailSize);
+                }
+                setStillOutputOptions(builder);
+                //TODO-MZP 部分手机(HUAWEI P20) 与 Matrix 设置图片矩阵冲突
+//                builder.set(CaptureRequest.JPEG_ORIENTATION, jpegOrientation);
+                break;
+            }
+            case REQUEST_BURST: {
+                builder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
+                builder.addTarget(mPreviewSurface);
+                builder.addTarget(mImageReader.getSurface());
+                builder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+                // 连拍不使用单次闪光
+                applyFlashConfig(builder, true);
+                setStillOutputOptions(builder);
+                break;
+            }
+            case REQUEST_MULTI_FRAME: {
+                builder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
+                builder.addTarget(mMultiFrameCapture.getSurface());
+                builder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+                // 多帧不使用单次闪光, 每帧亮度需要一致
+                applyFlashConfig(builder, true);
+                break;
+            }
+            case REQUEST_HIGH_SPEED: {
+                builder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_RECORD);
+                builder.addTarget(mPreviewSurface);
+                builder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, mPreviewFpsRange);
+                break;
+            }
+            case REQUEST_PREVIEW:
+            default: {
+                builder = mCameraDevice.createCaptureRequest(
+                        mZslEnabled ? CameraDevice.TEMPLATE_ZERO_SHUTTER_LAG : CameraDevice.TEMPLATE_PREVIEW);
+                applyFlashConfig(builder, true);
+                if (null != mPreviewFpsRange) {
+                    builder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, mPreviewFpsRange);
+                }
+                builder.addTarget(mPreviewSurface);
+                if (mZslEnabled) {
+                    // ZSL: 每一帧预览同时输出全分辨率图像到 ZSL 缓冲区
+                    builder.addTarget(mImageReader.getSurface());
+                    setStillOutputOptions(builder);
+                }
+                if (null != mAnalysisImageReader) {
+                    builder.addTarget(mAnalysisImageReader.getSurface());
+                }
+                break;
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * 在预览请求上提交一次对焦 / 测光触发, 提交后恢复为 idle, 缓存的预览请求不受影响
+     */
+    private void capturePreviewTrigger(CaptureRequest.Key<Integer> key, int trigger, int idle) throws CameraAccessException {
+
+        mPreviewRequestBuilder.set(key, trigger);
+        CaptureRequest request = mPreviewRequestBuilder.build();
+        mPreviewRequestBuilder.set(key, idle);
+        mCaptureSession.capture(request, mCaptureCallback, mBackgroundHandler);
+    }
+
+    /**
+     * Lock the focus as the first step for a still image capture.
+     * 拍照第一步 雀氏纸尿裤(锁定焦点)
+     */
+    private void lockFocus() {
+
+        try {
+            // This is how to tell the camera to lock focus.
+            // 设置如何锁定相机焦点
+            setCaptureState(STATE_WAITING_LOCK);
+            capturePreviewTrigger(CaptureRequest.CONTROL_AF_TRIGGER, CameraMetadata.CONTROL_AF_TRIGGER_START,
+                    CameraMetadata.CONTROL_AF_TRIGGER_IDLE);
+            mCaptureTracer.mark(mCaptureSpan, CaptureTracer.PHASE_AF_TRIGGER);
+            if (null != mBackgroundHandler) {
+                mBackgroundHandler.removeCallbacks(mCaptureTimeoutRunnable);
+                mBackgroundHandler.postDelayed(mCaptureTimeoutRunnable,
+                        mCaptureStateMachine.getDeadlineMs() - SystemClock.elapsedRealtime());
+            }
+        } catch (CameraAccessException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Run the precapture sequence for capturing a still image. This method should be called when
+     * we get a response in {@link #mCaptureCallback} from {@link #lockFocus()}.
+     */
+    private void runPrecaptureSequence() {
+        try {
+            // This is how to tell the camera to trigger.
+            // Tell #mCaptureCallback to wait for the precapture sequence to be set.
+            // 状态已由 mCaptureStateMachine 切换为 STATE_WAITING_PRECAPTURE
+            capturePreviewTrigger(CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER,
+                    CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER_START, CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER_IDLE);
+            mCaptureTracer.mark(mCaptureSpan, CaptureTracer.PHASE_PRECAPTURE_START);
+        } catch (CameraAccessException e) {
+            e.printStackTrace();
         }
     }
 
@@ -411,40 +1273,130 @@ public class Camera2View extends TextureView implements CameraInterface {
             if (null == mCameraDevice) {
                 return;
             }
-            // This is the CaptureRequest.Builder that we use to take a picture.
-            final CaptureRequest.Builder captureBuilder =
-                    mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_STILL_CAPTURE);
-            captureBuilder.addTarget(mImageReader.getSurface());
-
-            // Use the same AE and AF modes as the preview.
-            captureBuilder.set(CaptureRequest.CONTROL_AF_MODE,
-                    CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
-            setAutoFlash(captureBuilder, false);
-
             // Orientation
-            jpegOrientation = getJpegOrientation(getCameraCharacteristics(mCameraId), deviceOrientation);
-            //TODO-MZP 部分手机(HUAWEI P20) 与 Matrix 设置图片矩阵冲突
-//            captureBuilder.set(CaptureRequest.JPEG_ORIENTATION, jpegOrientation);
-
-            CameraCaptureSession.CaptureCallback CaptureCallback
-                    = new CameraCaptureSession.CaptureCallback() {
-
-                @Override
-                public void onCaptureCompleted(@NonNull CameraCaptureSession session,
-                                               @NonNull CaptureRequest request,
-                                               @NonNull TotalCaptureResult result) {
-                    unlockFocus();
+            jpegOrientation = getJpegOrientation(getCameraInfo(mCameraId), deviceOrientation);
+            if (null != mMultiFrameCapture && !mMultiFrameCapture.isBusy()) {
+                // 上一次合成未完成时使用单张拍照
+                CaptureRequest multiFrameRequest = getCachedRequest(REQUEST_MULTI_FRAME, 0).request;
+                mCaptureSession.stopRepeating();
+                mCaptureSession.abortCaptures();
+                if (mMultiFrameCapture.capture(mCaptureSession, multiFrameRequest, mMultiFrameCallback)) {
+                    mCaptureTracer.mark(mCaptureSpan, CaptureTracer.PHASE_STILL_SUBMITTED);
+                    return;
                 }
-            };
+            }
+            CaptureRequest stillRequest = getCachedRequest(REQUEST_STILL, getStillVariant()).request;
 
             mCaptureSession.stopRepeating();
             mCaptureSession.abortCaptures();
-            mCaptureSession.capture(captureBuilder.build(), CaptureCallback, null);
+            mCaptureSession.capture(stillRequest, mStillCaptureCallback, null);
+            mCaptureTracer.mark(mCaptureSpan, CaptureTracer.PHASE_STILL_SUBMITTED);
         } catch (CameraAccessException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * 单张拍照请求回调
+     */
+    private final CameraCaptureSession.CaptureCallback mStillCaptureCallback = new CameraCaptureSession.CaptureCallback() {
+
+        @Override
+        public void onCaptureStarted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request,
+                                     long timestamp, long frameNumber) {
+            if (mZslFallbackPending) {
+                // ZSL 预览帧也输出到同一个 ImageReader, 按时间戳区分拍照的那一帧
+                mZslFallbackTimestamp = timestamp;
+            }
+        }
+
+        @Override
+        public void onCaptureCompleted(@NonNull CameraCaptureSession session,
+                                       @NonNull CaptureRequest request,
+                                       @NonNull TotalCaptureResult result) {
+            mCaptureTracer.mark(mCaptureSpan, CaptureTracer.PHASE_CAPTURE_COMPLETED);
+            unlockFocus();
+        }
+
+        @Override
+        public void onCaptureFailed(@NonNull CameraCaptureSession session,
+                                    @NonNull CaptureRequest request,
+                                    @NonNull CaptureFailure failure) {
+            // 不恢复预览时拍照状态不会回到 STATE_PREVIEW, 之后的拍照都不会处理
+            mCaptureTracer.cancel(mCaptureSpan);
+            mZslFallbackPending = false;
+            if (session != mCaptureSession) {
+                // 会话已关闭
+                return;
+            }
+            unlockFocus();
+            if (failure.getReason() != CaptureFailure.REASON_FLUSHED) {
+                notifyCameraError();
+            }
+        }
+    };
+
+    /**
+     * 多帧降噪拍照回调, 所有帧拍摄完成后立即恢复预览, 合成完成后编码保存
+     */
+    private final MultiFrameCapture.Callback mMultiFrameCallback = new MultiFrameCapture.Callback() {
+
+        @Override
+        public void onBurstCompleted() {
+            mCaptureTracer.mark(mCaptureSpan, CaptureTracer.PHASE_CAPTURE_COMPLETED);
+            unlockFocus();
+        }
+
+        @Override
+        public void onMerged(byte[] nv21, int width, int height) {
+
+            if (null == nv21) {
+                mCaptureTracer.cancel(mCaptureSpan);
+                notifyCameraError();
+                return;
+            }
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && reprocessMerged(nv21)) {
+                return;
+            }
+            // 软件编码
+            int quality = mJpegQuality > 0 ? mJpegQuality : DEFAULT_ENCODE_QUALITY;
+            if (!offerSaveRequest(new CaptureSavePipeline.SaveRequest(nv21, width, height, mCaptureEncoder,
+                    quality, getExifOrientation(), new File(nextImagePath(ImageFormat.JPEG))))) {
+                notifyCameraError();
+            }
+        }
+    };
+
+    /**
+     * 把多帧合成结果交给 HAL 重处理为 JPEG, 输出到 {@link #mImageReader} 后按单张拍照保存
+     * @return 不能重处理时返回 false
+     */
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    private boolean reprocessMerged(byte[] nv21) {
+
+        if (null == mMultiFrameCapture || !mMultiFrameCapture.canReprocess()
+                || null == mCameraDevice || null == mCaptureSession || null == mImageReader) {
+            return false;
+        }
+        try {
+            CaptureRequest.Builder builder = mMultiFrameCapture.createReprocessRequest(mCameraDevice, nv21);
+            builder.addTarget(mImageReader.getSurface());
+            Size thumbnailSize = getCameraInfo(mCameraId).getThumbnailSize();
+            if (null != thumbnailSize) {
+                builder.set(CaptureRequest.JPEG_THUMBNAIL_SIZE, thumbnailSize);
+            }
+            setStillOutputOptions(builder);
+            mCaptureSession.capture(builder.build(), null, mBackgroundHandler);
+            return true;
+        } catch (CameraAccessException e) {
+            e.printStackTrace();
+        } catch (IllegalStateException e) {
+            // 会话已关闭或输入队列已满
+            e.printStackTrace();
+        }
+        return false;
+    }
+
     /**
      * Unlock the focus. This method should be called when still image capture sequence is
      * finished.
@@ -455,94 +1407,96 @@ public class Camera2View extends TextureView implements CameraInterface {
         try {
             // This is how to tell the camera to lock focus.
             // 设置如何锁定相机焦点
-            mPreviewRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER, CameraMetadata.CONTROL_AF_TRIGGER_CANCEL);
-            mCaptureSession.capture(mPreviewRequestBuilder.build(), mCaptureCallback, mBackgroundHandler);
+            capturePreviewTrigger(CaptureRequest.CONTROL_AF_TRIGGER, CameraMetadata.CONTROL_AF_TRIGGER_CANCEL,
+                    CameraMetadata.CONTROL_AF_TRIGGER_IDLE);
             //拍照结束, 解除焦点锁定, 重新开始预览
-            cameraPreview();
+            startPreview();
         } catch (CameraAccessException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * 设置闪光灯状态
+     * 设置闪光灯状态, 预览中直接替换重复请求, 每种模式的请求只创建一次
      * @param flashModel 闪光灯状态
+     * @return 结果表示是否已应用到预览, 正在拍照或未预览时下次预览生效
      */
-    public void setFlashModel(int flashModel) {
+    public Future<Boolean> setFlashModel(final int flashModel) {
 
-        this.mFlashModel = flashModel;
-        cameraPreview();
+        if (flashModel < FLASH_MODEL_OFF || flashModel > FLASH_MODEL_ALWAYS) {
+            throw new IllegalArgumentException("Unsupported flash model: " + flashModel);
+        }
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                mFlashModel = flashModel;
+                // 拍照过程中不替换重复请求, 结束后恢复预览时使用新的模式
+                return getCaptureState() == STATE_PREVIEW && startPreview();
+            }
+        });
     }
 
     /**
-     * 闪光灯控制
-     * 0 : CaptureRequest.CONTROL_AE_MODE_OFF : 关闭闪光灯
-     * 1 : CaptureRequest.CONTROL_AE_MODE_ON : 开启闪光灯
-     * 2 : CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH : 在光线微弱的情况下使用闪光灯
-     * 3 : CaptureRequest.CONTROL_AE_MODE_ON_ALWAYS_FLASH : 总使用闪光灯
+     * 设置屏幕补光回调, 没有闪光灯的前置摄像头在开启闪光拍照或常亮时回调
      */
-    private void setAutoFlash(CaptureRequest.Builder mCaptureRequestBuilder, boolean isPreview) {
-        if (mFlashSupported) {
-            switch (mFlashModel) {
-                case CaptureRequest.CONTROL_AE_MODE_OFF:
-                    if (isPreview) {
-                        mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-                        mCaptureRequestBuilder.set(CaptureRequest.FLASH_MODE, CameraMetadata.FLASH_MODE_OFF);
-                    } else {
-                        mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-                        mCaptureRequestBuilder.set(CaptureRequest.FLASH_MODE, CaptureRequest.FLASH_MODE_OFF);
-                    }
-                    break;
-                case CaptureRequest.CONTROL_AE_MODE_ON:
-                    if (mIsfaceFront) {
-                        if (isPreview) {
-                            mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-                            mCaptureRequestBuilder.set(CaptureRequest.FLASH_MODE, CameraMetadata.FLASH_MODE_OFF);
-                        } else {
-                            mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-                            mCaptureRequestBuilder.set(CaptureRequest.FLASH_MODE, CaptureRequest.FLASH_MODE_SINGLE);
-                        }
-                    } else {
-                        if (isPreview) {
-                            mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-                            mCaptureRequestBuilder.set(CaptureRequest.FLASH_MODE, CameraMetadata.FLASH_MODE_OFF);
-                        } else {
-                            mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-                            mCaptureRequestBuilder.set(CaptureRequest.FLASH_MODE, CaptureRequest.FLASH_MODE_TORCH);
-                        }
-                    }
-                    break;
-                case CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH:
-                    if (mIsfaceFront) {
-                        if (isPreview) {
-                            mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH);
-                            mCaptureRequestBuilder.set(CaptureRequest.FLASH_MODE, CaptureRequest.FLASH_MODE_OFF);
-                        } else {
-                            mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH);
-                        }
-                    } else {
-                        if (isPreview) {
-                            mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH);
-                            mCaptureRequestBuilder.set(CaptureRequest.FLASH_MODE, CaptureRequest.FLASH_MODE_OFF);
-                        } else {
-                            mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH);
-                        }
-                    }
-                    break;
-                case CaptureRequest.CONTROL_AE_MODE_ON_ALWAYS_FLASH:
-                    if (isPreview) {
-                        mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-                        mCaptureRequestBuilder.set(CaptureRequest.FLASH_MODE, CameraMetadata.FLASH_MODE_TORCH);
-                    } else {
-                        mCaptureRequestBuilder.set(CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-                        mCaptureRequestBuilder.set(CaptureRequest.FLASH_MODE, CaptureRequest.FLASH_MODE_TORCH);
-                    }
-                    break;
-                default:
-            }
+    public void setScreenFlashListener(ScreenFlashListener listener) {
+        this.mScreenFlashListener = listener;
+    }
+
+    /**
+     * 按 {@link #mFlashTable} 设置 CONTROL_AE_MODE 和 FLASH_MODE
+     * @param isPreview 预览请求, 否则为拍照请求
+     */
+    private void applyFlashConfig(CaptureRequest.Builder builder, boolean isPreview) {
+
+        FlashConfigTable.Entry entry = mFlashTable.get(mFlashModel, isPreview);
+        builder.set(CaptureRequest.CONTROL_AE_MODE, entry.aeMode);
+        builder.set(CaptureRequest.FLASH_MODE, entry.flashMode);
+    }
+
+    /**
+     * 点亮或关闭屏幕补光, 状态变化时在主线程回调 {@link #mScreenFlashListener}
+     */
+    private void setScreenFlash(final boolean enabled) {
+
+        if (mScreenFlashEnabled == enabled) {
+            return;
+        }
+        mScreenFlashEnabled = enabled;
+        final ScreenFlashListener listener = mScreenFlashListener;
+        if (null != listener) {
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onScreenFlash(enabled);
+                }
+            });
+        }
+    }
+
+    /**
+     * 拍照输出参数: JPEG / HEIC 质量, HEIC 无法写入 EXIF 方向, 由 HAL 旋转
+     */
+    private void setStillOutputOptions(CaptureRequest.Builder builder) {
+
+        if (mJpegQuality > 0) {
+            builder.set(CaptureRequest.JPEG_QUALITY, (byte) mJpegQuality);
+        }
+        if (mActiveCaptureFormat == ImageFormat.HEIC) {
+            builder.set(CaptureRequest.JPEG_ORIENTATION, jpegOrientation);
         }
     }
 
+    /**
+     * 预览尺寸确定后在主线程中调整预览矩阵
+     */
+    private final Runnable mConfigureTransformRunnable = new Runnable() {
+        @Override
+        public void run() {
+            configureTransform(getWidth(), getHeight());
+        }
+    };
+
     /**
      * {@link TextureView.SurfaceTextureListener} handles several lifecycle events on a
      * {@link TextureView}.
@@ -561,7 +1515,20 @@ public class Camera2View extends TextureView implements CameraInterface {
         }
 
         @Override
-        public boolean onSurfaceTextureDestroyed(SurfaceTexture texture) {
+        public boolean onSurfaceTextureDestroyed(final SurfaceTexture texture) {
+            // 预览 Surface 由相机线程持有
+            mCommandQueue.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    if (texture != mPreviewSurfaceTexture || null == mPreviewSurface) {
+                        return false;
+                    }
+                    mPreviewSurface.release();
+                    mPreviewSurface = null;
+                    mPreviewSurfaceTexture = null;
+                    return true;
+                }
+            });
             return true;
         }
 
@@ -579,29 +1546,61 @@ public class Camera2View extends TextureView implements CameraInterface {
         @Override
         public void onOpened(@NonNull CameraDevice cameraDevice) {
             // This method is called when the camera is opened.  We start camera preview here.
-            mCameraOpenCloseLock.release();
+            releaseOpenLock(cameraDevice.getId());
+            if (!mCameraOpening || !cameraDevice.getId().equals(mCameraId)) {
+                // 打开过程中已经调用了 closeCamera(), 或者切换了摄像头
+                cameraDevice.close();
+                if (mCameraOpening) {
+                    openCameraDevice();
+                }
+                return;
+            }
+            mCameraOpening = false;
             mCameraDevice = cameraDevice;
-            createCameraPreviewSession();
+            // 预热时预览 Surface 可能还没有就绪, 等 openCamera() 再创建会话
+            if (isAvailable() && null != mPreviewSize) {
+                createCameraPreviewSession();
+            }
         }
 
         @Override
         public void onDisconnected(@NonNull CameraDevice cameraDevice) {
-            mCameraOpenCloseLock.release();
             cameraDevice.close();
-            mCameraDevice = null;
+            // 切换摄像头时旧相机的回调不能影响新相机
+            if (mCameraDevice == cameraDevice) {
+                mCameraDevice = null;
+            } else {
+                onOpenFailed(cameraDevice);
+            }
         }
 
         @Override
         public void onError(@NonNull CameraDevice cameraDevice, int error) {
-            mCameraOpenCloseLock.release();
             cameraDevice.close();
-            mCameraDevice = null;
-            if (null != mCameraListener) {
-                mCameraListener.onCameraError();
+            if (mCameraDevice == cameraDevice) {
+                mCameraDevice = null;
+            } else {
+                onOpenFailed(cameraDevice);
             }
+            notifyCameraError();
         }
     };
 
+    /**
+     * 正在打开的相机没有回调 onOpened 就断开或出错, 期间切换了摄像头时打开新的摄像头
+     */
+    private void onOpenFailed(CameraDevice cameraDevice) {
+
+        if (!releaseOpenLock(cameraDevice.getId())) {
+            return;
+        }
+        boolean reopen = mCameraOpening && !cameraDevice.getId().equals(mCameraId);
+        mCameraOpening = false;
+        if (reopen) {
+            openCameraDevice();
+        }
+    }
+
     /**
      * 相机会话
      */
@@ -610,14 +1609,50 @@ public class Camera2View extends TextureView implements CameraInterface {
         public void onConfigured(@NonNull CameraCaptureSession session) {
 
             mCaptureSession = session;
-            cameraPreview();
+            if (null != mMultiFrameCapture && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                mMultiFrameCapture.onSessionConfigured(session);
+            }
+            startPreview();
         }
 
         @Override
         public void onConfigureFailed(@NonNull CameraCaptureSession session) {
 
-            if (null != mCameraListener) {
-                mCameraListener.onCameraError();
+            // 预览 + 最大 JPEG + 最大 YUV 再加分析输出时超出了保证支持的输出组合,
+            // 去掉多帧降噪和分析这两个可选输出后重试, 重试仍失败才报错
+            if (session.getDevice() == mCameraDevice
+                    && (null != mAnalysisImageReader || null != mMultiFrameCapture)) {
+                closeAnalysisOutput();
+                closeMultiFrameOutput();
+                createCameraPreviewSession();
+                return;
+            }
+            notifyCameraError();
+        }
+    };
+
+    private int getCaptureState() {
+        return mCaptureStateMachine.getState();
+    }
+
+    private void setCaptureState(int state) {
+        mCaptureStateMachine.moveTo(state, SystemClock.elapsedRealtime());
+    }
+
+    private static int intValue(Integer value) {
+        return null == value ? CaptureStateMachine.STATE_UNKNOWN : value;
+    }
+
+    /**
+     * 对焦, 测光超时检查, 没有结果回调时也能按时拍照
+     */
+    private final Runnable mCaptureTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            long now = SystemClock.elapsedRealtime();
+            mCaptureStateMachine.checkTimeout(now);
+            if (mCaptureStateMachine.isWaiting() && null != mBackgroundHandler) {
+                mBackgroundHandler.postDelayed(this, mCaptureStateMachine.getDeadlineMs() - now);
             }
         }
     };
@@ -628,54 +1663,13 @@ public class Camera2View extends TextureView implements CameraInterface {
     private CameraCaptureSession.CaptureCallback mCaptureCallback = new CameraCaptureSession.CaptureCallback() {
 
         private void process(CaptureResult result) {
-            switch (mState) {
-                case STATE_PREVIEW: {
-                    // We have nothing to do when the camera preview is working normally.
-                    break;
-                }
-                case STATE_WAITING_LOCK: {
-                    Integer afState = result.get(CaptureResult.CONTROL_AF_STATE);
-                    if (afState == null) {
-                        captureStillPicture();
-                    } else if (CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED == afState ||
-                            CaptureResult.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED == afState) {
-                        // CONTROL_AE_STATE can be null on some devices
-                        Integer aeState = result.get(CaptureResult.CONTROL_AE_STATE);
-                        if (aeState == null ||
-                                aeState == CaptureResult.CONTROL_AE_STATE_CONVERGED) {
-                            mState = STATE_PICTURE_TAKEN;
-                            captureStillPicture();
-                        } else {
-                            runPrecaptureSequence();
-                        }
-                    } else {
-                        //TODO-MZP OPPO K3 前置摄像头 mState = 0, 显示对焦状态未开启
-                        mState = STATE_PICTURE_TAKEN;
-                        captureStillPicture();
-                    }
-                    break;
-                }
-                case STATE_WAITING_PRECAPTURE: {
-                    // CONTROL_AE_STATE can be null on some devices
-                    Integer aeState = result.get(CaptureResult.CONTROL_AE_STATE);
-                    if (aeState == null ||
-                            aeState == CaptureResult.CONTROL_AE_STATE_PRECAPTURE ||
-                            aeState == CaptureRequest.CONTROL_AE_STATE_FLASH_REQUIRED) {
-                        mState = STATE_WAITING_NON_PRECAPTURE;
-                    }
-                    break;
-                }
-                case STATE_WAITING_NON_PRECAPTURE: {
-                    // CONTROL_AE_STATE can be null on some devices
-                    Integer aeState = result.get(CaptureResult.CONTROL_AE_STATE);
-                    if (aeState == null || aeState != CaptureResult.CONTROL_AE_STATE_PRECAPTURE) {
-                        mState = STATE_PICTURE_TAKEN;
-                        captureStillPicture();
-                    }
-                    break;
-                }
-                default:
+            // 预览时不读取 AF / AE 状态
+            if (!mCaptureStateMachine.isWaiting()) {
+                return;
             }
+            // CONTROL_AE_STATE can be null on some devices
+            mCaptureStateMachine.onResult(intValue(result.get(CaptureResult.CONTROL_AF_STATE)),
+                    intValue(result.get(CaptureResult.CONTROL_AE_STATE)), SystemClock.elapsedRealtime());
         }
 
         @Override
@@ -689,108 +1683,463 @@ public class Camera2View extends TextureView implements CameraInterface {
         public void onCaptureCompleted(@NonNull CameraCaptureSession session,
                                        @NonNull CaptureRequest request,
                                        @NonNull TotalCaptureResult result) {
+            long switchStartNanos = mSwitchStartNanos;
+            // 旧会话在关闭前仍可能回调已提交的请求, 只记录新会话的第一帧
+            if (switchStartNanos != 0 && session == mCaptureSession) {
+                mSwitchStartNanos = 0;
+                mLastSwitchLatencyMs = (SystemClock.elapsedRealtimeNanos() - switchStartNanos) / 1_000_000;
+            }
+            Long timestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
+            if (null != timestamp) {
+                mPreviewFrameRateMeter.onFrame(timestamp);
+            }
+            if (getCaptureState() == STATE_PREVIEW) {
+                Long frameDuration = result.get(CaptureResult.SENSOR_FRAME_DURATION);
+                Long exposureTime = result.get(CaptureResult.SENSOR_EXPOSURE_TIME);
+                mFrameStatsCollector.onFrameCompleted(result.getFrameNumber(),
+                        null == timestamp ? -1 : timestamp,
+                        null == frameDuration ? -1 : frameDuration,
+                        null == exposureTime ? -1 : exposureTime);
+            } else {
+                // 对焦, 测光请求与拍照请求交错, 帧号不连续
+                mFrameStatsCollector.resetSequence();
+            }
             process(result);
         }
 
         @Override
         public void onCaptureFailed(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull CaptureFailure failure) {
-            if (null != mCameraListener) {
-                mCameraListener.onCameraError();
+            if (getCaptureState() != STATE_PREVIEW) {
+                mCaptureTracer.cancel(mCaptureSpan);
+            }
+            if (failure.getReason() == CaptureFailure.REASON_FLUSHED) {
+                // abortCaptures 丢弃的请求不计为失败, 也不是相机错误
+                mFrameStatsCollector.resetSequence();
+                return;
+            }
+            mFrameStatsCollector.onFrameFailed();
+            notifyCameraError();
+        }
+    };
+
+    /**
+     * 连拍请求回调, 拍摄失败的帧计为丢帧, 请求序列结束后等待剩余的图像到达
+     */
+    private final CameraCaptureSession.CaptureCallback mBurstCaptureCallback = new CameraCaptureSession.CaptureCallback() {
+
+        @Override
+        public void onCaptureCompleted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull TotalCaptureResult result) {
+            BurstStats stats = mBurstStats;
+            if (null != stats && session == mCaptureSession) {
+                stats.onResultCompleted();
+            }
+        }
+
+        @Override
+        public void onCaptureFailed(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull CaptureFailure failure) {
+            BurstStats stats = mBurstStats;
+            if (null != stats && session == mCaptureSession) {
+                stats.onFrameDropped();
+                onBurstFrame(stats);
+            }
+        }
+
+        @Override
+        public void onCaptureBufferLost(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request, @NonNull Surface target, long frameNumber) {
+            BurstStats stats = mBurstStats;
+            if (null != stats && session == mCaptureSession && target == mImageReader.getSurface()) {
+                // 拍摄结果已返回, 但不会有图像
+                stats.onImageReceived();
+                stats.onFrameDropped();
+                onBurstFrame(stats);
+            }
+        }
+
+        @Override
+        public void onCaptureSequenceCompleted(@NonNull CameraCaptureSession session, int sequenceId, long frameNumber) {
+            onBurstSequenceEnded(session);
+        }
+
+        @Override
+        public void onCaptureSequenceAborted(@NonNull CameraCaptureSession session, int sequenceId) {
+            onBurstSequenceEnded(session);
+        }
+
+        private void onBurstSequenceEnded(CameraCaptureSession session) {
+            BurstStats stats = mBurstStats;
+            if (null != stats && session == mCaptureSession) {
+                stats.onSequenceEnded();
+                if (stats.isDrained()) {
+                    endBurst();
+                }
+            }
+        }
+    };
+
+    /**
+     * This a callback object for the {@link ImageReader}. "onImageAvailable" will be called when a
+     * still image is ready to be saved.
+     * 拍照获取图像监听
+     */
+    private final ImageReader.OnImageAvailableListener mOnImageAvailableListener
+            = new ImageReader.OnImageAvailableListener() {
+
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image = reader.acquireNextImage();
+            if (null == image) {
+                // 图像已被之前的回调取走
+                return;
+            }
+            BurstStats stats = mBurstStats;
+            if (mZslEnabled && null == stats) {
+                if (!mZslFallbackPending || image.getTimestamp() != mZslFallbackTimestamp) {
+                    // ZSL: 只放入缓冲区, JPEG 大小作为清晰度评分, 细节越多压缩后越大
+                    mZslRing.add(image, image.getTimestamp(), image.getPlanes()[0].getBuffer().remaining());
+                    return;
+                }
+                // 缓冲区为空时普通拍照的那一帧, 直接保存
+                mZslFallbackPending = false;
+            }
+
+            if (null == stats) {
+                mCaptureTracer.mark(mCaptureSpan, CaptureTracer.PHASE_IMAGE_AVAILABLE);
+            }
+            String imagePath = null == stats ? nextImagePath(mActiveCaptureFormat)
+                    : getBurstImagePath(stats.getCapturedCount() + stats.getDroppedCount());
+            boolean accepted = submitImage(image, imagePath);
+
+            if (null != stats) {
+                stats.onImageReceived();
+                //连拍时写入跟不上直接丢帧, 不阻塞相机会话
+                if (accepted) {
+                    stats.onFrameCaptured(SystemClock.elapsedRealtimeNanos());
+                } else {
+                    stats.onFrameDropped();
+                }
+                onBurstFrame(stats);
+            } else if (!accepted) {
+                notifyCameraError();
             }
         }
     };
 
     /**
-     * This a callback object for the {@link ImageReader}. "onImageAvailable" will be called when a
-     * still image is ready to be saved.
-     * 拍照获取图像监听
+     * 将拍照图像交给保存流水线
+     * @param image     拍照图像, 方法返回前会被关闭
+     * @param imagePath 输出路径
+     * @return 保存队列已满时返回 false
+     */
+    private boolean submitImage(Image image, String imagePath) {
+
+        if (image.getFormat() == ImageFormat.YUV_420_888) {
+            return submitYuv(image, imagePath);
+        }
+        return submitJpeg(image, imagePath);
+    }
+
+    /**
+     * 将 JPEG / HEIC 图像交给保存流水线
+     * 相机线程只负责把数据复制到缓冲池, 尽快释放 Image, 保存交给写入线程
+     * @param image     JPEG / HEIC 图像, 方法返回前会被关闭
+     * @param imagePath 输出路径
+     * @return 保存队列已满时返回 false
+     */
+    private boolean submitJpeg(Image image, String imagePath) {
+
+        ByteBuffer jpegBuffer;
+        int format = image.getFormat();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        try {
+            ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+            jpegBuffer = mJpegBufferPool.acquire(buffer.remaining());
+            jpegBuffer.put(buffer);
+            jpegBuffer.flip();
+        } finally {
+            image.close();
+        }
+
+        // HEIC 已由 HAL 旋转, 不写入 EXIF 方向
+        int orientation = format == ImageFormat.JPEG ? getExifOrientation() : ExifInterface.ORIENTATION_UNDEFINED;
+        CaptureSavePipeline.SaveRequest request = new CaptureSavePipeline.SaveRequest(
+                jpegBuffer, mJpegBufferPool, orientation, new File(imagePath));
+        request.format = format;
+        request.width = width;
+        request.height = height;
+        return offerSaveRequest(request);
+    }
+
+    /**
+     * 将 YUV 图像复制为 NV21 后交给保存流水线, 编码在写入线程中进行
+     * @param image     YUV_420_888 图像, 方法返回前会被关闭
+     * @param imagePath 输出路径
+     * @return 保存队列已满时返回 false
+     */
+    private boolean submitYuv(Image image, String imagePath) {
+
+        byte[] nv21;
+        int width;
+        int height;
+        try {
+            width = image.getWidth();
+            height = image.getHeight();
+            nv21 = mCaptureYuvFrame.set(image).toNV21(null);
+        } finally {
+            image.close();
+        }
+
+        int quality = mJpegQuality > 0 ? mJpegQuality : DEFAULT_ENCODE_QUALITY;
+        return offerSaveRequest(new CaptureSavePipeline.SaveRequest(
+                nv21, width, height, mCaptureEncoder, quality, getExifOrientation(), new File(imagePath)));
+    }
+
+    /**
+     * 拍照时的 EXIF 方向
+     */
+    private int getExifOrientation() {
+
+        boolean isFront = getCameraInfo(mCameraId).isFrontFacing();
+        //TODO-MZP
+        return ExifUtilsKt.computeExifOrientation(jpegOrientation, isFront);
+    }
+
+    private boolean offerSaveRequest(CaptureSavePipeline.SaveRequest request) {
+
+        request.trace = null == mBurstStats ? mCaptureSpan : null;
+        request.thumbnail = null == mBurstStats && null != mThumbnailListener;
+        request.timestamp = System.currentTimeMillis();
+        request.cameraId = mCameraId;
+        CaptureBufferListener bufferListener = mCaptureBufferListener;
+        request.bufferListener = bufferListener;
+        request.persist = null == bufferListener || mPersistCaptures;
+        request.indexed = request.persist && null == outImagePath && mCaptureStore.isManaged(request.file);
+        if (!mSavePipeline.offer(request)) {
+            request.release();
+            mCaptureTracer.cancel(request.trace);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 分析帧监听, 只负责把帧交给调度器, 分析在分析线程中进行
+     */
+    private final ImageReader.OnImageAvailableListener mOnAnalysisImageAvailableListener
+            = new ImageReader.OnImageAvailableListener() {
+
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image = reader.acquireNextImage();
+            if (null != image) {
+                mAnalysisScheduler.offer(image);
+            }
+        }
+    };
+
+    /**
+     * 保存结果回调
+     */
+    private final CaptureSavePipeline.Callback mSaveCallback = new CaptureSavePipeline.Callback() {
+
+        @Override
+        public void onThumbnail(CaptureSavePipeline.SaveRequest request, Bitmap thumbnail) {
+            ThumbnailListener listener = mThumbnailListener;
+            if (null != listener) {
+                listener.onThumbnail(request.file.getAbsolutePath(), thumbnail);
+            }
+        }
+
+        @Override
+        public void onSaved(CaptureSavePipeline.SaveRequest request, long bytes) {
+            if (request.indexed) {
+                try {
+                    mCaptureStore.append(request.file, request.timestamp, bytes, request.orientation, request.cameraId);
+                    if (mStorageManager.hasQuota()) {
+                        mStorageManager.trim();
+                    }
+                } catch (IOException e) {
+                    // 图片已保存, 只是不在索引中
+                    e.printStackTrace();
+                }
+            }
+            // 只交付到内存时没有文件, 不回调路径
+            CameraListener listener = mCameraListener;
+            if (request.persist && null != listener) {
+                listener.onTakePicture(request.file.getAbsolutePath());
+            }
+            mCaptureTracer.mark(request.trace, CaptureTracer.PHASE_LISTENER_CALLED);
+            mCaptureTracer.end(request.trace);
+        }
+
+        @Override
+        public void onSaveFailed(CaptureSavePipeline.SaveRequest request, Exception e) {
+            e.printStackTrace();
+            mCaptureTracer.cancel(request.trace);
+            notifyCameraError();
+        }
+    };
+
+    /**
+     * Sets up member variables related to camera.
+     * 设置与摄像机相关的成员变量。主要是设置在横屏和竖屏状态下的预览尺寸
+     * @param width  The width of available size for camera preview
+     * @param height The height of available size for camera preview
+     */
+    @SuppressWarnings("SuspiciousNameCombination")
+    private void setUpCameraOutputs(int width, int height) {
+        CameraInfo cameraInfo = getCameraInfo(mCameraId);
+        if (setUpStillOutputs(cameraInfo)) {
+            // Danger, W.R.! Attempting to use too large a preview size could  exceed the camera
+            // bus' bandwidth limitation, resulting in gorgeous previews but the storage of
+            // garbage capture data.
+            // 获取与预览控件最接近的预览Size尺寸, 若预览尺寸太大会导致预览效果超棒, 但捕获的静态图像很糟糕
+            float refreshRate = mWindowManager.getDefaultDisplay().getRefreshRate();
+            Size[] highSpeedSizes = cameraInfo.getHighSpeedSizes();
+            mHighSpeedPreview = mPreviewMode == PREVIEW_MODE_HIGH_SPEED && highSpeedSizes.length > 0;
+            if (mHighSpeedPreview) {
+                // 高速会话的预览尺寸和帧率只能从高速配置中选择
+                mPreviewSize = PREVIEW_SIZE_SELECTOR.select(highSpeedSizes, width, height, aspectRatio, refreshRate);
+                mPreviewFpsRange = FpsRangeSelector.select(cameraInfo.getHighSpeedFpsRanges(mPreviewSize), mPreviewMode);
+            } else {
+                mPreviewSize = PREVIEW_SIZE_SELECTOR.select(cameraInfo.getPreviewSizes(), width, height, aspectRatio, refreshRate);
+                mPreviewFpsRange = FpsRangeSelector.select(cameraInfo.getAeFpsRanges(), mPreviewMode);
+            }
+        }
+    }
+
+    /**
+     * 设置与预览控件尺寸无关的输出: 拍照 {@link ImageReader}, JPEG 缓冲池和闪光灯, 可以在预览 Surface 就绪前调用
+     * @param cameraInfo 当前相机信息
+     * @return 相机没有可用输出时返回 false
+     */
+    private boolean setUpStillOutputs(CameraInfo cameraInfo) {
+        // 获取Camera支持的输出格式和尺寸信息, 已在 CameraInfo 中按面积排序
+        if (null == cameraInfo || !cameraInfo.hasOutputs()) {
+            return false;
+        }
+
+        // 之后的请求和图像回调都按这次配置的输出处理
+        mZslEnabled = mZslRequested;
+        mZslFallbackPending = false;
+        // 按拍照尺寸策略选择尺寸, 默认使用最大尺寸
+        int format = resolveCaptureFormat(cameraInfo);
+        Size captureSize = mCaptureSizePolicy.select(cameraInfo.getStillSizes(format), aspectRatio);
+        // ZSL 时缓冲区满后还需要一个空位接收新帧
+        int maxImages = mZslEnabled ? Math.max(mMaxImages, ZSL_RING_SIZE + 1) : mMaxImages;
+        // 切换摄像头时尺寸一致则复用 ImageReader
+        if (null == mImageReader || mImageReader.getWidth() != captureSize.getWidth()
+                || mImageReader.getHeight() != captureSize.getHeight() || mImageReader.getMaxImages() != maxImages
+                || mImageReader.getImageFormat() != format) {
+            if (null != mImageReader) {
+                mImageReader.close();
+            }
+            mImageReader = ImageReader.newInstance(captureSize.getWidth(), captureSize.getHeight(), format, maxImages);
+        }
+        mActiveCaptureFormat = format;
+        int jpegBufferSize = JpegBufferPool.estimateJpegSize(captureSize.getWidth(), captureSize.getHeight());
+        if (null == mJpegBufferPool || mJpegBufferPool.getBufferSize() != jpegBufferSize) {
+            mJpegBufferPool = new JpegBufferPool(jpegBufferSize, maxImages + SAVE_QUEUE_CAPACITY);
+        }
+        mImageReader.setOnImageAvailableListener(mOnImageAvailableListener, mBackgroundHandler);
+
+        // Check if the flash is supported.
+        // 闪光灯配置, 不支持闪光灯时前置摄像头使用屏幕补光
+        mFlashTable = cameraInfo.getFlashTable();
+
+        setUpMultiFrameOutput(cameraInfo, format);
+        setUpAnalysisOutput(cameraInfo);
+        return true;
+    }
+
+    /**
+     * 开启多帧降噪时创建 YUV 输出, 拍照格式为 JPEG 且相机支持该尺寸的 YUV 重处理时由 HAL 编码
+     * @param format 实际使用的拍照格式
      */
-    private final ImageReader.OnImageAvailableListener mOnImageAvailableListener
-            = new ImageReader.OnImageAvailableListener() {
+    private void setUpMultiFrameOutput(CameraInfo cameraInfo, int format) {
 
-        @Override
-        public void onImageAvailable(ImageReader reader) {
-            CameraCharacteristics characteristics = getCameraCharacteristics(mCameraId);
-            boolean isFront = characteristics.get(CameraCharacteristics.LENS_FACING) == CameraCharacteristics.LENS_FACING_FRONT;
-//                mBackgroundHandler.post(new ImageSaver(reader.acquireNextImage(), mFile, jpegOrientation, isFront));
-            Image mImage = reader.acquireNextImage();
-            ByteBuffer buffer = mImage.getPlanes()[0].getBuffer();
-            byte[] jpegByteArray = new byte[buffer.remaining()];
-            buffer.get(jpegByteArray);
-
-            //TODO-MZP
-            int orientation = ExifUtilsKt.computeExifOrientation(jpegOrientation, isFront);
-
-            FileOutputStream output = null;
-            try {
-                output = new FileOutputStream(outImagePath);
-                output.write(jpegByteArray);
+        // ZSL 和高速预览不使用拍照请求
+        Size size = mMultiFrameCount < 2 || mZslEnabled || mPreviewMode == PREVIEW_MODE_HIGH_SPEED
+                ? null : mCaptureSizePolicy.select(cameraInfo.getYuvSizes(), aspectRatio);
+        if (null == size) {
+            closeMultiFrameOutput();
+            return;
+        }
+        boolean reprocess = format == ImageFormat.JPEG && cameraInfo.supportsYuvReprocessing(size);
+        if (null == mMultiFrameCapture || !mMultiFrameCapture.matches(size, mMultiFrameCount, reprocess)) {
+            closeMultiFrameOutput();
+            mMultiFrameCapture = new MultiFrameCapture(size, mMultiFrameCount, reprocess);
+        }
+        mMultiFrameCapture.attach(mBackgroundHandler);
+    }
 
-                //图片添加标签
-                ExifInterface exifInterface = new ExifInterface(outImagePath);
-                exifInterface.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(orientation));
-                exifInterface.saveAttributes();
+    private void closeMultiFrameOutput() {
 
-                if (null != mCameraListener) {
-                    mCameraListener.onTakePicture(outImagePath);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                mImage.close();
-                if (null != output) {
-                    try {
-                        output.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
+        if (null != mMultiFrameCapture) {
+            mMultiFrameCapture.release();
+            mMultiFrameCapture = null;
         }
-    };
+    }
 
     /**
-     * Sets up member variables related to camera.
-     * 设置与摄像机相关的成员变量。主要是设置在横屏和竖屏状态下的预览尺寸
-     * @param width  The width of available size for camera preview
-     * @param height The height of available size for camera preview
+     * 实际使用的拍照格式, 相机不支持设置的格式时使用 JPEG
      */
-    @SuppressWarnings("SuspiciousNameCombination")
-    private void setUpCameraOutputs(int width, int height) {
-        if (!TextUtils.isEmpty(mCameraId)) {
-            CameraCharacteristics characteristics = getCameraCharacteristics(mCameraId);
+    private int resolveCaptureFormat(CameraInfo cameraInfo) {
 
-            // 获取Camera支持的输出格式和尺寸信息
-            StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
-            if (map == null) {
-                return;
-            }
+        int format = mCaptureFormat;
+        if (format == ImageFormat.HEIC && mZslEnabled) {
+            // ZSL 帧由预览请求输出, 无法按拍照时的方向旋转
+            format = ImageFormat.JPEG;
+        }
+        if (cameraInfo.getStillSizes(format).length == 0) {
+            format = ImageFormat.JPEG;
+        }
+        return format;
+    }
 
-            // For still image captures, we use the largest available size.
-            // 使用jepg格式最大可用尺寸捕获图像
-            Size largest = Collections.max(Arrays.asList(map.getOutputSizes(ImageFormat.JPEG)), new CompareSizesByArea());
-            mImageReader = ImageReader.newInstance(largest.getWidth(), largest.getHeight(), ImageFormat.JPEG, 2);
-            mImageReader.setOnImageAvailableListener(mOnImageAvailableListener, mBackgroundHandler);
+    /**
+     * 设置了 {@link FrameAnalyzer} 时创建低分辨率 YUV 分析输出
+     */
+    private void setUpAnalysisOutput(CameraInfo cameraInfo) {
 
-            if (width > MAX_PREVIEW_WIDTH) {
-                width = MAX_PREVIEW_WIDTH;
-            }
+        Size analysisSize = null == mFrameAnalyzer ? null : chooseAnalysisSize(cameraInfo.getYuvSizes());
+        if (null != mAnalysisImageReader && (null == analysisSize
+                || mAnalysisImageReader.getWidth() != analysisSize.getWidth()
+                || mAnalysisImageReader.getHeight() != analysisSize.getHeight())) {
+            closeAnalysisOutput();
+        }
+        if (null != analysisSize && null == mAnalysisImageReader) {
+            mAnalysisImageReader = ImageReader.newInstance(analysisSize.getWidth(), analysisSize.getHeight(),
+                    ImageFormat.YUV_420_888, ANALYSIS_MAX_IMAGES);
+            mAnalysisImageReader.setOnImageAvailableListener(mOnAnalysisImageAvailableListener, mBackgroundHandler);
+        }
+    }
 
-            if (height > MAX_PREVIEW_HEIGHT) {
-                height = MAX_PREVIEW_HEIGHT;
-            }
+    private void closeAnalysisOutput() {
 
-            // Danger, W.R.! Attempting to use too large a preview size could  exceed the camera
-            // bus' bandwidth limitation, resulting in gorgeous previews but the storage of
-            // garbage capture data.
-            // 获取与预览控件最接近的预览Size尺寸, 若预览尺寸太大会导致预览效果超棒, 但捕获的静态图像很糟糕
-            mPreviewSize = chooseOptimalSize(map.getOutputSizes(SurfaceTexture.class), width, height, aspectRatio);
+        if (null != mAnalysisImageReader) {
+            mAnalysisScheduler.clear();
+            mAnalysisImageReader.close();
+            mAnalysisImageReader = null;
+        }
+    }
+
+    /**
+     * 分析帧尺寸: 不超过 {@link #MAX_ANALYSIS_WIDTH} x {@link #MAX_ANALYSIS_HEIGHT} 的最大尺寸
+     * @param choices 按面积从小到大排序的 YUV 尺寸
+     */
+    private static Size chooseAnalysisSize(Size[] choices) {
 
-            // Check if the flash is supported.
-            // 是否支持flash
-            Boolean available = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
-            mFlashSupported = available == null ? false : available;
+        Size analysisSize = null;
+        for (Size option : choices) {
+            if (option.getWidth() <= MAX_ANALYSIS_WIDTH && option.getHeight() <= MAX_ANALYSIS_HEIGHT) {
+                analysisSize = option;
+            }
         }
+        if (null == analysisSize && choices.length > 0) {
+            analysisSize = choices[0];
+        }
+        return analysisSize;
     }
 
     /**
@@ -825,66 +2174,24 @@ public class Camera2View extends TextureView implements CameraInterface {
         setTransform(matrix);
     }
 
-    /**
-     * Given {@code choices} of {@code Size}s supported by a camera, choose the smallest one that
-     * is at least as large as the respective texture view size, and that is at most as large as the
-     * respective max size, and whose aspect ratio matches with the specified value. If such size
-     * doesn't exist, choose the largest one that is at most as large as the respective max size,
-     * and whose aspect ratio matches with the specified value.
-     *
-     * @param choices           The list of sizes that the camera supports for the intended output
-     *                          class
-     * @param textureViewWidth  The width of the texture view relative to sensor coordinate
-     * @param textureViewHeight The height of the texture view relative to sensor coordinate
-     * @param aspectRatio       The aspect ratio
-     * @return The optimal {@code Size}, or an arbitrary one if none were big enough
-     */
-    private static Size chooseOptimalSize(Size[] choices, int textureViewWidth, int textureViewHeight, float aspectRatio) {
-
-        // Collect the supported resolutions that are at least as big as the preview Surface
-        List<Size> bigEnough = new ArrayList<>();
-        // Collect the supported resolutions that are smaller than the preview Surface
-        List<Size> notBigEnough = new ArrayList<>();
-        for (Size option : choices) {
-            if (option.getWidth() == option.getHeight() * aspectRatio) {
-                if (option.getWidth() >= textureViewWidth && option.getHeight() >= textureViewHeight) {
-                    bigEnough.add(option);
-                } else {
-                    notBigEnough.add(option);
-                }
-            }
-        }
-
-        // Pick the smallest of those big enough. If there is no one big enough, pick the
-        // largest of those not big enough.
-        if (bigEnough.size() > 0) {
-            return Collections.min(bigEnough, new CompareSizesByArea());
-        } else if (notBigEnough.size() > 0) {
-            return Collections.max(notBigEnough, new CompareSizesByArea());
-        } else {
-            return choices[0];
-        }
-    }
-
     /**
      * 根据使用相机前置或后置摄像头 与 设备方向 判断输出拍照图片方向
-     * @param cameraCharacteristics 当前使用设备信息设备信息
-     * @param deviceOrientation     设备方向
+     * @param cameraInfo        当前使用设备信息设备信息
+     * @param deviceOrientation 设备方向
      */
-    private int getJpegOrientation(CameraCharacteristics cameraCharacteristics, int deviceOrientation) {
+    private int getJpegOrientation(CameraInfo cameraInfo, int deviceOrientation) {
 
-        if (null != cameraCharacteristics) {
+        if (null != cameraInfo) {
             if (deviceOrientation == OrientationEventListener.ORIENTATION_UNKNOWN) {
                 return 0;
             }
-            int sensorOrientation = cameraCharacteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+            int sensorOrientation = cameraInfo.getSensorOrientation();
 
             // Round device orientation to a multiple of 90
             deviceOrientation = (deviceOrientation + 45) / 90 * 90;
 
             // Reverse device orientation for front-facing cameras
-            boolean facingFront = cameraCharacteristics.get(CameraCharacteristics.LENS_FACING) == CameraCharacteristics.LENS_FACING_FRONT;
-            if (facingFront) {
+            if (cameraInfo.isFrontFacing()) {
                 deviceOrientation = -deviceOrientation;
             }
 
@@ -899,19 +2206,36 @@ public class Camera2View extends TextureView implements CameraInterface {
      * 获取相机信息
      * @param cameraId 相机ID
      */
-    private CameraCharacteristics getCameraCharacteristics(String cameraId) {
+    private CameraInfo getCameraInfo(String cameraId) {
 
         if (!TextUtils.isEmpty(cameraId)) {
             if (cameraId.equals(backCameraId)) {
-                return backCameraCharacteristics;
+                return backCameraInfo;
             } else if (cameraId.equals(frontCameraId)) {
-                return frontCameraCharacteristics;
+                return frontCameraInfo;
             }
         }
 
         return null;
     }
 
+    /**
+     * 后台单线程执行器, 空闲一段时间后线程自动退出
+     * @param name 线程名
+     */
+    static ExecutorService newSingleThreadExecutor(final String name) {
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, name);
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Compares two {@code Size}s based on their areas.
      */
@@ -927,11 +2251,404 @@ public class Camera2View extends TextureView implements CameraInterface {
 
     /*----------------------------------*/
 
+    /**
+     * 设置相机回调, 可以在任意线程中设置, 回调在相机线程或写入线程中调用
+     */
     public void setCameraListener(CameraListener listener) {
         this.mCameraListener = listener;
     }
 
+    /**
+     * 回调 {@link CameraListener#onCameraError()}, 回调可能在其他线程中被清除, 只读取一次
+     */
+    private void notifyCameraError() {
+
+        CameraListener listener = mCameraListener;
+        if (null != listener) {
+            listener.onCameraError();
+        }
+    }
+
+    /**
+     * 设置拍照缩略图回调, 在后台线程中调用, 不设置时不生成缩略图
+     */
+    public void setThumbnailListener(ThumbnailListener listener) {
+        this.mThumbnailListener = listener;
+    }
+
+    /**
+     * 设置连拍进度和结束回调, 在相机线程中调用
+     */
+    public void setBurstListener(BurstListener listener) {
+        this.mBurstListener = listener;
+    }
+
+    /**
+     * 设置固定的输出路径, 每次拍照覆盖, 连拍时追加序号, 不写入 {@link CaptureStore} 索引
+     * @param outImagePath 输出路径, 为 null 时每次拍照由 {@link #getCaptureStore()} 分配唯一文件名(默认)
+     */
     public void setOutImagePath(String outImagePath) {
         this.outImagePath = outImagePath;
     }
+
+    /**
+     * 设置拍照数据的存储后端, 之后开始保存的拍照生效, 默认为 {@link CaptureSink#DURABILITY_FDATASYNC} 的 {@link FileChannelSink}
+     * {@link FileChannelSink} / {@link MappedFileSink} 可以选择持久化方式,
+     * {@link MemorySink} 不写入文件, 直接把图片数据交给调用方, 此时 {@link CameraListener#onTakePicture(String)} 的路径不存在
+     * @param sink 存储后端, 为 null 时恢复默认
+     */
+    public void setCaptureSink(CaptureSink sink) {
+        mSavePipeline.setSink(mStorageManager.guard(null == sink ? new FileChannelSink() : sink));
+    }
+
+    /**
+     * 设置拍照数据的内存交付回调, 在写入线程中调用, 之后提交的拍照生效.
+     * 数据来自复用的缓冲池, 回调方使用完后必须调用 {@link CaptureBuffer#release()}, 否则缓冲区无法复用
+     * @param listener 为 null 时取消交付
+     * @param persist  是否仍然写入存储, 为 false 时不写入文件, 不回调 {@link CameraListener#onTakePicture(String)}
+     */
+    public void setCaptureBufferListener(CaptureBufferListener listener, boolean persist) {
+        this.mPersistCaptures = persist;
+        this.mCaptureBufferListener = listener;
+    }
+
+    /**
+     * 拍照文件目录, 可以从索引中列出所有拍照记录
+     */
+    public CaptureStore getCaptureStore() {
+        return mCaptureStore;
+    }
+
+    /**
+     * 设置 {@link #getCaptureStore()} 的存储配额, 每次保存后在写入线程中删除最久未使用的拍照直到满足配额,
+     * 剩余空间不足时也会先删除旧拍照再写入. 未设置配额时不删除拍照, 空间不足时拍照失败
+     * @param maxBytes 拍照总大小上限, 0 表示不限
+     * @param maxCount 拍照数量上限, 0 表示不限
+     */
+    public void setStorageQuota(long maxBytes, int maxCount) {
+        mStorageManager.setQuota(maxBytes, maxCount);
+    }
+
+    /**
+     * 设置写入后至少保留的剩余空间, 默认 32MB
+     * @param minFreeBytes 剩余空间
+     */
+    public void setMinFreeStorage(long minFreeBytes) {
+        mStorageManager.setMinFreeBytes(minFreeBytes);
+    }
+
+    /**
+     * 因存储配额或剩余空间删除的拍照数
+     */
+    public int getEvictedCaptureCount() {
+        return mStorageManager.getEvictedCount();
+    }
+
+    /**
+     * 设置 {@link ImageReader} 可同时持有的图像数, 连拍时可以调大, 下次打开相机时生效
+     * @param maxImages 图像数
+     */
+    public void setMaxImages(int maxImages) {
+        this.mMaxImages = Math.max(DEFAULT_MAX_IMAGES, maxImages);
+    }
+
+    /**
+     * 设置预览性能模式, 从 CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES 中选择帧率范围.
+     * 切换到或切换出 {@link #PREVIEW_MODE_HIGH_SPEED} 时下次打开相机生效, 其他模式立即生效
+     * @param mode PREVIEW_MODE_*
+     * @return 结果表示是否已应用到预览
+     */
+    public Future<Boolean> setPreviewPerformanceMode(final int mode) {
+
+        if (mode < PREVIEW_MODE_BATTERY_SAVER || mode > PREVIEW_MODE_HIGH_SPEED) {
+            throw new IllegalArgumentException("Unsupported preview mode: " + mode);
+        }
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                boolean sessionChanged = (mode == PREVIEW_MODE_HIGH_SPEED) != (mPreviewMode == PREVIEW_MODE_HIGH_SPEED);
+                mPreviewMode = mode;
+                CameraInfo cameraInfo = getCameraInfo(mCameraId);
+                if (sessionChanged || mHighSpeedPreview || null == cameraInfo || getCaptureState() != STATE_PREVIEW) {
+                    return false;
+                }
+                mPreviewFpsRange = FpsRangeSelector.select(cameraInfo.getAeFpsRanges(), mode);
+                mRequestCache.invalidate();
+                return startPreview();
+            }
+        });
+    }
+
+    /**
+     * 预览实际帧率, 根据最近 {@link #PREVIEW_FPS_WINDOW} 帧的传感器时间戳计算, 没有预览时返回 0
+     */
+    public float getPreviewFrameRate() {
+        return mPreviewFrameRateMeter.getFramesPerSecond();
+    }
+
+    /**
+     * 预览帧统计快照, 包括帧间隔, 帧时长, 曝光时间的百分位以及丢帧数和失败率
+     */
+    public FrameStats getFrameStats() {
+        return mFrameStatsCollector.snapshot();
+    }
+
+    /**
+     * 清空预览帧统计
+     */
+    public void resetFrameStats() {
+        mFrameStatsCollector.reset();
+    }
+
+    /**
+     * 设置帧统计定时回调, 在相机线程中每隔 intervalMs 回调一次
+     * @param listener   null 时停止回调
+     * @param intervalMs 回调间隔
+     * @return 结果表示是否已开始定时回调
+     */
+    public Future<Boolean> setFrameStatsListener(final FrameStatsListener listener, final long intervalMs) {
+
+        if (null != listener && intervalMs <= 0) {
+            throw new IllegalArgumentException("Frame stats interval must be positive: " + intervalMs);
+        }
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                mFrameStatsListener = listener;
+                mFrameStatsIntervalMs = intervalMs;
+                return scheduleFrameStats();
+            }
+        });
+    }
+
+    /**
+     * 重新安排帧统计定时回调, 在相机线程中调用
+     * @return 是否已安排回调
+     */
+    private boolean scheduleFrameStats() {
+
+        Handler handler = mBackgroundHandler;
+        if (null == handler) {
+            return false;
+        }
+        handler.removeCallbacks(mFrameStatsRunnable);
+        if (null == mFrameStatsListener) {
+            return false;
+        }
+        handler.postDelayed(mFrameStatsRunnable, mFrameStatsIntervalMs);
+        return true;
+    }
+
+    /**
+     * 帧统计定时回调
+     */
+    private final Runnable mFrameStatsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            FrameStatsListener listener = mFrameStatsListener;
+            Handler handler = mBackgroundHandler;
+            if (null == listener || null == handler) {
+                return;
+            }
+            listener.onFrameStats(mFrameStatsCollector.snapshot());
+            handler.postDelayed(this, mFrameStatsIntervalMs);
+        }
+    };
+
+    /**
+     * 设置拍照尺寸策略, 默认使用最大尺寸, 下次打开相机时生效
+     * @param policy 拍照尺寸策略
+     */
+    public void setCaptureSizePolicy(CaptureSizePolicy policy) {
+        this.mCaptureSizePolicy = null == policy ? CaptureSizePolicy.largest() : policy;
+    }
+
+    /**
+     * 设置拍照格式, 下次打开相机时生效, 相机不支持时使用 JPEG
+     * ImageFormat.JPEG : 默认
+     * ImageFormat.HEIC : Android Q 及以上, 文件更小, 方向由 HAL 旋转(不镜像), 开启 ZSL 时使用 JPEG
+     * ImageFormat.YUV_420_888 : 由 {@link #setCaptureEncoder(CaptureEncoder)} 在写入线程中编码
+     * @param format 拍照格式
+     */
+    public void setCaptureFormat(int format) {
+
+        if (format != ImageFormat.JPEG && format != ImageFormat.HEIC && format != ImageFormat.YUV_420_888) {
+            throw new IllegalArgumentException("Unsupported capture format: " + format);
+        }
+        this.mCaptureFormat = format;
+    }
+
+    /**
+     * 设置 YUV 拍照格式的编码器, 默认使用 YuvImage 编码为 JPEG
+     * @param encoder 编码器
+     */
+    public void setCaptureEncoder(CaptureEncoder encoder) {
+        this.mCaptureEncoder = null == encoder ? new YuvImageEncoder() : encoder;
+    }
+
+    /**
+     * 设置 JPEG / HEIC 质量, 也用于 YUV 编码, 下次拍照时生效
+     * @param quality 1 ~ 100, 0 表示使用默认值
+     */
+    public Future<Boolean> setJpegQuality(final int quality) {
+
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality must be in [0, 100]");
+        }
+        // 请求缓存只在相机线程中使用
+        return mCommandQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                mJpegQuality = quality;
+                mRequestCache.invalidate();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * 零延时拍照(ZSL), 预览时持续输出全分辨率 JPEG 并保留最近几帧, 拍照时直接保存点击时刻的帧,
+     * 省去对焦、测光和新的拍照请求. 部分设备全分辨率输出会降低预览帧率, 下次打开相机时生效
+     * @param enabled 是否开启
+     */
+    public void setZslEnabled(boolean enabled) {
+        this.mZslRequested = enabled;
+    }
+
+    /**
+     * ZSL 拍照时在点击时间附近优先选择最清晰的帧
+     * @param preferSharpest 是否优先清晰帧
+     */
+    public void setZslPreferSharpest(boolean preferSharpest) {
+        this.mZslPreferSharpest = preferSharpest;
+    }
+
+    /**
+     * 多帧降噪拍照, 拍照时连续拍摄多帧 YUV 对齐合成后只编码一次, 降低暗光噪声.
+     * 相机支持 YUV 重处理且拍照格式为 JPEG 时由 HAL 编码, 否则使用 {@link #setCaptureEncoder(CaptureEncoder)} 编码.
+     * 开启 ZSL 或高速预览时不生效, 下次打开相机时生效; 相机不支持加上多帧输出的会话时关闭多帧降噪
+     * @param count 合成帧数, 0 ~ 8, 0 或 1 表示关闭
+     */
+    public void setMultiFrameCount(int count) {
+
+        if (count < 0 || count > MultiFrameCapture.MAX_FRAME_COUNT) {
+            throw new IllegalArgumentException("count must be in [0, " + MultiFrameCapture.MAX_FRAME_COUNT + "]");
+        }
+        this.mMultiFrameCount = count;
+    }
+
+    /**
+     * 下一张照片的保存路径, 设置了固定路径时使用固定路径
+     * @param format 保存的图片格式, 决定扩展名
+     */
+    private String nextImagePath(int format) {
+
+        String path = outImagePath;
+        if (null != path) {
+            return path;
+        }
+        return mCaptureStore.allocate(format == ImageFormat.HEIC ? ".heic" : ".jpg").getPath();
+    }
+
+    /**
+     * 连拍图片路径, 设置了固定路径时在输出路径后追加序号
+     * @param index 连拍序号
+     */
+    private String getBurstImagePath(int index) {
+
+        String path = outImagePath;
+        if (null == path) {
+            return nextImagePath(mActiveCaptureFormat);
+        }
+        int dot = path.lastIndexOf('.');
+        if (dot <= path.lastIndexOf('/')) {
+            return path + "_" + index;
+        }
+        return path.substring(0, dot) + "_" + index + path.substring(dot);
+    }
+
+    /**
+     * 最近一次切换摄像头从调用 {@link #switchCamera()} 到新摄像头第一帧预览的耗时, 没有切换过时返回 -1
+     */
+    public long getLastSwitchLatencyMs() {
+        return mLastSwitchLatencyMs;
+    }
+
+    /**
+     * 设置预览帧分析, 为 null 时关闭分析输出, 下次打开相机时生效; 相机不支持加上分析输出的会话时不分析
+     * @param analyzer 预览帧分析
+     */
+    public void setFrameAnalyzer(FrameAnalyzer analyzer) {
+        this.mFrameAnalyzer = analyzer;
+    }
+
+    /**
+     * 已分析的预览帧数
+     */
+    public long getAnalyzedFrameCount() {
+        return mAnalysisScheduler.getProcessedCount();
+    }
+
+    /**
+     * 分析来不及而丢弃的预览帧数
+     */
+    public long getDroppedAnalysisFrameCount() {
+        return mAnalysisScheduler.getDroppedCount();
+    }
+
+    /**
+     * 拍照耗时追踪, 可查询各阶段耗时百分位
+     */
+    public CaptureTracer getCaptureTracer() {
+        return mCaptureTracer;
+    }
+
+    /**
+     * 各拍照阶段耗时统计 (p50/p95/p99/max, 毫秒)
+     */
+    public String dumpCaptureStats() {
+        return mCaptureTracer.dumpStats();
+    }
+
+    /**
+     * 设置拍照耗时回调, 每次拍照完成后回调各阶段耗时
+     */
+    public void setCaptureTraceListener(CaptureTraceListener listener) {
+        mCaptureTracer.setListener(listener);
+    }
+
+    /**
+     * 拍照时是否输出 systrace 异步区间 "takePicture", 需要 Android Q 及以上
+     */
+    public void setCaptureSystemTraceEnabled(boolean enabled) {
+        mCaptureTracer.setSystemTraceEnabled(enabled);
+    }
+
+    /**
+     * 对焦或测光超时后直接拍照的次数
+     */
+    public int getCaptureTimeoutCount() {
+        return mCaptureStateMachine.getTimeoutCount();
+    }
+
+    /**
+     * 实际调用 createCaptureRequest 的次数, 切换闪光灯和连续拍照时只在第一次增加
+     */
+    public int getCaptureRequestBuildCount() {
+        return mRequestCache.getBuildCount();
+    }
+
+    /**
+     * JPEG 缓冲池实际分配内存的次数, 连续拍照时应当保持不变
+     */
+    public int getJpegBufferAllocationCount() {
+        return null == mJpegBufferPool ? 0 : mJpegBufferPool.getAllocationCount();
+    }
+
+    /**
+     * 从 JPEG 缓冲池借出尚未归还的缓冲区数, 包括保存中和 {@link CaptureBuffer} 未释放的, 空闲时应当为 0
+     */
+    public int getOutstandingCaptureBufferCount() {
+        return null == mJpegBufferPool ? 0 : mJpegBufferPool.getOutstandingCount();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,154 @@
+package com.sample.camera.camera;
+
+import android.os.Handler;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 相机命令队列, 所有相机操作按提交顺序在相机线程中串行执行, 相机状态只由相机线程读写
+ * 提交不阻塞调用线程, 返回的 Future 在命令执行后完成; 不要在相机线程中等待 Future, 命令排在当前任务之后, 会死锁
+ * 未调用 {@link #start()} 时临时获取 {@link CameraThread}, 命令执行后释放
+ */
+final class CameraCommandQueue {
+
+    /**
+     * 执行命令的线程, 默认为 {@link CameraThread}, 测试时替换为假的实现
+     */
+    interface Host {
+
+        /**
+         * 获取线程, 与 {@link #release()} 成对调用
+         */
+        Handler acquire();
+
+        void release();
+
+        /**
+         * @return 线程已退出时返回 false
+         */
+        boolean post(Handler handler, Runnable runnable);
+    }
+
+    private static final Host CAMERA_THREAD = new Host() {
+        @Override
+        public Handler acquire() {
+            return CameraThread.acquire();
+        }
+
+        @Override
+        public void release() {
+            CameraThread.release();
+        }
+
+        @Override
+        public boolean post(Handler handler, Runnable runnable) {
+            return handler.post(runnable);
+        }
+    };
+
+    private final Host mHost;
+    private boolean mStarted;
+    /**
+     * 相机线程的 Handler, 未启动时为 null
+     */
+    private Handler mHandler;
+
+    CameraCommandQueue() {
+        this(CAMERA_THREAD);
+    }
+
+    CameraCommandQueue(Host host) {
+        this.mHost = host;
+    }
+
+    /**
+     * 获取相机线程, 直到 {@link #stop()} 前持有
+     * @return 相机线程的 Handler
+     */
+    synchronized Handler start() {
+
+        if (!mStarted) {
+            mHandler = mHost.acquire();
+            mStarted = true;
+        }
+        return mHandler;
+    }
+
+    /**
+     * 释放相机线程, 已经提交的命令仍会执行
+     */
+    synchronized void stop() {
+
+        if (mStarted) {
+            mStarted = false;
+            mHandler = null;
+            mHost.release();
+        }
+    }
+
+    /**
+     * 提交命令, 在相机线程中执行
+     * @param command 返回命令是否生效, 抛出的异常通过 Future.get() 传递
+     */
+    Future<Boolean> submit(final Callable<Boolean> command) {
+
+        final FutureTask<Boolean> task = new FutureTask<>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                try {
+                    return command.call();
+                } catch (RuntimeException e) {
+                    // 调用方通常不等待结果, 同时打印出来
+                    e.printStackTrace();
+                    throw e;
+                }
+            }
+        });
+        Handler handler;
+        final boolean temporary;
+        synchronized (this) {
+            handler = mHandler;
+            temporary = !mStarted;
+            if (temporary) {
+                handler = mHost.acquire();
+            }
+        }
+        Runnable runnable = !temporary ? task : new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    mHost.release();
+                }
+            }
+        };
+        if (!mHost.post(handler, runnable)) {
+            // 线程已退出
+            task.cancel(false);
+            if (temporary) {
+                mHost.release();
+            }
+        }
+        return task;
+    }
+
+    /**
+     * 不需要提交的命令, 返回已完成的 Future
+     */
+    static Future<Boolean> completed(final boolean result) {
+
+        FutureTask<Boolean> task = new FutureTask<>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return result;
+            }
+        });
+        task.run();
+        return task;
+    }
+}
@@ -0,0 +1,285 @@
+package com.sample.camera.camera;
+
+import android.graphics.ImageFormat;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.os.Build;
+import android.util.Range;
+import android.util.Size;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.Arrays;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 单个摄像头的信息, 由 CameraCharacteristics 一次性计算得到, 之后只读
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+final class CameraInfo {
+
+    private static final Size[] EMPTY_SIZES = new Size[0];
+    @SuppressWarnings("unchecked")
+    private static final Range<Integer>[] EMPTY_FPS_RANGES = (Range<Integer>[]) new Range<?>[0];
+
+    private final String mCameraId;
+    private final int mFacing;
+    private final int mSensorOrientation;
+    /**
+     * 闪光灯配置表
+     */
+    private final FlashConfigTable mFlashTable;
+    private final int mTimestampSource;
+    /**
+     * JPEG 输出尺寸, 按面积从小到大排序
+     */
+    private final Size[] mJpegSizes;
+    /**
+     * 预览(SurfaceTexture)输出尺寸, 按面积从小到大排序
+     */
+    private final Size[] mPreviewSizes;
+    /**
+     * YUV_420_888 输出尺寸, 按面积从小到大排序
+     */
+    private final Size[] mYuvSizes;
+    /**
+     * HEIC 输出尺寸, 按面积从小到大排序, Android Q 以下为空
+     */
+    private final Size[] mHeicSizes;
+    /**
+     * 最大的 EXIF 缩略图尺寸, 不支持时为 null
+     */
+    private final Size mThumbnailSize;
+    /**
+     * 自动曝光支持的帧率范围
+     */
+    private final Range<Integer>[] mAeFpsRanges;
+    /**
+     * 高速预览(constrained high speed)尺寸, 按面积从小到大排序, 不支持时为空
+     */
+    private final Size[] mHighSpeedSizes;
+    /**
+     * YUV 重处理(YUV_420_888 -> JPEG)的输入尺寸, 按面积从小到大排序, 不支持时为空
+     */
+    private final Size[] mYuvReprocessSizes;
+    private final StreamConfigurationMap mStreamConfigurationMap;
+
+    CameraInfo(String cameraId, CameraCharacteristics characteristics) {
+
+        this.mCameraId = cameraId;
+
+        Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+        this.mFacing = null == facing ? -1 : facing;
+        Integer sensorOrientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        this.mSensorOrientation = null == sensorOrientation ? 0 : sensorOrientation;
+        Boolean available = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
+        this.mFlashTable = FlashConfigTable.create(null != available && available, isFrontFacing());
+
+        int timestampSource = CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE_UNKNOWN;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            Integer source = characteristics.get(CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+            if (null != source) {
+                timestampSource = source;
+            }
+        }
+        this.mTimestampSource = timestampSource;
+
+        StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        this.mJpegSizes = null == map ? EMPTY_SIZES : sortByArea(map.getOutputSizes(ImageFormat.JPEG));
+        this.mPreviewSizes = null == map ? EMPTY_SIZES : sortByArea(map.getOutputSizes(SurfaceTexture.class));
+        this.mYuvSizes = null == map ? EMPTY_SIZES : sortByArea(map.getOutputSizes(ImageFormat.YUV_420_888));
+        this.mHeicSizes = null == map || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+                ? EMPTY_SIZES : sortByArea(map.getOutputSizes(ImageFormat.HEIC));
+        this.mThumbnailSize = largestThumbnailSize(characteristics.get(CameraCharacteristics.JPEG_AVAILABLE_THUMBNAIL_SIZES));
+        this.mStreamConfigurationMap = map;
+
+        Range<Integer>[] aeFpsRanges = characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        this.mAeFpsRanges = null == aeFpsRanges ? EMPTY_FPS_RANGES : aeFpsRanges;
+        this.mHighSpeedSizes = null != map && supportsHighSpeed(characteristics)
+                ? sortByArea(map.getHighSpeedVideoSizes()) : EMPTY_SIZES;
+        this.mYuvReprocessSizes = null != map && supportsYuvReprocessing(characteristics, map)
+                ? sortByArea(map.getInputSizes(ImageFormat.YUV_420_888)) : EMPTY_SIZES;
+    }
+
+    String getCameraId() {
+        return mCameraId;
+    }
+
+    /**
+     * @return CameraCharacteristics.LENS_FACING_*, 未知时返回 -1
+     */
+    int getFacing() {
+        return mFacing;
+    }
+
+    boolean isFrontFacing() {
+        return mFacing == CameraCharacteristics.LENS_FACING_FRONT;
+    }
+
+    int getSensorOrientation() {
+        return mSensorOrientation;
+    }
+
+    FlashConfigTable getFlashTable() {
+        return mFlashTable;
+    }
+
+    /**
+     * @return CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE_*
+     */
+    int getTimestampSource() {
+        return mTimestampSource;
+    }
+
+    /**
+     * 是否有可用的输出配置
+     */
+    boolean hasOutputs() {
+        return mJpegSizes.length > 0 && mPreviewSizes.length > 0;
+    }
+
+    Size[] getPreviewSizes() {
+        return mPreviewSizes;
+    }
+
+    Size[] getYuvSizes() {
+        return mYuvSizes;
+    }
+
+    /**
+     * 拍照格式对应的输出尺寸, 按面积从小到大排序
+     * @param format ImageFormat.JPEG / ImageFormat.YUV_420_888 / ImageFormat.HEIC
+     */
+    Size[] getStillSizes(int format) {
+
+        switch (format) {
+            case ImageFormat.JPEG:
+                return mJpegSizes;
+            case ImageFormat.YUV_420_888:
+                return mYuvSizes;
+            case ImageFormat.HEIC:
+                return mHeicSizes;
+            default:
+                return EMPTY_SIZES;
+        }
+    }
+
+    /**
+     * 最大的 EXIF 缩略图尺寸, 不支持缩略图时返回 null
+     */
+    Size getThumbnailSize() {
+        return mThumbnailSize;
+    }
+
+    /**
+     * 自动曝光支持的帧率范围, CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES
+     */
+    Range<Integer>[] getAeFpsRanges() {
+        return mAeFpsRanges;
+    }
+
+    /**
+     * 高速预览尺寸, 按面积从小到大排序, 不支持高速会话时为空
+     */
+    Size[] getHighSpeedSizes() {
+        return mHighSpeedSizes;
+    }
+
+    /**
+     * 是否支持以 size 的 YUV_420_888 图像为输入重处理为 JPEG
+     */
+    boolean supportsYuvReprocessing(Size size) {
+
+        for (Size inputSize : mYuvReprocessSizes) {
+            if (inputSize.equals(size)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 高速预览尺寸支持的帧率范围
+     */
+    Range<Integer>[] getHighSpeedFpsRanges(Size size) {
+
+        if (mHighSpeedSizes.length == 0) {
+            return EMPTY_FPS_RANGES;
+        }
+        return mStreamConfigurationMap.getHighSpeedVideoFpsRangesFor(size);
+    }
+
+    private static Size[] sortByArea(Size[] sizes) {
+
+        if (null == sizes) {
+            return EMPTY_SIZES;
+        }
+        Size[] sorted = Arrays.copyOf(sizes, sizes.length);
+        Arrays.sort(sorted, new Camera2View.CompareSizesByArea());
+        return sorted;
+    }
+
+    private static boolean supportsHighSpeed(CameraCharacteristics characteristics) {
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return false;
+        }
+        int[] capabilities = characteristics.get(CameraCharacteristics.REQUEST_AVAILABLE_CAPABILITIES);
+        if (null != capabilities) {
+            for (int capability : capabilities) {
+                if (capability == CameraMetadata.REQUEST_AVAILABLE_CAPABILITIES_CONSTRAINED_HIGH_SPEED_VIDEO) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean supportsYuvReprocessing(CameraCharacteristics characteristics, StreamConfigurationMap map) {
+
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return false;
+        }
+        int[] capabilities = characteristics.get(CameraCharacteristics.REQUEST_AVAILABLE_CAPABILITIES);
+        boolean reprocessing = false;
+        if (null != capabilities) {
+            for (int capability : capabilities) {
+                if (capability == CameraMetadata.REQUEST_AVAILABLE_CAPABILITIES_YUV_REPROCESSING) {
+                    reprocessing = true;
+                    break;
+                }
+            }
+        }
+        if (!reprocessing) {
+            return false;
+        }
+        int[] formats = map.getValidOutputFormatsForInput(ImageFormat.YUV_420_888);
+        if (null != formats) {
+            for (int format : formats) {
+                if (format == ImageFormat.JPEG) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Size largestThumbnailSize(Size[] sizes) {
+
+        Size largest = null;
+        if (null != sizes) {
+            for (Size size : sizes) {
+                // (0, 0) 表示不生成缩略图
+                if (size.getWidth() > 0 && size.getHeight() > 0
+                        && (null == largest || (long) size.getWidth() * size.getHeight()
+                        > (long) largest.getWidth() * largest.getHeight())) {
+                    largest = size;
+                }
+            }
+        }
+        return largest;
+    }
+}
@@ -0,0 +1,116 @@
+package com.sample.camera.camera;
+
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraManager;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 进程内的摄像头信息缓存, 每个摄像头只查询一次 CameraCharacteristics,
+ * 之后打开和切换摄像头都只是查表
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+final class CameraInfoCache<T> {
+
+    /**
+     * 摄像头查询, 每次调用都是一次跨进程调用
+     */
+    interface Source<T> {
+
+        String[] getCameraIdList() throws CameraAccessException;
+
+        T getCameraInfo(String cameraId) throws CameraAccessException;
+    }
+
+    private static final CameraInfoCache<CameraInfo> sInstance = new CameraInfoCache<>();
+
+    private final Map<String, T> mCameraInfos = new ConcurrentHashMap<>();
+    private volatile String[] mCameraIds;
+
+    /**
+     * 摄像头 ID 列表, 只在第一次调用时查询
+     */
+    static String[] getCameraIdList(CameraManager cameraManager) throws CameraAccessException {
+        return sInstance.getCameraIds(source(cameraManager));
+    }
+
+    /**
+     * 摄像头信息, 只在第一次调用时查询并计算
+     * @param cameraId 相机ID
+     */
+    static CameraInfo get(CameraManager cameraManager, String cameraId) throws CameraAccessException {
+        return sInstance.getInfo(source(cameraManager), cameraId);
+    }
+
+    /**
+     * 清空缓存, 外接摄像头插拔后需要重新查询
+     */
+    static void invalidate() {
+        sInstance.clear();
+    }
+
+    private static Source<CameraInfo> source(final CameraManager cameraManager) {
+
+        return new Source<CameraInfo>() {
+            @Override
+            public String[] getCameraIdList() throws CameraAccessException {
+                return cameraManager.getCameraIdList();
+            }
+
+            @Override
+            public CameraInfo getCameraInfo(String cameraId) throws CameraAccessException {
+                return new CameraInfo(cameraId, cameraManager.getCameraCharacteristics(cameraId));
+            }
+        };
+    }
+
+    /**
+     * @param source 缓存中没有时才查询
+     */
+    String[] getCameraIds(Source<T> source) throws CameraAccessException {
+
+        String[] cameraIds = mCameraIds;
+        if (null == cameraIds) {
+            synchronized (this) {
+                cameraIds = mCameraIds;
+                if (null == cameraIds) {
+                    cameraIds = source.getCameraIdList();
+                    mCameraIds = cameraIds;
+                }
+            }
+        }
+        return cameraIds;
+    }
+
+    /**
+     * @param source 缓存中没有时才查询, 查询失败时不缓存
+     */
+    T getInfo(Source<T> source, String cameraId) throws CameraAccessException {
+
+        T info = mCameraInfos.get(cameraId);
+        if (null == info) {
+            synchronized (this) {
+                info = mCameraInfos.get(cameraId);
+                if (null == info) {
+                    info = source.getCameraInfo(cameraId);
+                    mCameraInfos.put(cameraId, info);
+                }
+            }
+        }
+        return info;
+    }
+
+    void clear() {
+
+        synchronized (this) {
+            mCameraIds = null;
+            mCameraInfos.clear();
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.sample.camera.camera;
 
+import java.util.concurrent.Future;
+
 /**
  * @author mzp
  * date : 2020/9/15
- * desc :
+ * desc : 相机操作在相机线程中按调用顺序串行执行, 方法不阻塞调用线程,
+ * 返回的 Future 在操作执行后完成, 结果表示操作是否生效(相机未打开或正在拍照时为 false)
  */
 interface CameraInterface {
 
@@ -37,6 +40,12 @@ interface CameraInterface {
      */
     int STATE_PICTURE_TAKEN = 4;
 
+    /**
+     * Camera state: Burst capture is running.
+     * 连拍中
+     */
+    int STATE_BURST = 5;
+
     /**
      * 初始化相机
      */
@@ -45,25 +54,48 @@ interface CameraInterface {
     /**
      * 打开相机
      */
-    void openCamera();
+    Future<Boolean> openCamera();
 
     /**
-     * 关闭相机
+     * 预热相机: 在预览 Surface 就绪前准备摄像头信息和拍照输出
+     * @param openDevice 是否同时提前打开相机
      */
-    void closeCamera();
+    Future<Boolean> prewarm(boolean openDevice);
+
+    /**
+     * 关闭相机, Future 完成时相机已关闭
+     */
+    Future<Boolean> closeCamera();
 
     /**
      * 相机预览
      */
-    void cameraPreview();
+    Future<Boolean> cameraPreview();
 
     /**
      * 相机拍照
      */
-    void takePicture();
+    Future<Boolean> takePicture();
 
     /**
      * 切换前置后置摄像
      */
-    void switchCamera();
+    Future<Boolean> switchCamera();
+
+    /**
+     * 按数量连拍
+     * @param count 连拍张数
+     */
+    Future<Boolean> startBurst(int count);
+
+    /**
+     * 按时长连拍
+     * @param durationMs 连拍时长
+     */
+    Future<Boolean> startBurstForDuration(long durationMs);
+
+    /**
+     * 停止连拍
+     */
+    Future<Boolean> stopBurst();
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.sample.camera.camera;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 进程内共享的相机线程, 按引用计数管理生命周期
+ * 最后一个使用者释放后延时退出, 避免 onPause/onResume 反复创建线程; 退出时不 join, 不阻塞调用线程
+ */
+final class CameraThread {
+
+    private static final String THREAD_NAME = "CameraBackground";
+    /**
+     * 没有使用者后线程继续保留的时长
+     */
+    private static final long IDLE_TIMEOUT_MS = 5000;
+
+    private static HandlerThread sThread;
+    private static Handler sHandler;
+    private static int sRefCount;
+
+    private CameraThread() {
+    }
+
+    /**
+     * 获取相机线程的 Handler, 线程未启动时启动线程
+     */
+    static synchronized Handler acquire() {
+
+        if (null == sHandler) {
+            sThread = new HandlerThread(THREAD_NAME);
+            sThread.start();
+            sHandler = new Handler(sThread.getLooper());
+        }
+        sRefCount++;
+        return sHandler;
+    }
+
+    /**
+     * 释放相机线程, 已经投递的任务仍会执行
+     */
+    static synchronized void release() {
+
+        if (sRefCount <= 0 || null == sHandler) {
+            return;
+        }
+        sRefCount--;
+        if (sRefCount == 0) {
+            final HandlerThread thread = sThread;
+            sHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    quitIfIdle(thread);
+                }
+            }, IDLE_TIMEOUT_MS);
+        }
+    }
+
+    private static synchronized void quitIfIdle(HandlerThread thread) {
+
+        if (sRefCount == 0 && sThread == thread) {
+            sThread.quitSafely();
+            sThread = null;
+            sHandler = null;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.sample.camera.camera;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 引用计数的拍照数据, 数据通常来自复用的直接缓冲区池, 引用计数归零时归还
+ * 交给 {@link CaptureBufferListener} 的是只能释放一次的引用, 使用完后必须调用一次 {@link #release()},
+ * 需要在其他线程继续使用时先 {@link #retain()}, 在其他线程中使用并释放返回的对象
+ */
+public final class CaptureBuffer {
+
+    /**
+     * 不修改 position / limit, 读取时使用 {@link #getBuffer()} 返回的副本
+     */
+    private final ByteBuffer mData;
+    /**
+     * 从 mPool 借出的原始缓冲区, 不来自缓冲池时为 null
+     */
+    private final ByteBuffer mPooled;
+    private final JpegBufferPool mPool;
+    /**
+     * 交给回调的一次性引用持有 parent 的一个引用, 普通引用为 null
+     */
+    private final CaptureBuffer mParent;
+    /**
+     * 一次性引用只有 1 和 0 两个值
+     */
+    private final AtomicInteger mRefCount = new AtomicInteger(1);
+
+    private final int mFormat;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mOrientation;
+    private final long mTimestamp;
+    private final String mCameraId;
+
+    /**
+     * 创建后持有一个引用
+     * @param data 图片数据, position ~ limit 为有效数据
+     * @param pool data 所属的缓冲池, 可以为 null
+     */
+    CaptureBuffer(ByteBuffer data, JpegBufferPool pool, int format, int width, int height,
+                  int orientation, long timestamp, String cameraId) {
+        this.mData = data.slice();
+        this.mPooled = null == pool ? null : data;
+        this.mPool = pool;
+        this.mParent = null;
+        this.mFormat = format;
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mOrientation = orientation;
+        this.mTimestamp = timestamp;
+        this.mCameraId = cameraId;
+    }
+
+    /**
+     * 交给回调的一次性引用, 与 parent 共享数据, 接管调用方已经持有的 parent 的一个引用.
+     * {@link #release()} 只能调用一次, {@link #retain()} 返回 parent 的新引用,
+     * 因此可以区分回调自己的引用和它交给其他线程的引用
+     */
+    CaptureBuffer(CaptureBuffer parent) {
+        this.mData = parent.mData;
+        this.mPooled = null;
+        this.mPool = null;
+        this.mParent = parent;
+        this.mFormat = parent.mFormat;
+        this.mWidth = parent.mWidth;
+        this.mHeight = parent.mHeight;
+        this.mOrientation = parent.mOrientation;
+        this.mTimestamp = parent.mTimestamp;
+        this.mCameraId = parent.mCameraId;
+    }
+
+    /**
+     * 只读的图片数据, position 为 0, limit 为数据长度, 每次调用返回新的副本
+     * JPEG 数据中不一定已写入 EXIF 方向, 以 {@link #getOrientation()} 为准
+     * @throws IllegalStateException 已释放
+     */
+    public ByteBuffer getBuffer() {
+
+        checkNotReleased();
+        return mData.asReadOnlyBuffer();
+    }
+
+    /**
+     * 数据长度, 字节
+     */
+    public int getSize() {
+        return mData.remaining();
+    }
+
+    /**
+     * ImageFormat.JPEG / ImageFormat.HEIC
+     */
+    public int getFormat() {
+        return mFormat;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * ExifInterface.ORIENTATION_*, HEIC 已由 HAL 旋转, 为 ORIENTATION_UNDEFINED
+     */
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    /**
+     * 拍照时间, System.currentTimeMillis()
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public String getCameraId() {
+        return mCameraId;
+    }
+
+    /**
+     * 增加一个引用, 在其他线程中使用并释放返回的对象
+     * @throws IllegalStateException 已释放
+     */
+    public CaptureBuffer retain() {
+
+        if (null != mParent) {
+            checkNotReleased();
+            return mParent.retain();
+        }
+        while (true) {
+            int count = mRefCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("CaptureBuffer already released");
+            }
+            if (mRefCount.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * 释放一个引用, 最后一个引用释放时归还缓冲区
+     * @throws IllegalStateException 释放次数多于引用数
+     */
+    public void release() {
+
+        if (null != mParent) {
+            if (!releaseOnce()) {
+                throw new IllegalStateException("CaptureBuffer released too many times");
+            }
+            return;
+        }
+        int count = mRefCount.decrementAndGet();
+        if (count == 0) {
+            if (null != mPool) {
+                mPool.release(mPooled);
+            }
+        } else if (count < 0) {
+            mRefCount.incrementAndGet();
+            throw new IllegalStateException("CaptureBuffer released too many times");
+        }
+    }
+
+    /**
+     * 一次性引用还没有释放时释放它
+     * @return 由本次调用释放
+     */
+    boolean releaseOnce() {
+
+        if (!mRefCount.compareAndSet(1, 0)) {
+            return false;
+        }
+        mParent.release();
+        return true;
+    }
+
+    /**
+     * 整个缓冲区当前的引用数, 为 0 时已释放
+     */
+    public int getRefCount() {
+
+        if (null != mParent) {
+            return mRefCount.get() <= 0 ? 0 : mParent.getRefCount();
+        }
+        return Math.max(0, mRefCount.get());
+    }
+
+    private void checkNotReleased() {
+
+        if (mRefCount.get() <= 0) {
+            throw new IllegalStateException("CaptureBuffer already released");
+        }
+    }
+}
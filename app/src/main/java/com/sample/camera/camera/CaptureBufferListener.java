@@ -0,0 +1,16 @@
+package com.sample.camera.camera;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照数据内存交付, 不需要再从文件中读取, 在写入线程中调用
+ */
+public interface CaptureBufferListener {
+
+    /**
+     * @param buffer 拍照数据, 回调持有一个只能释放一次的引用, 使用完后必须调用 {@link CaptureBuffer#release()},
+     *               可以在其他线程中释放, 不释放会导致缓冲池不断分配新的缓冲区.
+     *               回调抛出异常时这个引用由写入线程释放, 此前通过 {@link CaptureBuffer#retain()} 得到的引用不受影响
+     */
+    void onCaptureBuffer(CaptureBuffer buffer);
+}
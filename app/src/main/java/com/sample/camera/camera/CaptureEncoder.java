@@ -0,0 +1,22 @@
+package com.sample.camera.camera;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照格式为 YUV_420_888 时, 将 YUV 数据编码为图片, 在写入线程中调用
+ */
+public interface CaptureEncoder {
+
+    /**
+     * 编码一帧图像
+     * @param nv21    NV21 数据, 只在方法内有效
+     * @param width   宽
+     * @param height  高
+     * @param quality 质量 1 ~ 100
+     * @param out     输出, 需要写出 JPEG 数据, 以便写入 EXIF 方向和生成缩略图
+     */
+    void encode(byte[] nv21, int width, int height, int quality, OutputStream out) throws IOException;
+}
@@ -0,0 +1,60 @@
+package com.sample.camera.camera;
+
+import java.io.File;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link CaptureStore} 索引中的一条拍照记录, 不需要读取图片文件
+ */
+public final class CaptureRecord {
+
+    private final long mTimestamp;
+    private final File mFile;
+    private final long mSize;
+    private final int mOrientation;
+    private final String mCameraId;
+
+    CaptureRecord(long timestamp, File file, long size, int orientation, String cameraId) {
+        this.mTimestamp = timestamp;
+        this.mFile = file;
+        this.mSize = size;
+        this.mOrientation = orientation;
+        this.mCameraId = cameraId;
+    }
+
+    /**
+     * 拍照时间, System.currentTimeMillis()
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * 文件大小, 字节
+     */
+    public long getSize() {
+        return mSize;
+    }
+
+    /**
+     * ExifInterface.ORIENTATION_*
+     */
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    public String getCameraId() {
+        return mCameraId;
+    }
+
+    @Override
+    public String toString() {
+        return "CaptureRecord{" + mFile.getName() + ", " + mSize + " bytes, orientation " + mOrientation
+                + ", camera " + mCameraId + ", " + mTimestamp + "}";
+    }
+}
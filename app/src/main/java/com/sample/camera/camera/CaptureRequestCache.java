@@ -0,0 +1,89 @@
+package com.sample.camera.camera;
+
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CaptureRequest;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 当前会话的 CaptureRequest 缓存, 按 (请求类型, 闪光灯模式, 变体) 保存构建好的请求,
+ * 切换闪光灯或重新开始预览时只是查表, 不再调用 createCaptureRequest.
+ * 摄像头, 会话或输出参数变化时调用 {@link #invalidate()}
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+final class CaptureRequestCache {
+
+    interface Factory {
+
+        /**
+         * 缓存未命中时创建并配置请求
+         * @param kind 请求类型
+         */
+        CaptureRequest.Builder create(int kind) throws CameraAccessException;
+    }
+
+    static final class Entry {
+
+        /**
+         * 用于在同样的参数上追加对焦 / 测光触发, 修改后需要恢复
+         */
+        final CaptureRequest.Builder builder;
+        final CaptureRequest request;
+
+        Entry(CaptureRequest.Builder builder) {
+            this.builder = builder;
+            this.request = builder.build();
+        }
+    }
+
+    private final Factory mFactory;
+    private final Map<Integer, Entry> mEntries = new HashMap<>();
+    private String mCameraId;
+    private int mBuildCount;
+
+    CaptureRequestCache(Factory factory) {
+        this.mFactory = factory;
+    }
+
+    /**
+     * @param cameraId   相机ID, 与缓存的相机不同时清空缓存
+     * @param kind       请求类型, 0 ~ 255
+     * @param flashModel 闪光灯模式, 0 ~ 255
+     * @param variant    同一类型的其他参数, 例如拍照方向, 0 ~ 255
+     */
+    synchronized Entry get(String cameraId, int kind, int flashModel, int variant) throws CameraAccessException {
+
+        if (null == cameraId || !cameraId.equals(mCameraId)) {
+            mEntries.clear();
+            mCameraId = cameraId;
+        }
+        Integer key = kind | flashModel << 8 | variant << 16;
+        Entry entry = mEntries.get(key);
+        if (null == entry) {
+            entry = new Entry(mFactory.create(kind));
+            mEntries.put(key, entry);
+            mBuildCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * 清空缓存
+     */
+    synchronized void invalidate() {
+        mEntries.clear();
+    }
+
+    /**
+     * 实际创建请求的次数
+     */
+    synchronized int getBuildCount() {
+        return mBuildCount;
+    }
+}
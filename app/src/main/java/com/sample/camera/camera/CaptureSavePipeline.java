@@ -0,0 +1,403 @@
+package com.sample.camera.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.ImageFormat;
+import android.media.ExifInterface;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照数据保存流水线
+ * 相机线程只负责 acquire → copy, 然后将数据交给写入线程完成 EXIF → write → fsync → rename → notify,
+ * 先写入同目录下的临时文件再重命名, 不会留下写了一半的图片,
+ * 写入线程只有一个, 保证按提交顺序保存; 队列满时 {@link #offer(SaveRequest)} 直接返回 false
+ * 需要缩略图时与写入并行生成, 保证在 {@link Callback#onSaved} 之前回调
+ */
+final class CaptureSavePipeline {
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * 保存结果回调, 在写入线程中调用, onThumbnail 在缩略图线程中调用
+     */
+    interface Callback {
+
+        void onThumbnail(SaveRequest request, Bitmap thumbnail);
+
+        void onSaved(SaveRequest request, long bytes);
+
+        /**
+         * @param e 写入失败的 IOException, 或编码器, 存储后端等抛出的 RuntimeException
+         */
+        void onSaveFailed(SaveRequest request, Exception e);
+    }
+
+    /**
+     * 一次保存请求, 持有从缓冲池借出的 JPEG 数据, 或者待编码的 YUV 数据
+     */
+    static final class SaveRequest {
+
+        /**
+         * 压缩后的图片数据, YUV 请求在写入线程中编码后赋值
+         */
+        ByteBuffer jpeg;
+        final JpegBufferPool pool;
+        /**
+         * ExifInterface.ORIENTATION_*, ORIENTATION_UNDEFINED 表示不写入方向
+         */
+        final int orientation;
+        /**
+         * 输出文件, {@link CaptureStore} 分配的文件名与已有文件重名时由写入线程改名
+         */
+        File file;
+        /**
+         * 图片格式, ImageFormat.JPEG / ImageFormat.HEIC, YUV 请求编码后为 JPEG
+         */
+        int format = ImageFormat.JPEG;
+        /**
+         * 待编码的 YUV 数据, 编码后置为 null
+         */
+        byte[] nv21;
+        int width;
+        int height;
+        int quality;
+        CaptureEncoder encoder;
+        long sequence;
+        /**
+         * 这次拍照的耗时追踪, 不追踪时为 null
+         */
+        CaptureTracer.Span trace;
+        /**
+         * 是否生成缩略图
+         */
+        boolean thumbnail;
+        /**
+         * 拍照时间, System.currentTimeMillis()
+         */
+        long timestamp;
+        String cameraId;
+        /**
+         * 保存后是否写入 {@link CaptureStore} 索引, 存储后端不写入文件时置为 false
+         */
+        boolean indexed;
+        /**
+         * 内存交付回调, 为 null 时不交付
+         */
+        CaptureBufferListener bufferListener;
+        /**
+         * 是否写入存储后端, 为 false 时只交付给 {@link #bufferListener}, onSaved 的字节数为 0
+         */
+        boolean persist = true;
+        /**
+         * 交付给 {@link #bufferListener} 的数据, 写入线程持有其中一个引用
+         */
+        CaptureBuffer buffer;
+
+        /**
+         * @param jpeg        JPEG 数据, 保存完成后归还给 pool
+         * @param pool        jpeg 所属的缓冲池, 可以为 null
+         * @param orientation ExifInterface.ORIENTATION_* 方向
+         * @param file        输出文件
+         */
+        SaveRequest(ByteBuffer jpeg, JpegBufferPool pool, int orientation, File file) {
+            this.jpeg = jpeg;
+            this.pool = pool;
+            this.orientation = orientation;
+            this.file = file;
+        }
+
+        /**
+         * 待编码的 YUV 请求
+         * @param nv21        NV21 数据
+         * @param encoder     编码器
+         * @param quality     质量 1 ~ 100
+         * @param orientation ExifInterface.ORIENTATION_* 方向
+         * @param file        输出文件
+         */
+        SaveRequest(byte[] nv21, int width, int height, CaptureEncoder encoder, int quality, int orientation, File file) {
+            this(null, null, orientation, file);
+            this.nv21 = nv21;
+            this.width = width;
+            this.height = height;
+            this.encoder = encoder;
+            this.quality = quality;
+        }
+
+        void release() {
+            if (null != buffer) {
+                // 缓冲区由 CaptureBuffer 在最后一个引用释放时归还
+                buffer.release();
+            } else if (null != pool && null != jpeg) {
+                pool.release(jpeg);
+            }
+        }
+    }
+
+    private volatile CaptureSink mSink;
+    private final Callback mCallback;
+    private final ThreadPoolExecutor mExecutor;
+    private final AtomicLong mSequence = new AtomicLong();
+    private final AtomicInteger mRejectedCount = new AtomicInteger();
+    private volatile CaptureTracer mTracer;
+    private volatile ThumbnailGenerator mThumbnailGenerator;
+
+    /**
+     * @param sink     存储后端
+     * @param capacity 等待写入的最大请求数
+     * @param callback 保存结果回调
+     */
+    CaptureSavePipeline(CaptureSink sink, int capacity, Callback callback) {
+
+        this.mSink = sink;
+        this.mCallback = callback;
+        this.mExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(capacity), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "CaptureWriter");
+            }
+        });
+        this.mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 提交保存请求, 不会阻塞调用线程
+     * @return 队列已满时返回 false, 此时请求未被接收, 由调用方释放数据
+     */
+    boolean offer(final SaveRequest request) {
+
+        request.sequence = mSequence.incrementAndGet();
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    save(request);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            mRejectedCount.incrementAndGet();
+            return false;
+        }
+    }
+
+    private void save(SaveRequest request) {
+
+        ForkJoinTask<?> thumbnailTask = null;
+        if (request.indexed && request.file.exists()) {
+            // 时钟回拨或重启后分配的文件名可能与已有文件重名, 相机线程分配时不检查磁盘, 在这里改名避免覆盖
+            request.file = uniqueFile(request.file);
+        }
+        File temp = new File(request.file.getPath() + TEMP_SUFFIX);
+        try {
+            if (null != request.nv21) {
+                encode(request);
+            }
+            ByteBuffer[] segments = request.orientation == ExifInterface.ORIENTATION_UNDEFINED
+                    ? new ByteBuffer[]{request.jpeg.duplicate()}
+                    : JpegExifWriter.applyOrientation(request.jpeg, request.orientation);
+            CaptureTracer tracer = null != request.trace ? mTracer : null;
+            if (null != tracer) {
+                tracer.mark(request.trace, CaptureTracer.PHASE_EXIF_DONE);
+            }
+            // 方向写入后数据不再修改, 缩略图与写入并行
+            thumbnailTask = submitThumbnail(request);
+            deliver(request);
+            long bytes = 0;
+            if (!request.persist) {
+                request.indexed = false;
+            } else {
+                if (null == segments) {
+                    //已有EXIF但缺少方向标签, 回退为图片添加标签, 之后同样交给存储后端写入
+                    segments = new ByteBuffer[]{addOrientationTag(request.jpeg, request.orientation, temp)};
+                }
+                CaptureSink sink = mSink;
+                if (sink.writesFiles()) {
+                    bytes = sink.write(temp, segments);
+                    // 同一文件系统内的 rename 是原子的, 直接替换同名文件
+                    if (!temp.renameTo(request.file)) {
+                        throw new IOException("Failed to rename " + temp + " to " + request.file);
+                    }
+                } else {
+                    bytes = sink.write(request.file, segments);
+                    request.indexed = false;
+                }
+                if (null != tracer) {
+                    tracer.mark(request.trace, CaptureTracer.PHASE_BYTES_WRITTEN);
+                }
+            }
+            awaitThumbnail(thumbnailTask);
+            thumbnailTask = null;
+            mCallback.onSaved(request, bytes);
+        } catch (Exception e) {
+            // 编码器, 存储后端和 EXIF 处理也可能抛出 RuntimeException, 同样删除临时文件并回调失败
+            temp.delete();
+            mCallback.onSaveFailed(request, e);
+        } finally {
+            // 缩略图仍在读取数据, 等待结束后才能归还缓冲区
+            awaitThumbnail(thumbnailTask);
+            request.release();
+        }
+    }
+
+    /**
+     * 交给内存交付回调, 数据已不再修改, 回调与写入同时读取.
+     * 回调持有一个引用, 写入线程的引用在 {@link SaveRequest#release()} 中释放.
+     * 回调抛出异常时不影响保存, 释放回调持有的引用, 回调已经自己释放时不再释放
+     */
+    private static void deliver(SaveRequest request) {
+
+        CaptureBufferListener listener = request.bufferListener;
+        if (null == listener) {
+            return;
+        }
+        CaptureBuffer buffer = new CaptureBuffer(request.jpeg, request.pool, request.format, request.width,
+                request.height, request.orientation, request.timestamp, request.cameraId);
+        request.buffer = buffer;
+        // 回调得到一次性引用, 它通过 retain() 交给其他线程的引用是独立的
+        CaptureBuffer handle = new CaptureBuffer(buffer.retain());
+        try {
+            listener.onCaptureBuffer(handle);
+        } catch (RuntimeException e) {
+            // 回调抛出时放弃它自己的引用, 已经释放过时不再释放, 不影响保存
+            handle.releaseOnce();
+        }
+    }
+
+    /**
+     * 通过 ExifInterface 添加方向标签, 需要借助临时文件, 读回后删除,
+     * 存储后端不写入文件时也不会留下临时文件
+     * @return 添加标签后的数据
+     */
+    private static ByteBuffer addOrientationTag(ByteBuffer jpeg, int orientation, File temp) throws IOException {
+
+        try {
+            FileOutputStream output = new FileOutputStream(temp);
+            try {
+                JpegExifWriter.writeFully(output.getChannel(), new ByteBuffer[]{jpeg.duplicate()});
+            } finally {
+                output.close();
+            }
+            ExifInterface exifInterface = new ExifInterface(temp.getAbsolutePath());
+            exifInterface.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(orientation));
+            exifInterface.saveAttributes();
+
+            RandomAccessFile input = new RandomAccessFile(temp, "r");
+            try {
+                byte[] data = new byte[(int) input.length()];
+                input.readFully(data);
+                return ByteBuffer.wrap(data);
+            } finally {
+                input.close();
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * 在扩展名前追加序号, 直到不与已有文件重名
+     */
+    private static File uniqueFile(File file) {
+
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot < 0 ? name : name.substring(0, dot);
+        String extension = dot < 0 ? "" : name.substring(dot);
+        File unique = file;
+        for (int i = 1; unique.exists(); i++) {
+            unique = new File(file.getParentFile(), base + "_" + i + extension);
+        }
+        return unique;
+    }
+
+    private static void encode(SaveRequest request) throws IOException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(request.nv21.length / 4);
+        request.encoder.encode(request.nv21, request.width, request.height, request.quality, out);
+        request.nv21 = null;
+        request.jpeg = ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private ForkJoinTask<?> submitThumbnail(final SaveRequest request) {
+
+        final ThumbnailGenerator generator = mThumbnailGenerator;
+        if (!request.thumbnail || null == generator) {
+            return null;
+        }
+        final ByteBuffer jpeg = request.jpeg.duplicate();
+        return generator.submit(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap thumbnail = generator.generate(jpeg, request.orientation);
+                if (null != thumbnail) {
+                    mCallback.onThumbnail(request, thumbnail);
+                }
+            }
+        });
+    }
+
+    private static void awaitThumbnail(ForkJoinTask<?> task) {
+
+        if (null == task) {
+            return;
+        }
+        try {
+            task.join();
+        } catch (RuntimeException e) {
+            // 缩略图失败不影响保存
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 更换存储后端, 之后开始保存的请求生效
+     */
+    void setSink(CaptureSink sink) {
+        this.mSink = sink;
+    }
+
+    /**
+     * 设置缩略图生成, 只处理 {@link SaveRequest#thumbnail} 为 true 的请求
+     */
+    void setThumbnailGenerator(ThumbnailGenerator generator) {
+        this.mThumbnailGenerator = generator;
+    }
+
+    /**
+     * 设置耗时追踪, 只记录 {@link SaveRequest#trace} 不为 null 的请求
+     */
+    void setTracer(CaptureTracer tracer) {
+        this.mTracer = tracer;
+    }
+
+    /**
+     * 正在写入和排队中的请求数
+     */
+    int getPendingCount() {
+        return mExecutor.getQueue().size() + mExecutor.getActiveCount();
+    }
+
+    /**
+     * 因队列已满被拒绝的请求数
+     */
+    int getRejectedCount() {
+        return mRejectedCount.get();
+    }
+}
@@ -0,0 +1,39 @@
+package com.sample.camera.camera;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照数据的存储后端, 在写入线程中调用
+ */
+public interface CaptureSink {
+
+    /**
+     * 只写入页缓存, 掉电时可能丢失
+     */
+    int DURABILITY_NONE = 0;
+    /**
+     * 返回前数据已写入磁盘, 不等待修改时间等元数据 (fdatasync)
+     */
+    int DURABILITY_FDATASYNC = 1;
+    /**
+     * 返回前数据和元数据都已写入磁盘 (fsync)
+     */
+    int DURABILITY_FSYNC = 2;
+
+    /**
+     * 按顺序写入所有数据段, 并按设置的持久化方式同步
+     * @param file     输出文件, {@link #writesFiles()} 为 false 时只作为名字
+     * @param segments 数据段, 写入后 position 会被移动
+     * @return 写入的字节数
+     */
+    long write(File file, ByteBuffer[] segments) throws IOException;
+
+    /**
+     * 是否写入 file 指向的文件, 为 true 时先写入临时文件再重命名, 并记录到 {@link CaptureStore} 索引
+     */
+    boolean writesFiles();
+}
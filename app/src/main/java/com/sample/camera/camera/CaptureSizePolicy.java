@@ -0,0 +1,188 @@
+package com.sample.camera.camera;
+
+import android.util.Size;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照尺寸策略, 在相机支持的输出尺寸中选择拍照尺寸
+ * 默认使用最大尺寸; 也可以按目标像素数、最大文件大小或指定尺寸选择, 并可要求与预览纵横比一致
+ */
+public final class CaptureSizePolicy {
+
+    private static final int MODE_LARGEST = 0;
+    private static final int MODE_MEGAPIXELS = 1;
+    private static final int MODE_MAX_BYTES = 2;
+    private static final int MODE_EXPLICIT = 3;
+
+    /**
+     * 纵横比允许的相对误差
+     */
+    static final float ASPECT_TOLERANCE = 0.01f;
+
+    private final int mMode;
+    /**
+     * 目标像素数或最大字节数
+     */
+    private final long mLimit;
+    private final int mWidth;
+    private final int mHeight;
+    private final boolean mMatchPreviewAspect;
+
+    private CaptureSizePolicy(int mode, long limit, int width, int height, boolean matchPreviewAspect) {
+        this.mMode = mode;
+        this.mLimit = limit;
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mMatchPreviewAspect = matchPreviewAspect;
+    }
+
+    /**
+     * 最大尺寸
+     */
+    public static CaptureSizePolicy largest() {
+        return new CaptureSizePolicy(MODE_LARGEST, 0, 0, 0, false);
+    }
+
+    /**
+     * 不小于目标像素数的最小尺寸, 都小于目标时使用最大尺寸
+     * @param megapixels 目标像素数, 单位百万像素
+     */
+    public static CaptureSizePolicy targetMegapixels(float megapixels) {
+        if (megapixels <= 0) {
+            throw new IllegalArgumentException("megapixels must be positive");
+        }
+        return new CaptureSizePolicy(MODE_MEGAPIXELS, (long) (megapixels * 1_000_000L), 0, 0, false);
+    }
+
+    /**
+     * 估计文件大小不超过 maxBytes 的最大尺寸, 都超过时使用最小尺寸.
+     * 按每像素 1 字节估计, 与 JPEG 缓冲区的估算一致, 是压缩后大小的上限
+     * @param maxBytes 最大字节数
+     */
+    public static CaptureSizePolicy maxBytes(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        return new CaptureSizePolicy(MODE_MAX_BYTES, maxBytes, 0, 0, false);
+    }
+
+    /**
+     * 指定尺寸, 不支持时使用能容纳该尺寸的最小尺寸, 没有时使用最大尺寸
+     * @param width  宽, 传感器方向(横向)
+     * @param height 高, 传感器方向(横向)
+     */
+    public static CaptureSizePolicy explicit(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("width and height must be positive");
+        }
+        return new CaptureSizePolicy(MODE_EXPLICIT, 0, width, height, false);
+    }
+
+    /**
+     * 只在与预览纵横比一致的尺寸中选择, 没有一致的尺寸时不限制
+     */
+    public CaptureSizePolicy matchPreviewAspect() {
+        return new CaptureSizePolicy(mMode, mLimit, mWidth, mHeight, true);
+    }
+
+    /**
+     * 选择拍照尺寸
+     * @param sizes       相机支持的尺寸, 按面积从小到大排序
+     * @param aspectRatio 预览的 高/宽, 与传感器方向一致
+     * @return 选中的尺寸, sizes 为空时返回 null
+     */
+    Size select(Size[] sizes, float aspectRatio) {
+
+        if (null == sizes) {
+            return null;
+        }
+        int[] widths = new int[sizes.length];
+        int[] heights = new int[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            widths[i] = sizes[i].getWidth();
+            heights[i] = sizes[i].getHeight();
+        }
+        int index = select(widths, heights, aspectRatio);
+        return index < 0 ? null : sizes[index];
+    }
+
+    /**
+     * 选择拍照尺寸
+     * @param widths      相机支持的尺寸的宽, 按面积从小到大排序
+     * @param heights     与 widths 对应的高
+     * @param aspectRatio 预览的 高/宽, 与传感器方向一致
+     * @return 选中尺寸的下标, 没有尺寸时返回 -1
+     */
+    int select(int[] widths, int[] heights, float aspectRatio) {
+
+        int count = null == widths ? 0 : widths.length;
+        if (count == 0) {
+            return -1;
+        }
+        if (mMode == MODE_EXPLICIT) {
+            for (int i = 0; i < count; i++) {
+                if (widths[i] == mWidth && heights[i] == mHeight) {
+                    return i;
+                }
+            }
+        }
+
+        int[] candidates = new int[count];
+        int candidateCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (!mMatchPreviewAspect || matchesAspect(widths[i], heights[i], aspectRatio)) {
+                candidates[candidateCount++] = i;
+            }
+        }
+        if (candidateCount == 0) {
+            for (int i = 0; i < count; i++) {
+                candidates[i] = i;
+            }
+            candidateCount = count;
+        }
+
+        int largest = candidates[candidateCount - 1];
+        switch (mMode) {
+            case MODE_MEGAPIXELS:
+                for (int c = 0; c < candidateCount; c++) {
+                    int i = candidates[c];
+                    if ((long) widths[i] * heights[i] >= mLimit) {
+                        return i;
+                    }
+                }
+                return largest;
+            case MODE_MAX_BYTES:
+                int fitting = candidates[0];
+                for (int c = 0; c < candidateCount; c++) {
+                    int i = candidates[c];
+                    if ((long) widths[i] * heights[i] <= mLimit) {
+                        fitting = i;
+                    }
+                }
+                return fitting;
+            case MODE_EXPLICIT:
+                for (int c = 0; c < candidateCount; c++) {
+                    int i = candidates[c];
+                    if (widths[i] >= mWidth && heights[i] >= mHeight) {
+                        return i;
+                    }
+                }
+                return largest;
+            default:
+                return largest;
+        }
+    }
+
+    /**
+     * 纵横比(高/宽)与 aspectRatio 的相对误差不超过 {@link #ASPECT_TOLERANCE}
+     */
+    static boolean matchesAspect(int width, int height, float aspectRatio) {
+
+        if (width == 0 || aspectRatio <= 0) {
+            return false;
+        }
+        float ratio = (float) height / width;
+        return Math.abs(ratio - aspectRatio) <= aspectRatio * ASPECT_TOLERANCE;
+    }
+}
@@ -0,0 +1,221 @@
+package com.sample.camera.camera;
+
+import android.hardware.camera2.CaptureResult;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照前对焦, 测光的状态机, 状态使用 {@link CameraInterface} 中的 STATE_*
+ * 等待状态下根据 AF / AE 状态查表得到动作, 每个等待状态有超时时间, 超时后直接拍照
+ * 只处理 int, 预览状态下不做任何事, 不依赖 CaptureResult 实例, 可以用脚本化的 AF / AE 序列驱动
+ */
+final class CaptureStateMachine {
+
+    /**
+     * 结果中没有 AF / AE 状态
+     */
+    static final int STATE_UNKNOWN = -1;
+
+    interface Callback {
+
+        /**
+         * 已进入 {@link CameraInterface#STATE_WAITING_PRECAPTURE}, 需要提交 AE 预拍照触发请求
+         */
+        void onRunPrecapture();
+
+        /**
+         * 已进入 {@link CameraInterface#STATE_PICTURE_TAKEN}, 需要提交拍照请求
+         * @param fromState 进入前的等待状态
+         */
+        void onCaptureStill(int fromState);
+    }
+
+    /**
+     * AF 状态分类
+     */
+    private static final int AF_NONE = 0;
+    private static final int AF_LOCKED = 1;
+    private static final int AF_INACTIVE = 2;
+    private static final int AF_SCANNING = 3;
+
+    /**
+     * AE 状态分类
+     */
+    private static final int AE_NONE = 0;
+    private static final int AE_CONVERGED = 1;
+    private static final int AE_PRECAPTURE = 2;
+    private static final int AE_FLASH_REQUIRED = 3;
+    private static final int AE_OTHER = 4;
+
+    /**
+     * 动作
+     */
+    private static final int STAY = 0;
+    private static final int CAPTURE = 1;
+    private static final int PRECAPTURE = 2;
+    private static final int NON_PRECAPTURE = 3;
+
+    /**
+     * 动作表, 下标依次为 等待状态 - STATE_WAITING_LOCK, AF 分类, AE 分类
+     */
+    private static final int[][][] TRANSITIONS = {
+            // STATE_WAITING_LOCK
+            {
+                    // AF_NONE: 不支持对焦, 直接拍照
+                    {CAPTURE, CAPTURE, CAPTURE, CAPTURE, CAPTURE},
+                    // AF_LOCKED: 曝光已收敛直接拍照, 否则先测光
+                    {CAPTURE, CAPTURE, PRECAPTURE, PRECAPTURE, PRECAPTURE},
+                    // AF_INACTIVE: 定焦摄像头 (OPPO K3 前置), 与对焦完成相同
+                    {CAPTURE, CAPTURE, PRECAPTURE, PRECAPTURE, PRECAPTURE},
+                    // AF_SCANNING: 等待对焦完成
+                    {STAY, STAY, STAY, STAY, STAY},
+            },
+            // STATE_WAITING_PRECAPTURE, 与 AF 无关
+            {
+                    {NON_PRECAPTURE, STAY, NON_PRECAPTURE, NON_PRECAPTURE, STAY},
+                    {NON_PRECAPTURE, STAY, NON_PRECAPTURE, NON_PRECAPTURE, STAY},
+                    {NON_PRECAPTURE, STAY, NON_PRECAPTURE, NON_PRECAPTURE, STAY},
+                    {NON_PRECAPTURE, STAY, NON_PRECAPTURE, NON_PRECAPTURE, STAY},
+            },
+            // STATE_WAITING_NON_PRECAPTURE, 与 AF 无关
+            {
+                    {CAPTURE, CAPTURE, STAY, CAPTURE, CAPTURE},
+                    {CAPTURE, CAPTURE, STAY, CAPTURE, CAPTURE},
+                    {CAPTURE, CAPTURE, STAY, CAPTURE, CAPTURE},
+                    {CAPTURE, CAPTURE, STAY, CAPTURE, CAPTURE},
+            },
+    };
+
+    /**
+     * 各等待状态的超时时间, 下标为 等待状态 - STATE_WAITING_LOCK
+     */
+    private static final long[] TIMEOUTS_MS = {3000, 1000, 3000};
+
+    private final Callback mCallback;
+    private int mState = -1;
+    private long mDeadlineMs = -1;
+    private int mTimeoutCount;
+
+    CaptureStateMachine(Callback callback) {
+        this.mCallback = callback;
+    }
+
+    int getState() {
+        return mState;
+    }
+
+    /**
+     * 处于等待 AF / AE 的状态, 只有此时需要读取结果中的 AF / AE 状态
+     */
+    boolean isWaiting() {
+        return isWaiting(mState);
+    }
+
+    /**
+     * 当前等待状态的截止时间, 不在等待状态时返回 -1
+     */
+    long getDeadlineMs() {
+        return mDeadlineMs;
+    }
+
+    /**
+     * 因超时而直接拍照的次数
+     */
+    int getTimeoutCount() {
+        return mTimeoutCount;
+    }
+
+    /**
+     * 切换状态, 进入等待状态时开始计时
+     * @param nowMs 当前时间, SystemClock.elapsedRealtime()
+     */
+    void moveTo(int state, long nowMs) {
+        mState = state;
+        mDeadlineMs = isWaiting(state) ? nowMs + TIMEOUTS_MS[state - CameraInterface.STATE_WAITING_LOCK] : -1;
+    }
+
+    /**
+     * 处理一帧结果
+     * @param afState CONTROL_AF_STATE, 没有时为 {@link #STATE_UNKNOWN}
+     * @param aeState CONTROL_AE_STATE, 没有时为 {@link #STATE_UNKNOWN}
+     * @param nowMs   当前时间, SystemClock.elapsedRealtime()
+     */
+    void onResult(int afState, int aeState, long nowMs) {
+
+        int state = mState;
+        if (!isWaiting(state) || checkTimeout(nowMs)) {
+            return;
+        }
+        int action = TRANSITIONS[state - CameraInterface.STATE_WAITING_LOCK][classifyAf(afState)][classifyAe(aeState)];
+        perform(state, action, nowMs);
+    }
+
+    /**
+     * 检查当前等待状态是否超时, 超时后直接拍照
+     * @return 已超时
+     */
+    boolean checkTimeout(long nowMs) {
+
+        int state = mState;
+        if (!isWaiting(state) || nowMs < mDeadlineMs) {
+            return false;
+        }
+        mTimeoutCount++;
+        perform(state, CAPTURE, nowMs);
+        return true;
+    }
+
+    private void perform(int state, int action, long nowMs) {
+
+        switch (action) {
+            case CAPTURE:
+                moveTo(CameraInterface.STATE_PICTURE_TAKEN, nowMs);
+                mCallback.onCaptureStill(state);
+                break;
+            case PRECAPTURE:
+                moveTo(CameraInterface.STATE_WAITING_PRECAPTURE, nowMs);
+                mCallback.onRunPrecapture();
+                break;
+            case NON_PRECAPTURE:
+                moveTo(CameraInterface.STATE_WAITING_NON_PRECAPTURE, nowMs);
+                break;
+            case STAY:
+            default:
+        }
+    }
+
+    private static boolean isWaiting(int state) {
+        return state >= CameraInterface.STATE_WAITING_LOCK && state <= CameraInterface.STATE_WAITING_NON_PRECAPTURE;
+    }
+
+    private static int classifyAf(int afState) {
+
+        switch (afState) {
+            case STATE_UNKNOWN:
+                return AF_NONE;
+            case CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED:
+            case CaptureResult.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED:
+                return AF_LOCKED;
+            case CaptureResult.CONTROL_AF_STATE_INACTIVE:
+                return AF_INACTIVE;
+            default:
+                return AF_SCANNING;
+        }
+    }
+
+    private static int classifyAe(int aeState) {
+
+        switch (aeState) {
+            case STATE_UNKNOWN:
+                return AE_NONE;
+            case CaptureResult.CONTROL_AE_STATE_CONVERGED:
+                return AE_CONVERGED;
+            case CaptureResult.CONTROL_AE_STATE_PRECAPTURE:
+                return AE_PRECAPTURE;
+            case CaptureResult.CONTROL_AE_STATE_FLASH_REQUIRED:
+                return AE_FLASH_REQUIRED;
+            default:
+                return AE_OTHER;
+        }
+    }
+}
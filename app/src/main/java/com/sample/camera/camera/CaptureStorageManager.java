@@ -0,0 +1,145 @@
+package com.sample.camera.camera;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照存储配额, 在写入线程中执行
+ * 1. 写入前检查剩余空间, 不足时删除最久未使用的拍照腾出空间, 仍不足时写入前直接失败, 不会写出不完整的文件
+ * 2. 保存后按总大小 / 数量配额删除最久未使用的拍照
+ * 总大小和数量由 {@link CaptureStore} 增量维护, 不扫描目录
+ * 未设置配额时不删除任何拍照, 只做剩余空间检查
+ */
+final class CaptureStorageManager {
+
+    /**
+     * 写入后至少保留的剩余空间
+     */
+    static final long DEFAULT_MIN_FREE_BYTES = 32L * 1024 * 1024;
+
+    private final CaptureStore mStore;
+    private volatile long mMaxBytes;
+    private volatile int mMaxCount;
+    private volatile long mMinFreeBytes = DEFAULT_MIN_FREE_BYTES;
+    private volatile int mEvictedCount;
+
+    CaptureStorageManager(CaptureStore store) {
+        this.mStore = store;
+    }
+
+    /**
+     * @param maxBytes 拍照总大小上限, 0 表示不限
+     * @param maxCount 拍照数量上限, 0 表示不限
+     */
+    void setQuota(long maxBytes, int maxCount) {
+
+        if (maxBytes < 0 || maxCount < 0) {
+            throw new IllegalArgumentException("quota must be >= 0");
+        }
+        this.mMaxBytes = maxBytes;
+        this.mMaxCount = maxCount;
+    }
+
+    void setMinFreeBytes(long minFreeBytes) {
+
+        if (minFreeBytes < 0) {
+            throw new IllegalArgumentException("minFreeBytes must be >= 0");
+        }
+        this.mMinFreeBytes = minFreeBytes;
+    }
+
+    /**
+     * 设置了总大小或数量配额
+     */
+    boolean hasQuota() {
+        return mMaxBytes > 0 || mMaxCount > 0;
+    }
+
+    /**
+     * 因配额或剩余空间删除的拍照数
+     */
+    int getEvictedCount() {
+        return mEvictedCount;
+    }
+
+    /**
+     * 删除最久未使用的拍照直到满足配额
+     * @return 删除的数量
+     */
+    int trim() throws IOException {
+
+        long maxBytes = mMaxBytes;
+        int maxCount = mMaxCount;
+        int evicted = 0;
+        while ((maxBytes > 0 && mStore.getTotalBytes() > maxBytes) || (maxCount > 0 && mStore.getCount() > maxCount)) {
+            if (!evictOne()) {
+                break;
+            }
+            evicted++;
+        }
+        return evicted;
+    }
+
+    /**
+     * 写入前保证写入后仍有 {@link #mMinFreeBytes} 剩余空间, 设置了配额时删除最久未使用的拍照腾出空间
+     * @param file  将要写入的文件
+     * @param bytes 将要写入的字节数
+     * @throws IOException 空间不足
+     */
+    void ensureSpace(File file, long bytes) throws IOException {
+
+        File directory = file.getParentFile();
+        if (null == directory) {
+            return;
+        }
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        long required = bytes + mMinFreeBytes;
+        long usable = directory.getUsableSpace();
+        // 0 表示无法获取, 交给写入时处理
+        while (usable > 0 && usable < required) {
+            if (!hasQuota() || !evictOne()) {
+                throw new IOException("Insufficient storage: " + usable + " bytes usable, " + required + " required");
+            }
+            usable = directory.getUsableSpace();
+        }
+    }
+
+    /**
+     * 包装存储后端, 写入文件前检查剩余空间
+     */
+    CaptureSink guard(final CaptureSink sink) {
+        return new CaptureSink() {
+            @Override
+            public long write(File file, ByteBuffer[] segments) throws IOException {
+                if (sink.writesFiles()) {
+                    long bytes = 0;
+                    for (ByteBuffer segment : segments) {
+                        bytes += segment.remaining();
+                    }
+                    ensureSpace(file, bytes);
+                }
+                return sink.write(file, segments);
+            }
+
+            @Override
+            public boolean writesFiles() {
+                return sink.writesFiles();
+            }
+        };
+    }
+
+    private boolean evictOne() throws IOException {
+
+        CaptureRecord record = mStore.getLeastRecentlyUsed();
+        if (null == record || !mStore.remove(record)) {
+            return false;
+        }
+        mEvictedCount++;
+        return true;
+    }
+}
@@ -0,0 +1,493 @@
+package com.sample.camera.camera;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照文件目录, 为每次拍照分配唯一且按时间递增的文件名, 并维护只追加的二进制索引,
+ * 相册列出拍照记录时只需要读取索引, 不需要扫描目录或解码图片
+ * 索引格式: 文件头 MAGIC + VERSION, 之后每条记录为 [长度 int][内容][CRC32 int],
+ * 加载时遇到不完整或校验失败的记录(写入时掉电)会截断到最后一条完整记录.
+ * 删除时追加删除记录, 无效记录多于有效记录时重写索引.
+ * 总大小和使用顺序随记录增量维护, 不需要扫描目录
+ * 同一目录只应有一个实例写入
+ * 文件名分配使用单独的锁, 不会被索引的读写阻塞
+ */
+public final class CaptureStore {
+
+    static final String INDEX_FILE_NAME = ".captures.idx";
+    /**
+     * "CIDX"
+     */
+    private static final int MAGIC = 0x43494458;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    /**
+     * 记录长度和 CRC32 各占 4 字节
+     */
+    private static final int RECORD_OVERHEAD = 8;
+    private static final int MAX_RECORD_LENGTH = 4096;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    /**
+     * 无效记录达到该数量且多于有效记录时重写索引
+     */
+    private static final int COMPACT_MIN_GARBAGE = 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * 记录类型
+     */
+    static final int TYPE_ADD = 1;
+    static final int TYPE_REMOVE = 2;
+    static final int TYPE_TOUCH = 3;
+
+    /**
+     * 写入索引文件, 测试时替换以模拟写入失败
+     */
+    interface IndexWriter {
+
+        /**
+         * @param force 返回前写入磁盘
+         */
+        void write(FileChannel channel, ByteBuffer buffer, boolean force) throws IOException;
+    }
+
+    private static final IndexWriter DEFAULT_WRITER = new IndexWriter() {
+        @Override
+        public void write(FileChannel channel, ByteBuffer buffer, boolean force) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (force) {
+                channel.force(false);
+            }
+        }
+    };
+
+    private final File mDirectory;
+    private final File mIndexFile;
+    private final IndexWriter mWriter;
+    private final CRC32 mCrc = new CRC32();
+    /**
+     * 保护 {@link #mNameFormat} 和 {@link #mLastNameMillis}, 分配文件名在相机线程中调用,
+     * 不能与索引共用对象锁, 否则会等待写入线程的 fsync 或整理
+     */
+    private final Object mNameLock = new Object();
+    private final SimpleDateFormat mNameFormat = new SimpleDateFormat("yyyyMMdd_HHmmss_SSS", Locale.US);
+    /**
+     * 上一次分配的文件名时间, 同一毫秒内连续分配时向后顺延
+     */
+    private long mLastNameMillis;
+    /**
+     * 索引中的记录, 按保存顺序, key 为文件名, 第一次读写索引时加载
+     */
+    private Map<String, CaptureRecord> mRecords;
+    /**
+     * 同样的记录, 按使用顺序, 最久未使用的在前, 没有 {@link #touch(CaptureRecord)} 过时与保存顺序一致
+     */
+    private LinkedHashMap<String, CaptureRecord> mUsage;
+    private long mTotalBytes;
+    /**
+     * 索引中已无效的记录数
+     */
+    private int mGarbageCount;
+    /**
+     * 索引文件中有效数据的长度
+     */
+    private long mIndexLength;
+
+    /**
+     * @param directory 拍照文件目录, 不存在时创建
+     */
+    public CaptureStore(File directory) {
+        this(directory, DEFAULT_WRITER);
+    }
+
+    CaptureStore(File directory, IndexWriter writer) {
+        this.mDirectory = directory;
+        this.mIndexFile = new File(directory, INDEX_FILE_NAME);
+        this.mWriter = writer;
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * 所有拍照记录, 按保存顺序排列, 第一次调用时读取索引, 不要在主线程中调用
+     */
+    public synchronized List<CaptureRecord> getRecords() throws IOException {
+
+        ensureLoaded();
+        return Collections.unmodifiableList(new ArrayList<>(mRecords.values()));
+    }
+
+    /**
+     * 拍照记录数
+     */
+    public synchronized int getCount() throws IOException {
+
+        ensureLoaded();
+        return mRecords.size();
+    }
+
+    /**
+     * 所有拍照文件的总大小
+     */
+    public synchronized long getTotalBytes() throws IOException {
+
+        ensureLoaded();
+        return mTotalBytes;
+    }
+
+    /**
+     * 标记为最近使用(例如在相册中查看), 超出配额时最后删除, 不立即写入磁盘
+     */
+    public synchronized void touch(CaptureRecord record) throws IOException {
+
+        ensureLoaded();
+        String name = record.getFile().getName();
+        CaptureRecord current = mUsage.remove(name);
+        if (null == current) {
+            return;
+        }
+        mUsage.put(name, current);
+        writeRecords(Collections.singletonList(encodeName(TYPE_TOUCH, name)), false);
+        // 之前的使用记录失效
+        mGarbageCount++;
+    }
+
+    /**
+     * 分配新的文件名 IMG_yyyyMMdd_HHmmss_SSS, 不读取索引也不访问磁盘.
+     * 时钟回拨或重启后可能与已有文件重名, 由写入线程处理, 见 {@link CaptureSavePipeline}
+     * @param extension 扩展名, 包含 "."
+     */
+    File allocate(String extension) {
+
+        synchronized (mNameLock) {
+            long millis = Math.max(System.currentTimeMillis(), mLastNameMillis + 1);
+            mLastNameMillis = millis;
+            return new File(mDirectory, "IMG_" + mNameFormat.format(new Date(millis)) + extension);
+        }
+    }
+
+    /**
+     * 由本目录管理的文件
+     */
+    boolean isManaged(File file) {
+        return mDirectory.equals(file.getParentFile());
+    }
+
+    /**
+     * 文件保存完成后追加一条记录, 返回前索引已写入磁盘
+     * @param file        {@link #allocate(String)} 分配的文件
+     * @param timestamp   拍照时间
+     * @param size        文件大小
+     * @param orientation ExifInterface.ORIENTATION_*
+     * @param cameraId    相机ID
+     */
+    synchronized CaptureRecord append(File file, long timestamp, long size, int orientation, String cameraId) throws IOException {
+
+        ensureLoaded();
+        CaptureRecord record = new CaptureRecord(timestamp, new File(mDirectory, file.getName()), size, orientation, cameraId);
+        writeRecords(Collections.singletonList(encodeAdd(record)), true);
+        put(record);
+        return record;
+    }
+
+    /**
+     * 最久未使用的记录, 没有记录时返回 null
+     */
+    synchronized CaptureRecord getLeastRecentlyUsed() throws IOException {
+
+        ensureLoaded();
+        Iterator<CaptureRecord> iterator = mUsage.values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * 删除拍照文件并追加删除记录
+     * @return 文件无法删除时返回 false, 记录保留
+     */
+    synchronized boolean remove(CaptureRecord record) throws IOException {
+
+        ensureLoaded();
+        String name = record.getFile().getName();
+        CaptureRecord current = mRecords.get(name);
+        if (null == current) {
+            return true;
+        }
+        File file = current.getFile();
+        if (!file.delete() && file.exists()) {
+            return false;
+        }
+        // 文件已删除, 删除记录丢失时加载后会多出一条指向不存在文件的记录, 不需要立即写入磁盘
+        writeRecords(Collections.singletonList(encodeName(TYPE_REMOVE, name)), false);
+        delete(name);
+        // 添加记录和删除记录都失效
+        mGarbageCount += 2;
+        if (mGarbageCount >= COMPACT_MIN_GARBAGE && mGarbageCount > mRecords.size()) {
+            compact();
+        }
+        return true;
+    }
+
+    private void put(CaptureRecord record) {
+
+        String name = record.getFile().getName();
+        CaptureRecord old = mRecords.put(name, record);
+        if (null != old) {
+            mTotalBytes -= old.getSize();
+            mGarbageCount++;
+        }
+        mUsage.remove(name);
+        mUsage.put(name, record);
+        mTotalBytes += record.getSize();
+    }
+
+    private void delete(String name) {
+
+        CaptureRecord old = mRecords.remove(name);
+        if (null != old) {
+            mUsage.remove(name);
+            mTotalBytes -= old.getSize();
+        }
+    }
+
+    private byte[] encodeAdd(CaptureRecord record) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_ADD);
+        out.writeLong(record.getTimestamp());
+        out.writeLong(record.getSize());
+        out.writeByte(record.getOrientation());
+        out.writeUTF(record.getFile().getName());
+        out.writeUTF(null == record.getCameraId() ? "" : record.getCameraId());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 只包含文件名的记录: 删除, 使用
+     */
+    private static byte[] encodeName(int type, String name) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        out.writeUTF(name);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 追加记录
+     * @param force 返回前写入磁盘
+     */
+    private void writeRecords(List<byte[]> payloads, boolean force) throws IOException {
+
+        boolean header = mIndexLength == 0;
+        ByteBuffer buffer = encodeRecords(payloads, header);
+        int length = buffer.remaining();
+        FileOutputStream output = new FileOutputStream(mIndexFile, true);
+        try {
+            FileChannel channel = output.getChannel();
+            try {
+                mWriter.write(channel, buffer, force);
+            } catch (IOException e) {
+                // 去掉写了一半的记录, 否则之后追加的记录接在残缺记录后面, 下次加载时会一起被截断
+                try {
+                    channel.truncate(mIndexLength);
+                } catch (IOException ignored) {
+                    // 下次加载时截断
+                }
+                throw e;
+            }
+        } finally {
+            output.close();
+        }
+        mIndexLength += length;
+    }
+
+    private ByteBuffer encodeRecords(List<byte[]> payloads, boolean header) {
+
+        int length = header ? HEADER_SIZE : 0;
+        for (byte[] payload : payloads) {
+            length += payload.length + RECORD_OVERHEAD;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        if (header) {
+            buffer.putInt(MAGIC).putInt(VERSION);
+        }
+        for (byte[] payload : payloads) {
+            buffer.putInt(payload.length).put(payload).putInt(checksum(payload, payload.length));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * 只保留有效记录重写索引, 先写临时文件再重命名, 使用顺序与保存顺序不同时追加使用记录
+     */
+    private void compact() throws IOException {
+
+        List<byte[]> payloads = new ArrayList<>(mRecords.size());
+        for (CaptureRecord record : mRecords.values()) {
+            payloads.add(encodeAdd(record));
+        }
+        if (!sameOrder(mRecords, mUsage)) {
+            for (String name : mUsage.keySet()) {
+                payloads.add(encodeName(TYPE_TOUCH, name));
+            }
+        }
+        ByteBuffer buffer = encodeRecords(payloads, true);
+        int length = buffer.remaining();
+        File temp = new File(mIndexFile.getPath() + TEMP_SUFFIX);
+        FileOutputStream output = new FileOutputStream(temp);
+        try {
+            mWriter.write(output.getChannel(), buffer, true);
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(mIndexFile)) {
+            temp.delete();
+            throw new IOException("Failed to replace " + mIndexFile);
+        }
+        mIndexLength = length;
+        mGarbageCount = 0;
+    }
+
+    private static boolean sameOrder(Map<String, CaptureRecord> a, Map<String, CaptureRecord> b) {
+
+        Iterator<String> iterator = b.keySet().iterator();
+        for (String name : a.keySet()) {
+            if (!iterator.hasNext() || !name.equals(iterator.next())) {
+                return false;
+            }
+        }
+        return !iterator.hasNext();
+    }
+
+    /**
+     * 读取索引, 丢弃尾部不完整的记录
+     */
+    private void ensureLoaded() throws IOException {
+
+        if (null != mRecords) {
+            return;
+        }
+        mRecords = new LinkedHashMap<>();
+        mUsage = new LinkedHashMap<>();
+        mTotalBytes = 0;
+        mGarbageCount = 0;
+        long valid = 0;
+        if (mIndexFile.exists()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mIndexFile), READ_BUFFER_SIZE));
+            try {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    valid = HEADER_SIZE;
+                    byte[] payload = new byte[256];
+                    while (true) {
+                        int length = in.readInt();
+                        if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                            break;
+                        }
+                        if (payload.length < length) {
+                            payload = new byte[length];
+                        }
+                        in.readFully(payload, 0, length);
+                        if (in.readInt() != checksum(payload, length)) {
+                            break;
+                        }
+                        readRecord(payload, length);
+                        valid += length + RECORD_OVERHEAD;
+                    }
+                }
+            } catch (EOFException e) {
+                // 读到文件末尾, 或最后一条记录没有写完
+            } finally {
+                in.close();
+            }
+            if (valid < mIndexFile.length()) {
+                truncate(valid);
+            }
+        }
+        mIndexLength = valid;
+    }
+
+    private void readRecord(byte[] payload, int length) throws IOException {
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 0, length));
+        int type = in.readByte();
+        switch (type) {
+            case TYPE_ADD: {
+                long timestamp = in.readLong();
+                long size = in.readLong();
+                int orientation = in.readByte();
+                String name = in.readUTF();
+                String cameraId = in.readUTF();
+                put(new CaptureRecord(timestamp, new File(mDirectory, name), size, orientation, cameraId));
+                break;
+            }
+            case TYPE_REMOVE:
+                delete(in.readUTF());
+                mGarbageCount += 2;
+                break;
+            case TYPE_TOUCH: {
+                String name = in.readUTF();
+                CaptureRecord record = mUsage.remove(name);
+                if (null != record) {
+                    mUsage.put(name, record);
+                }
+                mGarbageCount++;
+                break;
+            }
+            default:
+                // 未知类型的记录忽略, 兼容以后增加的类型
+        }
+    }
+
+    private void truncate(long length) throws IOException {
+
+        RandomAccessFile file = new RandomAccessFile(mIndexFile, "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+
+    private int checksum(byte[] payload, int length) {
+
+        mCrc.reset();
+        mCrc.update(payload, 0, length);
+        return (int) mCrc.getValue();
+    }
+}
@@ -0,0 +1,16 @@
+package com.sample.camera.camera;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照耗时追踪回调
+ */
+public interface CaptureTraceListener {
+
+    /**
+     * 一次拍照完成后回调, 在保存线程中调用
+     * @param phaseNanos 各阶段耗时, 下标为 CaptureTracer.PHASE_*, 值为与上一个已发生阶段的间隔, 未发生的阶段为 -1
+     * @param totalNanos 从调用拍照到回调拍照结果的总耗时
+     */
+    void onCaptureTraced(long[] phaseNanos, long totalNanos);
+}
@@ -0,0 +1,253 @@
+package com.sample.camera.camera;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照耗时追踪, 记录从 takePicture() 到 CameraListener.onTakePicture() 之间每个阶段的耗时,
+ * 每个阶段一个 {@link LatencyHistogram}, 可以通过 {@link #dumpStats()} 查看 p50/p95/p99
+ * 每次拍照有自己的 {@link Span}, ZSL 连续点击时上一张还在写入, 两次拍照的阶段互不影响
+ */
+public final class CaptureTracer {
+
+    /**
+     * 拍照阶段
+     * PHASE_AF_TRIGGER : 发送对焦请求
+     * PHASE_AF_LOCKED : 对焦锁定
+     * PHASE_PRECAPTURE_START : 开始测光
+     * PHASE_PRECAPTURE_END : 测光结束
+     * PHASE_STILL_SUBMITTED : 发送拍照请求
+     * PHASE_CAPTURE_COMPLETED : 拍照请求完成
+     * PHASE_IMAGE_AVAILABLE : 收到图像
+     * PHASE_EXIF_DONE : 写入 EXIF 方向
+     * PHASE_BYTES_WRITTEN : 写入存储
+     * PHASE_LISTENER_CALLED : 回调拍照结果
+     */
+    public static final int PHASE_AF_TRIGGER = 0;
+    public static final int PHASE_AF_LOCKED = 1;
+    public static final int PHASE_PRECAPTURE_START = 2;
+    public static final int PHASE_PRECAPTURE_END = 3;
+    public static final int PHASE_STILL_SUBMITTED = 4;
+    public static final int PHASE_CAPTURE_COMPLETED = 5;
+    public static final int PHASE_IMAGE_AVAILABLE = 6;
+    public static final int PHASE_EXIF_DONE = 7;
+    public static final int PHASE_BYTES_WRITTEN = 8;
+    public static final int PHASE_LISTENER_CALLED = 9;
+    public static final int PHASE_COUNT = 10;
+
+    private static final String[] PHASE_NAMES = {
+            "af_trigger", "af_locked", "precapture_start", "precapture_end", "still_submitted",
+            "capture_completed", "image_available", "exif_done", "bytes_written", "listener_called"
+    };
+    private static final String TRACE_SECTION = "takePicture";
+
+    /**
+     * 一次拍照的追踪, 阶段在相机线程和写入线程中记录, 以自身为锁
+     */
+    static final class Span {
+
+        private final long mStartNanos;
+        private final int mCookie;
+        /**
+         * 各阶段时间点, 没有发生的阶段为 -1
+         */
+        private final long[] mPhaseTimestamps = new long[PHASE_COUNT];
+        private long mLastNanos;
+        /**
+         * 已结束或放弃, 之后的记录忽略
+         */
+        private boolean mFinished;
+
+        private Span(long startNanos, int cookie) {
+            this.mStartNanos = startNanos;
+            this.mCookie = cookie;
+            this.mLastNanos = startNanos;
+            Arrays.fill(mPhaseTimestamps, -1);
+        }
+    }
+
+    private final LatencyHistogram[] mPhaseHistograms = new LatencyHistogram[PHASE_COUNT];
+    private final LatencyHistogram mTotalHistogram = new LatencyHistogram();
+    private final AtomicInteger mCookie = new AtomicInteger();
+    private volatile boolean mSystemTraceEnabled;
+    private volatile CaptureTraceListener mListener;
+
+    CaptureTracer() {
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            mPhaseHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * 开始追踪一次拍照
+     */
+    Span begin() {
+        return begin(System.nanoTime());
+    }
+
+    /**
+     * 从调用线程记录的时间开始追踪, 包括等待相机线程执行的时间
+     * @param startNanos System.nanoTime()
+     */
+    Span begin(long startNanos) {
+
+        int cookie = mCookie.incrementAndGet();
+        if (mSystemTraceEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(TRACE_SECTION, cookie);
+        }
+        return new Span(startNanos, cookie);
+    }
+
+    /**
+     * 记录到达某个阶段, 耗时为与上一个阶段的间隔
+     * @param span 为 null 或已结束时忽略
+     */
+    void mark(Span span, int phase) {
+
+        if (null == span) {
+            return;
+        }
+        long interval;
+        synchronized (span) {
+            if (span.mFinished) {
+                return;
+            }
+            long now = System.nanoTime();
+            interval = now - span.mLastNanos;
+            span.mPhaseTimestamps[phase] = now;
+            span.mLastNanos = now;
+        }
+        mPhaseHistograms[phase].record(interval);
+    }
+
+    /**
+     * 结束追踪, 回调监听
+     * @param span 为 null 或已结束时忽略
+     */
+    void end(Span span) {
+
+        if (null == span) {
+            return;
+        }
+        long total;
+        long[] phaseNanos = new long[PHASE_COUNT];
+        synchronized (span) {
+            if (span.mFinished) {
+                return;
+            }
+            span.mFinished = true;
+            total = span.mLastNanos - span.mStartNanos;
+            long previous = span.mStartNanos;
+            for (int i = 0; i < PHASE_COUNT; i++) {
+                long timestamp = span.mPhaseTimestamps[i];
+                if (timestamp < 0) {
+                    phaseNanos[i] = -1;
+                } else {
+                    phaseNanos[i] = timestamp - previous;
+                    previous = timestamp;
+                }
+            }
+        }
+        mTotalHistogram.record(total);
+        if (mSystemTraceEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(TRACE_SECTION, span.mCookie);
+        }
+
+        CaptureTraceListener listener = mListener;
+        if (null != listener) {
+            listener.onCaptureTraced(phaseNanos, total);
+        }
+    }
+
+    /**
+     * 放弃追踪, 例如拍照失败
+     * @param span 为 null 或已结束时忽略
+     */
+    void cancel(Span span) {
+
+        if (null == span) {
+            return;
+        }
+        synchronized (span) {
+            if (span.mFinished) {
+                return;
+            }
+            span.mFinished = true;
+        }
+        if (mSystemTraceEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(TRACE_SECTION, span.mCookie);
+        }
+    }
+
+    void setListener(CaptureTraceListener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * 是否同时输出 systrace 异步区间, 需要 Android Q 及以上
+     */
+    void setSystemTraceEnabled(boolean enabled) {
+        this.mSystemTraceEnabled = enabled;
+    }
+
+    /**
+     * 阶段耗时百分位
+     * @param phase      CaptureTracer.PHASE_*
+     * @param percentile 0 ~ 100
+     * @return 微秒
+     */
+    public long getPercentileMicros(int phase, double percentile) {
+        return mPhaseHistograms[phase].getPercentileMicros(percentile);
+    }
+
+    /**
+     * 总耗时百分位
+     * @param percentile 0 ~ 100
+     * @return 微秒
+     */
+    public long getTotalPercentileMicros(double percentile) {
+        return mTotalHistogram.getPercentileMicros(percentile);
+    }
+
+    /**
+     * 各阶段耗时统计, 单位毫秒
+     */
+    public String dumpStats() {
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "%-18s %6s %9s %9s %9s %9s%n", "phase", "count", "p50", "p95", "p99", "max"));
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            appendStats(builder, PHASE_NAMES[i], mPhaseHistograms[i]);
+        }
+        appendStats(builder, "total", mTotalHistogram);
+        return builder.toString();
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+
+        for (LatencyHistogram histogram : mPhaseHistograms) {
+            histogram.reset();
+        }
+        mTotalHistogram.reset();
+    }
+
+    private static void appendStats(StringBuilder builder, String name, LatencyHistogram histogram) {
+
+        builder.append(String.format(Locale.US, "%-18s %6d %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getCount(),
+                histogram.getPercentileMicros(50) / 1000f, histogram.getPercentileMicros(95) / 1000f,
+                histogram.getPercentileMicros(99) / 1000f, histogram.getMaxMicros() / 1000f));
+    }
+}
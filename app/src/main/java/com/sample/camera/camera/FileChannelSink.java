@@ -0,0 +1,68 @@
+package com.sample.camera.camera;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 通过 FileChannel 聚集写入文件, 缓冲池中的 direct ByteBuffer 直接写入, 不经过 Java 堆
+ */
+public final class FileChannelSink implements CaptureSink {
+
+    private final int mDurability;
+
+    /**
+     * 使用 {@link #DURABILITY_FDATASYNC}
+     */
+    public FileChannelSink() {
+        this(DURABILITY_FDATASYNC);
+    }
+
+    /**
+     * @param durability DURABILITY_*
+     */
+    public FileChannelSink(int durability) {
+        this.mDurability = checkDurability(durability);
+    }
+
+    @Override
+    public long write(File file, ByteBuffer[] segments) throws IOException {
+
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            FileChannel channel = output.getChannel();
+            long written = JpegExifWriter.writeFully(channel, segments);
+            force(channel, mDurability);
+            return written;
+        } finally {
+            output.close();
+        }
+    }
+
+    @Override
+    public boolean writesFiles() {
+        return true;
+    }
+
+    static int checkDurability(int durability) {
+
+        if (durability < DURABILITY_NONE || durability > DURABILITY_FSYNC) {
+            throw new IllegalArgumentException("Unsupported durability: " + durability);
+        }
+        return durability;
+    }
+
+    /**
+     * 按持久化方式同步文件
+     */
+    static void force(FileChannel channel, int durability) throws IOException {
+
+        if (durability != DURABILITY_NONE) {
+            channel.force(durability == DURABILITY_FSYNC);
+        }
+    }
+}
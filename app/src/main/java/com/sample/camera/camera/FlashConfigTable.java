@@ -0,0 +1,88 @@
+package com.sample.camera.camera;
+
+import android.hardware.camera2.CaptureRequest;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 闪光灯配置表, (闪光灯状态, 预览 / 拍照) -> (CONTROL_AE_MODE, FLASH_MODE, 屏幕补光),
+ * 每个摄像头根据是否有闪光灯和朝向生成一次, 之后只读
+ * 没有闪光灯的前置摄像头在 FLASH_MODEL_ON 拍照和 FLASH_MODEL_ALWAYS 时使用屏幕补光
+ */
+final class FlashConfigTable {
+
+    static final int FLASH_MODEL_COUNT = 4;
+
+    static final class Entry {
+
+        final Integer aeMode;
+        final Integer flashMode;
+        /**
+         * 需要点亮屏幕补光
+         */
+        final boolean screenFlash;
+
+        Entry(int aeMode, int flashMode, boolean screenFlash) {
+            this.aeMode = aeMode;
+            this.flashMode = flashMode;
+            this.screenFlash = screenFlash;
+        }
+    }
+
+    /**
+     * 下标为 flashModel * 2 + (预览 ? 0 : 1)
+     */
+    private final Entry[] mEntries = new Entry[FLASH_MODEL_COUNT * 2];
+
+    private FlashConfigTable(boolean flashSupported, boolean frontFacing) {
+        for (int flashModel = 0; flashModel < FLASH_MODEL_COUNT; flashModel++) {
+            mEntries[flashModel * 2] = resolve(flashModel, frontFacing, true, flashSupported);
+            mEntries[flashModel * 2 + 1] = resolve(flashModel, frontFacing, false, flashSupported);
+        }
+    }
+
+    /**
+     * @param flashSupported FLASH_INFO_AVAILABLE
+     * @param frontFacing    前置摄像头
+     */
+    static FlashConfigTable create(boolean flashSupported, boolean frontFacing) {
+        return new FlashConfigTable(flashSupported, frontFacing);
+    }
+
+    /**
+     * @param flashModel Camera2View.FLASH_MODEL_*
+     * @param preview    预览请求, 否则为拍照请求
+     */
+    Entry get(int flashModel, boolean preview) {
+        return mEntries[flashModel * 2 + (preview ? 0 : 1)];
+    }
+
+    /**
+     * 配置规则, 只在生成表时调用.
+     * FLASH_MODE 只在 AE_MODE 为 ON / OFF 时生效, 自动闪光时由 AE 控制, 统一设为 OFF
+     */
+    static Entry resolve(int flashModel, boolean frontFacing, boolean preview, boolean flashSupported) {
+
+        if (!flashSupported) {
+            // 没有闪光灯时只能使用 CONTROL_AE_MODE_ON
+            boolean screenFlash = frontFacing && (flashModel == Camera2View.FLASH_MODEL_ALWAYS
+                    || (flashModel == Camera2View.FLASH_MODEL_ON && !preview));
+            return new Entry(CaptureRequest.CONTROL_AE_MODE_ON, CaptureRequest.FLASH_MODE_OFF, screenFlash);
+        }
+        switch (flashModel) {
+            case Camera2View.FLASH_MODEL_ON:
+                if (preview) {
+                    return new Entry(CaptureRequest.CONTROL_AE_MODE_ON, CaptureRequest.FLASH_MODE_OFF, false);
+                }
+                return new Entry(CaptureRequest.CONTROL_AE_MODE_ON,
+                        frontFacing ? CaptureRequest.FLASH_MODE_SINGLE : CaptureRequest.FLASH_MODE_TORCH, false);
+            case Camera2View.FLASH_MODEL_AUTO:
+                return new Entry(CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH, CaptureRequest.FLASH_MODE_OFF, false);
+            case Camera2View.FLASH_MODEL_ALWAYS:
+                return new Entry(CaptureRequest.CONTROL_AE_MODE_ON, CaptureRequest.FLASH_MODE_TORCH, false);
+            case Camera2View.FLASH_MODEL_OFF:
+            default:
+                return new Entry(CaptureRequest.CONTROL_AE_MODE_ON, CaptureRequest.FLASH_MODE_OFF, false);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.sample.camera.camera;
+
+import android.util.Range;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 按预览性能模式从相机支持的帧率范围中选择 CONTROL_AE_TARGET_FPS_RANGE
+ * 省电: 上限不低于 15 的最低上限; 均衡: 上限最接近 30, 下限尽量不低于 15; 高帧率: 最高上限, 优先固定帧率
+ */
+final class FpsRangeSelector {
+
+    private static final int MIN_SMOOTH_FPS = 15;
+    private static final int BALANCED_FPS = 30;
+
+    private FpsRangeSelector() {
+    }
+
+    /**
+     * @param ranges 相机支持的帧率范围
+     * @param mode   Camera2View.PREVIEW_MODE_*
+     * @return 选中的范围, ranges 为空时返回 null
+     */
+    static Range<Integer> select(Range<Integer>[] ranges, int mode) {
+
+        if (null == ranges || ranges.length == 0) {
+            return null;
+        }
+        int[] lowers = new int[ranges.length];
+        int[] uppers = new int[ranges.length];
+        for (int i = 0; i < ranges.length; i++) {
+            lowers[i] = ranges[i].getLower();
+            uppers[i] = ranges[i].getUpper();
+        }
+        return ranges[select(lowers, uppers, mode)];
+    }
+
+    /**
+     * @param lowers 各范围的下限
+     * @param uppers 各范围的上限, 与 lowers 一一对应
+     * @param mode   Camera2View.PREVIEW_MODE_*
+     * @return 选中范围的下标, 没有范围时返回 -1
+     */
+    static int select(int[] lowers, int[] uppers, int mode) {
+
+        int best = -1;
+        for (int i = 0; i < lowers.length; i++) {
+            if (best < 0 || isBetter(lowers[i], uppers[i], lowers[best], uppers[best], mode)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isBetter(int lower, int upper, int bestLower, int bestUpper, int mode) {
+
+        switch (mode) {
+            case Camera2View.PREVIEW_MODE_BATTERY_SAVER: {
+                boolean smooth = upper >= MIN_SMOOTH_FPS;
+                boolean bestSmooth = bestUpper >= MIN_SMOOTH_FPS;
+                if (smooth != bestSmooth) {
+                    return smooth;
+                }
+                if (upper != bestUpper) {
+                    return smooth ? upper < bestUpper : upper > bestUpper;
+                }
+                return lower < bestLower;
+            }
+            case Camera2View.PREVIEW_MODE_HIGH_FPS:
+            case Camera2View.PREVIEW_MODE_HIGH_SPEED:
+                if (upper != bestUpper) {
+                    return upper > bestUpper;
+                }
+                return lower > bestLower;
+            case Camera2View.PREVIEW_MODE_BALANCED:
+            default: {
+                int distance = balancedDistance(upper);
+                int bestDistance = balancedDistance(bestUpper);
+                if (distance != bestDistance) {
+                    return distance < bestDistance;
+                }
+                boolean smooth = lower >= MIN_SMOOTH_FPS;
+                boolean bestSmooth = bestLower >= MIN_SMOOTH_FPS;
+                if (smooth != bestSmooth) {
+                    return smooth;
+                }
+                return lower < bestLower;
+            }
+        }
+    }
+
+    /**
+     * 上限与 30 的距离, 低于 30 的范围比高于 30 的范围优先
+     */
+    private static int balancedDistance(int upper) {
+        return upper <= BALANCED_FPS ? (BALANCED_FPS - upper) * 2 : (upper - BALANCED_FPS) * 2 + 1;
+    }
+}
@@ -0,0 +1,17 @@
+package com.sample.camera.camera;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 预览帧分析回调, 在独立的分析线程中调用
+ * 分析较慢时只保留最新的一帧, 中间的帧直接丢弃, 不会阻塞相机
+ */
+public interface FrameAnalyzer {
+
+    /**
+     * 分析一帧预览数据
+     * @param frame YUV_420_888 格式的低分辨率预览帧, 直接指向 Image 的平面数据,
+     *              方法返回后 Image 会被关闭, 不要在回调外持有, 需要保留时用 toNV21 / toI420 复制
+     */
+    void analyze(YuvFrame frame);
+}
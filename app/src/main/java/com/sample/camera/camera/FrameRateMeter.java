@@ -0,0 +1,63 @@
+package com.sample.camera.camera;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 根据最近若干帧的传感器时间戳计算实际帧率
+ * {@link #onFrame(long)} 只在相机线程中调用, {@link #getFramesPerSecond()} 可以在任意线程读取
+ */
+final class FrameRateMeter {
+
+    private final long[] mTimestamps;
+    private int mCount;
+    private int mNext;
+    private volatile float mFramesPerSecond;
+
+    /**
+     * @param window 参与计算的帧数
+     */
+    FrameRateMeter(int window) {
+        this.mTimestamps = new long[Math.max(2, window)];
+    }
+
+    /**
+     * 记录一帧
+     * @param timestampNs 传感器时间戳, 纳秒
+     */
+    void onFrame(long timestampNs) {
+
+        int capacity = mTimestamps.length;
+        if (mCount > 0) {
+            long previous = mTimestamps[(mNext - 1 + capacity) % capacity];
+            if (timestampNs <= previous) {
+                // 重复或乱序的结果
+                return;
+            }
+        }
+        mTimestamps[mNext] = timestampNs;
+        mNext = (mNext + 1) % capacity;
+        if (mCount < capacity) {
+            mCount++;
+        }
+        if (mCount >= 2) {
+            long oldest = mTimestamps[mCount < capacity ? 0 : mNext];
+            mFramesPerSecond = (mCount - 1) * 1_000_000_000f / (timestampNs - oldest);
+        }
+    }
+
+    /**
+     * 清空, 切换会话时调用
+     */
+    void reset() {
+        mCount = 0;
+        mNext = 0;
+        mFramesPerSecond = 0;
+    }
+
+    /**
+     * 最近若干帧的平均帧率, 不足两帧时返回 0
+     */
+    float getFramesPerSecond() {
+        return mFramesPerSecond;
+    }
+}
@@ -0,0 +1,167 @@
+package com.sample.camera.camera;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 固定容量的帧环形缓冲区, 按时间戳保存最近的 N 帧, 满了之后淘汰最旧的帧
+ * 用于零延时拍照(ZSL)时按点击时间挑选已经拍好的帧
+ */
+final class FrameRing<T> {
+
+    /**
+     * 帧被淘汰或清空时回调, 用于释放帧持有的资源
+     */
+    interface Evictor<T> {
+
+        void onEvicted(T frame);
+    }
+
+    private final Object[] mFrames;
+    private final long[] mTimestamps;
+    private final long[] mScores;
+    private final Evictor<T> mEvictor;
+    /**
+     * 最旧一帧的下标
+     */
+    private int mHead;
+    private int mSize;
+
+    /**
+     * @param capacity 最多保存的帧数
+     * @param evictor  帧被淘汰时的回调
+     */
+    FrameRing(int capacity, Evictor<T> evictor) {
+
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.mFrames = new Object[capacity];
+        this.mTimestamps = new long[capacity];
+        this.mScores = new long[capacity];
+        this.mEvictor = evictor;
+    }
+
+    /**
+     * 加入一帧, 已满时先淘汰最旧的一帧
+     * @param frame     帧
+     * @param timestamp 帧的传感器时间戳
+     * @param score     清晰度评分, 越大越清晰
+     */
+    synchronized void add(T frame, long timestamp, long score) {
+
+        if (mSize == mFrames.length) {
+            T oldest = frameAt(mHead);
+            mFrames[mHead] = null;
+            mHead = (mHead + 1) % mFrames.length;
+            mSize--;
+            mEvictor.onEvicted(oldest);
+        }
+        int tail = (mHead + mSize) % mFrames.length;
+        mFrames[tail] = frame;
+        mTimestamps[tail] = timestamp;
+        mScores[tail] = score;
+        mSize++;
+    }
+
+    /**
+     * 取出时间戳与 timestamp 最接近的一帧, 帧的所有权交给调用方
+     * @return 没有帧时返回 null
+     */
+    synchronized T removeClosest(long timestamp) {
+        return removeAt(indexOfClosest(timestamp));
+    }
+
+    /**
+     * 取出与 timestamp 相差 window 以内评分最高的一帧, 范围内没有帧时取最接近的一帧
+     * @return 没有帧时返回 null
+     */
+    synchronized T removeSharpest(long timestamp, long window) {
+        return removeAt(indexOfSharpest(timestamp, window));
+    }
+
+    /**
+     * @return 时间戳最接近的帧在队列中的序号 (0 为最旧), 没有帧时返回 -1
+     */
+    synchronized int indexOfClosest(long timestamp) {
+
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < mSize; i++) {
+            long distance = distance(mTimestamps[slot(i)], timestamp);
+            // 距离相同时取较新的一帧
+            if (distance <= bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return 范围内评分最高的帧在队列中的序号 (0 为最旧), 没有帧时返回 -1
+     */
+    synchronized int indexOfSharpest(long timestamp, long window) {
+
+        int best = -1;
+        long bestScore = Long.MIN_VALUE;
+        for (int i = 0; i < mSize; i++) {
+            int slot = slot(i);
+            if (distance(mTimestamps[slot], timestamp) <= window && mScores[slot] >= bestScore) {
+                bestScore = mScores[slot];
+                best = i;
+            }
+        }
+        return best >= 0 ? best : indexOfClosest(timestamp);
+    }
+
+    synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * 清空所有帧, 每一帧都会回调 {@link Evictor#onEvicted(Object)}
+     */
+    synchronized void clear() {
+
+        while (mSize > 0) {
+            T frame = frameAt(mHead);
+            mFrames[mHead] = null;
+            mHead = (mHead + 1) % mFrames.length;
+            mSize--;
+            mEvictor.onEvicted(frame);
+        }
+        mHead = 0;
+    }
+
+    private T removeAt(int index) {
+
+        if (index < 0) {
+            return null;
+        }
+        T frame = frameAt(slot(index));
+        // 后面的帧依次前移, 保持时间顺序
+        for (int i = index; i < mSize - 1; i++) {
+            int to = slot(i);
+            int from = slot(i + 1);
+            mFrames[to] = mFrames[from];
+            mTimestamps[to] = mTimestamps[from];
+            mScores[to] = mScores[from];
+        }
+        mFrames[slot(mSize - 1)] = null;
+        mSize--;
+        return frame;
+    }
+
+    private int slot(int index) {
+        return (mHead + index) % mFrames.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T frameAt(int slot) {
+        return (T) mFrames[slot];
+    }
+
+    private static long distance(long a, long b) {
+        return a > b ? a - b : b - a;
+    }
+}
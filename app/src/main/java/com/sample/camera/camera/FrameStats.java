@@ -0,0 +1,128 @@
+package com.sample.camera.camera;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 预览帧统计快照, 百分位基于最近若干帧, 计数从开始预览起累计
+ */
+public final class FrameStats {
+
+    private final long mCompletedCount;
+    private final long mFailedCount;
+    private final long mDroppedCount;
+    /**
+     * 以下样本均已排序, 单位纳秒
+     */
+    private final long[] mIntervals;
+    private final long[] mFrameDurations;
+    private final long[] mExposureTimes;
+
+    FrameStats(long completedCount, long failedCount, long droppedCount,
+               long[] intervals, long[] frameDurations, long[] exposureTimes) {
+        this.mCompletedCount = completedCount;
+        this.mFailedCount = failedCount;
+        this.mDroppedCount = droppedCount;
+        Arrays.sort(intervals);
+        Arrays.sort(frameDurations);
+        Arrays.sort(exposureTimes);
+        this.mIntervals = intervals;
+        this.mFrameDurations = frameDurations;
+        this.mExposureTimes = exposureTimes;
+    }
+
+    /**
+     * 完成的帧数
+     */
+    public long getCompletedCount() {
+        return mCompletedCount;
+    }
+
+    /**
+     * 失败的帧数 (onCaptureFailed)
+     */
+    public long getFailedCount() {
+        return mFailedCount;
+    }
+
+    /**
+     * 根据帧号不连续推断的丢帧数
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * 失败率, 失败帧数 / (完成帧数 + 失败帧数)
+     */
+    public float getFailureRate() {
+        long total = mCompletedCount + mFailedCount;
+        return total == 0 ? 0 : (float) mFailedCount / total;
+    }
+
+    /**
+     * 丢帧率, 丢帧数 / (完成帧数 + 丢帧数)
+     */
+    public float getDropRate() {
+        long total = mCompletedCount + mDroppedCount;
+        return total == 0 ? 0 : (float) mDroppedCount / total;
+    }
+
+    /**
+     * 相邻两帧 SENSOR_TIMESTAMP 间隔的百分位, 没有样本时返回 -1
+     * @param percentile 0 ~ 100
+     */
+    public long getFrameIntervalNs(float percentile) {
+        return percentile(mIntervals, percentile);
+    }
+
+    /**
+     * SENSOR_FRAME_DURATION 的百分位, 没有样本时返回 -1
+     * @param percentile 0 ~ 100
+     */
+    public long getFrameDurationNs(float percentile) {
+        return percentile(mFrameDurations, percentile);
+    }
+
+    /**
+     * SENSOR_EXPOSURE_TIME 的百分位, 没有样本时返回 -1
+     * @param percentile 0 ~ 100
+     */
+    public long getExposureTimeNs(float percentile) {
+        return percentile(mExposureTimes, percentile);
+    }
+
+    /**
+     * 按帧间隔中位数计算的帧率, 没有样本时返回 0
+     */
+    public float getFramesPerSecond() {
+        long median = getFrameIntervalNs(50);
+        return median <= 0 ? 0 : 1_000_000_000f / median;
+    }
+
+    private static long percentile(long[] sorted, float percentile) {
+
+        if (sorted.length == 0) {
+            return -1;
+        }
+        int rank = (int) Math.ceil(percentile / 100f * sorted.length);
+        return sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))];
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "frames=%d failed=%d dropped=%d fps=%.1f interval(p50/p90/p99)=%.1f/%.1f/%.1fms"
+                        + " duration(p50/p99)=%.1f/%.1fms exposure(p50/p99)=%.2f/%.2fms",
+                mCompletedCount, mFailedCount, mDroppedCount, getFramesPerSecond(),
+                millis(getFrameIntervalNs(50)), millis(getFrameIntervalNs(90)), millis(getFrameIntervalNs(99)),
+                millis(getFrameDurationNs(50)), millis(getFrameDurationNs(99)),
+                millis(getExposureTimeNs(50)), millis(getExposureTimeNs(99)));
+    }
+
+    private static float millis(long nanos) {
+        return nanos < 0 ? -1 : nanos / 1_000_000f;
+    }
+}
@@ -0,0 +1,151 @@
+package com.sample.camera.camera;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 预览帧统计, 由 onCaptureCompleted / onCaptureFailed 在相机线程中写入, 任意线程通过 {@link #snapshot()} 读取
+ * 写入路径不加锁也不分配内存: 每个指标保存最近 window 个样本的环形数组, 读取时复制后计算百分位
+ */
+final class FrameStatsCollector {
+
+    /**
+     * 单写多读的样本环形数组
+     */
+    private static final class SampleRing {
+
+        private final AtomicLongArray mSamples;
+        private final AtomicLong mCount = new AtomicLong();
+
+        SampleRing(int window) {
+            this.mSamples = new AtomicLongArray(window);
+        }
+
+        void add(long value) {
+            long index = mCount.get();
+            mSamples.lazySet((int) (index % mSamples.length()), value);
+            mCount.lazySet(index + 1);
+        }
+
+        /**
+         * 复制当前窗口内的样本
+         */
+        long[] copy() {
+
+            int size = (int) Math.min(mCount.get(), mSamples.length());
+            long[] samples = new long[size];
+            for (int i = 0; i < size; i++) {
+                samples[i] = mSamples.get(i);
+            }
+            return samples;
+        }
+
+        void clear() {
+            mCount.set(0);
+        }
+    }
+
+    private final SampleRing mIntervals;
+    private final SampleRing mFrameDurations;
+    private final SampleRing mExposureTimes;
+    private final AtomicLong mCompletedCount = new AtomicLong();
+    private final AtomicLong mFailedCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    /**
+     * 以下只在相机线程中访问
+     */
+    private long mLastFrameNumber = -1;
+    private long mLastTimestamp;
+    /**
+     * 上一帧完成后失败的帧数, 计算丢帧时扣除
+     */
+    private long mPendingFailures;
+    /**
+     * 帧序列中断, 可能在其他线程中设置, 由写入线程清除
+     */
+    private volatile boolean mSequenceBroken;
+
+    /**
+     * @param window 计算百分位使用的最近帧数
+     */
+    FrameStatsCollector(int window) {
+        this.mIntervals = new SampleRing(window);
+        this.mFrameDurations = new SampleRing(window);
+        this.mExposureTimes = new SampleRing(window);
+    }
+
+    /**
+     * 一帧预览完成
+     * @param frameNumber     CaptureResult.getFrameNumber()
+     * @param timestampNs     SENSOR_TIMESTAMP, 没有时传 -1
+     * @param frameDurationNs SENSOR_FRAME_DURATION, 没有时传 -1
+     * @param exposureTimeNs  SENSOR_EXPOSURE_TIME, 没有时传 -1
+     */
+    void onFrameCompleted(long frameNumber, long timestampNs, long frameDurationNs, long exposureTimeNs) {
+
+        mCompletedCount.incrementAndGet();
+        if (mSequenceBroken) {
+            mSequenceBroken = false;
+            mLastFrameNumber = -1;
+            mLastTimestamp = 0;
+            mPendingFailures = 0;
+        }
+        if (mLastFrameNumber >= 0 && frameNumber > mLastFrameNumber) {
+            long gap = frameNumber - mLastFrameNumber - 1 - mPendingFailures;
+            if (gap > 0) {
+                // 帧号不连续, 中间的帧被丢弃
+                mDroppedCount.addAndGet(gap);
+            } else if (frameNumber == mLastFrameNumber + 1 && timestampNs > mLastTimestamp && mLastTimestamp > 0) {
+                // 只统计相邻两帧的时间间隔
+                mIntervals.add(timestampNs - mLastTimestamp);
+            }
+        }
+        if (frameNumber > mLastFrameNumber) {
+            mLastFrameNumber = frameNumber;
+            mLastTimestamp = timestampNs;
+            mPendingFailures = 0;
+        }
+        if (frameDurationNs > 0) {
+            mFrameDurations.add(frameDurationNs);
+        }
+        if (exposureTimeNs > 0) {
+            mExposureTimes.add(exposureTimeNs);
+        }
+    }
+
+    /**
+     * 一帧预览失败, 失败的帧不再计为丢帧
+     */
+    void onFrameFailed() {
+        mFailedCount.incrementAndGet();
+        mPendingFailures++;
+    }
+
+    /**
+     * 帧序列中断, 例如拍照请求插入或重新创建会话, 下一帧不参与间隔和丢帧统计
+     */
+    void resetSequence() {
+        mSequenceBroken = true;
+    }
+
+    /**
+     * 清空所有统计
+     */
+    void reset() {
+        resetSequence();
+        mIntervals.clear();
+        mFrameDurations.clear();
+        mExposureTimes.clear();
+        mCompletedCount.set(0);
+        mFailedCount.set(0);
+        mDroppedCount.set(0);
+    }
+
+    FrameStats snapshot() {
+        return new FrameStats(mCompletedCount.get(), mFailedCount.get(), mDroppedCount.get(),
+                mIntervals.copy(), mFrameDurations.copy(), mExposureTimes.copy());
+    }
+}
@@ -0,0 +1,14 @@
+package com.sample.camera.camera;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 预览帧统计定时回调, 在相机线程中调用
+ */
+public interface FrameStatsListener {
+
+    /**
+     * @param stats 当前统计快照
+     */
+    void onFrameStats(FrameStats stats);
+}
@@ -0,0 +1,116 @@
+package com.sample.camera.camera;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 复用的 JPEG 直接缓冲区池, 避免每次拍照都 new byte[buffer.remaining()]
+ */
+final class JpegBufferPool {
+
+    private final ArrayDeque<ByteBuffer> mFreeBuffers = new ArrayDeque<>();
+    /**
+     * 池中最多缓存的缓冲区数量, 一般与 ImageReader 的 maxImages 一致
+     */
+    private final int mMaxPooled;
+    /**
+     * 单个缓冲区的默认容量, 由 ImageReader 的最大尺寸估算
+     */
+    private final int mBufferSize;
+    /**
+     * 实际分配缓冲区的次数
+     */
+    private final AtomicInteger mAllocationCount = new AtomicInteger();
+    /**
+     * 已借出未归还的缓冲区数量
+     */
+    private final AtomicInteger mOutstandingCount = new AtomicInteger();
+
+    /**
+     * @param bufferSize 单个缓冲区的默认容量
+     * @param maxPooled  池中最多缓存的缓冲区数量
+     */
+    JpegBufferPool(int bufferSize, int maxPooled) {
+        this.mBufferSize = bufferSize;
+        this.mMaxPooled = maxPooled;
+    }
+
+    /**
+     * 根据 ImageReader 输出尺寸估算 JPEG 最大字节数
+     */
+    static int estimateJpegSize(int width, int height) {
+        return width * height;
+    }
+
+    /**
+     * 借出一个容量不小于 minCapacity 的缓冲区, position = 0, limit = minCapacity
+     */
+    ByteBuffer acquire(int minCapacity) {
+
+        ByteBuffer buffer = null;
+        synchronized (mFreeBuffers) {
+            Iterator<ByteBuffer> iterator = mFreeBuffers.iterator();
+            while (iterator.hasNext()) {
+                ByteBuffer candidate = iterator.next();
+                if (candidate.capacity() >= minCapacity) {
+                    iterator.remove();
+                    buffer = candidate;
+                    break;
+                }
+            }
+        }
+        if (null == buffer) {
+            mAllocationCount.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(Math.max(minCapacity, mBufferSize));
+        }
+        mOutstandingCount.incrementAndGet();
+        buffer.clear();
+        buffer.limit(minCapacity);
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区, 超出池容量时丢弃容量最小的那个
+     */
+    void release(ByteBuffer buffer) {
+
+        mOutstandingCount.decrementAndGet();
+        synchronized (mFreeBuffers) {
+            if (mFreeBuffers.size() >= mMaxPooled) {
+                ByteBuffer smallest = buffer;
+                for (ByteBuffer candidate : mFreeBuffers) {
+                    if (candidate.capacity() < smallest.capacity()) {
+                        smallest = candidate;
+                    }
+                }
+                if (smallest == buffer) {
+                    return;
+                }
+                mFreeBuffers.remove(smallest);
+            }
+            mFreeBuffers.push(buffer);
+        }
+    }
+
+    int getBufferSize() {
+        return mBufferSize;
+    }
+
+    /**
+     * 实际分配缓冲区的次数, 稳定运行时应当不再增长
+     */
+    int getAllocationCount() {
+        return mAllocationCount.get();
+    }
+
+    /**
+     * 已借出未归还的缓冲区数量
+     */
+    int getOutstandingCount() {
+        return mOutstandingCount.get();
+    }
+}
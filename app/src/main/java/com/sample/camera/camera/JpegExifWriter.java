@@ -0,0 +1,307 @@
+package com.sample.camera.camera;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 在第一次写入 JPEG 时直接写入 EXIF 方向标签,
+ * 避免 ExifInterface.saveAttributes() 再把整个文件读写一遍; 同时负责读取 EXIF 中的缩略图
+ */
+final class JpegExifWriter {
+
+    private static final int MARKER_PREFIX = 0xFF;
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_TEM = 0x01;
+    private static final int MARKER_RST0 = 0xD0;
+    private static final int MARKER_RST7 = 0xD7;
+
+    private static final int TIFF_MAGIC = 0x002A;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_THUMBNAIL_OFFSET = 0x0201;
+    private static final int TAG_THUMBNAIL_LENGTH = 0x0202;
+    private static final int TYPE_SHORT = 3;
+    private static final int TYPE_LONG = 4;
+    private static final int IFD_ENTRY_SIZE = 12;
+
+    /**
+     * "Exif\0\0" 头
+     */
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+
+    /**
+     * 只包含方向标签的最小 APP1 段长度 (不含 0xFFE1 标记)
+     */
+    private static final int MIN_APP1_LENGTH = 34;
+
+    /**
+     * {@link #findExifSegment(ByteBuffer)} 的返回值: 数据无法解析
+     */
+    private static final int SEGMENT_INVALID = -2;
+    /**
+     * {@link #findExifSegment(ByteBuffer)} 的返回值: 没有 EXIF 段
+     */
+    private static final int SEGMENT_NONE = -1;
+
+    private JpegExifWriter() {
+    }
+
+    /**
+     * 将 EXIF 方向写入 JPEG 数据
+     * 1. 已有 EXIF 且包含方向标签: 直接修改该标签的值
+     * 2. 没有 EXIF: 在 SOI 之后插入一个只包含方向标签的 APP1 段
+     * 3. 已有 EXIF 但没有方向标签, 或数据只读/无法解析: 返回 null, 由调用方回退到 ExifInterface
+     *
+     * @param jpeg        JPEG 数据, position ~ limit 为有效数据, 方法不会修改 position/limit
+     * @param orientation ExifInterface.ORIENTATION_* 方向
+     * @return 按顺序写出即可得到完整文件的数据段, 无法处理时返回 null
+     */
+    static ByteBuffer[] applyOrientation(ByteBuffer jpeg, int orientation) {
+
+        int start = jpeg.position();
+        int segment = findExifSegment(jpeg);
+        if (segment == SEGMENT_INVALID) {
+            return null;
+        }
+        if (segment != SEGMENT_NONE) {
+            int length = segmentLength(jpeg, segment);
+            if (jpeg.isReadOnly() || !patchOrientation(jpeg, segment + 4 + EXIF_HEADER.length, segment + 2 + length, orientation)) {
+                return null;
+            }
+            return new ByteBuffer[]{jpeg.duplicate()};
+        }
+
+        // 没有 EXIF 段, 在 SOI 之后插入
+        ByteBuffer soi = jpeg.duplicate();
+        soi.limit(start + 2);
+        ByteBuffer rest = jpeg.duplicate();
+        rest.position(start + 2);
+        return new ByteBuffer[]{soi, buildOrientationSegment(orientation), rest};
+    }
+
+    /**
+     * 查找 EXIF IFD1 中的 JPEG 缩略图
+     * @param jpeg JPEG 数据, 方法不会修改 position/limit
+     * @return {缩略图在 jpeg 中的绝对位置, 长度}, 没有缩略图时返回 null
+     */
+    static int[] findThumbnail(ByteBuffer jpeg) {
+
+        int segment = findExifSegment(jpeg);
+        if (segment < 0) {
+            return null;
+        }
+        int tiff = segment + 4 + EXIF_HEADER.length;
+        int end = segment + 2 + segmentLength(jpeg, segment);
+        ByteBuffer tiffBuffer = tiffBuffer(jpeg, tiff);
+        if (null == tiffBuffer) {
+            return null;
+        }
+
+        // IFD0 之后是 IFD1 的偏移
+        long ifd0 = tiff + (tiffBuffer.getInt(tiff + 4) & 0xFFFFFFFFL);
+        if (ifd0 + 2 > end) {
+            return null;
+        }
+        int count0 = tiffBuffer.getShort((int) ifd0) & 0xFFFF;
+        long next = ifd0 + 2 + (long) count0 * IFD_ENTRY_SIZE;
+        if (next + 4 > end) {
+            return null;
+        }
+        long ifd1Offset = tiffBuffer.getInt((int) next) & 0xFFFFFFFFL;
+        if (ifd1Offset == 0 || tiff + ifd1Offset + 2 > end) {
+            return null;
+        }
+
+        int ifd1 = (int) (tiff + ifd1Offset);
+        int count = tiffBuffer.getShort(ifd1) & 0xFFFF;
+        long offset = -1;
+        long length = -1;
+        int entry = ifd1 + 2;
+        for (int i = 0; i < count && entry + IFD_ENTRY_SIZE <= end; i++, entry += IFD_ENTRY_SIZE) {
+            int tag = tiffBuffer.getShort(entry) & 0xFFFF;
+            if (tag != TAG_THUMBNAIL_OFFSET && tag != TAG_THUMBNAIL_LENGTH) {
+                continue;
+            }
+            int type = tiffBuffer.getShort(entry + 2) & 0xFFFF;
+            long value;
+            if (type == TYPE_LONG) {
+                value = tiffBuffer.getInt(entry + 8) & 0xFFFFFFFFL;
+            } else if (type == TYPE_SHORT) {
+                value = tiffBuffer.getShort(entry + 8) & 0xFFFF;
+            } else {
+                return null;
+            }
+            if (tag == TAG_THUMBNAIL_OFFSET) {
+                offset = value;
+            } else {
+                length = value;
+            }
+        }
+        if (offset < 0 || length <= 0 || tiff + offset + length > end) {
+            return null;
+        }
+        return new int[]{(int) (tiff + offset), (int) length};
+    }
+
+    /**
+     * 将所有数据段完整写入 channel
+     * @return 写入的字节数
+     */
+    static long writeFully(GatheringByteChannel channel, ByteBuffer[] segments) throws IOException {
+
+        long total = 0;
+        for (ByteBuffer segment : segments) {
+            total += segment.remaining();
+        }
+        long written = 0;
+        while (written < total) {
+            written += channel.write(segments);
+        }
+        return written;
+    }
+
+    /**
+     * 查找 EXIF APP1 段
+     * @return APP1 标记(0xFF)的绝对位置, 没有时返回 {@link #SEGMENT_NONE}, 无法解析时返回 {@link #SEGMENT_INVALID}
+     */
+    private static int findExifSegment(ByteBuffer jpeg) {
+
+        int start = jpeg.position();
+        int limit = jpeg.limit();
+        if (limit - start < 4
+                || (jpeg.get(start) & 0xFF) != MARKER_PREFIX
+                || (jpeg.get(start + 1) & 0xFF) != MARKER_SOI) {
+            return SEGMENT_INVALID;
+        }
+
+        int pos = start + 2;
+        while (pos + 4 <= limit) {
+            if ((jpeg.get(pos) & 0xFF) != MARKER_PREFIX) {
+                return SEGMENT_INVALID;
+            }
+            int marker = jpeg.get(pos + 1) & 0xFF;
+            if (marker == MARKER_PREFIX) {
+                // 填充字节
+                pos++;
+                continue;
+            }
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                break;
+            }
+            if (marker == MARKER_TEM || (marker >= MARKER_RST0 && marker <= MARKER_RST7)) {
+                pos += 2;
+                continue;
+            }
+            int length = segmentLength(jpeg, pos);
+            if (length < 2 || pos + 2 + length > limit) {
+                return SEGMENT_INVALID;
+            }
+            if (marker == MARKER_APP1 && isExifSegment(jpeg, pos + 4, length - 2)) {
+                return pos;
+            }
+            pos += 2 + length;
+        }
+        return SEGMENT_NONE;
+    }
+
+    /**
+     * 段长度, 包含长度字段本身, 不含标记
+     */
+    private static int segmentLength(ByteBuffer jpeg, int marker) {
+        return ((jpeg.get(marker + 2) & 0xFF) << 8) | (jpeg.get(marker + 3) & 0xFF);
+    }
+
+    /**
+     * 按 TIFF 头的字节序读取, 不是合法 TIFF 头时返回 null
+     */
+    private static ByteBuffer tiffBuffer(ByteBuffer jpeg, int tiff) {
+
+        ByteOrder order;
+        if (jpeg.get(tiff) == 'I' && jpeg.get(tiff + 1) == 'I') {
+            order = ByteOrder.LITTLE_ENDIAN;
+        } else if (jpeg.get(tiff) == 'M' && jpeg.get(tiff + 1) == 'M') {
+            order = ByteOrder.BIG_ENDIAN;
+        } else {
+            return null;
+        }
+        ByteBuffer tiffBuffer = jpeg.duplicate().order(order);
+        if ((tiffBuffer.getShort(tiff + 2) & 0xFFFF) != TIFF_MAGIC) {
+            return null;
+        }
+        return tiffBuffer;
+    }
+
+    private static boolean isExifSegment(ByteBuffer jpeg, int offset, int length) {
+
+        if (length < EXIF_HEADER.length + 8) {
+            return false;
+        }
+        for (int i = 0; i < EXIF_HEADER.length; i++) {
+            if (jpeg.get(offset + i) != EXIF_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在 TIFF 结构的 IFD0 中查找方向标签并修改
+     * @param tiff TIFF 头起始位置
+     * @param end  APP1 段结束位置
+     */
+    private static boolean patchOrientation(ByteBuffer jpeg, int tiff, int end, int orientation) {
+
+        ByteBuffer tiffBuffer = tiffBuffer(jpeg, tiff);
+        if (null == tiffBuffer) {
+            return false;
+        }
+        long ifd0 = tiff + (tiffBuffer.getInt(tiff + 4) & 0xFFFFFFFFL);
+        if (ifd0 + 2 > end) {
+            return false;
+        }
+        int count = tiffBuffer.getShort((int) ifd0) & 0xFFFF;
+        int entry = (int) ifd0 + 2;
+        for (int i = 0; i < count && entry + IFD_ENTRY_SIZE <= end; i++, entry += IFD_ENTRY_SIZE) {
+            if ((tiffBuffer.getShort(entry) & 0xFFFF) == TAG_ORIENTATION) {
+                if ((tiffBuffer.getShort(entry + 2) & 0xFFFF) != TYPE_SHORT || tiffBuffer.getInt(entry + 4) != 1) {
+                    return false;
+                }
+                tiffBuffer.putShort(entry + 8, (short) orientation);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 生成只包含方向标签的 APP1 段 (big-endian TIFF)
+     */
+    private static ByteBuffer buildOrientationSegment(int orientation) {
+
+        ByteBuffer segment = ByteBuffer.allocate(MIN_APP1_LENGTH + 2).order(ByteOrder.BIG_ENDIAN);
+        segment.put((byte) MARKER_PREFIX).put((byte) MARKER_APP1);
+        segment.putShort((short) MIN_APP1_LENGTH);
+        segment.put(EXIF_HEADER);
+        // TIFF header
+        segment.put((byte) 'M').put((byte) 'M');
+        segment.putShort((short) TIFF_MAGIC);
+        segment.putInt(8);
+        // IFD0, 只有一个方向标签
+        segment.putShort((short) 1);
+        segment.putShort((short) TAG_ORIENTATION);
+        segment.putShort((short) TYPE_SHORT);
+        segment.putInt(1);
+        segment.putShort((short) orientation);
+        segment.putShort((short) 0);
+        // next IFD
+        segment.putInt(0);
+        segment.flip();
+        return segment;
+    }
+}
@@ -0,0 +1,103 @@
+package com.sample.camera.camera;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 无锁耗时直方图, 以微秒为单位按对数线性分桶, 相对误差不超过 1/16
+ * 记录时只有原子加操作, 不分配内存, 可以在任意线程中并发记录
+ */
+final class LatencyHistogram {
+
+    /**
+     * 每个 2 的幂区间内的子桶数为 2^SUB_BUCKET_BITS
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mMaxMicros = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     * @param nanos 耗时, 纳秒
+     */
+    void record(long nanos) {
+
+        long micros = Math.max(0, nanos / 1000);
+        mBuckets.incrementAndGet(bucketIndex(micros));
+        mCount.incrementAndGet();
+        long max = mMaxMicros.get();
+        while (micros > max && !mMaxMicros.compareAndSet(max, micros)) {
+            max = mMaxMicros.get();
+        }
+    }
+
+    long getCount() {
+        return mCount.get();
+    }
+
+    long getMaxMicros() {
+        return mMaxMicros.get();
+    }
+
+    /**
+     * 百分位耗时
+     * @param percentile 0 ~ 100
+     * @return 微秒, 没有记录时返回 0
+     */
+    long getPercentileMicros(double percentile) {
+
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100d * count);
+        rank = Math.min(Math.max(rank, 1), count);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), mMaxMicros.get());
+            }
+        }
+        return mMaxMicros.get();
+    }
+
+    void reset() {
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mMaxMicros.set(0);
+    }
+
+    static int bucketIndex(long value) {
+
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * 桶内的最大值
+     */
+    static long bucketUpperBound(int index) {
+
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long subBucket = index % SUB_BUCKET_COUNT;
+        long shift = exponent - SUB_BUCKET_BITS;
+        return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+}
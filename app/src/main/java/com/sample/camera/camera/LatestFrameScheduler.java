@@ -0,0 +1,120 @@
+package com.sample.camera.camera;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 只保留最新一帧的调度器
+ * 处理线程忙时新到的帧会替换掉还没开始处理的旧帧, 被替换的帧立即释放, 提交方永远不会被阻塞
+ */
+final class LatestFrameScheduler<T> {
+
+    /**
+     * 帧的处理和释放
+     */
+    interface Consumer<T> {
+
+        /**
+         * 处理一帧, 在 executor 线程中调用
+         */
+        void process(T frame);
+
+        /**
+         * 释放一帧, 处理完成或被丢弃时调用
+         */
+        void release(T frame);
+    }
+
+    private final Executor mExecutor;
+    private final Consumer<T> mConsumer;
+    private final AtomicReference<T> mPending = new AtomicReference<>();
+    private final AtomicBoolean mDraining = new AtomicBoolean();
+    private final AtomicLong mProcessedCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+
+    private final Runnable mDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    LatestFrameScheduler(Executor executor, Consumer<T> consumer) {
+        this.mExecutor = executor;
+        this.mConsumer = consumer;
+    }
+
+    /**
+     * 提交一帧, 替换掉还没开始处理的帧
+     */
+    void offer(T frame) {
+
+        T previous = mPending.getAndSet(frame);
+        if (null != previous) {
+            mDroppedCount.incrementAndGet();
+            mConsumer.release(previous);
+        }
+        if (mDraining.compareAndSet(false, true)) {
+            mExecutor.execute(mDrainTask);
+        }
+    }
+
+    /**
+     * 丢弃还没开始处理的帧
+     */
+    void clear() {
+
+        T pending = mPending.getAndSet(null);
+        if (null != pending) {
+            mDroppedCount.incrementAndGet();
+            mConsumer.release(pending);
+        }
+    }
+
+    long getProcessedCount() {
+        return mProcessedCount.get();
+    }
+
+    long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    private void drain() {
+
+        boolean completed = false;
+        try {
+            drainPending();
+            completed = true;
+        } finally {
+            if (!completed) {
+                // 处理时抛出异常, 放弃处理权, 否则之后提交的帧都不会再处理
+                mDraining.set(false);
+            }
+        }
+    }
+
+    private void drainPending() {
+
+        while (true) {
+            T frame = mPending.getAndSet(null);
+            if (null == frame) {
+                mDraining.set(false);
+                // 释放标记后可能又有新帧提交, 重新抢占处理权
+                if (null == mPending.get() || !mDraining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                mConsumer.process(frame);
+                mProcessedCount.incrementAndGet();
+            } finally {
+                mConsumer.release(frame);
+            }
+        }
+    }
+}
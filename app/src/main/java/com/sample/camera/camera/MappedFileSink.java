@@ -0,0 +1,68 @@
+package com.sample.camera.camera;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 通过内存映射写入文件, 先按总长度扩展文件再把数据段复制到映射区域,
+ * 映射区域在 GC 时才解除映射, 适合写入频率不高的大文件
+ */
+public final class MappedFileSink implements CaptureSink {
+
+    private final int mDurability;
+
+    /**
+     * 使用 {@link #DURABILITY_FDATASYNC}
+     */
+    public MappedFileSink() {
+        this(DURABILITY_FDATASYNC);
+    }
+
+    /**
+     * @param durability DURABILITY_*
+     */
+    public MappedFileSink(int durability) {
+        this.mDurability = FileChannelSink.checkDurability(durability);
+    }
+
+    @Override
+    public long write(File file, ByteBuffer[] segments) throws IOException {
+
+        long total = 0;
+        for (ByteBuffer segment : segments) {
+            total += segment.remaining();
+        }
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            output.setLength(total);
+            FileChannel channel = output.getChannel();
+            if (total > 0) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, total);
+                for (ByteBuffer segment : segments) {
+                    mapped.put(segment);
+                }
+                if (mDurability != DURABILITY_NONE) {
+                    // msync, 只同步数据
+                    mapped.force();
+                }
+            }
+            if (mDurability == DURABILITY_FSYNC) {
+                channel.force(true);
+            }
+            return total;
+        } finally {
+            output.close();
+        }
+    }
+
+    @Override
+    public boolean writesFiles() {
+        return true;
+    }
+}
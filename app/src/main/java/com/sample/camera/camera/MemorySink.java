@@ -0,0 +1,52 @@
+package com.sample.camera.camera;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 不写入文件, 把完整的图片数据(已写入 EXIF 方向)交给调用方, 例如直接上传,
+ * 没有持久化, 也不会记录到 {@link CaptureStore} 索引
+ */
+public final class MemorySink implements CaptureSink {
+
+    public interface Receiver {
+
+        /**
+         * 在写入线程中调用
+         * @param name 分配的文件名
+         * @param data 图片数据, 之后归调用方所有
+         */
+        void onReceived(String name, byte[] data);
+    }
+
+    private final Receiver mReceiver;
+
+    public MemorySink(Receiver receiver) {
+        this.mReceiver = receiver;
+    }
+
+    @Override
+    public long write(File file, ByteBuffer[] segments) {
+
+        int total = 0;
+        for (ByteBuffer segment : segments) {
+            total += segment.remaining();
+        }
+        byte[] data = new byte[total];
+        int offset = 0;
+        for (ByteBuffer segment : segments) {
+            int length = segment.remaining();
+            segment.get(data, offset, length);
+            offset += length;
+        }
+        mReceiver.onReceived(file.getName(), data);
+        return total;
+    }
+
+    @Override
+    public boolean writesFiles() {
+        return false;
+    }
+}
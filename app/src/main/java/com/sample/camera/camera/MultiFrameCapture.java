@@ -0,0 +1,426 @@
+package com.sample.camera.camera;
+
+import android.graphics.ImageFormat;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CaptureFailure;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.hardware.camera2.params.InputConfiguration;
+import android.media.Image;
+import android.media.ImageReader;
+import android.media.ImageWriter;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Size;
+import android.view.Surface;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 多帧降噪拍照, 一次 captureBurst 输出 N 帧 YUV_420_888, 复制到复用的 NV21 环形缓冲区后
+ * 由 {@link MultiFrameMerger} 在独立线程池中对齐合成, 只编码一次.
+ * 相机支持 YUV 重处理时通过 ImageWriter 把合成结果送回 HAL, 由 ISP 编码为 JPEG,
+ * 否则由调用方在写入线程中软件编码
+ * 除合成外所有方法和回调都在相机线程中执行
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+final class MultiFrameCapture {
+
+    /**
+     * 最多合成的帧数
+     */
+    static final int MAX_FRAME_COUNT = 8;
+    /**
+     * 每帧到达后立即复制并关闭, 不需要更多的 Image
+     */
+    private static final int MAX_IMAGES = 3;
+
+    interface Callback {
+
+        /**
+         * 所有帧的请求已完成, 可以恢复预览, 合成在之后进行
+         */
+        void onBurstCompleted();
+
+        /**
+         * 合成完成, 在相机线程中调用
+         * @param nv21 合成结果, 之后归调用方所有, 失败时为 null
+         */
+        void onMerged(byte[] nv21, int width, int height);
+    }
+
+    private final Size mSize;
+    private final int mFrameCount;
+    private final boolean mReprocess;
+    private final ImageReader mImageReader;
+    private final YuvFrame mYuvFrame = new YuvFrame();
+    /**
+     * 每帧的 NV21 数据, 第一次拍照时分配, 之后复用
+     */
+    private final byte[][] mFrames;
+    private final long[] mFrameTimestamps;
+    private final ForkJoinPool mPool;
+    private final MultiFrameMerger mMerger;
+    private final List<TotalCaptureResult> mResults = new ArrayList<>();
+
+    private Handler mHandler;
+    private Callback mCallback;
+    /**
+     * 重处理输入, 会话不支持重处理时为 null
+     */
+    private ImageWriter mImageWriter;
+    /**
+     * 参考帧的结果, 重处理请求以此创建
+     */
+    private TotalCaptureResult mReference;
+    private int mReceived;
+    private int mLost;
+    private boolean mSequenceDone;
+    private boolean mMerging;
+    private boolean mReleased;
+    /**
+     * 从 capture 到回调 onMerged 之间为 true
+     */
+    private volatile boolean mBusy;
+
+    /**
+     * @param size       YUV 输出尺寸
+     * @param frameCount 合成帧数, 2 ~ {@link #MAX_FRAME_COUNT}
+     * @param reprocess  使用 YUV 重处理编码, 需要相机支持该尺寸的重处理
+     */
+    MultiFrameCapture(Size size, int frameCount, boolean reprocess) {
+
+        if (frameCount < 2 || frameCount > MAX_FRAME_COUNT) {
+            throw new IllegalArgumentException("frameCount must be in [2, " + MAX_FRAME_COUNT + "]");
+        }
+        this.mSize = size;
+        this.mFrameCount = frameCount;
+        this.mReprocess = reprocess;
+        this.mImageReader = ImageReader.newInstance(size.getWidth(), size.getHeight(), ImageFormat.YUV_420_888, MAX_IMAGES);
+        this.mFrames = new byte[frameCount][];
+        this.mFrameTimestamps = new long[frameCount];
+        this.mPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        this.mMerger = new MultiFrameMerger(mPool);
+    }
+
+    /**
+     * 参数一致时可以复用
+     */
+    boolean matches(Size size, int frameCount, boolean reprocess) {
+        return mSize.equals(size) && mFrameCount == frameCount && mReprocess == reprocess;
+    }
+
+    /**
+     * @param handler 相机线程的 Handler
+     */
+    void attach(Handler handler) {
+        this.mHandler = handler;
+        mImageReader.setOnImageAvailableListener(mOnImageAvailableListener, handler);
+    }
+
+    Surface getSurface() {
+        return mImageReader.getSurface();
+    }
+
+    boolean isReprocess() {
+        return mReprocess;
+    }
+
+    /**
+     * 上一次拍照还没有合成完成
+     */
+    boolean isBusy() {
+        return mBusy;
+    }
+
+    /**
+     * 以 request 连续拍摄 N 帧
+     * @param request 输出到 {@link #getSurface()} 的请求
+     * @return 上一次拍照还没有完成时返回 false
+     */
+    boolean capture(CameraCaptureSession session, CaptureRequest request, Callback callback) throws CameraAccessException {
+
+        if (mBusy || mReleased) {
+            return false;
+        }
+        mCallback = callback;
+        mResults.clear();
+        mReference = null;
+        mReceived = 0;
+        mLost = 0;
+        mSequenceDone = false;
+        mMerging = false;
+        session.captureBurst(Collections.nCopies(mFrameCount, request), mBurstCallback, mHandler);
+        mBusy = true;
+        return true;
+    }
+
+    /**
+     * 创建支持 YUV 重处理的会话, 输入尺寸与输出尺寸一致
+     * @param outputs 会话的全部输出, 需要包含 {@link #getSurface()}
+     */
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    void createReprocessableSession(CameraDevice device, List<Surface> outputs,
+                                    CameraCaptureSession.StateCallback callback, Handler handler) throws CameraAccessException {
+        device.createReprocessableCaptureSession(
+                new InputConfiguration(mSize.getWidth(), mSize.getHeight(), ImageFormat.YUV_420_888),
+                outputs, callback, handler);
+    }
+
+    /**
+     * 会话创建完成, 重处理会话时创建输入 ImageWriter
+     */
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    void onSessionConfigured(CameraCaptureSession session) {
+
+        closeImageWriter();
+        if (mReprocess && session.isReprocessable()) {
+            mImageWriter = ImageWriter.newInstance(session.getInputSurface(), 1);
+        }
+    }
+
+    /**
+     * 会话关闭后不能再重处理
+     */
+    void onSessionClosed() {
+        closeImageWriter();
+    }
+
+    /**
+     * 当前合成结果可以交给 HAL 重处理
+     */
+    boolean canReprocess() {
+        return null != mImageWriter && null != mReference;
+    }
+
+    /**
+     * 把合成结果写入重处理输入, 返回以参考帧结果创建的重处理请求, 调用方添加输出后提交
+     * @param nv21 {@link Callback#onMerged(byte[], int, int)} 的结果
+     */
+    @RequiresApi(api = Build.VERSION_CODES.M)
+    CaptureRequest.Builder createReprocessRequest(CameraDevice device, byte[] nv21) throws CameraAccessException {
+
+        Image input = mImageWriter.dequeueInputImage();
+        try {
+            writeNV21(nv21, input);
+            // 输入图像的时间戳需要与创建请求的结果一致
+            Long timestamp = mReference.get(CaptureResult.SENSOR_TIMESTAMP);
+            if (null != timestamp) {
+                input.setTimestamp(timestamp);
+            }
+        } catch (RuntimeException e) {
+            input.close();
+            throw e;
+        }
+        mImageWriter.queueInputImage(input);
+
+        CaptureRequest.Builder builder = device.createReprocessCaptureRequest(mReference);
+        // 告诉 HAL 输入已经是 N 帧的平均, 噪声按曝光增加 N 倍处理
+        builder.set(CaptureRequest.REPROCESS_EFFECTIVE_EXPOSURE_FACTOR, (float) mFrameCount);
+        builder.set(CaptureRequest.NOISE_REDUCTION_MODE, CaptureRequest.NOISE_REDUCTION_MODE_HIGH_QUALITY);
+        builder.set(CaptureRequest.EDGE_MODE, CaptureRequest.EDGE_MODE_HIGH_QUALITY);
+        return builder;
+    }
+
+    /**
+     * 关闭输出和线程池, 正在进行的合成结果会被丢弃
+     */
+    void release() {
+
+        mReleased = true;
+        mBusy = false;
+        mImageReader.close();
+        closeImageWriter();
+        mPool.shutdown();
+    }
+
+    private void closeImageWriter() {
+
+        if (null != mImageWriter) {
+            mImageWriter.close();
+            mImageWriter = null;
+        }
+    }
+
+    private final ImageReader.OnImageAvailableListener mOnImageAvailableListener
+            = new ImageReader.OnImageAvailableListener() {
+
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image = reader.acquireNextImage();
+            if (null == image) {
+                return;
+            }
+            try {
+                if (mBusy && !mMerging && mReceived < mFrameCount) {
+                    mFrames[mReceived] = mYuvFrame.set(image).toNV21(mFrames[mReceived]);
+                    mFrameTimestamps[mReceived] = image.getTimestamp();
+                    mReceived++;
+                }
+            } finally {
+                image.close();
+            }
+            mergeIfReady();
+        }
+    };
+
+    /**
+     * 拍摄失败的帧不参与合成
+     */
+    private final CameraCaptureSession.CaptureCallback mBurstCallback = new CameraCaptureSession.CaptureCallback() {
+
+        @Override
+        public void onCaptureCompleted(@NonNull CameraCaptureSession session,
+                                       @NonNull CaptureRequest request,
+                                       @NonNull TotalCaptureResult result) {
+            mResults.add(result);
+        }
+
+        @Override
+        public void onCaptureBufferLost(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request,
+                                        @NonNull Surface target, long frameNumber) {
+            if (target == mImageReader.getSurface()) {
+                mLost++;
+            }
+        }
+
+        @Override
+        public void onCaptureSequenceCompleted(@NonNull CameraCaptureSession session, int sequenceId, long frameNumber) {
+            onSequenceDone();
+        }
+
+        @Override
+        public void onCaptureSequenceAborted(@NonNull CameraCaptureSession session, int sequenceId) {
+            onSequenceDone();
+        }
+
+        @Override
+        public void onCaptureFailed(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request,
+                                    @NonNull CaptureFailure failure) {
+            // 失败的帧没有结果, 也不计入等待的图像数
+        }
+    };
+
+    private void onSequenceDone() {
+
+        if (!mBusy) {
+            return;
+        }
+        mSequenceDone = true;
+        if (null != mCallback) {
+            mCallback.onBurstCompleted();
+        }
+        mergeIfReady();
+    }
+
+    /**
+     * 请求全部完成且成功帧的图像都已到达时开始合成
+     */
+    private void mergeIfReady() {
+
+        if (!mBusy || mMerging || !mSequenceDone || mReceived < mResults.size() - mLost) {
+            return;
+        }
+        if (mReceived == 0) {
+            finish(null);
+            return;
+        }
+        mMerging = true;
+        mReference = findResult(mFrameTimestamps[0]);
+
+        final int count = mReceived;
+        final int width = mSize.getWidth();
+        final int height = mSize.getHeight();
+        final Handler handler = mHandler;
+        mPool.execute(new Runnable() {
+            @Override
+            public void run() {
+                byte[] merged = new byte[width * height * 3 / 2];
+                try {
+                    mMerger.merge(mFrames, count, width, height, merged);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    merged = null;
+                }
+                final byte[] result = merged;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        finish(result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void finish(byte[] nv21) {
+
+        if (mReleased) {
+            return;
+        }
+        mBusy = false;
+        mMerging = false;
+        if (null != mCallback) {
+            mCallback.onMerged(nv21, mSize.getWidth(), mSize.getHeight());
+        }
+    }
+
+    /**
+     * 与参考帧时间戳一致的结果, 没有时取第一个结果
+     */
+    private TotalCaptureResult findResult(long timestamp) {
+
+        for (TotalCaptureResult result : mResults) {
+            Long sensorTimestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
+            if (null != sensorTimestamp && sensorTimestamp == timestamp) {
+                return result;
+            }
+        }
+        return mResults.isEmpty() ? null : mResults.get(0);
+    }
+
+    /**
+     * 按输入图像的 rowStride / pixelStride 写入 NV21 数据
+     */
+    private static void writeNV21(byte[] nv21, Image image) {
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        Image.Plane[] planes = image.getPlanes();
+
+        ByteBuffer yBuffer = planes[0].getBuffer();
+        int yRowStride = planes[0].getRowStride();
+        for (int row = 0; row < height; row++) {
+            yBuffer.position(row * yRowStride);
+            yBuffer.put(nv21, row * width, width);
+        }
+
+        ByteBuffer uBuffer = planes[1].getBuffer();
+        ByteBuffer vBuffer = planes[2].getBuffer();
+        int uRowStride = planes[1].getRowStride();
+        int uPixelStride = planes[1].getPixelStride();
+        int vRowStride = planes[2].getRowStride();
+        int vPixelStride = planes[2].getPixelStride();
+        int frameSize = width * height;
+        for (int row = 0; row < height / 2; row++) {
+            int offset = frameSize + row * width;
+            for (int col = 0; col < width / 2; col++) {
+                // NV21 色度为 VU 交错
+                vBuffer.put(row * vRowStride + col * vPixelStride, nv21[offset + col * 2]);
+                uBuffer.put(row * uRowStride + col * uPixelStride, nv21[offset + col * 2 + 1]);
+            }
+        }
+    }
+}
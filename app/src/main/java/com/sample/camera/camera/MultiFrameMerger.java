@@ -0,0 +1,460 @@
+package com.sample.camera.camera;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 多帧降噪合成, 输入输出均为 NV21, 第一帧为参考帧
+ * 1. 对齐: 在 1/4 缩小的亮度图上搜索全局平移, 再在原图上细化
+ * 2. 分块权重: 每个 16x16 块与参考帧的平均差异低于噪声阈值时参与合成, 高于两倍阈值时不参与(运动物体),
+ * 噪声阈值取该帧所有块差异的中位数, 块之间的权重双线性插值, 避免块边界
+ * 3. 合成: 按权重平均亮度和色度
+ * 每一步都按行分块交给 ForkJoinPool 并行执行
+ */
+final class MultiFrameMerger {
+
+    /**
+     * 分块大小, 偶数, 色度块为一半
+     */
+    static final int TILE_SIZE = 16;
+    /**
+     * 对齐时缩小的倍数和缩小图上的搜索半径, 原图上最大对齐 32 像素
+     */
+    private static final int ALIGN_SCALE = 4;
+    private static final int ALIGN_RADIUS = 8;
+    /**
+     * 原图上细化对齐的搜索半径
+     */
+    private static final int REFINE_RADIUS = 2;
+    /**
+     * 计算差异时的采样步长
+     */
+    private static final int COARSE_STEP = 4;
+    private static final int REFINE_STEP = 8;
+    /**
+     * 权重定点数的 1.0
+     */
+    private static final int WEIGHT_ONE = 256;
+    /**
+     * 噪声阈值下限, 避免几乎无噪声时把微小差异当作运动
+     */
+    private static final int MIN_THRESHOLD = 4;
+    /**
+     * 每个任务最多处理的行数
+     */
+    private static final int TASK_ROWS = 16;
+
+    private final ForkJoinPool mPool;
+
+    /**
+     * @param pool 并行执行的线程池
+     */
+    MultiFrameMerger(ForkJoinPool pool) {
+        this.mPool = pool;
+    }
+
+    /**
+     * 合成多帧
+     * @param frames 帧数据, 第一帧为参考帧, 只读
+     * @param count  参与合成的帧数, 不超过 frames.length
+     * @param width  宽, 偶数
+     * @param height 高, 偶数
+     * @param out    合成结果, 长度不小于 width * height * 3 / 2, 不能是输入帧之一
+     */
+    void merge(byte[][] frames, int count, int width, int height, byte[] out) {
+
+        int frameSize = width * height * 3 / 2;
+        if (count <= 0 || count > frames.length || (width & 1) != 0 || (height & 1) != 0 || out.length < frameSize) {
+            throw new IllegalArgumentException("Invalid frames: " + count + " " + width + "x" + height);
+        }
+        if (count == 1) {
+            System.arraycopy(frames[0], 0, out, 0, frameSize);
+            return;
+        }
+
+        int[] offsets = align(frames, count, width, height);
+        int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+        int[][] weights = new int[count][tilesX * tilesY];
+        run(new DiffTask(frames, count, width, height, offsets, tilesX, weights, 0, tilesY));
+        for (int i = 1; i < count; i++) {
+            toWeights(weights[i]);
+        }
+        // 每一列在块中心坐标系下的左侧块和 8 位小数位置, 所有行共用
+        int[] columnTiles = new int[width];
+        int[] columnFractions = new int[width];
+        for (int x = 0; x < width; x++) {
+            int fx = ((x - TILE_SIZE / 2) << 8) / TILE_SIZE;
+            columnTiles[x] = clamp(fx >> 8, tilesX - 1);
+            columnFractions[x] = fx < 0 ? 0 : fx & 0xFF;
+        }
+        run(new MergeTask(frames, count, width, height, offsets, tilesX, tilesY, weights, columnTiles, columnFractions,
+                out, 0, height / 2));
+    }
+
+    private void run(RecursiveAction task) {
+
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            mPool.invoke(task);
+        }
+    }
+
+    /**
+     * 对齐每一帧
+     * @return 每帧相对参考帧的平移, 下标 2i 为 x, 2i + 1 为 y
+     */
+    int[] align(final byte[][] frames, int count, final int width, final int height) {
+
+        final int[] offsets = new int[count * 2];
+        final int smallWidth = width / ALIGN_SCALE;
+        final int smallHeight = height / ALIGN_SCALE;
+        final byte[] reference = downscale(frames[0], width, height);
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (int i = 1; i < count; i++) {
+            final int index = i;
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    byte[] frame = frames[index];
+                    byte[] small = downscale(frame, width, height);
+                    long best = Long.MAX_VALUE;
+                    int bestX = 0;
+                    int bestY = 0;
+                    for (int dy = -ALIGN_RADIUS; dy <= ALIGN_RADIUS; dy++) {
+                        for (int dx = -ALIGN_RADIUS; dx <= ALIGN_RADIUS; dx++) {
+                            long cost = difference(reference, small, smallWidth, smallHeight,
+                                    dx, dy, ALIGN_RADIUS, COARSE_STEP);
+                            if (cost < best || (cost == best && Math.abs(dx) + Math.abs(dy) < Math.abs(bestX) + Math.abs(bestY))) {
+                                best = cost;
+                                bestX = dx;
+                                bestY = dy;
+                            }
+                        }
+                    }
+                    int margin = ALIGN_RADIUS * ALIGN_SCALE + REFINE_RADIUS;
+                    int centerX = bestX * ALIGN_SCALE;
+                    int centerY = bestY * ALIGN_SCALE;
+                    best = Long.MAX_VALUE;
+                    for (int dy = centerY - REFINE_RADIUS; dy <= centerY + REFINE_RADIUS; dy++) {
+                        for (int dx = centerX - REFINE_RADIUS; dx <= centerX + REFINE_RADIUS; dx++) {
+                            long cost = difference(frames[0], frame, width, height, dx, dy, margin, REFINE_STEP);
+                            // 与粗搜索一样, 差异相同时取平移最小的
+                            if (cost < best || (cost == best && Math.abs(dx) + Math.abs(dy) < Math.abs(bestX) + Math.abs(bestY))) {
+                                best = cost;
+                                bestX = dx;
+                                bestY = dy;
+                            }
+                        }
+                    }
+                    offsets[index * 2] = bestX;
+                    offsets[index * 2 + 1] = bestY;
+                }
+            });
+        }
+        if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            final List<RecursiveAction> all = tasks;
+            mPool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(all);
+                }
+            });
+        }
+        return offsets;
+    }
+
+    /**
+     * 亮度平面按 {@link #ALIGN_SCALE} 缩小
+     */
+    private static byte[] downscale(byte[] frame, int width, int height) {
+
+        int smallWidth = width / ALIGN_SCALE;
+        int smallHeight = height / ALIGN_SCALE;
+        byte[] small = new byte[smallWidth * smallHeight];
+        int area = ALIGN_SCALE * ALIGN_SCALE;
+        for (int y = 0; y < smallHeight; y++) {
+            for (int x = 0; x < smallWidth; x++) {
+                int sum = 0;
+                for (int sy = 0; sy < ALIGN_SCALE; sy++) {
+                    int row = (y * ALIGN_SCALE + sy) * width + x * ALIGN_SCALE;
+                    for (int sx = 0; sx < ALIGN_SCALE; sx++) {
+                        sum += frame[row + sx] & 0xFF;
+                    }
+                }
+                small[y * smallWidth + x] = (byte) (sum / area);
+            }
+        }
+        return small;
+    }
+
+    /**
+     * 平移 (dx, dy) 后两幅亮度图的平均绝对差, 只比较边缘 margin 以内的区域
+     */
+    private static long difference(byte[] reference, byte[] frame, int width, int height,
+                                   int dx, int dy, int margin, int step) {
+
+        long sum = 0;
+        long samples = 0;
+        for (int y = margin; y < height - margin; y += step) {
+            int refRow = y * width;
+            int frameRow = (y + dy) * width + dx;
+            for (int x = margin; x < width - margin; x += step) {
+                sum += Math.abs((reference[refRow + x] & 0xFF) - (frame[frameRow + x] & 0xFF));
+                samples++;
+            }
+        }
+        return samples == 0 ? 0 : (sum << 8) / samples;
+    }
+
+    /**
+     * 将块差异转换为权重: 不超过阈值为 1, 超过两倍阈值为 0, 中间线性过渡
+     */
+    private static void toWeights(int[] diffs) {
+
+        // 差异不超过 255, 用直方图求中位数
+        int[] histogram = new int[256];
+        for (int diff : diffs) {
+            histogram[Math.min(255, diff)]++;
+        }
+        int median = 0;
+        int seen = 0;
+        while (median < 255 && (seen += histogram[median]) * 2 < diffs.length) {
+            median++;
+        }
+        int threshold = Math.max(MIN_THRESHOLD, median + median / 2);
+        for (int i = 0; i < diffs.length; i++) {
+            int diff = diffs[i];
+            if (diff <= threshold) {
+                diffs[i] = WEIGHT_ONE;
+            } else if (diff >= threshold * 2) {
+                diffs[i] = 0;
+            } else {
+                diffs[i] = WEIGHT_ONE * (threshold * 2 - diff) / threshold;
+            }
+        }
+    }
+
+    private static int clamp(int value, int max) {
+        return value < 0 ? 0 : value > max ? max : value;
+    }
+
+    /**
+     * 计算每一帧每个块与参考帧的平均绝对差, 结果写入 diffs[frame][tile], 参考帧写入权重 1
+     */
+    private static final class DiffTask extends RecursiveAction {
+
+        private final byte[][] mFrames;
+        private final int mCount;
+        private final int mWidth;
+        private final int mHeight;
+        private final int[] mOffsets;
+        private final int mTilesX;
+        private final int[][] mDiffs;
+        private final int mFromTileRow;
+        private final int mToTileRow;
+
+        DiffTask(byte[][] frames, int count, int width, int height, int[] offsets, int tilesX,
+                 int[][] diffs, int fromTileRow, int toTileRow) {
+            this.mFrames = frames;
+            this.mCount = count;
+            this.mWidth = width;
+            this.mHeight = height;
+            this.mOffsets = offsets;
+            this.mTilesX = tilesX;
+            this.mDiffs = diffs;
+            this.mFromTileRow = fromTileRow;
+            this.mToTileRow = toTileRow;
+        }
+
+        @Override
+        protected void compute() {
+
+            if ((mToTileRow - mFromTileRow) * TILE_SIZE > TASK_ROWS) {
+                int middle = (mFromTileRow + mToTileRow) >>> 1;
+                invokeAll(new DiffTask(mFrames, mCount, mWidth, mHeight, mOffsets, mTilesX, mDiffs, mFromTileRow, middle),
+                        new DiffTask(mFrames, mCount, mWidth, mHeight, mOffsets, mTilesX, mDiffs, middle, mToTileRow));
+                return;
+            }
+
+            byte[] reference = mFrames[0];
+            for (int ty = mFromTileRow; ty < mToTileRow; ty++) {
+                int y0 = ty * TILE_SIZE;
+                int y1 = Math.min(mHeight, y0 + TILE_SIZE);
+                for (int tx = 0; tx < mTilesX; tx++) {
+                    int x0 = tx * TILE_SIZE;
+                    int x1 = Math.min(mWidth, x0 + TILE_SIZE);
+                    int tile = ty * mTilesX + tx;
+                    mDiffs[0][tile] = WEIGHT_ONE;
+                    for (int i = 1; i < mCount; i++) {
+                        byte[] frame = mFrames[i];
+                        int dx = mOffsets[i * 2];
+                        int dy = mOffsets[i * 2 + 1];
+                        int sum = 0;
+                        for (int y = y0; y < y1; y++) {
+                            int refRow = y * mWidth;
+                            int frameRow = clamp(y + dy, mHeight - 1) * mWidth;
+                            for (int x = x0; x < x1; x++) {
+                                sum += Math.abs((reference[refRow + x] & 0xFF)
+                                        - (frame[frameRow + clamp(x + dx, mWidth - 1)] & 0xFF));
+                            }
+                        }
+                        mDiffs[i][tile] = sum / ((y1 - y0) * (x1 - x0));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 按行合成, 每次处理两行亮度和对应的一行色度, 行号为色度行
+     */
+    private static final class MergeTask extends RecursiveAction {
+
+        private final byte[][] mFrames;
+        private final int mCount;
+        private final int mWidth;
+        private final int mHeight;
+        private final int[] mOffsets;
+        private final int mTilesX;
+        private final int mTilesY;
+        private final int[][] mWeights;
+        private final int[] mColumnTiles;
+        private final int[] mColumnFractions;
+        private final byte[] mOut;
+        private final int mFromRow;
+        private final int mToRow;
+
+        MergeTask(byte[][] frames, int count, int width, int height, int[] offsets, int tilesX, int tilesY,
+                  int[][] weights, int[] columnTiles, int[] columnFractions, byte[] out, int fromRow, int toRow) {
+            this.mFrames = frames;
+            this.mCount = count;
+            this.mWidth = width;
+            this.mHeight = height;
+            this.mOffsets = offsets;
+            this.mTilesX = tilesX;
+            this.mTilesY = tilesY;
+            this.mWeights = weights;
+            this.mColumnTiles = columnTiles;
+            this.mColumnFractions = columnFractions;
+            this.mOut = out;
+            this.mFromRow = fromRow;
+            this.mToRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (mToRow - mFromRow > TASK_ROWS / 2) {
+                int middle = (mFromRow + mToRow) >>> 1;
+                invokeAll(new MergeTask(mFrames, mCount, mWidth, mHeight, mOffsets, mTilesX, mTilesY, mWeights,
+                                mColumnTiles, mColumnFractions, mOut, mFromRow, middle),
+                        new MergeTask(mFrames, mCount, mWidth, mHeight, mOffsets, mTilesX, mTilesY, mWeights,
+                                mColumnTiles, mColumnFractions, mOut, middle, mToRow));
+                return;
+            }
+
+            // 每个像素每一帧的插值权重, 一行复用
+            int[] rowWeights = new int[mCount * mWidth];
+            int chromaOffset = mWidth * mHeight;
+            for (int cy = mFromRow; cy < mToRow; cy++) {
+                for (int y = cy * 2; y < cy * 2 + 2; y++) {
+                    interpolateRow(y, rowWeights);
+                    mergeLumaRow(y, rowWeights);
+                }
+                // 色度使用偶数亮度行的权重
+                interpolateRow(cy * 2, rowWeights);
+                mergeChromaRow(cy, chromaOffset, rowWeights);
+            }
+        }
+
+        /**
+         * 块中心之间双线性插值得到第 y 行每个像素的权重
+         */
+        private void interpolateRow(int y, int[] rowWeights) {
+
+            // 块中心坐标系下的位置, 8 位小数
+            int fy = ((y - TILE_SIZE / 2) << 8) / TILE_SIZE;
+            int ty0 = clamp(fy >> 8, mTilesY - 1);
+            int ty1 = clamp((fy >> 8) + 1, mTilesY - 1);
+            int wy = fy < 0 ? 0 : fy & 0xFF;
+            int topRow = ty0 * mTilesX;
+            int bottomRow = ty1 * mTilesX;
+            for (int i = 1; i < mCount; i++) {
+                int[] weights = mWeights[i];
+                int base = i * mWidth;
+                for (int x = 0; x < mWidth; x++) {
+                    int tx0 = mColumnTiles[x];
+                    int tx1 = Math.min(tx0 + 1, mTilesX - 1);
+                    int topLeft = weights[topRow + tx0];
+                    int topRight = weights[topRow + tx1];
+                    int bottomLeft = weights[bottomRow + tx0];
+                    int bottomRight = weights[bottomRow + tx1];
+                    if (topLeft == topRight && topLeft == bottomLeft && topLeft == bottomRight) {
+                        // 大部分区域四个块权重相同
+                        rowWeights[base + x] = topLeft;
+                        continue;
+                    }
+                    int wx = mColumnFractions[x];
+                    int top = topLeft * (256 - wx) + topRight * wx;
+                    int bottom = bottomLeft * (256 - wx) + bottomRight * wx;
+                    rowWeights[base + x] = (top * (256 - wy) + bottom * wy) >> 16;
+                }
+            }
+        }
+
+        private void mergeLumaRow(int y, int[] rowWeights) {
+
+            byte[] reference = mFrames[0];
+            int row = y * mWidth;
+            for (int x = 0; x < mWidth; x++) {
+                int sum = (reference[row + x] & 0xFF) * WEIGHT_ONE;
+                int total = WEIGHT_ONE;
+                for (int i = 1; i < mCount; i++) {
+                    int weight = rowWeights[i * mWidth + x];
+                    if (weight != 0) {
+                        int sy = clamp(y + mOffsets[i * 2 + 1], mHeight - 1);
+                        int sx = clamp(x + mOffsets[i * 2], mWidth - 1);
+                        sum += (mFrames[i][sy * mWidth + sx] & 0xFF) * weight;
+                        total += weight;
+                    }
+                }
+                mOut[row + x] = (byte) ((sum + total / 2) / total);
+            }
+        }
+
+        private void mergeChromaRow(int cy, int chromaOffset, int[] rowWeights) {
+
+            byte[] reference = mFrames[0];
+            int chromaHeight = mHeight / 2;
+            int row = chromaOffset + cy * mWidth;
+            for (int cx = 0; cx < mWidth / 2; cx++) {
+                int index = row + cx * 2;
+                int sumV = (reference[index] & 0xFF) * WEIGHT_ONE;
+                int sumU = (reference[index + 1] & 0xFF) * WEIGHT_ONE;
+                int total = WEIGHT_ONE;
+                for (int i = 1; i < mCount; i++) {
+                    int weight = rowWeights[i * mWidth + cx * 2];
+                    if (weight != 0) {
+                        int sy = clamp(cy + (mOffsets[i * 2 + 1] >> 1), chromaHeight - 1);
+                        int sx = clamp(cx + (mOffsets[i * 2] >> 1), mWidth / 2 - 1);
+                        int source = chromaOffset + sy * mWidth + sx * 2;
+                        sumV += (mFrames[i][source] & 0xFF) * weight;
+                        sumU += (mFrames[i][source + 1] & 0xFF) * weight;
+                        total += weight;
+                    }
+                }
+                mOut[index] = (byte) ((sumV + total / 2) / total);
+                mOut[index + 1] = (byte) ((sumU + total / 2) / total);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.sample.camera.camera;
+
+import android.util.Size;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 预览尺寸选择
+ * 纵横比在容差内的尺寸优先, 再按代价打分: 小于控件尺寸会模糊, 大于控件尺寸的像素在每次刷新时都是浪费的带宽,
+ * 刷新率越高浪费越多; 得分相同时取面积较小的尺寸, 保证结果确定
+ */
+final class PreviewSizeSelector {
+
+    /**
+     * 纵横比允许的相对误差
+     */
+    static final float ASPECT_TOLERANCE = 0.02f;
+    /**
+     * 作为基准的显示刷新率
+     */
+    private static final float BASE_REFRESH_RATE = 60f;
+
+    private static final float UNDERSAMPLE_WEIGHT = 4f;
+    private static final float OVERSAMPLE_WEIGHT = 1f;
+    private static final float ASPECT_WEIGHT = 10f;
+
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+
+    /**
+     * @param maxWidth  预览长边的上限
+     * @param maxHeight 预览短边的上限
+     */
+    PreviewSizeSelector(int maxWidth, int maxHeight) {
+        this.mMaxWidth = maxWidth;
+        this.mMaxHeight = maxHeight;
+    }
+
+    /**
+     * 选择预览尺寸
+     * @param choices     相机支持的预览尺寸
+     * @param viewWidth   预览控件宽, 横竖方向不限
+     * @param viewHeight  预览控件高, 横竖方向不限
+     * @param aspectRatio 期望的 高/宽 (短边/长边)
+     * @param refreshRate 显示刷新率, 未知时传 0
+     * @return 选中的尺寸, choices 为空时返回 null
+     */
+    Size select(Size[] choices, int viewWidth, int viewHeight, float aspectRatio, float refreshRate) {
+
+        if (null == choices) {
+            return null;
+        }
+        int[] widths = new int[choices.length];
+        int[] heights = new int[choices.length];
+        for (int i = 0; i < choices.length; i++) {
+            widths[i] = choices[i].getWidth();
+            heights[i] = choices[i].getHeight();
+        }
+        int index = select(widths, heights, viewWidth, viewHeight, aspectRatio, refreshRate);
+        return index < 0 ? null : choices[index];
+    }
+
+    /**
+     * 选择预览尺寸
+     * @param widths      相机支持的预览尺寸的宽
+     * @param heights     与 widths 对应的高
+     * @param viewWidth   预览控件宽, 横竖方向不限
+     * @param viewHeight  预览控件高, 横竖方向不限
+     * @param aspectRatio 期望的 高/宽 (短边/长边)
+     * @param refreshRate 显示刷新率, 未知时传 0
+     * @return 选中尺寸的下标, 没有尺寸时返回 -1
+     */
+    int select(int[] widths, int[] heights, int viewWidth, int viewHeight, float aspectRatio, float refreshRate) {
+
+        int count = null == widths ? 0 : widths.length;
+        if (count == 0) {
+            return -1;
+        }
+
+        // 目标尺寸按长边/短边比较, 并限制在上限内
+        long targetLong = Math.min(Math.max(viewWidth, viewHeight), mMaxWidth);
+        long targetShort = Math.min(Math.min(viewWidth, viewHeight), mMaxHeight);
+        if (targetLong <= 0 || targetShort <= 0) {
+            targetLong = mMaxWidth;
+            targetShort = mMaxHeight;
+        }
+        float refreshFactor = refreshRate > 0 ? refreshRate / BASE_REFRESH_RATE : 1f;
+
+        boolean anyWithinLimit = false;
+        for (int i = 0; i < count; i++) {
+            if (isWithinLimit(widths[i], heights[i])) {
+                anyWithinLimit = true;
+                break;
+            }
+        }
+
+        int best = -1;
+        boolean bestAspectMatched = false;
+        float bestCost = 0;
+        for (int i = 0; i < count; i++) {
+            int width = widths[i];
+            int height = heights[i];
+            if (anyWithinLimit && !isWithinLimit(width, height)) {
+                continue;
+            }
+            float aspectError = aspectError(width, height, aspectRatio);
+            boolean aspectMatched = aspectError <= ASPECT_TOLERANCE;
+            float cost = cost(width, height, targetLong, targetShort, aspectError, refreshFactor);
+            if (best < 0 || isBetter(width, height, aspectMatched, cost,
+                    widths[best], heights[best], bestAspectMatched, bestCost)) {
+                best = i;
+                bestAspectMatched = aspectMatched;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    private boolean isWithinLimit(int width, int height) {
+        return Math.max(width, height) <= mMaxWidth && Math.min(width, height) <= mMaxHeight;
+    }
+
+    /**
+     * 代价 = 欠采样 + 过采样带宽 x 刷新率系数 + 纵横比误差
+     */
+    private static float cost(int width, int height, long targetLong, long targetShort, float aspectError, float refreshFactor) {
+
+        long optionLong = Math.max(width, height);
+        long optionShort = Math.min(width, height);
+        float coverage = Math.min(1f, (float) optionLong / targetLong) * Math.min(1f, (float) optionShort / targetShort);
+        float undersample = 1f - coverage;
+        long targetArea = targetLong * targetShort;
+        float oversample = (float) Math.max(0, optionLong * optionShort - targetArea) / targetArea;
+        return UNDERSAMPLE_WEIGHT * undersample
+                + OVERSAMPLE_WEIGHT * oversample * refreshFactor
+                + ASPECT_WEIGHT * aspectError;
+    }
+
+    private static boolean isBetter(int width, int height, boolean aspectMatched, float cost,
+                                    int bestWidth, int bestHeight, boolean bestAspectMatched, float bestCost) {
+
+        if (aspectMatched != bestAspectMatched) {
+            return aspectMatched;
+        }
+        if (cost != bestCost) {
+            return cost < bestCost;
+        }
+        long area = (long) width * height;
+        long bestArea = (long) bestWidth * bestHeight;
+        if (area != bestArea) {
+            return area < bestArea;
+        }
+        return width > bestWidth;
+    }
+
+    /**
+     * 短边/长边 与 aspectRatio 的相对误差
+     */
+    static float aspectError(int width, int height, float aspectRatio) {
+
+        long optionLong = Math.max(width, height);
+        if (optionLong == 0 || aspectRatio <= 0) {
+            return Float.MAX_VALUE;
+        }
+        float ratio = (float) Math.min(width, height) / optionLong;
+        return Math.abs(ratio - aspectRatio) / aspectRatio;
+    }
+}
@@ -0,0 +1,15 @@
+package com.sample.camera.camera;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 屏幕补光回调, 没有闪光灯的前置摄像头开启闪光时使用, 在主线程中调用
+ * 开启时应显示全屏白色遮罩并调高屏幕亮度
+ */
+public interface ScreenFlashListener {
+
+    /**
+     * @param enabled 点亮或关闭屏幕补光
+     */
+    void onScreenFlash(boolean enabled);
+}
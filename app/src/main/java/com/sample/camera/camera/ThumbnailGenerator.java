@@ -0,0 +1,161 @@
+package com.sample.camera.camera;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照缩略图生成
+ * 优先解码 EXIF 中的缩略图; 没有时先用 inSampleSize 解码, 再在 ForkJoinPool 中分块并行缩小到目标尺寸,
+ * 最后按 EXIF 方向旋转, 不需要重新读取保存后的文件
+ */
+@RequiresApi(api = Build.VERSION_CODES.LOLLIPOP)
+final class ThumbnailGenerator {
+
+    /**
+     * 缩略图长边的最大像素
+     */
+    private final int mMaxSize;
+    private final ForkJoinPool mPool;
+
+    /**
+     * @param maxSize 缩略图长边的最大像素
+     */
+    ThumbnailGenerator(int maxSize) {
+        this.mMaxSize = maxSize;
+        this.mPool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * 在线程池中执行缩略图任务
+     */
+    ForkJoinTask<?> submit(Runnable task) {
+        return mPool.submit(task);
+    }
+
+    /**
+     * 生成缩略图
+     * @param jpeg        JPEG 数据, 方法不会修改 position/limit
+     * @param orientation ExifInterface.ORIENTATION_* 方向
+     * @return 已按方向旋转的缩略图, 解码失败时返回 null
+     */
+    Bitmap generate(ByteBuffer jpeg, int orientation) {
+
+        Bitmap bitmap = decodeExifThumbnail(jpeg);
+        if (null == bitmap) {
+            bitmap = decodeDownscaled(jpeg);
+        }
+        if (null == bitmap) {
+            return null;
+        }
+
+        Matrix matrix = ExifUtilsKt.decodeExifOrientation(orientation);
+        if (matrix.isIdentity()) {
+            return bitmap;
+        }
+        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (rotated != bitmap) {
+            bitmap.recycle();
+        }
+        return rotated;
+    }
+
+    private Bitmap decodeExifThumbnail(ByteBuffer jpeg) {
+
+        int[] thumbnail = JpegExifWriter.findThumbnail(jpeg);
+        if (null == thumbnail) {
+            return null;
+        }
+        byte[] data = new byte[thumbnail[1]];
+        ByteBuffer source = jpeg.duplicate();
+        source.position(thumbnail[0]);
+        source.get(data);
+        return BitmapFactory.decodeByteArray(data, 0, data.length);
+    }
+
+    private Bitmap decodeDownscaled(ByteBuffer jpeg) {
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeStream(new ByteBufferInputStream(jpeg.duplicate()), null, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        // 解码器按 2 的幂缩小, 保证结果不小于目标尺寸
+        int longEdge = Math.max(options.outWidth, options.outHeight);
+        int sampleSize = 1;
+        while (longEdge / (sampleSize * 2) >= mMaxSize) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap decoded = BitmapFactory.decodeStream(new ByteBufferInputStream(jpeg.duplicate()), null, options);
+        if (null == decoded) {
+            return null;
+        }
+
+        int srcWidth = decoded.getWidth();
+        int srcHeight = decoded.getHeight();
+        float scale = (float) mMaxSize / Math.max(srcWidth, srcHeight);
+        if (scale >= 1) {
+            return decoded;
+        }
+        int dstWidth = Math.max(1, Math.round(srcWidth * scale));
+        int dstHeight = Math.max(1, Math.round(srcHeight * scale));
+
+        int[] src = new int[srcWidth * srcHeight];
+        decoded.getPixels(src, 0, srcWidth, 0, 0, srcWidth, srcHeight);
+        decoded.recycle();
+        int[] dst = new int[dstWidth * dstHeight];
+        TileDownscaler.downscale(mPool, src, srcWidth, srcHeight, dst, dstWidth, dstHeight);
+        return Bitmap.createBitmap(dst, dstWidth, dstHeight, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 直接读取 ByteBuffer, 避免为了解码再复制一份 byte[]
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+
+            if (length == 0) {
+                return 0;
+            }
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, mBuffer.remaining());
+            mBuffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+    }
+}
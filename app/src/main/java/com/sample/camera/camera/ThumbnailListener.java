@@ -0,0 +1,18 @@
+package com.sample.camera.camera;
+
+import android.graphics.Bitmap;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 拍照缩略图回调, 在 {@link CameraListener#onTakePicture(String)} 之前回调, 不需要再解码整张图片
+ * 在后台线程中调用
+ */
+public interface ThumbnailListener {
+
+    /**
+     * @param filePath  图片保存路径, 此时可能还没有写完
+     * @param thumbnail 已按 EXIF 方向旋转的缩略图
+     */
+    void onThumbnail(String filePath, Bitmap thumbnail);
+}
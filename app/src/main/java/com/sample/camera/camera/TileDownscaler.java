@@ -0,0 +1,107 @@
+package com.sample.camera.camera;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : ARGB 像素的并行缩小, 按行分块交给 ForkJoinPool, 每个目标像素取源图对应区域的平均值
+ */
+final class TileDownscaler {
+
+    /**
+     * 每个任务最多处理的目标行数
+     */
+    private static final int TILE_ROWS = 16;
+
+    private TileDownscaler() {
+    }
+
+    /**
+     * 将 src 缩小到 dst
+     * @param pool 并行执行的线程池, 当前已在 ForkJoinPool 中时直接在当前池执行
+     * @param src  源像素, 行优先, 宽 srcWidth 高 srcHeight
+     * @param dst  目标像素, 长度不小于 dstWidth * dstHeight
+     */
+    static void downscale(ForkJoinPool pool, int[] src, int srcWidth, int srcHeight,
+                          int[] dst, int dstWidth, int dstHeight) {
+
+        if (dstWidth > srcWidth || dstHeight > srcHeight) {
+            throw new IllegalArgumentException("Only downscaling is supported");
+        }
+        TileTask task = new TileTask(src, srcWidth, srcHeight, dst, dstWidth, dstHeight, 0, dstHeight);
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    private static final class TileTask extends RecursiveAction {
+
+        private final int[] mSrc;
+        private final int mSrcWidth;
+        private final int mSrcHeight;
+        private final int[] mDst;
+        private final int mDstWidth;
+        private final int mDstHeight;
+        private final int mFromRow;
+        private final int mToRow;
+
+        TileTask(int[] src, int srcWidth, int srcHeight, int[] dst, int dstWidth, int dstHeight,
+                 int fromRow, int toRow) {
+            this.mSrc = src;
+            this.mSrcWidth = srcWidth;
+            this.mSrcHeight = srcHeight;
+            this.mDst = dst;
+            this.mDstWidth = dstWidth;
+            this.mDstHeight = dstHeight;
+            this.mFromRow = fromRow;
+            this.mToRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (mToRow - mFromRow > TILE_ROWS) {
+                int middle = (mFromRow + mToRow) >>> 1;
+                invokeAll(new TileTask(mSrc, mSrcWidth, mSrcHeight, mDst, mDstWidth, mDstHeight, mFromRow, middle),
+                        new TileTask(mSrc, mSrcWidth, mSrcHeight, mDst, mDstWidth, mDstHeight, middle, mToRow));
+                return;
+            }
+
+            for (int dy = mFromRow; dy < mToRow; dy++) {
+                int sy0 = (int) ((long) dy * mSrcHeight / mDstHeight);
+                int sy1 = Math.max(sy0 + 1, (int) ((long) (dy + 1) * mSrcHeight / mDstHeight));
+                int dstRow = dy * mDstWidth;
+                for (int dx = 0; dx < mDstWidth; dx++) {
+                    int sx0 = (int) ((long) dx * mSrcWidth / mDstWidth);
+                    int sx1 = Math.max(sx0 + 1, (int) ((long) (dx + 1) * mSrcWidth / mDstWidth));
+                    mDst[dstRow + dx] = average(sx0, sx1, sy0, sy1);
+                }
+            }
+        }
+
+        private int average(int sx0, int sx1, int sy0, int sy1) {
+
+            long a = 0;
+            long r = 0;
+            long g = 0;
+            long b = 0;
+            for (int sy = sy0; sy < sy1; sy++) {
+                int srcRow = sy * mSrcWidth;
+                for (int sx = sx0; sx < sx1; sx++) {
+                    int pixel = mSrc[srcRow + sx];
+                    a += pixel >>> 24;
+                    r += (pixel >> 16) & 0xFF;
+                    g += (pixel >> 8) & 0xFF;
+                    b += pixel & 0xFF;
+                }
+            }
+            int count = (sx1 - sx0) * (sy1 - sy0);
+            return (int) (a / count) << 24 | (int) (r / count) << 16 | (int) (g / count) << 8 | (int) (b / count);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.sample.camera.camera;
+
+import android.media.Image;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : YUV_420_888 图像的只读视图, 直接访问各平面的 ByteBuffer, 不复制数据
+ * 按 rowStride / pixelStride 访问像素, 并提供复用调用方缓冲区的 NV21 / I420 打包方法,
+ * pixelStride 为 1 时按行批量复制
+ */
+public final class YuvFrame {
+
+    private int mWidth;
+    private int mHeight;
+    private long mTimestamp;
+
+    private ByteBuffer mYBuffer;
+    private int mYRowStride;
+    private int mYPixelStride;
+
+    private ByteBuffer mUBuffer;
+    private int mURowStride;
+    private int mUPixelStride;
+
+    private ByteBuffer mVBuffer;
+    private int mVRowStride;
+    private int mVPixelStride;
+
+    public YuvFrame() {
+    }
+
+    /**
+     * 指向一帧 YUV_420_888 图像, 同一个 YuvFrame 可以反复使用
+     * @param image YUV_420_888 图像, 使用期间不能关闭
+     */
+    @RequiresApi(api = Build.VERSION_CODES.KITKAT)
+    public YuvFrame set(Image image) {
+
+        Image.Plane[] planes = image.getPlanes();
+        return set(image.getWidth(), image.getHeight(), image.getTimestamp(),
+                planes[0].getBuffer(), planes[0].getRowStride(), planes[0].getPixelStride(),
+                planes[1].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                planes[2].getBuffer(), planes[2].getRowStride(), planes[2].getPixelStride());
+    }
+
+    /**
+     * 指向三个平面的数据
+     */
+    public YuvFrame set(int width, int height, long timestamp,
+                        ByteBuffer yBuffer, int yRowStride, int yPixelStride,
+                        ByteBuffer uBuffer, int uRowStride, int uPixelStride,
+                        ByteBuffer vBuffer, int vRowStride, int vPixelStride) {
+
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mTimestamp = timestamp;
+        this.mYBuffer = yBuffer;
+        this.mYRowStride = yRowStride;
+        this.mYPixelStride = yPixelStride;
+        this.mUBuffer = uBuffer;
+        this.mURowStride = uRowStride;
+        this.mUPixelStride = uPixelStride;
+        this.mVBuffer = vBuffer;
+        this.mVRowStride = vRowStride;
+        this.mVPixelStride = vPixelStride;
+        return this;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * 亮度
+     * @param x 0 ~ width - 1
+     * @param y 0 ~ height - 1
+     */
+    public int getY(int x, int y) {
+        return mYBuffer.get(mYBuffer.position() + y * mYRowStride + x * mYPixelStride) & 0xFF;
+    }
+
+    /**
+     * 色度 U (Cb), 坐标为色度平面坐标, 即像素坐标的一半
+     */
+    public int getU(int chromaX, int chromaY) {
+        return mUBuffer.get(mUBuffer.position() + chromaY * mURowStride + chromaX * mUPixelStride) & 0xFF;
+    }
+
+    /**
+     * 色度 V (Cr), 坐标为色度平面坐标, 即像素坐标的一半
+     */
+    public int getV(int chromaX, int chromaY) {
+        return mVBuffer.get(mVBuffer.position() + chromaY * mVRowStride + chromaX * mVPixelStride) & 0xFF;
+    }
+
+    /**
+     * NV21 / I420 数据长度
+     */
+    public int getPackedSize() {
+        return mWidth * mHeight + 2 * chromaWidth() * chromaHeight();
+    }
+
+    /**
+     * 打包为 NV21 (Y 平面 + VU 交错)
+     * @param out 复用的输出数组, 为 null 或长度不够时重新分配
+     * @return 输出数组
+     */
+    public byte[] toNV21(byte[] out) {
+
+        out = ensureCapacity(out);
+        int offset = copyLuma(out);
+        int chromaWidth = chromaWidth();
+        int chromaHeight = chromaHeight();
+
+        if (mUPixelStride == 2 && mVPixelStride == 2) {
+            // V 平面按行批量复制, 偶数位置即为 V; 底层内存是 VU 交错时奇数位置已经是 U, 否则逐个从 U 平面取
+            boolean shared = isNV21Layout();
+            ByteBuffer v = mVBuffer.duplicate();
+            int rowLength = chromaWidth * 2;
+            int vBase = mVBuffer.position();
+            int uBase = mUBuffer.position();
+            for (int row = 0; row < chromaHeight; row++) {
+                int length = Math.min(rowLength, v.limit() - (vBase + row * mVRowStride));
+                v.position(vBase + row * mVRowStride);
+                v.get(out, offset, length);
+                if (!shared) {
+                    int uRow = uBase + row * mURowStride;
+                    for (int col = 0; col < chromaWidth; col++) {
+                        out[offset + col * 2 + 1] = mUBuffer.get(uRow + col * 2);
+                    }
+                } else if (length < rowLength) {
+                    // V 平面最后一行少一个字节, 最后一个 U 从 U 平面取
+                    out[offset + rowLength - 1] = (byte) getU(chromaWidth - 1, row);
+                }
+                offset += rowLength;
+            }
+            return out;
+        }
+
+        for (int row = 0; row < chromaHeight; row++) {
+            int uRow = mUBuffer.position() + row * mURowStride;
+            int vRow = mVBuffer.position() + row * mVRowStride;
+            for (int col = 0; col < chromaWidth; col++) {
+                out[offset++] = mVBuffer.get(vRow + col * mVPixelStride);
+                out[offset++] = mUBuffer.get(uRow + col * mUPixelStride);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 打包为 I420 (Y 平面 + U 平面 + V 平面)
+     * @param out 复用的输出数组, 为 null 或长度不够时重新分配
+     * @return 输出数组
+     */
+    public byte[] toI420(byte[] out) {
+
+        out = ensureCapacity(out);
+        int offset = copyLuma(out);
+        int chromaWidth = chromaWidth();
+        int chromaHeight = chromaHeight();
+        offset = copyPlane(mUBuffer, mURowStride, mUPixelStride, chromaWidth, chromaHeight, out, offset);
+        copyPlane(mVBuffer, mVRowStride, mVPixelStride, chromaWidth, chromaHeight, out, offset);
+        return out;
+    }
+
+    private int copyLuma(byte[] out) {
+        return copyPlane(mYBuffer, mYRowStride, mYPixelStride, mWidth, mHeight, out, 0);
+    }
+
+    /**
+     * 复制一个平面到 out, pixelStride 为 1 时按行(或整块)批量复制
+     * @return 复制后 out 的偏移
+     */
+    private static int copyPlane(ByteBuffer plane, int rowStride, int pixelStride,
+                                 int width, int height, byte[] out, int offset) {
+
+        int base = plane.position();
+        if (pixelStride == 1) {
+            ByteBuffer source = plane.duplicate();
+            if (rowStride == width) {
+                source.position(base);
+                source.get(out, offset, width * height);
+                return offset + width * height;
+            }
+            for (int row = 0; row < height; row++) {
+                source.position(base + row * rowStride);
+                source.get(out, offset, width);
+                offset += width;
+            }
+            return offset;
+        }
+
+        for (int row = 0; row < height; row++) {
+            int rowStart = base + row * rowStride;
+            for (int col = 0; col < width; col++) {
+                out[offset++] = plane.get(rowStart + col * pixelStride);
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * 判断 V 平面与 U 平面是否共用同一块 VU 交错的内存 (即 NV21), 只比较底层数组和偏移, 不读写像素.
+     * 直接缓冲区 (Image 的平面) 取不到地址, 按不共用处理
+     */
+    private boolean isNV21Layout() {
+
+        if (mURowStride != mVRowStride || !mVBuffer.hasArray() || !mUBuffer.hasArray()) {
+            return false;
+        }
+        return mVBuffer.array() == mUBuffer.array()
+                && mUBuffer.arrayOffset() + mUBuffer.position() == mVBuffer.arrayOffset() + mVBuffer.position() + 1;
+    }
+
+    private byte[] ensureCapacity(byte[] out) {
+
+        int size = getPackedSize();
+        return null == out || out.length < size ? new byte[size] : out;
+    }
+
+    private int chromaWidth() {
+        return (mWidth + 1) / 2;
+    }
+
+    private int chromaHeight() {
+        return (mHeight + 1) / 2;
+    }
+}
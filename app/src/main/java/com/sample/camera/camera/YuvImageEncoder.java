@@ -0,0 +1,25 @@
+package com.sample.camera.camera;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 默认的 YUV 编码, 使用 {@link YuvImage} 压缩为 JPEG
+ */
+final class YuvImageEncoder implements CaptureEncoder {
+
+    @Override
+    public void encode(byte[] nv21, int width, int height, int quality, OutputStream out) throws IOException {
+
+        YuvImage image = new YuvImage(nv21, ImageFormat.NV21, width, height, null);
+        if (!image.compressToJpeg(new Rect(0, 0, width, height), quality, out)) {
+            throw new IOException("YuvImage compress failed");
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link BurstStats} 测试, 检查停止连拍后的排空条件
+ */
+public class BurstStatsTest {
+
+    @Test
+    public void drainsAfterSequenceEndsAndLateImagesArrive() {
+
+        BurstStats stats = new BurstStats(0);
+        for (int i = 0; i < 3; i++) {
+            stats.onResultCompleted();
+        }
+        stats.onImageReceived();
+        stats.onFrameCaptured(0);
+        stats.finish();
+        assertFalse(stats.isDrained());
+
+        // 停止后还有一个结果返回, 之后序列结束
+        stats.onResultCompleted();
+        stats.onSequenceEnded();
+        assertFalse(stats.isDrained());
+
+        for (int i = 0; i < 3; i++) {
+            stats.onImageReceived();
+            stats.onFrameCaptured(i + 1);
+            assertEquals(i == 2, stats.isDrained());
+        }
+        assertEquals(4, stats.getCapturedCount());
+    }
+
+    @Test
+    public void imageMayArriveBeforeResult() {
+
+        BurstStats stats = new BurstStats(1);
+        stats.onImageReceived();
+        stats.onFrameCaptured(0);
+        assertTrue(stats.isComplete());
+        stats.finish();
+        assertFalse(stats.isDrained());
+
+        stats.onResultCompleted();
+        stats.onSequenceEnded();
+        assertTrue(stats.isDrained());
+    }
+
+    @Test
+    public void notDrainedBeforeFinish() {
+
+        BurstStats stats = new BurstStats(2);
+        stats.onSequenceEnded();
+        assertFalse(stats.isDrained());
+        stats.finish();
+        assertTrue(stats.isDrained());
+    }
+
+    @Test
+    public void framesPerSecondFromFirstToLastFrame() {
+
+        BurstStats stats = new BurstStats(0);
+        assertEquals(0f, stats.getFramesPerSecond(), 0f);
+        for (int i = 0; i < 11; i++) {
+            stats.onFrameCaptured(i * 100_000_000L);
+        }
+        stats.onFrameDropped();
+
+        assertEquals(10f, stats.getFramesPerSecond(), 1e-3f);
+        assertEquals(1, stats.getDroppedCount());
+        assertFalse(stats.isComplete());
+    }
+}
@@ -0,0 +1,581 @@
+package com.sample.camera.camera;
+
+import android.os.Handler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link CameraCommandQueue} 测试, 相机线程替换为单线程 Executor, 多个线程交错提交几千条命令给假的相机,
+ * 检查串行执行, 每个提交线程内的顺序, 结果与按执行顺序重放一致, 以及线程引用计数平衡.
+ * 另外按 Camera2View 的命令路径, 用真实的 {@link CaptureStateMachine} 交错执行拍照, 结果, 超时和切换摄像头,
+ * 检查拍照不会卡在等待状态
+ */
+public class CameraCommandQueueTest {
+
+    private static final int PRODUCERS = 8;
+    private static final int COMMANDS_PER_PRODUCER = 1000;
+
+    private static final int OP_OPEN = 0;
+    private static final int OP_CLOSE = 1;
+    private static final int OP_PREVIEW = 2;
+    private static final int OP_CAPTURE = 3;
+    private static final int OP_ZOOM = 4;
+    private static final int OP_COUNT = 5;
+
+    /**
+     * 假的相机线程, 记录引用计数
+     */
+    private static final class FakeHost implements CameraCommandQueue.Host {
+
+        final AtomicInteger refCount = new AtomicInteger();
+        final AtomicInteger acquireCount = new AtomicInteger();
+        volatile Thread thread;
+        final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                thread = new Thread(runnable, "FakeCameraThread");
+                return thread;
+            }
+        });
+        volatile boolean quit;
+
+        @Override
+        public Handler acquire() {
+            refCount.incrementAndGet();
+            acquireCount.incrementAndGet();
+            return null;
+        }
+
+        @Override
+        public void release() {
+            if (refCount.decrementAndGet() < 0) {
+                throw new AssertionError("released more than acquired");
+            }
+        }
+
+        @Override
+        public boolean post(Handler handler, Runnable runnable) {
+            if (quit) {
+                return false;
+            }
+            try {
+                executor.execute(runnable);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 假的相机, 只能在相机线程中串行调用, 非法操作返回 false
+     */
+    private static final class FakeCamera {
+
+        boolean opened;
+        boolean previewing;
+        int zoom;
+        final List<int[]> log = new ArrayList<>();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicReference<String> violation = new AtomicReference<>();
+
+        boolean execute(Thread expectedThread, int producer, int sequence, int op) {
+
+            if (active.incrementAndGet() != 1) {
+                violation.compareAndSet(null, "concurrent command");
+            }
+            if (Thread.currentThread() != expectedThread) {
+                violation.compareAndSet(null, "command on " + Thread.currentThread().getName());
+            }
+            try {
+                log.add(new int[]{producer, sequence, op});
+                return apply(this, op);
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 相机状态转换, 测试代码和重放共用
+     */
+    private static boolean apply(FakeCamera camera, int op) {
+
+        switch (op) {
+            case OP_OPEN:
+                if (camera.opened) {
+                    return false;
+                }
+                camera.opened = true;
+                return true;
+            case OP_CLOSE:
+                if (!camera.opened) {
+                    return false;
+                }
+                camera.opened = false;
+                camera.previewing = false;
+                return true;
+            case OP_PREVIEW:
+                if (!camera.opened || camera.previewing) {
+                    return false;
+                }
+                camera.previewing = true;
+                return true;
+            case OP_CAPTURE:
+                return camera.previewing;
+            case OP_ZOOM:
+                camera.zoom++;
+                return camera.opened;
+            default:
+                throw new IllegalArgumentException("op " + op);
+        }
+    }
+
+    private FakeHost mHost;
+    private CameraCommandQueue mQueue;
+
+    @Before
+    public void setUp() {
+
+        mHost = new FakeHost();
+        mQueue = new CameraCommandQueue(mHost);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+
+        mHost.executor.shutdown();
+        assertTrue(mHost.executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void interleavedCommandsRunSeriallyInOrder() throws Exception {
+
+        final FakeCamera camera = new FakeCamera();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        @SuppressWarnings("unchecked")
+        final List<Future<Boolean>>[] futures = new List[PRODUCERS];
+        final int[][] ops = new int[PRODUCERS][COMMANDS_PER_PRODUCER];
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            futures[p] = new ArrayList<>(COMMANDS_PER_PRODUCER);
+            Random random = new Random(p);
+            for (int i = 0; i < COMMANDS_PER_PRODUCER; i++) {
+                ops[p][i] = random.nextInt(OP_COUNT);
+            }
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < COMMANDS_PER_PRODUCER; i++) {
+                            final int sequence = i;
+                            final int op = ops[producer][i];
+                            futures[producer].add(mQueue.submit(new Callable<Boolean>() {
+                                @Override
+                                public Boolean call() {
+                                    return camera.execute(mHost.thread, producer, sequence, op);
+                                }
+                            }));
+                            if (i % 97 == 0) {
+                                Thread.yield();
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+        // 模拟 onResume / onPause, 命令交替在持有线程和临时获取线程两种模式下提交
+        final AtomicInteger toggles = new AtomicInteger();
+        Thread lifecycle = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start.await();
+                    Random random = new Random(42);
+                    for (int i = 0; i < 500; i++) {
+                        mQueue.start();
+                        if (random.nextBoolean()) {
+                            Thread.yield();
+                        }
+                        mQueue.stop();
+                        toggles.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        });
+        threads.add(lifecycle);
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+
+        // 所有命令完成
+        List<Boolean> results = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            assertEquals(COMMANDS_PER_PRODUCER, futures[p].size());
+            for (Future<Boolean> future : futures[p]) {
+                assertFalse(future.isCancelled());
+                results.add(future.get(5, TimeUnit.SECONDS));
+            }
+        }
+        awaitReleased();
+
+        assertNull(camera.violation.get());
+        assertEquals(PRODUCERS * COMMANDS_PER_PRODUCER, camera.log.size());
+        assertEquals(500, toggles.get());
+
+        // 每个提交线程的命令按提交顺序执行
+        int[] next = new int[PRODUCERS];
+        FakeCamera replay = new FakeCamera();
+        for (int[] entry : camera.log) {
+            int producer = entry[0];
+            assertEquals(next[producer]++, entry[1]);
+            // 按执行顺序重放得到相同结果
+            boolean expected = apply(replay, entry[2]);
+            assertEquals(expected, futures[producer].get(entry[1]).get());
+        }
+        assertEquals(replay.opened, camera.opened);
+        assertEquals(replay.previewing, camera.previewing);
+        assertEquals(replay.zoom, camera.zoom);
+    }
+
+    /**
+     * 按 Camera2View 的方式在相机线程中驱动拍照状态机, 只在命令中读写
+     */
+    private final class CaptureSession implements CaptureStateMachine.Callback {
+
+        final CaptureStateMachine machine = new CaptureStateMachine(this);
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicReference<String> violation = new AtomicReference<>();
+        boolean open = true;
+        int generation;
+        int started;
+        int completed;
+        int aborted;
+        int precaptures;
+
+        CaptureSession() {
+            machine.moveTo(CameraInterface.STATE_PREVIEW, 0);
+        }
+
+        void enter() {
+            if (active.incrementAndGet() != 1 || Thread.currentThread() != mHost.thread) {
+                violation.compareAndSet(null, "command on " + Thread.currentThread().getName());
+            }
+        }
+
+        void exit() {
+            active.decrementAndGet();
+        }
+
+        /**
+         * takePicture(): 只有预览状态才开始对焦
+         */
+        boolean takePicture(long nowMs) {
+            if (!open || machine.getState() != CameraInterface.STATE_PREVIEW) {
+                return false;
+            }
+            machine.moveTo(CameraInterface.STATE_WAITING_LOCK, nowMs);
+            started++;
+            return true;
+        }
+
+        /**
+         * switchCameraDevice(): 关闭会话时丢弃进行中的拍照, 打开新会话后回到预览
+         */
+        void switchCamera(long nowMs) {
+            int state = machine.getState();
+            if (machine.isWaiting() || state == CameraInterface.STATE_PICTURE_TAKEN) {
+                aborted++;
+            }
+            generation++;
+            machine.moveTo(-1, nowMs);
+            open = true;
+            machine.moveTo(CameraInterface.STATE_PREVIEW, nowMs);
+        }
+
+        @Override
+        public void onRunPrecapture() {
+            precaptures++;
+        }
+
+        @Override
+        public void onCaptureStill(int fromState) {
+            // 拍照结果在之后的命令中到达, 切换摄像头后到达的旧结果忽略
+            final int still = generation;
+            mQueue.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    enter();
+                    try {
+                        if (still != generation || machine.getState() != CameraInterface.STATE_PICTURE_TAKEN) {
+                            return false;
+                        }
+                        completed++;
+                        machine.moveTo(CameraInterface.STATE_PREVIEW, 0);
+                        return true;
+                    } finally {
+                        exit();
+                    }
+                }
+            });
+        }
+    }
+
+    @Test
+    public void interleavedCaptureCommandsNeverGetStuck() throws Exception {
+
+        final CaptureSession session = new CaptureSession();
+        final AtomicLong clock = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final int[] afStates = {CaptureStateMachine.STATE_UNKNOWN, 0, 1, 2, 3, 4, 5, 6};
+        final int[] aeStates = {CaptureStateMachine.STATE_UNKNOWN, 0, 1, 2, 3, 4, 5};
+        mQueue.start();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            final int role = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        Random random = new Random(role);
+                        for (int i = 0; i < 3000; i++) {
+                            final int af = afStates[random.nextInt(afStates.length)];
+                            final int ae = aeStates[random.nextInt(aeStates.length)];
+                            final int op = role == 2 && i % 50 == 0 ? OP_CLOSE : role == 0 ? OP_CAPTURE : OP_PREVIEW;
+                            mQueue.submit(new Callable<Boolean>() {
+                                @Override
+                                public Boolean call() {
+                                    session.enter();
+                                    try {
+                                        long now = clock.get();
+                                        switch (op) {
+                                            case OP_CAPTURE:
+                                                return session.takePicture(now);
+                                            case OP_CLOSE:
+                                                session.switchCamera(now);
+                                                return true;
+                                            default:
+                                                // 预览结果, 每帧 33ms
+                                                session.machine.onResult(af, ae, clock.addAndGet(33));
+                                                return true;
+                                        }
+                                    } finally {
+                                        session.exit();
+                                    }
+                                }
+                            });
+                            if (i % 31 == 0) {
+                                Thread.yield();
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+
+        // 之后没有结果到达, 等待状态靠超时结束
+        assertTrue(mQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                session.enter();
+                try {
+                    session.machine.checkTimeout(clock.addAndGet(10000));
+                    return true;
+                } finally {
+                    session.exit();
+                }
+            }
+        }).get(5, TimeUnit.SECONDS));
+        // 超时拍照的结果在之后的命令中处理
+        final int[] state = new int[1];
+        mQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                state[0] = session.machine.getState();
+                return true;
+            }
+        }).get(5, TimeUnit.SECONDS);
+        mQueue.stop();
+        awaitReleased();
+
+        assertNull(session.violation.get());
+        assertEquals(CameraInterface.STATE_PREVIEW, state[0]);
+        assertTrue(session.started > 0);
+        assertTrue(session.completed > 0);
+        assertTrue(session.precaptures > 0);
+        // 每次开始的拍照都完成了或者被切换摄像头丢弃
+        assertEquals(session.started, session.completed + session.aborted);
+    }
+
+    @Test
+    public void heldThreadIsAcquiredOnce() throws Exception {
+
+        assertSame(mQueue.start(), mQueue.start());
+        assertEquals(1, mHost.refCount.get());
+
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(mQueue.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return true;
+                }
+            }));
+        }
+        for (Future<Boolean> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS));
+        }
+        // 启动期间提交的命令不再临时获取线程
+        assertEquals(1, mHost.acquireCount.get());
+
+        mQueue.stop();
+        mQueue.stop();
+        assertEquals(0, mHost.refCount.get());
+    }
+
+    @Test
+    public void temporaryAcquireIsReleasedAfterCommand() throws Exception {
+
+        final CountDownLatch gate = new CountDownLatch(1);
+        Future<Boolean> future = mQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return gate.await(5, TimeUnit.SECONDS);
+            }
+        });
+        // 命令执行前一直持有
+        assertEquals(1, mHost.refCount.get());
+        gate.countDown();
+
+        assertTrue(future.get(5, TimeUnit.SECONDS));
+        awaitReleased();
+    }
+
+    @Test
+    public void exceptionIsDeliveredThroughFuture() throws Exception {
+
+        final Exception error = new Exception("command failed");
+        Future<Boolean> failed = mQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                throw error;
+            }
+        });
+        Future<Boolean> after = mQueue.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return true;
+            }
+        });
+
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+        // 之后的命令不受影响
+        assertTrue(after.get(5, TimeUnit.SECONDS));
+        awaitReleased();
+    }
+
+    @Test
+    public void postFailureCancelsAndReleases() {
+
+        mHost.quit = true;
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<Boolean> command = new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                calls.incrementAndGet();
+                return true;
+            }
+        };
+
+        Future<Boolean> temporary = mQueue.submit(command);
+        assertTrue(temporary.isCancelled());
+        assertEquals(0, mHost.refCount.get());
+
+        mQueue.start();
+        Future<Boolean> held = mQueue.submit(command);
+        assertTrue(held.isCancelled());
+        assertEquals(1, mHost.refCount.get());
+        mQueue.stop();
+
+        assertEquals(0, calls.get());
+        assertEquals(0, mHost.refCount.get());
+    }
+
+    @Test
+    public void completedFutureIsDone() throws Exception {
+
+        Future<Boolean> future = CameraCommandQueue.completed(true);
+
+        assertTrue(future.isDone());
+        assertTrue(future.get());
+        assertFalse(CameraCommandQueue.completed(false).get());
+    }
+
+    /**
+     * Future 在 release 之前完成, 等待相机线程释放引用
+     */
+    private void awaitReleased() throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mHost.refCount.get() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, mHost.refCount.get());
+    }
+}
@@ -0,0 +1,138 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link CameraInfoCache} 测试, 用假的 CameraManager 统计跨进程调用次数
+ */
+public class CameraInfoCacheTest {
+
+    /**
+     * 假的 CameraManager, 每个摄像头的信息为新的字符串对象
+     */
+    private static final class FakeSource implements CameraInfoCache.Source<String> {
+
+        final AtomicInteger idListCalls = new AtomicInteger();
+        final AtomicInteger infoCalls = new AtomicInteger();
+        volatile boolean fail;
+
+        @Override
+        public String[] getCameraIdList() {
+            idListCalls.incrementAndGet();
+            return new String[]{"0", "1"};
+        }
+
+        @Override
+        public String getCameraInfo(String cameraId) {
+            infoCalls.incrementAndGet();
+            if (fail) {
+                throw new IllegalStateException("camera disconnected");
+            }
+            return new String("info-" + cameraId);
+        }
+    }
+
+    @Test
+    public void queriesEachCameraOnce() throws Exception {
+
+        CameraInfoCache<String> cache = new CameraInfoCache<>();
+        FakeSource source = new FakeSource();
+
+        String[] ids = cache.getCameraIds(source);
+        String front = cache.getInfo(source, "1");
+        for (int i = 0; i < 100; i++) {
+            assertSame(ids, cache.getCameraIds(source));
+            assertSame(front, cache.getInfo(source, "1"));
+            cache.getInfo(source, "0");
+        }
+
+        assertArrayEquals(new String[]{"0", "1"}, ids);
+        assertEquals("info-1", front);
+        assertEquals(1, source.idListCalls.get());
+        assertEquals(2, source.infoCalls.get());
+    }
+
+    @Test
+    public void clearQueriesAgain() throws Exception {
+
+        CameraInfoCache<String> cache = new CameraInfoCache<>();
+        FakeSource source = new FakeSource();
+        String before = cache.getInfo(source, "0");
+        cache.getCameraIds(source);
+
+        cache.clear();
+        String after = cache.getInfo(source, "0");
+        cache.getCameraIds(source);
+
+        assertEquals(before, after);
+        assertEquals(2, source.idListCalls.get());
+        assertEquals(2, source.infoCalls.get());
+    }
+
+    @Test
+    public void failedQueryIsNotCached() throws Exception {
+
+        CameraInfoCache<String> cache = new CameraInfoCache<>();
+        FakeSource source = new FakeSource();
+        source.fail = true;
+        try {
+            cache.getInfo(source, "0");
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        source.fail = false;
+        assertEquals("info-0", cache.getInfo(source, "0"));
+        assertEquals(2, source.infoCalls.get());
+    }
+
+    @Test
+    public void concurrentLookupsQueryOnce() throws InterruptedException {
+
+        final CameraInfoCache<String> cache = new CameraInfoCache<>();
+        final FakeSource source = new FakeSource();
+        final int threads = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final String[] results = new String[threads];
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        cache.getCameraIds(source);
+                        results[index] = cache.getInfo(source, "0");
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+
+        assertNull(failure.get());
+        assertEquals(1, source.idListCalls.get());
+        assertEquals(1, source.infoCalls.get());
+        for (String result : results) {
+            assertSame(results[0], result);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.sample.camera.camera;
+
+import android.graphics.ImageFormat;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link CaptureBuffer} 引用计数测试, 通过 {@link JpegBufferPool#getOutstandingCount()} 检查缓冲区是否泄漏或重复归还
+ */
+public class CaptureBufferTest {
+
+    private static CaptureBuffer newBuffer(JpegBufferPool pool, int size) {
+
+        ByteBuffer data = pool.acquire(size);
+        for (int i = 0; i < size; i++) {
+            data.put((byte) i);
+        }
+        data.flip();
+        return new CaptureBuffer(data, pool, ImageFormat.JPEG, 4032, 3024, 6, 1000L, "0");
+    }
+
+    @Test
+    public void returnsToPoolWhenBalanced() {
+
+        JpegBufferPool pool = new JpegBufferPool(64, 2);
+        CaptureBuffer buffer = newBuffer(pool, 32);
+        assertEquals(1, buffer.getRefCount());
+
+        assertSame(buffer, buffer.retain());
+        buffer.retain();
+        assertEquals(3, buffer.getRefCount());
+        buffer.release();
+        buffer.release();
+        assertEquals(1, pool.getOutstandingCount());
+
+        buffer.release();
+        assertEquals(0, buffer.getRefCount());
+        assertEquals(0, pool.getOutstandingCount());
+        // 归还后可以被再次借出, 不会重新分配
+        pool.acquire(32);
+        assertEquals(1, pool.getAllocationCount());
+    }
+
+    @Test
+    public void rejectsDoubleRelease() {
+
+        JpegBufferPool pool = new JpegBufferPool(64, 2);
+        CaptureBuffer buffer = newBuffer(pool, 32);
+        buffer.release();
+
+        try {
+            buffer.release();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // 期望抛出
+        }
+        // 没有第二次归还
+        assertEquals(0, buffer.getRefCount());
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void rejectsUseAfterRelease() {
+
+        JpegBufferPool pool = new JpegBufferPool(64, 2);
+        CaptureBuffer buffer = newBuffer(pool, 32);
+        buffer.release();
+
+        try {
+            buffer.retain();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // 期望抛出
+        }
+        try {
+            buffer.getBuffer();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // 期望抛出
+        }
+        assertEquals(0, buffer.getRefCount());
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void getBufferReturnsIndependentReadOnlyCopies() {
+
+        JpegBufferPool pool = new JpegBufferPool(64, 2);
+        CaptureBuffer buffer = newBuffer(pool, 32);
+
+        ByteBuffer first = buffer.getBuffer();
+        ByteBuffer second = buffer.getBuffer();
+        assertTrue(first.isReadOnly());
+        assertEquals(0, first.position());
+        assertEquals(32, first.limit());
+        assertEquals(32, buffer.getSize());
+        first.position(10);
+        assertEquals(0, second.position());
+        assertEquals(31, second.get(31));
+        buffer.release();
+    }
+
+    @Test
+    public void handleReleasesOnlyOnce() {
+
+        JpegBufferPool pool = new JpegBufferPool(64, 2);
+        CaptureBuffer buffer = newBuffer(pool, 32);
+        CaptureBuffer handle = new CaptureBuffer(buffer.retain());
+        assertEquals(2, handle.getRefCount());
+        assertEquals(32, handle.getBuffer().remaining());
+
+        // retain() 得到的是独立的引用
+        CaptureBuffer worker = handle.retain();
+        assertSame(buffer, worker);
+        handle.release();
+        assertEquals(0, handle.getRefCount());
+        try {
+            handle.release();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // 期望抛出
+        }
+        // 已释放的一次性引用不会再释放 parent
+        assertFalse(handle.releaseOnce());
+        assertEquals(2, buffer.getRefCount());
+
+        worker.release();
+        buffer.release();
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void releaseOnceAfterThrowingListener() {
+
+        JpegBufferPool pool = new JpegBufferPool(64, 2);
+        CaptureBuffer buffer = newBuffer(pool, 32);
+        CaptureBuffer handle = new CaptureBuffer(buffer.retain());
+
+        assertTrue(handle.releaseOnce());
+        assertFalse(handle.releaseOnce());
+        try {
+            handle.getBuffer();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // 期望抛出
+        }
+        assertEquals(1, buffer.getRefCount());
+        buffer.release();
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void bufferWithoutPool() {
+
+        CaptureBuffer buffer = new CaptureBuffer(ByteBuffer.wrap(new byte[]{1, 2, 3}), null,
+                ImageFormat.JPEG, 1, 1, 0, 0L, null);
+        buffer.retain();
+        buffer.release();
+        buffer.release();
+
+        assertEquals(0, buffer.getRefCount());
+    }
+
+    @Test
+    public void concurrentRetainAndRelease() throws InterruptedException {
+
+        final JpegBufferPool pool = new JpegBufferPool(64, 2);
+        final CaptureBuffer buffer = newBuffer(pool, 32);
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int t = 0; t < threads; t++) {
+            buffer.retain();
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 10000; i++) {
+                            buffer.retain();
+                            buffer.getBuffer();
+                            buffer.release();
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        // 每个线程释放自己持有的引用
+                        buffer.release();
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+
+        assertNull(failure.get());
+        assertEquals(1, buffer.getRefCount());
+        assertEquals(1, pool.getOutstandingCount());
+        buffer.release();
+        assertEquals(0, pool.getOutstandingCount());
+    }
+}
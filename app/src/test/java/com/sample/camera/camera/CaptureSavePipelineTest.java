@@ -0,0 +1,430 @@
+package com.sample.camera.camera;
+
+import android.graphics.Bitmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link CaptureSavePipeline} 测试, 用假的存储后端检查排队, 背压和失败处理
+ */
+public class CaptureSavePipelineTest {
+
+    /**
+     * 没有 EXIF 的最小 JPEG
+     */
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xD9};
+    private static final int ORIENTATION_UNDEFINED = 0;
+    private static final int ORIENTATION_ROTATE_90 = 6;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    /**
+     * 假的存储后端, 可以阻塞写入和注入失败
+     */
+    private static final class FakeSink implements CaptureSink {
+
+        final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch gate;
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile boolean fail;
+        volatile boolean crash;
+
+        FakeSink(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public long write(File file, ByteBuffer[] segments) throws IOException {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (fail) {
+                throw new IOException("injected");
+            }
+            long bytes = 0;
+            for (ByteBuffer segment : segments) {
+                bytes += segment.remaining();
+            }
+            new FileChannelSink(DURABILITY_NONE).write(file, segments);
+            written.add(file.getName());
+            if (crash) {
+                // 临时文件已经写出后抛出非 IOException
+                throw new IllegalStateException("injected");
+            }
+            return bytes;
+        }
+
+        @Override
+        public boolean writesFiles() {
+            return true;
+        }
+    }
+
+    private static final class RecordingCallback implements CaptureSavePipeline.Callback {
+
+        final List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> failed = Collections.synchronizedList(new ArrayList<String>());
+        final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+        final CountDownLatch done;
+
+        RecordingCallback(int expected) {
+            this.done = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onThumbnail(CaptureSavePipeline.SaveRequest request, Bitmap thumbnail) {
+        }
+
+        @Override
+        public void onSaved(CaptureSavePipeline.SaveRequest request, long bytes) {
+            saved.add(request.file.getName());
+            done.countDown();
+        }
+
+        @Override
+        public void onSaveFailed(CaptureSavePipeline.SaveRequest request, Exception e) {
+            errors.add(e);
+            failed.add(request.file.getName());
+            done.countDown();
+        }
+    }
+
+    private CaptureSavePipeline.SaveRequest request(JpegBufferPool pool, String name, int orientation) throws IOException {
+
+        ByteBuffer buffer = pool.acquire(JPEG.length);
+        buffer.put(JPEG).flip();
+        return new CaptureSavePipeline.SaveRequest(buffer, pool, orientation, new File(mFolder.getRoot(), name));
+    }
+
+    @Test
+    public void rejectsWhenQueueIsFull() throws Exception {
+
+        CountDownLatch gate = new CountDownLatch(1);
+        FakeSink sink = new FakeSink(gate);
+        RecordingCallback callback = new RecordingCallback(3);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(sink, 2, callback);
+        JpegBufferPool pool = new JpegBufferPool(64, 4);
+
+        assertTrue(pipeline.offer(request(pool, "0.jpg", ORIENTATION_UNDEFINED)));
+        // 写入线程阻塞在第一个请求上, 队列容量为 2
+        assertTrue(sink.entered.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.offer(request(pool, "1.jpg", ORIENTATION_UNDEFINED)));
+        assertTrue(pipeline.offer(request(pool, "2.jpg", ORIENTATION_UNDEFINED)));
+        CaptureSavePipeline.SaveRequest rejected = request(pool, "3.jpg", ORIENTATION_UNDEFINED);
+        assertFalse(pipeline.offer(rejected));
+        rejected.release();
+
+        assertEquals(1, pipeline.getRejectedCount());
+        assertEquals(3, pipeline.getPendingCount());
+
+        gate.countDown();
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("0.jpg", "1.jpg", "2.jpg"), callback.saved);
+        // 先写临时文件再重命名
+        assertEquals(Arrays.asList("0.jpg.tmp", "1.jpg.tmp", "2.jpg.tmp"), sink.written);
+        assertFalse(new File(mFolder.getRoot(), "3.jpg").exists());
+        awaitIdle(pipeline);
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void writesOrientationAndRenamesTempFile() throws Exception {
+
+        CountDownLatch gate = new CountDownLatch(0);
+        RecordingCallback callback = new RecordingCallback(1);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(new FakeSink(gate), 4, callback);
+        JpegBufferPool pool = new JpegBufferPool(64, 4);
+
+        assertTrue(pipeline.offer(request(pool, "rotated.jpg", ORIENTATION_ROTATE_90)));
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+
+        File file = new File(mFolder.getRoot(), "rotated.jpg");
+        assertTrue(file.exists());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        byte[] data = Files.readAllBytes(file.toPath());
+        // SOI, 插入的 APP1 段, EOI
+        assertEquals(JPEG.length + 36, data.length);
+        assertArrayEquals(new byte[]{(byte) 0xFF, (byte) 0xE1}, Arrays.copyOfRange(data, 2, 4));
+        awaitIdle(pipeline);
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void indexedRequestDoesNotOverwriteExistingFile() throws Exception {
+
+        RecordingCallback callback = new RecordingCallback(1);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(new FakeSink(new CountDownLatch(0)), 4, callback);
+        JpegBufferPool pool = new JpegBufferPool(64, 4);
+        File existing = mFolder.newFile("IMG_1.jpg");
+        Files.write(existing.toPath(), new byte[]{1, 2, 3});
+
+        CaptureSavePipeline.SaveRequest request = request(pool, "IMG_1.jpg", ORIENTATION_UNDEFINED);
+        request.indexed = true;
+        assertTrue(pipeline.offer(request));
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+
+        // 分配的文件名重名时改名保存, 已有文件不变
+        assertEquals(Arrays.asList("IMG_1_1.jpg"), callback.saved);
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(existing.toPath()));
+        assertArrayEquals(JPEG, Files.readAllBytes(new File(mFolder.getRoot(), "IMG_1_1.jpg").toPath()));
+        awaitIdle(pipeline);
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void reportsFailureAndReleasesBuffer() throws Exception {
+
+        FakeSink sink = new FakeSink(new CountDownLatch(0));
+        sink.fail = true;
+        RecordingCallback callback = new RecordingCallback(2);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(sink, 4, callback);
+        JpegBufferPool pool = new JpegBufferPool(64, 4);
+
+        assertTrue(pipeline.offer(request(pool, "a.jpg", ORIENTATION_UNDEFINED)));
+        assertTrue(pipeline.offer(request(pool, "b.jpg", ORIENTATION_UNDEFINED)));
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("a.jpg", "b.jpg"), callback.failed);
+        assertTrue(callback.saved.isEmpty());
+        assertEquals(0, mFolder.getRoot().list().length);
+        awaitIdle(pipeline);
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void reportsRuntimeFailureAndDeletesTempFile() throws Exception {
+
+        FakeSink sink = new FakeSink(new CountDownLatch(0));
+        sink.crash = true;
+        RecordingCallback callback = new RecordingCallback(1);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(sink, 4, callback);
+        JpegBufferPool pool = new JpegBufferPool(64, 4);
+
+        assertTrue(pipeline.offer(request(pool, "crash.jpg", ORIENTATION_UNDEFINED)));
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("crash.jpg.tmp"), sink.written);
+        assertEquals(Arrays.asList("crash.jpg"), callback.failed);
+        assertTrue(callback.errors.get(0) instanceof IllegalStateException);
+        assertEquals(0, mFolder.getRoot().list().length);
+        awaitIdle(pipeline);
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void reportsEncoderFailure() throws Exception {
+
+        RecordingCallback callback = new RecordingCallback(2);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(new FakeSink(new CountDownLatch(0)), 4, callback);
+        CaptureEncoder encoder = new CaptureEncoder() {
+            @Override
+            public void encode(byte[] nv21, int width, int height, int quality, OutputStream out) {
+                throw new ArrayIndexOutOfBoundsException(nv21.length);
+            }
+        };
+
+        assertTrue(pipeline.offer(new CaptureSavePipeline.SaveRequest(new byte[6], 2, 2, encoder, 90,
+                ORIENTATION_UNDEFINED, new File(mFolder.getRoot(), "yuv.jpg"))));
+        // 之后的请求不受影响
+        assertTrue(pipeline.offer(request(new JpegBufferPool(64, 4), "next.jpg", ORIENTATION_UNDEFINED)));
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("yuv.jpg"), callback.failed);
+        assertTrue(callback.errors.get(0) instanceof ArrayIndexOutOfBoundsException);
+        assertEquals(Arrays.asList("next.jpg"), callback.saved);
+        assertFalse(new File(mFolder.getRoot(), "yuv.jpg.tmp").exists());
+    }
+
+    @Test
+    public void reportsReceiverFailure() throws Exception {
+
+        RecordingCallback callback = new RecordingCallback(1);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(new MemorySink(new MemorySink.Receiver() {
+            @Override
+            public void onReceived(String name, byte[] data) {
+                throw new IllegalStateException(name);
+            }
+        }), 4, callback);
+        JpegBufferPool pool = new JpegBufferPool(64, 4);
+
+        assertTrue(pipeline.offer(request(pool, "memory.jpg", ORIENTATION_UNDEFINED)));
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("memory.jpg"), callback.failed);
+        assertTrue(callback.errors.get(0) instanceof IllegalStateException);
+        awaitIdle(pipeline);
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void deliveredBufferReturnsAfterListenerReleases() throws Exception {
+
+        RecordingCallback callback = new RecordingCallback(1);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(new FakeSink(new CountDownLatch(0)), 4, callback);
+        JpegBufferPool pool = new JpegBufferPool(64, 4);
+        final List<CaptureBuffer> delivered = Collections.synchronizedList(new ArrayList<CaptureBuffer>());
+        CaptureSavePipeline.SaveRequest request = request(pool, "kept.jpg", ORIENTATION_UNDEFINED);
+        request.bufferListener = new CaptureBufferListener() {
+            @Override
+            public void onCaptureBuffer(CaptureBuffer buffer) {
+                // 留到保存完成后再释放
+                delivered.add(buffer);
+            }
+        };
+
+        assertTrue(pipeline.offer(request));
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        awaitIdle(pipeline);
+
+        assertEquals(1, delivered.size());
+        assertEquals(1, delivered.get(0).getRefCount());
+        assertEquals(1, pool.getOutstandingCount());
+        assertEquals(JPEG.length, delivered.get(0).getSize());
+        delivered.get(0).release();
+        assertEquals(0, pool.getOutstandingCount());
+        assertTrue(new File(mFolder.getRoot(), "kept.jpg").exists());
+    }
+
+    @Test
+    public void throwingListenerDoesNotLeakBuffer() throws Exception {
+
+        RecordingCallback callback = new RecordingCallback(1);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(new FakeSink(new CountDownLatch(0)), 4, callback);
+        JpegBufferPool pool = new JpegBufferPool(64, 4);
+        CaptureSavePipeline.SaveRequest request = request(pool, "thrown.jpg", ORIENTATION_UNDEFINED);
+        request.bufferListener = new CaptureBufferListener() {
+            @Override
+            public void onCaptureBuffer(CaptureBuffer buffer) {
+                throw new RuntimeException("listener failure");
+            }
+        };
+
+        assertTrue(pipeline.offer(request));
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        awaitIdle(pipeline);
+
+        // 回调失败不影响保存
+        assertEquals(Collections.singletonList("thrown.jpg"), callback.saved);
+        assertEquals(0, request.buffer.getRefCount());
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void listenerThatReleasesThenThrowsIsNotReleasedTwice() throws Exception {
+
+        RecordingCallback callback = new RecordingCallback(1);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(new FakeSink(new CountDownLatch(0)), 4, callback);
+        JpegBufferPool pool = new JpegBufferPool(64, 4);
+        CaptureSavePipeline.SaveRequest request = request(pool, "released.jpg", ORIENTATION_UNDEFINED);
+        request.bufferListener = new CaptureBufferListener() {
+            @Override
+            public void onCaptureBuffer(CaptureBuffer buffer) {
+                buffer.release();
+                throw new RuntimeException("listener failure");
+            }
+        };
+
+        assertTrue(pipeline.offer(request));
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        awaitIdle(pipeline);
+
+        // 写入线程的引用保留到写入结束, 文件内容完整
+        assertArrayEquals(JPEG, Files.readAllBytes(new File(mFolder.getRoot(), "released.jpg").toPath()));
+        assertEquals(0, request.buffer.getRefCount());
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void workerReferenceSurvivesThrowingListener() throws Exception {
+
+        RecordingCallback callback = new RecordingCallback(1);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(new FakeSink(new CountDownLatch(0)), 4, callback);
+        JpegBufferPool pool = new JpegBufferPool(64, 4);
+        final List<CaptureBuffer> workers = Collections.synchronizedList(new ArrayList<CaptureBuffer>());
+        CaptureSavePipeline.SaveRequest request = request(pool, "worker.jpg", ORIENTATION_UNDEFINED);
+        request.bufferListener = new CaptureBufferListener() {
+            @Override
+            public void onCaptureBuffer(CaptureBuffer buffer) {
+                // 交给其他线程的引用, 之后释放自己的引用再抛出
+                workers.add(buffer.retain());
+                buffer.release();
+                throw new RuntimeException("listener failure");
+            }
+        };
+
+        assertTrue(pipeline.offer(request));
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        awaitIdle(pipeline);
+
+        // 其他线程的引用没有被写入线程释放
+        CaptureBuffer worker = workers.get(0);
+        assertEquals(1, worker.getRefCount());
+        assertEquals(1, pool.getOutstandingCount());
+        assertEquals(JPEG.length, worker.getBuffer().remaining());
+        worker.release();
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void deliverOnlyWithoutPersist() throws Exception {
+
+        FakeSink sink = new FakeSink(new CountDownLatch(0));
+        RecordingCallback callback = new RecordingCallback(1);
+        CaptureSavePipeline pipeline = new CaptureSavePipeline(sink, 4, callback);
+        JpegBufferPool pool = new JpegBufferPool(64, 4);
+        CaptureSavePipeline.SaveRequest request = request(pool, "memory.jpg", ORIENTATION_ROTATE_90);
+        request.persist = false;
+        request.bufferListener = new CaptureBufferListener() {
+            @Override
+            public void onCaptureBuffer(CaptureBuffer buffer) {
+                buffer.release();
+            }
+        };
+
+        assertTrue(pipeline.offer(request));
+        assertTrue(callback.done.await(5, TimeUnit.SECONDS));
+        awaitIdle(pipeline);
+
+        assertTrue(sink.written.isEmpty());
+        assertEquals(0, mFolder.getRoot().list().length);
+        assertFalse(request.indexed);
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    /**
+     * onSaved 之后还会归还缓冲区, 等待写入线程空闲
+     */
+    private static void awaitIdle(CaptureSavePipeline pipeline) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, pipeline.getPendingCount());
+    }
+}
@@ -0,0 +1,131 @@
+package com.sample.camera.camera;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 各存储后端写入一张 JPEG 的耗时, FileChannelSink / MappedFileSink 分别测三种持久化方式, MemorySink 只复制
+ * 数据与 {@link CaptureSavePipeline} 一样分为 SOI, APP1, 其余三段, 每次覆盖同一个临时文件,
+ * 结果受文件系统影响, 只用于同一台机器上不同后端之间对比, 目标目录由 directory 参数指定,
+ * 例如 -p directory=/dev/shm,/data/local/tmp 分别测内存文件系统和磁盘, 开始时输出实际目录和文件系统类型
+ * 运行: 在 IDE 中执行 main(), 或把测试类路径交给 org.openjdk.jmh.Main
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaptureSinkBenchmark {
+
+    private static final int APP1_SIZE = 64;
+
+    /**
+     * 存储后端/持久化方式
+     */
+    @Param({"fileChannel/none", "fileChannel/fdatasync", "fileChannel/fsync",
+            "mapped/none", "mapped/fdatasync", "mapped/fsync", "memory"})
+    public String sink;
+
+    /**
+     * JPEG 大小, 12MP 照片约 3MB
+     */
+    @Param({"3000000"})
+    public int size;
+
+    /**
+     * 写入的目录, "tmp" 为 java.io.tmpdir
+     */
+    @Param({"tmp"})
+    public String directory;
+
+    private CaptureSink mSink;
+    private File mDirectory;
+    private File mFile;
+    private ByteBuffer[] mSegments;
+    private final ByteBuffer[] mWriting = new ByteBuffer[3];
+    private long mReceived;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        mSink = createSink(sink);
+        mDirectory = "tmp".equals(directory) ? Files.createTempDirectory("capture-sink").toFile()
+                : Files.createTempDirectory(new File(directory).toPath(), "capture-sink").toFile();
+        System.out.println("# Directory: " + mDirectory + " (" + Files.getFileStore(mDirectory.toPath()).type() + ")");
+        mFile = new File(mDirectory, "IMG_benchmark.jpg.tmp");
+
+        byte[] data = new byte[size];
+        new Random(1).nextBytes(data);
+        ByteBuffer jpeg = ByteBuffer.allocateDirect(size);
+        jpeg.put(data).flip();
+        mSegments = new ByteBuffer[]{slice(jpeg, 0, 2), slice(jpeg, 2, APP1_SIZE), slice(jpeg, 2 + APP1_SIZE, size - 2 - APP1_SIZE)};
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        mFile.delete();
+        mDirectory.delete();
+    }
+
+    private CaptureSink createSink(String name) {
+
+        if ("memory".equals(name)) {
+            return new MemorySink(new MemorySink.Receiver() {
+                @Override
+                public void onReceived(String fileName, byte[] data) {
+                    mReceived += data.length;
+                }
+            });
+        }
+        String[] parts = name.split("/");
+        int durability = "fsync".equals(parts[1]) ? CaptureSink.DURABILITY_FSYNC
+                : "fdatasync".equals(parts[1]) ? CaptureSink.DURABILITY_FDATASYNC : CaptureSink.DURABILITY_NONE;
+        return "mapped".equals(parts[0]) ? new MappedFileSink(durability) : new FileChannelSink(durability);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset).limit(offset + length);
+        return duplicate.slice();
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+
+        // 写入会移动 position
+        for (int i = 0; i < mSegments.length; i++) {
+            mWriting[i] = mSegments[i].duplicate();
+        }
+        return mSink.write(mFile, mWriting) + mReceived;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CaptureSinkBenchmark.class.getSimpleName()).build()).run();
+    }
+}
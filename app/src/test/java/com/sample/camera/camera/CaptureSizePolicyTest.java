@@ -0,0 +1,137 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link CaptureSizePolicy} 测试, 尺寸表取自一台 12MP 后置摄像头的 JPEG 输出, 按面积从小到大排序
+ */
+public class CaptureSizePolicyTest {
+
+    private static final int[][] JPEG_SIZES = {
+            {176, 144}, {320, 240}, {640, 480}, {1280, 720}, {1280, 960}, {1440, 1080}, {1920, 1080},
+            {2048, 1536}, {3264, 1836}, {3264, 2448}, {4032, 2268}, {4032, 3024}
+    };
+    private static final int[] WIDTHS = column(0);
+    private static final int[] HEIGHTS = column(1);
+
+    private static final float ASPECT_4_3 = 3f / 4;
+    private static final float ASPECT_16_9 = 9f / 16;
+
+    private static int[] column(int index) {
+
+        int[] column = new int[JPEG_SIZES.length];
+        for (int i = 0; i < JPEG_SIZES.length; i++) {
+            column[i] = JPEG_SIZES[i][index];
+        }
+        return column;
+    }
+
+    private static void assertSelected(int width, int height, CaptureSizePolicy policy, float aspectRatio) {
+
+        int index = policy.select(WIDTHS, HEIGHTS, aspectRatio);
+        assertEquals(width + "x" + height, WIDTHS[index] + "x" + HEIGHTS[index]);
+    }
+
+    @Test
+    public void largestByDefault() {
+
+        assertSelected(4032, 3024, CaptureSizePolicy.largest(), ASPECT_16_9);
+        assertSelected(4032, 2268, CaptureSizePolicy.largest().matchPreviewAspect(), ASPECT_16_9);
+        assertEquals(-1, CaptureSizePolicy.largest().select(new int[0], new int[0], ASPECT_4_3));
+        assertEquals(-1, CaptureSizePolicy.largest().select(null, null, ASPECT_4_3));
+    }
+
+    @Test
+    public void targetMegapixelsPicksSmallestAboveTarget() {
+
+        assertSelected(1920, 1080, CaptureSizePolicy.targetMegapixels(2f), ASPECT_4_3);
+        // 3264x2448 只有 7.99MP
+        assertSelected(4032, 2268, CaptureSizePolicy.targetMegapixels(8f), ASPECT_4_3);
+        assertSelected(4032, 3024, CaptureSizePolicy.targetMegapixels(8f).matchPreviewAspect(), ASPECT_4_3);
+        assertSelected(1920, 1080, CaptureSizePolicy.targetMegapixels(1f).matchPreviewAspect(), ASPECT_16_9);
+        assertSelected(4032, 3024, CaptureSizePolicy.targetMegapixels(50f), ASPECT_4_3);
+    }
+
+    @Test
+    public void maxBytesPicksLargestThatFits() {
+
+        assertSelected(1920, 1080, CaptureSizePolicy.maxBytes(3_000_000), ASPECT_4_3);
+        assertSelected(1440, 1080, CaptureSizePolicy.maxBytes(3_000_000).matchPreviewAspect(), ASPECT_4_3);
+        assertSelected(3264, 2448, CaptureSizePolicy.maxBytes(9_000_000), ASPECT_4_3);
+        // 都超过时使用最小尺寸
+        assertSelected(176, 144, CaptureSizePolicy.maxBytes(10), ASPECT_4_3);
+        assertSelected(1280, 720, CaptureSizePolicy.maxBytes(10).matchPreviewAspect(), ASPECT_16_9);
+    }
+
+    @Test
+    public void explicitSize() {
+
+        assertSelected(1920, 1080, CaptureSizePolicy.explicit(1920, 1080), ASPECT_4_3);
+        // 精确匹配不受纵横比限制
+        assertSelected(1920, 1080, CaptureSizePolicy.explicit(1920, 1080).matchPreviewAspect(), ASPECT_4_3);
+        // 不支持时使用能容纳的最小尺寸
+        assertSelected(1440, 1080, CaptureSizePolicy.explicit(1000, 1000), ASPECT_4_3);
+        assertSelected(1920, 1080, CaptureSizePolicy.explicit(1000, 1000).matchPreviewAspect(), ASPECT_16_9);
+        assertSelected(4032, 3024, CaptureSizePolicy.explicit(5000, 5000), ASPECT_4_3);
+    }
+
+    @Test
+    public void ignoresAspectWhenNothingMatches() {
+
+        assertSelected(4032, 3024, CaptureSizePolicy.largest().matchPreviewAspect(), 0.1f);
+        assertSelected(176, 144, CaptureSizePolicy.maxBytes(10).matchPreviewAspect(), 0f);
+    }
+
+    @Test
+    public void aspectTolerance() {
+
+        assertTrue(CaptureSizePolicy.matchesAspect(1920, 1080, ASPECT_16_9));
+        // 1088 是常见的 16 对齐高度
+        assertTrue(CaptureSizePolicy.matchesAspect(1920, 1088, ASPECT_16_9));
+        assertFalse(CaptureSizePolicy.matchesAspect(1920, 1200, ASPECT_16_9));
+        assertFalse(CaptureSizePolicy.matchesAspect(0, 1080, ASPECT_16_9));
+        assertFalse(CaptureSizePolicy.matchesAspect(1920, 1080, 0f));
+    }
+
+    @Test
+    public void everyTargetSelectsConsistentSize() {
+
+        for (int megapixels = 1; megapixels <= 13; megapixels++) {
+            long target = megapixels * 1_000_000L;
+            int index = CaptureSizePolicy.targetMegapixels(megapixels).select(WIDTHS, HEIGHTS, ASPECT_4_3);
+            long area = (long) WIDTHS[index] * HEIGHTS[index];
+            assertTrue(area >= target || index == WIDTHS.length - 1);
+            if (index > 0) {
+                assertTrue((long) WIDTHS[index - 1] * HEIGHTS[index - 1] < target);
+            }
+
+            index = CaptureSizePolicy.maxBytes(target).select(WIDTHS, HEIGHTS, ASPECT_4_3);
+            area = (long) WIDTHS[index] * HEIGHTS[index];
+            assertTrue(area <= target || index == 0);
+            if (index < WIDTHS.length - 1) {
+                assertTrue((long) WIDTHS[index + 1] * HEIGHTS[index + 1] > target);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveMegapixels() {
+        CaptureSizePolicy.targetMegapixels(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveBytes() {
+        CaptureSizePolicy.maxBytes(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveExplicitSize() {
+        CaptureSizePolicy.explicit(1920, 0);
+    }
+}
@@ -0,0 +1,257 @@
+package com.sample.camera.camera;
+
+import android.hardware.camera2.CaptureResult;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link CaptureStateMachine} 测试, 按帧输入 AF/AE 状态序列, 覆盖转换表的每一格和每个等待状态的超时
+ */
+public class CaptureStateMachineTest {
+
+    private static final int[] AF_STATES = {
+            CaptureStateMachine.STATE_UNKNOWN,
+            CaptureResult.CONTROL_AF_STATE_INACTIVE,
+            CaptureResult.CONTROL_AF_STATE_PASSIVE_SCAN,
+            CaptureResult.CONTROL_AF_STATE_PASSIVE_FOCUSED,
+            CaptureResult.CONTROL_AF_STATE_ACTIVE_SCAN,
+            CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED,
+            CaptureResult.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED,
+            CaptureResult.CONTROL_AF_STATE_PASSIVE_UNFOCUSED,
+    };
+
+    private static final int[] AE_STATES = {
+            CaptureStateMachine.STATE_UNKNOWN,
+            CaptureResult.CONTROL_AE_STATE_INACTIVE,
+            CaptureResult.CONTROL_AE_STATE_SEARCHING,
+            CaptureResult.CONTROL_AE_STATE_CONVERGED,
+            CaptureResult.CONTROL_AE_STATE_LOCKED,
+            CaptureResult.CONTROL_AE_STATE_FLASH_REQUIRED,
+            CaptureResult.CONTROL_AE_STATE_PRECAPTURE,
+    };
+
+    private static final int[] WAITING_STATES = {
+            CameraInterface.STATE_WAITING_LOCK,
+            CameraInterface.STATE_WAITING_PRECAPTURE,
+            CameraInterface.STATE_WAITING_NON_PRECAPTURE,
+    };
+
+    /**
+     * 记录回调, "precapture" 或 "still:<fromState>"
+     */
+    private final List<String> mEvents = new ArrayList<>();
+    private CaptureStateMachine mMachine;
+
+    @Before
+    public void setUp() {
+
+        mMachine = new CaptureStateMachine(new CaptureStateMachine.Callback() {
+            @Override
+            public void onRunPrecapture() {
+                mEvents.add("precapture");
+            }
+
+            @Override
+            public void onCaptureStill(int fromState) {
+                mEvents.add("still:" + fromState);
+            }
+        });
+    }
+
+    @Test
+    public void everyTransitionMatchesSpec() {
+
+        for (int state : WAITING_STATES) {
+            for (int af : AF_STATES) {
+                for (int ae : AE_STATES) {
+                    mEvents.clear();
+                    mMachine.moveTo(state, 0);
+                    mMachine.onResult(af, ae, 10);
+
+                    String message = "state " + state + " af " + af + " ae " + ae;
+                    int expected = expectedState(state, af, ae);
+                    assertEquals(message, expected, mMachine.getState());
+                    assertEquals(message, expectedEvents(state, expected), mEvents);
+                }
+            }
+        }
+        assertEquals(0, mMachine.getTimeoutCount());
+    }
+
+    @Test
+    public void lockPrecaptureAndCapture() {
+
+        mMachine.moveTo(CameraInterface.STATE_WAITING_LOCK, 0);
+        // 对焦中
+        mMachine.onResult(CaptureResult.CONTROL_AF_STATE_ACTIVE_SCAN, CaptureResult.CONTROL_AE_STATE_SEARCHING, 33);
+        mMachine.onResult(CaptureResult.CONTROL_AF_STATE_ACTIVE_SCAN, CaptureResult.CONTROL_AE_STATE_SEARCHING, 66);
+        assertEquals(CameraInterface.STATE_WAITING_LOCK, mMachine.getState());
+        assertTrue(mEvents.isEmpty());
+
+        // 对焦完成, 曝光未收敛, 触发预拍
+        mMachine.onResult(CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED, CaptureResult.CONTROL_AE_STATE_SEARCHING, 100);
+        assertEquals(CameraInterface.STATE_WAITING_PRECAPTURE, mMachine.getState());
+        assertEquals(1100, mMachine.getDeadlineMs());
+        assertEquals(Collections.singletonList("precapture"), mEvents);
+
+        // 预拍序列开始后等待结束
+        mMachine.onResult(CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED, CaptureResult.CONTROL_AE_STATE_PRECAPTURE, 133);
+        assertEquals(CameraInterface.STATE_WAITING_NON_PRECAPTURE, mMachine.getState());
+        assertEquals(3133, mMachine.getDeadlineMs());
+        mMachine.onResult(CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED, CaptureResult.CONTROL_AE_STATE_PRECAPTURE, 166);
+        assertEquals(CameraInterface.STATE_WAITING_NON_PRECAPTURE, mMachine.getState());
+
+        mMachine.onResult(CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED, CaptureResult.CONTROL_AE_STATE_CONVERGED, 200);
+        assertEquals(CameraInterface.STATE_PICTURE_TAKEN, mMachine.getState());
+        assertEquals(-1, mMachine.getDeadlineMs());
+        assertEquals(Arrays.asList("precapture", "still:" + CameraInterface.STATE_WAITING_NON_PRECAPTURE), mEvents);
+
+        // 拍照后的结果不再处理
+        mMachine.onResult(CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED, CaptureResult.CONTROL_AE_STATE_PRECAPTURE, 233);
+        assertEquals(CameraInterface.STATE_PICTURE_TAKEN, mMachine.getState());
+        assertEquals(2, mEvents.size());
+        assertEquals(0, mMachine.getTimeoutCount());
+    }
+
+    @Test
+    public void fixedFocusCapturesImmediately() {
+
+        mMachine.moveTo(CameraInterface.STATE_WAITING_LOCK, 0);
+        mMachine.onResult(CaptureStateMachine.STATE_UNKNOWN, CaptureStateMachine.STATE_UNKNOWN, 33);
+
+        assertEquals(CameraInterface.STATE_PICTURE_TAKEN, mMachine.getState());
+        assertEquals(Collections.singletonList("still:" + CameraInterface.STATE_WAITING_LOCK), mEvents);
+    }
+
+    @Test
+    public void eachWaitingStateTimesOut() {
+
+        long[] timeouts = {3000, 1000, 3000};
+        for (int i = 0; i < WAITING_STATES.length; i++) {
+            int state = WAITING_STATES[i];
+            mEvents.clear();
+            mMachine.moveTo(state, 500);
+            assertTrue(mMachine.isWaiting());
+            assertEquals(500 + timeouts[i], mMachine.getDeadlineMs());
+
+            // 截止前一毫秒不超时
+            assertFalse(mMachine.checkTimeout(500 + timeouts[i] - 1));
+            assertEquals(state, mMachine.getState());
+
+            assertTrue(mMachine.checkTimeout(500 + timeouts[i]));
+            assertEquals(CameraInterface.STATE_PICTURE_TAKEN, mMachine.getState());
+            assertEquals(Collections.singletonList("still:" + state), mEvents);
+            assertEquals(i + 1, mMachine.getTimeoutCount());
+            assertFalse(mMachine.checkTimeout(500 + timeouts[i] + 1000));
+        }
+    }
+
+    @Test
+    public void resultAfterDeadlineTimesOutInsteadOfTransition() {
+
+        mMachine.moveTo(CameraInterface.STATE_WAITING_LOCK, 0);
+        // 一直在对焦, 直到超时
+        for (long now = 0; now < 3000; now += 33) {
+            mMachine.onResult(CaptureResult.CONTROL_AF_STATE_ACTIVE_SCAN, CaptureResult.CONTROL_AE_STATE_SEARCHING, now);
+        }
+        assertEquals(CameraInterface.STATE_WAITING_LOCK, mMachine.getState());
+        assertTrue(mEvents.isEmpty());
+
+        // 超时那一帧本应触发预拍, 但直接拍照
+        mMachine.onResult(CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED, CaptureResult.CONTROL_AE_STATE_SEARCHING, 3000);
+        assertEquals(CameraInterface.STATE_PICTURE_TAKEN, mMachine.getState());
+        assertEquals(Collections.singletonList("still:" + CameraInterface.STATE_WAITING_LOCK), mEvents);
+        assertEquals(1, mMachine.getTimeoutCount());
+    }
+
+    @Test
+    public void precaptureTimeoutRestartsOnEachState() {
+
+        mMachine.moveTo(CameraInterface.STATE_WAITING_LOCK, 0);
+        mMachine.onResult(CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED, CaptureResult.CONTROL_AE_STATE_FLASH_REQUIRED, 2900);
+        assertEquals(CameraInterface.STATE_WAITING_PRECAPTURE, mMachine.getState());
+        // 预拍只等 1000ms, 从进入状态开始计时
+        assertFalse(mMachine.checkTimeout(3899));
+        mMachine.onResult(CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED, CaptureResult.CONTROL_AE_STATE_CONVERGED, 3899);
+        assertEquals(CameraInterface.STATE_WAITING_PRECAPTURE, mMachine.getState());
+
+        mMachine.onResult(CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED, CaptureResult.CONTROL_AE_STATE_CONVERGED, 3900);
+        assertEquals(CameraInterface.STATE_PICTURE_TAKEN, mMachine.getState());
+        assertEquals(Arrays.asList("precapture", "still:" + CameraInterface.STATE_WAITING_PRECAPTURE), mEvents);
+        assertEquals(1, mMachine.getTimeoutCount());
+    }
+
+    @Test
+    public void ignoresResultsWhileNotWaiting() {
+
+        for (int state : new int[]{CameraInterface.STATE_PREVIEW, CameraInterface.STATE_PICTURE_TAKEN, CameraInterface.STATE_BURST}) {
+            mMachine.moveTo(state, 0);
+            assertFalse(mMachine.isWaiting());
+            assertEquals(-1, mMachine.getDeadlineMs());
+            for (int af : AF_STATES) {
+                for (int ae : AE_STATES) {
+                    mMachine.onResult(af, ae, 100000);
+                }
+            }
+            assertFalse(mMachine.checkTimeout(Long.MAX_VALUE));
+            assertEquals(state, mMachine.getState());
+        }
+        assertTrue(mEvents.isEmpty());
+        assertEquals(0, mMachine.getTimeoutCount());
+    }
+
+    /**
+     * 独立写出的转换规则, 返回一帧结果之后的状态
+     */
+    private static int expectedState(int state, int af, int ae) {
+
+        boolean aeReady = ae == CaptureStateMachine.STATE_UNKNOWN || ae == CaptureResult.CONTROL_AE_STATE_CONVERGED;
+        switch (state) {
+            case CameraInterface.STATE_WAITING_LOCK:
+                if (af == CaptureStateMachine.STATE_UNKNOWN) {
+                    // 定焦镜头
+                    return CameraInterface.STATE_PICTURE_TAKEN;
+                }
+                if (af == CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED
+                        || af == CaptureResult.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED
+                        || af == CaptureResult.CONTROL_AF_STATE_INACTIVE) {
+                    return aeReady ? CameraInterface.STATE_PICTURE_TAKEN : CameraInterface.STATE_WAITING_PRECAPTURE;
+                }
+                return state;
+            case CameraInterface.STATE_WAITING_PRECAPTURE:
+                if (ae == CaptureStateMachine.STATE_UNKNOWN
+                        || ae == CaptureResult.CONTROL_AE_STATE_PRECAPTURE
+                        || ae == CaptureResult.CONTROL_AE_STATE_FLASH_REQUIRED) {
+                    return CameraInterface.STATE_WAITING_NON_PRECAPTURE;
+                }
+                return state;
+            case CameraInterface.STATE_WAITING_NON_PRECAPTURE:
+                return ae == CaptureResult.CONTROL_AE_STATE_PRECAPTURE ? state : CameraInterface.STATE_PICTURE_TAKEN;
+            default:
+                throw new IllegalArgumentException("state " + state);
+        }
+    }
+
+    private static List<String> expectedEvents(int fromState, int toState) {
+
+        if (toState == CameraInterface.STATE_PICTURE_TAKEN) {
+            return Collections.singletonList("still:" + fromState);
+        }
+        if (toState == CameraInterface.STATE_WAITING_PRECAPTURE && fromState != toState) {
+            return Collections.singletonList("precapture");
+        }
+        return Collections.emptyList();
+    }
+}
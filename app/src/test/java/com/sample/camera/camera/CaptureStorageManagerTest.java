@@ -0,0 +1,188 @@
+package com.sample.camera.camera;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link CaptureStorageManager} 测试, 在临时目录中写几千个真实文件, 按配额删除后重新加载索引检查
+ */
+public class CaptureStorageManagerTest {
+
+    private static final int FILE_COUNT = 3000;
+    private static final int FILE_SIZE = 16;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mDirectory;
+    private CaptureStore mStore;
+
+    @Before
+    public void setUp() throws IOException {
+
+        mDirectory = mFolder.newFolder("captures");
+        mStore = new CaptureStore(mDirectory);
+    }
+
+    @Test
+    public void trimsToCountAndReloads() throws IOException {
+
+        CaptureRecord[] records = save(FILE_COUNT, FILE_SIZE);
+        // 最早的 10 张被查看过, 应当保留
+        for (int i = 0; i < 10; i++) {
+            mStore.touch(records[i]);
+        }
+        CaptureStorageManager manager = new CaptureStorageManager(mStore);
+        manager.setQuota(0, 1000);
+
+        assertEquals(2000, manager.trim());
+        assertEquals(2000, manager.getEvictedCount());
+        assertEquals(1000, mStore.getCount());
+        assertEquals(1000L * FILE_SIZE, mStore.getTotalBytes());
+        // 已满足配额, 再次整理不删除
+        assertEquals(0, manager.trim());
+
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add(name(i));
+        }
+        for (int i = 2010; i < FILE_COUNT; i++) {
+            expected.add(name(i));
+        }
+        assertEquals(expected, imagesOnDisk());
+
+        CaptureStore reloaded = new CaptureStore(mDirectory);
+        assertEquals(1000, reloaded.getCount());
+        assertEquals(1000L * FILE_SIZE, reloaded.getTotalBytes());
+        Set<String> names = new HashSet<>();
+        for (CaptureRecord record : reloaded.getRecords()) {
+            assertTrue(record.getFile().exists());
+            names.add(record.getFile().getName());
+        }
+        assertEquals(expected, names);
+        // 使用顺序也保留下来
+        assertEquals(name(2010), reloaded.getLeastRecentlyUsed().getFile().getName());
+        // 删除过程中已经重写过索引, 不重写时 3000 条添加记录和 2000 条删除记录约 200KB
+        assertTrue(new File(mDirectory, CaptureStore.INDEX_FILE_NAME).length() < 1000 * 128);
+    }
+
+    @Test
+    public void trimsToTotalBytes() throws IOException {
+
+        save(FILE_COUNT, FILE_SIZE);
+        CaptureStorageManager manager = new CaptureStorageManager(mStore);
+        manager.setQuota(500L * FILE_SIZE + FILE_SIZE / 2, 0);
+
+        assertEquals(2500, manager.trim());
+        assertEquals(500, mStore.getCount());
+
+        CaptureStore reloaded = new CaptureStore(mDirectory);
+        assertEquals(500L * FILE_SIZE, reloaded.getTotalBytes());
+        assertEquals(name(2500), reloaded.getLeastRecentlyUsed().getFile().getName());
+        assertEquals(500, imagesOnDisk().size());
+    }
+
+    @Test
+    public void trimWithoutQuotaKeepsEverything() throws IOException {
+
+        save(100, FILE_SIZE);
+        CaptureStorageManager manager = new CaptureStorageManager(mStore);
+
+        assertFalse(manager.hasQuota());
+        assertEquals(0, manager.trim());
+        assertEquals(100, imagesOnDisk().size());
+    }
+
+    @Test
+    public void ensureSpaceEvictsThenFails() throws IOException {
+
+        save(50, FILE_SIZE);
+        CaptureStorageManager manager = new CaptureStorageManager(mStore);
+        // 磁盘不可能有这么多剩余空间
+        manager.setMinFreeBytes(Long.MAX_VALUE / 2);
+        File next = new File(mDirectory, name(50));
+
+        // 没有配额时不删除
+        try {
+            manager.ensureSpace(next, FILE_SIZE);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // 期望抛出
+        }
+        assertEquals(50, mStore.getCount());
+
+        // 有配额时删光也不够, 仍然失败
+        manager.setQuota(0, 1000);
+        try {
+            manager.ensureSpace(next, FILE_SIZE);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // 期望抛出
+        }
+        assertEquals(50, manager.getEvictedCount());
+        assertEquals(0, mStore.getCount());
+        assertTrue(imagesOnDisk().isEmpty());
+        assertEquals(0, new CaptureStore(mDirectory).getCount());
+    }
+
+    @Test
+    public void ensureSpacePassesWithFreeSpace() throws IOException {
+
+        save(10, FILE_SIZE);
+        CaptureStorageManager manager = new CaptureStorageManager(mStore);
+        manager.setQuota(0, 1000);
+        manager.setMinFreeBytes(0);
+
+        manager.ensureSpace(new File(mDirectory, name(10)), FILE_SIZE);
+
+        assertEquals(0, manager.getEvictedCount());
+        assertEquals(10, mStore.getCount());
+    }
+
+    private CaptureRecord[] save(int count, int size) throws IOException {
+
+        CaptureRecord[] records = new CaptureRecord[count];
+        byte[] data = new byte[size];
+        for (int i = 0; i < count; i++) {
+            File file = new File(mDirectory, name(i));
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            records[i] = mStore.append(file, i, size, 1, "0");
+        }
+        return records;
+    }
+
+    private static String name(int index) {
+        return String.format("IMG_%05d.jpg", index);
+    }
+
+    private Set<String> imagesOnDisk() {
+
+        Set<String> names = new HashSet<>();
+        for (String name : mDirectory.list()) {
+            if (!name.startsWith(".")) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+}
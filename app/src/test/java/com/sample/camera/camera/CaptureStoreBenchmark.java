@@ -0,0 +1,112 @@
+package com.sample.camera.camera;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link CaptureStore} 索引在 10 万条记录时的读写耗时: 冷加载, 追加(写入磁盘), 使用记录, 列出记录
+ * 索引放在临时目录, 结果受文件系统影响, 只用于同一台机器上前后对比
+ * 运行: 在 IDE 中执行 main(), 或把测试类路径交给 org.openjdk.jmh.Main
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaptureStoreBenchmark {
+
+    private static final int RECORD_COUNT = 100000;
+
+    private File mDirectory;
+    /**
+     * 已加载的实例, 追加和使用记录在它上面执行
+     */
+    private CaptureStore mStore;
+    private List<CaptureRecord> mRecords;
+    private int mNext;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        mDirectory = Files.createTempDirectory("capture-store").toFile();
+        CaptureStore store = new CaptureStore(mDirectory);
+        long timestamp = 1700000000000L;
+        for (int i = 0; i < RECORD_COUNT; i++) {
+            store.append(new File(mDirectory, String.format("IMG_%08d.jpg", i)), timestamp + i, 3000000 + i, 1, "0");
+        }
+        mStore = new CaptureStore(mDirectory);
+        mRecords = mStore.getRecords();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        File[] files = mDirectory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    /**
+     * 新实例读取整个索引
+     */
+    @Benchmark
+    public int load() throws IOException {
+        return new CaptureStore(mDirectory).getCount();
+    }
+
+    /**
+     * 在 10 万条记录之后追加一条, 返回前写入磁盘
+     */
+    @Benchmark
+    public CaptureRecord append() throws IOException {
+
+        int i = RECORD_COUNT + mNext++;
+        return mStore.append(new File(mDirectory, String.format("IMG_%08d.jpg", i)), i, 3000000, 1, "0");
+    }
+
+    /**
+     * 标记为最近使用, 只追加不写入磁盘
+     */
+    @Benchmark
+    public CaptureRecord touch() throws IOException {
+
+        CaptureRecord record = mRecords.get(mNext++ % RECORD_COUNT);
+        mStore.touch(record);
+        return record;
+    }
+
+    @Benchmark
+    public List<CaptureRecord> getRecords() throws IOException {
+        return mStore.getRecords();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CaptureStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,301 @@
+package com.sample.camera.camera;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link CaptureStore} 索引测试, 检查重新加载, 尾部残缺和校验失败记录的截断, 整理, 写入失败后的截断,
+ * 以及文件名分配不等待索引锁
+ */
+public class CaptureStoreTest {
+
+    private static final int HEADER_SIZE = 8;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mDirectory;
+    private File mIndexFile;
+
+    @Before
+    public void setUp() throws IOException {
+
+        mDirectory = new File(mFolder.getRoot(), "captures");
+        mIndexFile = new File(mDirectory, CaptureStore.INDEX_FILE_NAME);
+    }
+
+    /**
+     * 写入一半后抛出 IOException 的索引写入
+     */
+    private static final class FailingWriter implements CaptureStore.IndexWriter {
+
+        volatile boolean fail;
+
+        @Override
+        public void write(FileChannel channel, ByteBuffer buffer, boolean force) throws IOException {
+            if (fail) {
+                ByteBuffer half = buffer.duplicate();
+                half.limit(half.position() + half.remaining() / 2);
+                channel.write(half);
+                throw new IOException("injected");
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    @Test
+    public void appendsAndReloads() throws IOException {
+
+        CaptureStore store = new CaptureStore(mDirectory);
+        // 构造时创建目录
+        assertTrue(mDirectory.isDirectory());
+        append(store, 5);
+
+        CaptureStore reloaded = new CaptureStore(mDirectory);
+        List<CaptureRecord> records = reloaded.getRecords();
+        assertEquals(5, records.size());
+        for (int i = 0; i < 5; i++) {
+            CaptureRecord record = records.get(i);
+            assertEquals(name(i), record.getFile().getName());
+            assertEquals(mDirectory, record.getFile().getParentFile());
+            assertEquals(1000L + i, record.getTimestamp());
+            assertEquals(100L + i, record.getSize());
+            assertEquals(6, record.getOrientation());
+            assertEquals("1", record.getCameraId());
+        }
+        assertEquals(510L, reloaded.getTotalBytes());
+    }
+
+    @Test
+    public void truncatesTornTail() throws IOException {
+
+        append(new CaptureStore(mDirectory), 3);
+        long valid = mIndexFile.length();
+        // 掉电时最后一条记录只写了长度和一部分内容
+        appendBytes(new byte[]{0, 0, 0, 40, 1, 0, 0, 0, 0, 0});
+
+        CaptureStore reloaded = new CaptureStore(mDirectory);
+        assertEquals(3, reloaded.getCount());
+        assertEquals(valid, mIndexFile.length());
+
+        // 之后追加的记录接在完整记录后面
+        reloaded.append(new File(mDirectory, name(3)), 1003L, 103L, 6, "1");
+        assertEquals(4, new CaptureStore(mDirectory).getCount());
+    }
+
+    @Test
+    public void dropsRecordWithBadChecksum() throws IOException {
+
+        append(new CaptureStore(mDirectory), 3);
+        long length = mIndexFile.length();
+        long beforeLast = length - record(new CaptureStore(mFolder.newFolder("other")), 2);
+        // 损坏最后一条记录内容中的一个字节
+        RandomAccessFile file = new RandomAccessFile(mIndexFile, "rw");
+        try {
+            file.seek(length - 6);
+            int value = file.read();
+            file.seek(length - 6);
+            file.write(value ^ 0xFF);
+        } finally {
+            file.close();
+        }
+
+        CaptureStore reloaded = new CaptureStore(mDirectory);
+        assertEquals(2, reloaded.getCount());
+        assertEquals(name(1), reloaded.getRecords().get(1).getFile().getName());
+        assertEquals(beforeLast, mIndexFile.length());
+    }
+
+    @Test
+    public void ignoresIndexWithBadHeader() throws IOException {
+
+        assertTrue(mDirectory.mkdirs());
+        FileOutputStream out = new FileOutputStream(mIndexFile);
+        try {
+            out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+        } finally {
+            out.close();
+        }
+
+        CaptureStore store = new CaptureStore(mDirectory);
+        assertEquals(0, store.getCount());
+        assertEquals(0, mIndexFile.length());
+        append(store, 1);
+        assertEquals(1, new CaptureStore(mDirectory).getCount());
+    }
+
+    @Test
+    public void compactsAfterRemovals() throws IOException {
+
+        CaptureStore store = new CaptureStore(mDirectory);
+        CaptureRecord[] records = append(store, 600);
+        store.touch(records[599]);
+        store.touch(records[520]);
+        // 文件不存在也可以删除记录, 删除 511 条后无效记录达到 1024 条且多于剩余记录, 触发整理
+        for (int i = 0; i < 520; i++) {
+            assertTrue(store.remove(records[i]));
+        }
+        assertEquals(80, store.getCount());
+
+        // 整理后只有添加记录, 使用顺序和整理之后的 9 条删除记录, 不整理时约 38KB
+        long compacted = HEADER_SIZE;
+        CaptureStore sizes = new CaptureStore(mFolder.newFolder("sizes"));
+        for (int i = 520; i < 600; i++) {
+            compacted += record(sizes, i);
+        }
+        assertTrue(mIndexFile.length() > compacted);
+        assertTrue(mIndexFile.length() < compacted * 2);
+
+        CaptureStore reloaded = new CaptureStore(mDirectory);
+        assertEquals(80, reloaded.getCount());
+        assertEquals(name(520), reloaded.getRecords().get(0).getFile().getName());
+        long total = 0;
+        for (int i = 520; i < 600; i++) {
+            total += 100 + i;
+        }
+        assertEquals(total, reloaded.getTotalBytes());
+        // 使用顺序保留下来
+        assertEquals(name(521), reloaded.getLeastRecentlyUsed().getFile().getName());
+        assertFalse(new File(mIndexFile.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void truncatesPartialWriteOnFailure() throws IOException {
+
+        FailingWriter writer = new FailingWriter();
+        CaptureStore store = new CaptureStore(mDirectory, writer);
+        append(store, 3);
+        long valid = mIndexFile.length();
+
+        writer.fail = true;
+        try {
+            store.append(new File(mDirectory, name(3)), 1003L, 103L, 6, "1");
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // 期望抛出
+        }
+        // 写了一半的记录被去掉
+        assertEquals(valid, mIndexFile.length());
+        assertEquals(3, store.getCount());
+
+        writer.fail = false;
+        store.append(new File(mDirectory, name(4)), 1004L, 104L, 6, "1");
+        List<CaptureRecord> records = new CaptureStore(mDirectory).getRecords();
+        assertEquals(4, records.size());
+        assertEquals(name(4), records.get(3).getFile().getName());
+    }
+
+    @Test
+    public void allocatesUniqueIncreasingNames() {
+
+        CaptureStore store = new CaptureStore(mDirectory);
+        Set<String> names = new HashSet<>();
+        String previous = "";
+        for (int i = 0; i < 2000; i++) {
+            File file = store.allocate(".jpg");
+            assertEquals(mDirectory, file.getParentFile());
+            assertTrue(file.getName().startsWith("IMG_"));
+            assertTrue(file.getName().endsWith(".jpg"));
+            assertTrue(names.add(file.getName()));
+            assertTrue(file.getName().compareTo(previous) > 0);
+            previous = file.getName();
+        }
+        assertTrue(store.isManaged(store.allocate(".heic")));
+    }
+
+    @Test
+    public void allocateDoesNotWaitForIndex() throws Exception {
+
+        final CaptureStore store = new CaptureStore(mDirectory);
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch unlock = new CountDownLatch(1);
+        // 模拟写入线程正在 fsync 或整理索引
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (store) {
+                    locked.countDown();
+                    try {
+                        unlock.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        writer.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        final CountDownLatch allocated = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                store.allocate(".jpg");
+                allocated.countDown();
+            }
+        }).start();
+        try {
+            assertTrue(allocated.await(2, TimeUnit.SECONDS));
+        } finally {
+            unlock.countDown();
+            writer.join();
+        }
+    }
+
+    private CaptureRecord[] append(CaptureStore store, int count) throws IOException {
+
+        CaptureRecord[] records = new CaptureRecord[count];
+        for (int i = 0; i < count; i++) {
+            records[i] = store.append(new File(mDirectory, name(i)), 1000L + i, 100L + i, 6, "1");
+        }
+        return records;
+    }
+
+    /**
+     * 第 index 条添加记录在索引中占的字节数, 追加到另一个目录的空索引中测量
+     */
+    private static long record(CaptureStore store, int index) throws IOException {
+
+        File indexFile = new File(store.getDirectory(), CaptureStore.INDEX_FILE_NAME);
+        long before = indexFile.exists() ? indexFile.length() : HEADER_SIZE;
+        store.append(new File(store.getDirectory(), name(index)), 1000L + index, 100L, 6, "1");
+        return indexFile.length() - before;
+    }
+
+    private void appendBytes(byte[] bytes) throws IOException {
+
+        FileOutputStream out = new FileOutputStream(mIndexFile, true);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String name(int index) {
+        return String.format("IMG_%05d.jpg", index);
+    }
+}
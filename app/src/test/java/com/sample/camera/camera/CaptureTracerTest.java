@@ -0,0 +1,162 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link CaptureTracer} 测试, 检查阶段耗时, 回调, 以及重叠的两次拍照互不影响
+ */
+public class CaptureTracerTest {
+
+    private static final class RecordingListener implements CaptureTraceListener {
+
+        final AtomicReference<long[]> phases = new AtomicReference<>();
+        final List<long[]> all = Collections.synchronizedList(new ArrayList<long[]>());
+        volatile long total;
+        volatile int calls;
+
+        @Override
+        public void onCaptureTraced(long[] phaseNanos, long totalNanos) {
+            phases.set(phaseNanos);
+            all.add(phaseNanos);
+            total = totalNanos;
+            calls++;
+        }
+    }
+
+    @Test
+    public void reportsPhaseIntervals() throws InterruptedException {
+
+        CaptureTracer tracer = new CaptureTracer();
+        RecordingListener listener = new RecordingListener();
+        tracer.setListener(listener);
+
+        // 从调用线程记录的时间开始, 包括排队时间
+        CaptureTracer.Span span = tracer.begin(System.nanoTime() - 5_000_000L);
+        tracer.mark(span, CaptureTracer.PHASE_AF_TRIGGER);
+        Thread.sleep(2);
+        tracer.mark(span, CaptureTracer.PHASE_IMAGE_AVAILABLE);
+        tracer.mark(span, CaptureTracer.PHASE_BYTES_WRITTEN);
+        tracer.mark(span, CaptureTracer.PHASE_LISTENER_CALLED);
+        tracer.end(span);
+        // 结束后忽略
+        tracer.end(span);
+        tracer.mark(span, CaptureTracer.PHASE_AF_LOCKED);
+
+        long[] phases = listener.phases.get();
+        assertEquals(1, listener.calls);
+        assertEquals(CaptureTracer.PHASE_COUNT, phases.length);
+        assertTrue(phases[CaptureTracer.PHASE_AF_TRIGGER] >= 5_000_000L);
+        assertTrue(phases[CaptureTracer.PHASE_IMAGE_AVAILABLE] >= 2_000_000L);
+        long sum = 0;
+        for (int i = 0; i < phases.length; i++) {
+            boolean marked = i == CaptureTracer.PHASE_AF_TRIGGER || i == CaptureTracer.PHASE_IMAGE_AVAILABLE
+                    || i == CaptureTracer.PHASE_BYTES_WRITTEN || i == CaptureTracer.PHASE_LISTENER_CALLED;
+            if (marked) {
+                assertTrue(phases[i] >= 0);
+                sum += phases[i];
+            } else {
+                // 未发生的阶段
+                assertEquals(-1, phases[i]);
+            }
+        }
+        assertEquals(listener.total, sum);
+
+        assertTrue(tracer.getPercentileMicros(CaptureTracer.PHASE_AF_TRIGGER, 50) >= 5000);
+        assertEquals(0, tracer.getPercentileMicros(CaptureTracer.PHASE_AF_LOCKED, 50));
+        assertTrue(tracer.getTotalPercentileMicros(99) >= 7000);
+    }
+
+    @Test
+    public void cancelSkipsListenerAndTotals() {
+
+        CaptureTracer tracer = new CaptureTracer();
+        RecordingListener listener = new RecordingListener();
+        tracer.setListener(listener);
+
+        CaptureTracer.Span span = tracer.begin();
+        tracer.mark(span, CaptureTracer.PHASE_AF_TRIGGER);
+        tracer.cancel(span);
+        tracer.end(span);
+        // 放弃后或没有开始时忽略
+        tracer.mark(span, CaptureTracer.PHASE_AF_LOCKED);
+        tracer.mark(null, CaptureTracer.PHASE_AF_LOCKED);
+        tracer.end(null);
+        tracer.cancel(null);
+
+        assertNull(listener.phases.get());
+        assertEquals(0, tracer.getTotalPercentileMicros(50));
+        assertEquals(0, tracer.getPercentileMicros(CaptureTracer.PHASE_AF_LOCKED, 50));
+    }
+
+    @Test
+    public void phasesFromPreviousCaptureAreCleared() {
+
+        CaptureTracer tracer = new CaptureTracer();
+        RecordingListener listener = new RecordingListener();
+        tracer.setListener(listener);
+
+        CaptureTracer.Span first = tracer.begin();
+        tracer.mark(first, CaptureTracer.PHASE_AF_LOCKED);
+        tracer.end(first);
+        CaptureTracer.Span second = tracer.begin();
+        tracer.mark(second, CaptureTracer.PHASE_IMAGE_AVAILABLE);
+        tracer.end(second);
+
+        assertEquals(2, listener.calls);
+        assertEquals(-1, listener.phases.get()[CaptureTracer.PHASE_AF_LOCKED]);
+    }
+
+    @Test
+    public void overlappingCapturesAreTracedSeparately() throws InterruptedException {
+
+        CaptureTracer tracer = new CaptureTracer();
+        RecordingListener listener = new RecordingListener();
+        tracer.setListener(listener);
+
+        // ZSL 连续点击: 第一张还在写入时开始第二张
+        CaptureTracer.Span first = tracer.begin();
+        tracer.mark(first, CaptureTracer.PHASE_IMAGE_AVAILABLE);
+        Thread.sleep(5);
+        CaptureTracer.Span second = tracer.begin();
+        tracer.mark(second, CaptureTracer.PHASE_IMAGE_AVAILABLE);
+        tracer.mark(first, CaptureTracer.PHASE_BYTES_WRITTEN);
+        tracer.end(first);
+        tracer.mark(second, CaptureTracer.PHASE_BYTES_WRITTEN);
+        tracer.end(second);
+
+        assertEquals(2, listener.all.size());
+        long[] firstPhases = listener.all.get(0);
+        long[] secondPhases = listener.all.get(1);
+        // 第二张开始不会重置第一张, 第一张的写入阶段包括等待的 5ms
+        assertTrue(firstPhases[CaptureTracer.PHASE_BYTES_WRITTEN] >= 5_000_000L);
+        assertTrue(secondPhases[CaptureTracer.PHASE_BYTES_WRITTEN] < firstPhases[CaptureTracer.PHASE_BYTES_WRITTEN]);
+        assertTrue(tracer.getTotalPercentileMicros(100) >= 5000);
+    }
+
+    @Test
+    public void dumpAndReset() {
+
+        CaptureTracer tracer = new CaptureTracer();
+        CaptureTracer.Span span = tracer.begin();
+        tracer.mark(span, CaptureTracer.PHASE_STILL_SUBMITTED);
+        tracer.end(span);
+
+        String dump = tracer.dumpStats();
+        assertEquals(CaptureTracer.PHASE_COUNT + 2, dump.split("\n").length);
+        assertTrue(dump.contains(CaptureTracer.getPhaseName(CaptureTracer.PHASE_STILL_SUBMITTED)));
+
+        tracer.reset();
+        assertEquals(0, tracer.getPercentileMicros(CaptureTracer.PHASE_STILL_SUBMITTED, 100));
+    }
+}
@@ -0,0 +1,120 @@
+package com.sample.camera.camera;
+
+import android.hardware.camera2.CaptureRequest;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link FlashConfigTable} 测试, 逐格对比 (是否有闪光灯, 朝向, 闪光灯状态, 预览 / 拍照) 的全部 32 种组合
+ * 有闪光灯的期望值来自原 setAutoFlash 中的 switch
+ */
+public class FlashConfigTableTest {
+
+    private static final int Y = 1;
+    private static final int N = 0;
+
+    private static final int AE_ON = CaptureRequest.CONTROL_AE_MODE_ON;
+    private static final int AE_AUTO = CaptureRequest.CONTROL_AE_MODE_ON_AUTO_FLASH;
+    private static final int OFF = CaptureRequest.FLASH_MODE_OFF;
+    private static final int SINGLE = CaptureRequest.FLASH_MODE_SINGLE;
+    private static final int TORCH = CaptureRequest.FLASH_MODE_TORCH;
+
+    /**
+     * {有闪光灯, 前置, 闪光灯状态, 预览, CONTROL_AE_MODE, FLASH_MODE, 屏幕补光}
+     */
+    private static final int[][] EXPECTED = {
+            // 后置, 有闪光灯
+            {Y, N, Camera2View.FLASH_MODEL_OFF, Y, AE_ON, OFF, N},
+            {Y, N, Camera2View.FLASH_MODEL_OFF, N, AE_ON, OFF, N},
+            {Y, N, Camera2View.FLASH_MODEL_ON, Y, AE_ON, OFF, N},
+            {Y, N, Camera2View.FLASH_MODEL_ON, N, AE_ON, TORCH, N},
+            {Y, N, Camera2View.FLASH_MODEL_AUTO, Y, AE_AUTO, OFF, N},
+            {Y, N, Camera2View.FLASH_MODEL_AUTO, N, AE_AUTO, OFF, N},
+            {Y, N, Camera2View.FLASH_MODEL_ALWAYS, Y, AE_ON, TORCH, N},
+            {Y, N, Camera2View.FLASH_MODEL_ALWAYS, N, AE_ON, TORCH, N},
+            // 前置, 有闪光灯
+            {Y, Y, Camera2View.FLASH_MODEL_OFF, Y, AE_ON, OFF, N},
+            {Y, Y, Camera2View.FLASH_MODEL_OFF, N, AE_ON, OFF, N},
+            {Y, Y, Camera2View.FLASH_MODEL_ON, Y, AE_ON, OFF, N},
+            {Y, Y, Camera2View.FLASH_MODEL_ON, N, AE_ON, SINGLE, N},
+            {Y, Y, Camera2View.FLASH_MODEL_AUTO, Y, AE_AUTO, OFF, N},
+            {Y, Y, Camera2View.FLASH_MODEL_AUTO, N, AE_AUTO, OFF, N},
+            {Y, Y, Camera2View.FLASH_MODEL_ALWAYS, Y, AE_ON, TORCH, N},
+            {Y, Y, Camera2View.FLASH_MODEL_ALWAYS, N, AE_ON, TORCH, N},
+            // 后置, 没有闪光灯
+            {N, N, Camera2View.FLASH_MODEL_OFF, Y, AE_ON, OFF, N},
+            {N, N, Camera2View.FLASH_MODEL_OFF, N, AE_ON, OFF, N},
+            {N, N, Camera2View.FLASH_MODEL_ON, Y, AE_ON, OFF, N},
+            {N, N, Camera2View.FLASH_MODEL_ON, N, AE_ON, OFF, N},
+            {N, N, Camera2View.FLASH_MODEL_AUTO, Y, AE_ON, OFF, N},
+            {N, N, Camera2View.FLASH_MODEL_AUTO, N, AE_ON, OFF, N},
+            {N, N, Camera2View.FLASH_MODEL_ALWAYS, Y, AE_ON, OFF, N},
+            {N, N, Camera2View.FLASH_MODEL_ALWAYS, N, AE_ON, OFF, N},
+            // 前置, 没有闪光灯, 用屏幕补光
+            {N, Y, Camera2View.FLASH_MODEL_OFF, Y, AE_ON, OFF, N},
+            {N, Y, Camera2View.FLASH_MODEL_OFF, N, AE_ON, OFF, N},
+            {N, Y, Camera2View.FLASH_MODEL_ON, Y, AE_ON, OFF, N},
+            {N, Y, Camera2View.FLASH_MODEL_ON, N, AE_ON, OFF, Y},
+            {N, Y, Camera2View.FLASH_MODEL_AUTO, Y, AE_ON, OFF, N},
+            {N, Y, Camera2View.FLASH_MODEL_AUTO, N, AE_ON, OFF, N},
+            {N, Y, Camera2View.FLASH_MODEL_ALWAYS, Y, AE_ON, OFF, Y},
+            {N, Y, Camera2View.FLASH_MODEL_ALWAYS, N, AE_ON, OFF, Y},
+    };
+
+    @Test
+    public void everyCombinationMatchesExpected() {
+
+        assertEquals(2 * 2 * FlashConfigTable.FLASH_MODEL_COUNT * 2, EXPECTED.length);
+        for (int[] row : EXPECTED) {
+            boolean flashSupported = row[0] == Y;
+            boolean frontFacing = row[1] == Y;
+            int flashModel = row[2];
+            boolean preview = row[3] == Y;
+            String message = "flash " + flashSupported + " front " + frontFacing
+                    + " model " + flashModel + " preview " + preview;
+
+            FlashConfigTable.Entry entry = FlashConfigTable.create(flashSupported, frontFacing).get(flashModel, preview);
+
+            assertEquals(message, Integer.valueOf(row[4]), entry.aeMode);
+            assertEquals(message, Integer.valueOf(row[5]), entry.flashMode);
+            assertEquals(message, row[6] == Y, entry.screenFlash);
+        }
+    }
+
+    @Test
+    public void tableCoversEveryCombinationOnce() {
+
+        boolean[][][][] seen = new boolean[2][2][FlashConfigTable.FLASH_MODEL_COUNT][2];
+        for (int[] row : EXPECTED) {
+            assertFalse(seen[row[0]][row[1]][row[2]][row[3]]);
+            seen[row[0]][row[1]][row[2]][row[3]] = true;
+        }
+    }
+
+    @Test
+    public void tableMatchesResolve() {
+
+        for (boolean flashSupported : new boolean[]{true, false}) {
+            for (boolean frontFacing : new boolean[]{true, false}) {
+                FlashConfigTable table = FlashConfigTable.create(flashSupported, frontFacing);
+                for (int flashModel = 0; flashModel < FlashConfigTable.FLASH_MODEL_COUNT; flashModel++) {
+                    for (boolean preview : new boolean[]{true, false}) {
+                        FlashConfigTable.Entry expected = FlashConfigTable.resolve(flashModel, frontFacing, preview, flashSupported);
+                        FlashConfigTable.Entry entry = table.get(flashModel, preview);
+                        assertEquals(expected.aeMode, entry.aeMode);
+                        assertEquals(expected.flashMode, entry.flashMode);
+                        assertEquals(expected.screenFlash, entry.screenFlash);
+                        // 生成后只读, 每次返回同一个对象
+                        assertSame(entry, table.get(flashModel, preview));
+                    }
+                }
+            }
+        }
+    }
+}
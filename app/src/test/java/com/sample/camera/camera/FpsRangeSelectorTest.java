@@ -0,0 +1,67 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link FpsRangeSelector} 测试, 范围表取自一台后置摄像头的 CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES,
+ * 通过下限/上限数组调用, 不依赖 android.util.Range
+ */
+public class FpsRangeSelectorTest {
+
+    private static final int[][] AE_RANGES = {
+            {7, 10}, {15, 15}, {24, 24}, {7, 30}, {15, 30}, {30, 30}, {30, 60}, {60, 60}
+    };
+
+    private static void assertSelected(int lower, int upper, int[][] ranges, int mode) {
+
+        int[] lowers = new int[ranges.length];
+        int[] uppers = new int[ranges.length];
+        for (int i = 0; i < ranges.length; i++) {
+            lowers[i] = ranges[i][0];
+            uppers[i] = ranges[i][1];
+        }
+        int index = FpsRangeSelector.select(lowers, uppers, mode);
+        assertEquals("[" + lower + ", " + upper + "]", "[" + lowers[index] + ", " + uppers[index] + "]");
+    }
+
+    @Test
+    public void batterySaverPicksLowestSmoothUpper() {
+
+        // [7, 10] 上限低于 15, 不流畅
+        assertSelected(15, 15, AE_RANGES, Camera2View.PREVIEW_MODE_BATTERY_SAVER);
+        // 没有流畅的范围时取上限最高的
+        assertSelected(8, 12, new int[][]{{7, 10}, {8, 12}}, Camera2View.PREVIEW_MODE_BATTERY_SAVER);
+        // 上限相同时取下限低的
+        assertSelected(7, 15, new int[][]{{15, 15}, {7, 15}}, Camera2View.PREVIEW_MODE_BATTERY_SAVER);
+    }
+
+    @Test
+    public void balancedPicksUpperClosestTo30() {
+
+        // 上限为 30 的三个范围中, 下限不低于 15 的里面取下限低的
+        assertSelected(15, 30, AE_RANGES, Camera2View.PREVIEW_MODE_BALANCED);
+        // 距离相同时低于 30 的优先
+        assertSelected(24, 24, new int[][]{{15, 36}, {24, 24}}, Camera2View.PREVIEW_MODE_BALANCED);
+        assertSelected(15, 24, new int[][]{{7, 24}, {15, 24}}, Camera2View.PREVIEW_MODE_BALANCED);
+        // 未知模式按均衡处理
+        assertSelected(15, 30, AE_RANGES, -1);
+    }
+
+    @Test
+    public void highFpsPicksHighestFixedUpper() {
+
+        assertSelected(60, 60, AE_RANGES, Camera2View.PREVIEW_MODE_HIGH_FPS);
+        assertSelected(30, 60, new int[][]{{15, 30}, {30, 60}}, Camera2View.PREVIEW_MODE_HIGH_FPS);
+        // 高速会话的范围按同样规则选择
+        assertSelected(120, 120, new int[][]{{30, 120}, {120, 120}, {60, 60}}, Camera2View.PREVIEW_MODE_HIGH_SPEED);
+    }
+
+    @Test
+    public void emptyRanges() {
+        assertEquals(-1, FpsRangeSelector.select(new int[0], new int[0], Camera2View.PREVIEW_MODE_BALANCED));
+    }
+}
@@ -0,0 +1,132 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link FrameRing} 测试, 用合成的时间戳检查淘汰顺序和按点击时间选帧
+ */
+public class FrameRingTest {
+
+    /**
+     * 33ms 一帧
+     */
+    private static final long FRAME_NS = 33_000_000L;
+
+    private final List<String> mEvicted = new ArrayList<>();
+
+    private FrameRing<String> newRing(int capacity) {
+
+        return new FrameRing<>(capacity, new FrameRing.Evictor<String>() {
+            @Override
+            public void onEvicted(String frame) {
+                mEvicted.add(frame);
+            }
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveCapacity() {
+        newRing(0);
+    }
+
+    @Test
+    public void evictsOldestWhenFull() {
+
+        FrameRing<String> ring = newRing(3);
+        for (int i = 0; i < 5; i++) {
+            ring.add("f" + i, i * FRAME_NS, 0);
+        }
+
+        assertEquals(3, ring.size());
+        assertEquals(Arrays.asList("f0", "f1"), mEvicted);
+        assertEquals("f2", ring.removeClosest(0));
+    }
+
+    @Test
+    public void removesFrameClosestToTap() {
+
+        FrameRing<String> ring = newRing(4);
+        for (int i = 0; i < 4; i++) {
+            ring.add("f" + i, 1000 + i * FRAME_NS, 0);
+        }
+
+        assertEquals("f1", ring.removeClosest(1000 + FRAME_NS + 10));
+        // f1 已取出, f2 更接近
+        assertEquals("f2", ring.removeClosest(1000 + FRAME_NS + 10));
+        // 点击时间晚于所有帧时取最新的
+        assertEquals("f3", ring.removeClosest(Long.MAX_VALUE));
+        assertEquals("f0", ring.removeClosest(0));
+        assertNull(ring.removeClosest(0));
+        assertEquals(0, ring.size());
+        assertEquals(0, mEvicted.size());
+    }
+
+    @Test
+    public void tieGoesToNewerFrame() {
+
+        FrameRing<String> ring = newRing(2);
+        ring.add("old", 0, 0);
+        ring.add("new", 2 * FRAME_NS, 0);
+
+        assertEquals(1, ring.indexOfClosest(FRAME_NS));
+    }
+
+    @Test
+    public void removesSharpestWithinWindow() {
+
+        FrameRing<String> ring = newRing(5);
+        long[] scores = {900, 100, 500, 300, 100};
+        for (int i = 0; i < scores.length; i++) {
+            ring.add("f" + i, i * FRAME_NS, scores[i]);
+        }
+
+        // 点击 f3, 窗口内 f2 ~ f4 中 f2 最清晰, 窗口外更清晰的 f0 不选
+        assertEquals("f2", ring.removeSharpest(3 * FRAME_NS, FRAME_NS));
+        // 窗口内没有帧时取最接近的
+        assertEquals("f4", ring.removeSharpest(10 * FRAME_NS, FRAME_NS));
+        assertEquals(3, ring.size());
+    }
+
+    @Test
+    public void keepsTimeOrderAfterRemovingWrappedFrame() {
+
+        FrameRing<String> ring = newRing(4);
+        for (int i = 0; i < 6; i++) {
+            ring.add("f" + i, i * FRAME_NS, 0);
+        }
+        // 环绕后从中间取出一帧
+        assertEquals("f3", ring.removeClosest(3 * FRAME_NS));
+        ring.add("f6", 6 * FRAME_NS, 0);
+        ring.add("f7", 7 * FRAME_NS, 0);
+
+        assertEquals(Arrays.asList("f0", "f1", "f2"), mEvicted);
+        assertEquals(0, ring.indexOfClosest(4 * FRAME_NS));
+        assertEquals("f4", ring.removeClosest(0));
+        assertEquals("f5", ring.removeClosest(0));
+        assertEquals("f6", ring.removeClosest(0));
+        assertEquals("f7", ring.removeClosest(0));
+    }
+
+    @Test
+    public void clearEvictsEveryFrame() {
+
+        FrameRing<String> ring = newRing(3);
+        ring.add("a", 1, 0);
+        ring.add("b", 2, 0);
+        ring.clear();
+
+        assertEquals(Arrays.asList("a", "b"), mEvicted);
+        assertEquals(0, ring.size());
+        ring.add("c", 3, 0);
+        assertEquals("c", ring.removeClosest(3));
+    }
+}
@@ -0,0 +1,199 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link FrameStatsCollector} 测试, 用合成的帧号和时间戳检查帧间隔, 丢帧和失败统计
+ */
+public class FrameStatsCollectorTest {
+
+    private static final long FRAME_30FPS_NS = 33_333_333L;
+    private static final long FRAME_60FPS_NS = 16_666_666L;
+    private static final long EXPOSURE_NS = 10_000_000L;
+
+    @Test
+    public void steadyFrameRate() {
+
+        FrameStatsCollector collector = new FrameStatsCollector(120);
+        for (int i = 0; i < 100; i++) {
+            collector.onFrameCompleted(i, 1_000_000L + i * FRAME_30FPS_NS, FRAME_30FPS_NS, EXPOSURE_NS);
+        }
+        FrameStats stats = collector.snapshot();
+
+        assertEquals(100, stats.getCompletedCount());
+        assertEquals(0, stats.getDroppedCount());
+        assertEquals(0, stats.getFailedCount());
+        assertEquals(FRAME_30FPS_NS, stats.getFrameIntervalNs(50));
+        assertEquals(FRAME_30FPS_NS, stats.getFrameIntervalNs(99));
+        assertEquals(FRAME_30FPS_NS, stats.getFrameDurationNs(50));
+        assertEquals(EXPOSURE_NS, stats.getExposureTimeNs(99));
+        assertEquals(30f, stats.getFramesPerSecond(), 0.01f);
+    }
+
+    @Test
+    public void frameNumberGapCountsAsDropped() {
+
+        FrameStatsCollector collector = new FrameStatsCollector(120);
+        collector.onFrameCompleted(10, FRAME_30FPS_NS, -1, -1);
+        collector.onFrameCompleted(11, 2 * FRAME_30FPS_NS, -1, -1);
+        // 12, 13 丢失
+        collector.onFrameCompleted(14, 5 * FRAME_30FPS_NS, -1, -1);
+        collector.onFrameCompleted(15, 6 * FRAME_30FPS_NS, -1, -1);
+        FrameStats stats = collector.snapshot();
+
+        assertEquals(2, stats.getDroppedCount());
+        assertEquals(2f / 6, stats.getDropRate(), 1e-6f);
+        // 跨越丢帧的间隔不统计
+        assertEquals(FRAME_30FPS_NS, stats.getFrameIntervalNs(100));
+        // 没有元数据时不记录
+        assertEquals(-1, stats.getFrameDurationNs(50));
+        assertEquals(-1, stats.getExposureTimeNs(50));
+    }
+
+    @Test
+    public void failedFramesAreNotDropped() {
+
+        FrameStatsCollector collector = new FrameStatsCollector(120);
+        collector.onFrameCompleted(0, FRAME_30FPS_NS, -1, -1);
+        collector.onFrameFailed();
+        collector.onFrameCompleted(2, 3 * FRAME_30FPS_NS, -1, -1);
+        collector.onFrameFailed();
+        // 一帧失败, 一帧丢失
+        collector.onFrameCompleted(5, 6 * FRAME_30FPS_NS, -1, -1);
+        FrameStats stats = collector.snapshot();
+
+        assertEquals(2, stats.getFailedCount());
+        assertEquals(1, stats.getDroppedCount());
+        assertEquals(2f / 5, stats.getFailureRate(), 1e-6f);
+        assertEquals(-1, stats.getFrameIntervalNs(50));
+    }
+
+    @Test
+    public void resetSequenceSkipsNextFrame() {
+
+        FrameStatsCollector collector = new FrameStatsCollector(120);
+        collector.onFrameCompleted(0, FRAME_30FPS_NS, -1, -1);
+        collector.onFrameCompleted(1, 2 * FRAME_30FPS_NS, -1, -1);
+        // 拍照请求插入, 帧号跳过而且间隔变长
+        collector.resetSequence();
+        collector.onFrameCompleted(5, 20 * FRAME_30FPS_NS, -1, -1);
+        collector.onFrameCompleted(6, 21 * FRAME_30FPS_NS, -1, -1);
+        FrameStats stats = collector.snapshot();
+
+        assertEquals(0, stats.getDroppedCount());
+        assertEquals(FRAME_30FPS_NS, stats.getFrameIntervalNs(100));
+        assertEquals(4, stats.getCompletedCount());
+    }
+
+    @Test
+    public void lateOrDuplicateFramesDoNotMoveSequence() {
+
+        FrameStatsCollector collector = new FrameStatsCollector(120);
+        collector.onFrameCompleted(5, 5 * FRAME_30FPS_NS, -1, -1);
+        collector.onFrameCompleted(5, 5 * FRAME_30FPS_NS, -1, -1);
+        collector.onFrameCompleted(3, 3 * FRAME_30FPS_NS, -1, -1);
+        collector.onFrameCompleted(6, 6 * FRAME_30FPS_NS, -1, -1);
+        FrameStats stats = collector.snapshot();
+
+        assertEquals(0, stats.getDroppedCount());
+        assertEquals(FRAME_30FPS_NS, stats.getFrameIntervalNs(50));
+    }
+
+    @Test
+    public void percentilesUseRecentWindow() {
+
+        FrameStatsCollector collector = new FrameStatsCollector(10);
+        long timestamp = 0;
+        for (int i = 0; i < 50; i++) {
+            timestamp += FRAME_30FPS_NS;
+            collector.onFrameCompleted(i, timestamp, FRAME_30FPS_NS, -1);
+        }
+        for (int i = 50; i < 100; i++) {
+            timestamp += FRAME_60FPS_NS;
+            collector.onFrameCompleted(i, timestamp, FRAME_60FPS_NS, -1);
+        }
+        FrameStats stats = collector.snapshot();
+
+        assertEquals(100, stats.getCompletedCount());
+        assertEquals(FRAME_60FPS_NS, stats.getFrameIntervalNs(100));
+        assertEquals(FRAME_60FPS_NS, stats.getFrameDurationNs(100));
+        assertEquals(60f, stats.getFramesPerSecond(), 0.01f);
+    }
+
+    @Test
+    public void resetClearsEverything() {
+
+        FrameStatsCollector collector = new FrameStatsCollector(10);
+        collector.onFrameCompleted(0, FRAME_30FPS_NS, FRAME_30FPS_NS, EXPOSURE_NS);
+        collector.onFrameFailed();
+        collector.onFrameCompleted(5, 6 * FRAME_30FPS_NS, FRAME_30FPS_NS, EXPOSURE_NS);
+        collector.reset();
+        FrameStats stats = collector.snapshot();
+
+        assertEquals(0, stats.getCompletedCount());
+        assertEquals(0, stats.getFailedCount());
+        assertEquals(0, stats.getDroppedCount());
+        assertEquals(-1, stats.getExposureTimeNs(50));
+        assertEquals(0f, stats.getFramesPerSecond(), 0f);
+        assertEquals(0f, stats.getDropRate(), 0f);
+
+        // 重置后的第一帧不与之前的帧比较
+        collector.onFrameCompleted(9, 10 * FRAME_30FPS_NS, -1, -1);
+        assertEquals(0, collector.snapshot().getDroppedCount());
+    }
+
+    @Test
+    public void percentileRanks() {
+
+        FrameStats stats = new FrameStats(0, 0, 0, new long[]{5, 1, 4, 2, 3}, new long[0], new long[0]);
+
+        assertEquals(1, stats.getFrameIntervalNs(0));
+        assertEquals(1, stats.getFrameIntervalNs(20));
+        assertEquals(3, stats.getFrameIntervalNs(50));
+        assertEquals(5, stats.getFrameIntervalNs(99));
+        assertEquals(5, stats.getFrameIntervalNs(100));
+        assertTrue(stats.toString().startsWith("frames=0 failed=0 dropped=0"));
+    }
+
+    @Test
+    public void snapshotWhileWriting() throws InterruptedException {
+
+        final FrameStatsCollector collector = new FrameStatsCollector(64);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (running.get()) {
+                        FrameStats stats = collector.snapshot();
+                        long interval = stats.getFrameIntervalNs(50);
+                        if (interval != -1 && interval != FRAME_30FPS_NS) {
+                            throw new AssertionError("interval " + interval);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 200_000; i++) {
+            collector.onFrameCompleted(i, (i + 1) * FRAME_30FPS_NS, FRAME_30FPS_NS, EXPOSURE_NS);
+        }
+        running.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(200_000, collector.snapshot().getCompletedCount());
+    }
+}
@@ -0,0 +1,141 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link JpegBufferPool} 测试, 通过分配计数检查稳定运行时不再分配
+ */
+public class JpegBufferPoolTest {
+
+    @Test
+    public void reusesBuffersInSteadyState() {
+
+        JpegBufferPool pool = new JpegBufferPool(1024, 3);
+        for (int i = 0; i < 1000; i++) {
+            ByteBuffer a = pool.acquire(100 + i % 900);
+            ByteBuffer b = pool.acquire(1024);
+            pool.release(a);
+            pool.release(b);
+        }
+
+        assertEquals(2, pool.getAllocationCount());
+        assertEquals(0, pool.getOutstandingCount());
+    }
+
+    @Test
+    public void acquireResetsPositionAndLimit() {
+
+        JpegBufferPool pool = new JpegBufferPool(64, 1);
+        ByteBuffer buffer = pool.acquire(10);
+        assertTrue(buffer.isDirect());
+        assertEquals(64, buffer.capacity());
+        buffer.put(new byte[10]).flip();
+        pool.release(buffer);
+
+        ByteBuffer again = pool.acquire(20);
+        assertSame(buffer, again);
+        assertEquals(0, again.position());
+        assertEquals(20, again.limit());
+    }
+
+    @Test
+    public void allocatesWhenPooledBuffersAreTooSmall() {
+
+        JpegBufferPool pool = new JpegBufferPool(64, 2);
+        pool.release(pool.acquire(10));
+
+        ByteBuffer large = pool.acquire(100);
+
+        assertEquals(2, pool.getAllocationCount());
+        assertEquals(100, large.capacity());
+        assertEquals(100, large.limit());
+    }
+
+    @Test
+    public void dropsSmallestBufferWhenFull() {
+
+        JpegBufferPool pool = new JpegBufferPool(10, 2);
+        ByteBuffer small = pool.acquire(10);
+        ByteBuffer medium = pool.acquire(20);
+        ByteBuffer large = pool.acquire(30);
+        pool.release(medium);
+        pool.release(large);
+        // 池已满, 归还的是最小的那个, 直接丢弃
+        pool.release(small);
+        assertEquals(0, pool.getOutstandingCount());
+
+        List<ByteBuffer> pooled = new ArrayList<>();
+        pooled.add(pool.acquire(1));
+        pooled.add(pool.acquire(1));
+        assertTrue(pooled.contains(medium));
+        assertTrue(pooled.contains(large));
+        assertEquals(3, pool.getAllocationCount());
+
+        // 再归还一个更大的缓冲区时替换掉最小的
+        pool.release(medium);
+        pool.release(large);
+        ByteBuffer larger = ByteBuffer.allocateDirect(40);
+        pool.release(larger);
+        pooled.clear();
+        pooled.add(pool.acquire(1));
+        pooled.add(pool.acquire(1));
+        assertTrue(pooled.contains(large));
+        assertTrue(pooled.contains(larger));
+    }
+
+    @Test
+    public void estimatesOneBytePerPixel() {
+        assertEquals(4032 * 3024, JpegBufferPool.estimateJpegSize(4032, 3024));
+    }
+
+    @Test
+    public void concurrentAcquireAndRelease() throws InterruptedException {
+
+        final JpegBufferPool pool = new JpegBufferPool(256, 8);
+        final int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 10000; i++) {
+                            ByteBuffer buffer = pool.acquire(256);
+                            buffer.putInt(0, i);
+                            if (buffer.getInt(0) != i) {
+                                throw new AssertionError("buffer shared between threads");
+                            }
+                            pool.release(buffer);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+
+        assertNull(failure.get());
+        assertEquals(0, pool.getOutstandingCount());
+        assertTrue(pool.getAllocationCount() <= threads);
+    }
+}
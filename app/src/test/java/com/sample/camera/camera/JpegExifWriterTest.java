@@ -0,0 +1,284 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link JpegExifWriter} 测试, 样本 JPEG 由 ImageIO 编码, 输出再用 ImageIO 解码并单独解析 EXIF
+ */
+public class JpegExifWriterTest {
+
+    private static final int ORIENTATION_ROTATE_90 = 6;
+    private static final int ORIENTATION_ROTATE_270 = 8;
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_IMAGE_WIDTH = 0x0100;
+
+    @Test
+    public void insertsExifSegmentWhenMissing() throws IOException {
+
+        byte[] jpeg = sampleJpeg();
+        ByteBuffer[] segments = JpegExifWriter.applyOrientation(ByteBuffer.wrap(jpeg), ORIENTATION_ROTATE_90);
+
+        assertNotNull(segments);
+        assertEquals(3, segments.length);
+        byte[] output = concat(segments);
+        assertEquals(ORIENTATION_ROTATE_90, readOrientation(output));
+        assertDecodes(output);
+    }
+
+    @Test
+    public void patchesExistingOrientationInPlace() throws IOException {
+
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            byte[] jpeg = withApp1(sampleJpeg(), exifSegment(order, TAG_ORIENTATION, 1, false));
+            ByteBuffer buffer = ByteBuffer.wrap(jpeg);
+            ByteBuffer[] segments = JpegExifWriter.applyOrientation(buffer, ORIENTATION_ROTATE_270);
+
+            assertNotNull(segments);
+            assertEquals(1, segments.length);
+            assertEquals(0, buffer.position());
+            byte[] output = concat(segments);
+            assertEquals(jpeg.length, output.length);
+            assertEquals(ORIENTATION_ROTATE_270, readOrientation(output));
+            assertDecodes(output);
+        }
+    }
+
+    @Test
+    public void keepsBufferPositionAndLimit() throws IOException {
+
+        byte[] jpeg = sampleJpeg();
+        // 数据前后有无关字节
+        byte[] padded = new byte[jpeg.length + 20];
+        System.arraycopy(jpeg, 0, padded, 10, jpeg.length);
+        ByteBuffer buffer = ByteBuffer.wrap(padded);
+        buffer.position(10).limit(10 + jpeg.length);
+
+        byte[] output = concat(JpegExifWriter.applyOrientation(buffer, ORIENTATION_ROTATE_90));
+
+        assertEquals(10, buffer.position());
+        assertEquals(10 + jpeg.length, buffer.limit());
+        assertEquals(ORIENTATION_ROTATE_90, readOrientation(output));
+        assertDecodes(output);
+    }
+
+    @Test
+    public void returnsNullWhenFallbackIsNeeded() throws IOException {
+
+        // EXIF 中没有方向标签
+        byte[] withoutTag = withApp1(sampleJpeg(), exifSegment(ByteOrder.BIG_ENDIAN, TAG_IMAGE_WIDTH, 1, false));
+        assertNull(JpegExifWriter.applyOrientation(ByteBuffer.wrap(withoutTag), ORIENTATION_ROTATE_90));
+
+        // 只读数据不能修改
+        byte[] withTag = withApp1(sampleJpeg(), exifSegment(ByteOrder.BIG_ENDIAN, TAG_ORIENTATION, 1, false));
+        assertNull(JpegExifWriter.applyOrientation(ByteBuffer.wrap(withTag).asReadOnlyBuffer(), ORIENTATION_ROTATE_90));
+
+        // 不是 JPEG
+        assertNull(JpegExifWriter.applyOrientation(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5}), ORIENTATION_ROTATE_90));
+
+        // 段长度越界
+        byte[] truncated = withApp1(sampleJpeg(), exifSegment(ByteOrder.BIG_ENDIAN, TAG_ORIENTATION, 1, false));
+        truncated[4] = (byte) 0x7F;
+        assertNull(JpegExifWriter.applyOrientation(ByteBuffer.wrap(truncated), ORIENTATION_ROTATE_90));
+    }
+
+    @Test
+    public void findsIfd1Thumbnail() throws IOException {
+
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            byte[] app1 = exifSegment(order, TAG_ORIENTATION, 1, true);
+            byte[] jpeg = withApp1(sampleJpeg(), app1);
+
+            int[] thumbnail = JpegExifWriter.findThumbnail(ByteBuffer.wrap(jpeg));
+
+            assertNotNull(thumbnail);
+            byte[] data = new byte[thumbnail[1]];
+            System.arraycopy(jpeg, thumbnail[0], data, 0, data.length);
+            assertArrayEquals(THUMBNAIL, data);
+        }
+        assertNull(JpegExifWriter.findThumbnail(ByteBuffer.wrap(sampleJpeg())));
+    }
+
+    @Test
+    public void writeFullyWritesEverySegment() throws IOException {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // 每次只写一个字节, 检查循环写入
+        final WritableByteChannel target = Channels.newChannel(out);
+        GatheringByteChannel channel = new GatheringByteChannel() {
+            @Override
+            public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+                for (int i = offset; i < offset + length; i++) {
+                    if (srcs[i].hasRemaining()) {
+                        ByteBuffer one = srcs[i].duplicate();
+                        one.limit(one.position() + 1);
+                        srcs[i].position(srcs[i].position() + 1);
+                        return target.write(one);
+                    }
+                }
+                return 0;
+            }
+
+            @Override
+            public long write(ByteBuffer[] srcs) throws IOException {
+                return write(srcs, 0, srcs.length);
+            }
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                return (int) write(new ByteBuffer[]{src});
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        byte[] jpeg = sampleJpeg();
+        ByteBuffer[] segments = JpegExifWriter.applyOrientation(ByteBuffer.wrap(jpeg), ORIENTATION_ROTATE_90);
+        long expected = 0;
+        for (ByteBuffer segment : segments) {
+            expected += segment.remaining();
+        }
+
+        assertEquals(expected, JpegExifWriter.writeFully(channel, segments));
+        assertEquals(expected, out.size());
+        assertEquals(ORIENTATION_ROTATE_90, readOrientation(out.toByteArray()));
+    }
+
+    private static final byte[] THUMBNAIL = {(byte) 0xFF, (byte) 0xD8, 1, 2, 3, 4, 5, (byte) 0xFF, (byte) 0xD9};
+
+    private static byte[] sampleJpeg() throws IOException {
+
+        BufferedImage image = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x * 8) << 16 | (y * 10) << 8 | 0x40);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 在 SOI 之后插入 APP1 段
+     */
+    private static byte[] withApp1(byte[] jpeg, byte[] app1) {
+
+        byte[] result = new byte[jpeg.length + app1.length];
+        System.arraycopy(jpeg, 0, result, 0, 2);
+        System.arraycopy(app1, 0, result, 2, app1.length);
+        System.arraycopy(jpeg, 2, result, 2 + app1.length, jpeg.length - 2);
+        return result;
+    }
+
+    /**
+     * 生成 EXIF APP1 段, IFD0 只有一个 SHORT 标签, 可选 IFD1 缩略图
+     */
+    private static byte[] exifSegment(ByteOrder order, int tag, int value, boolean thumbnail) {
+
+        ByteBuffer tiff = ByteBuffer.allocate(256).order(order);
+        tiff.put(order == ByteOrder.BIG_ENDIAN ? (byte) 'M' : (byte) 'I');
+        tiff.put(order == ByteOrder.BIG_ENDIAN ? (byte) 'M' : (byte) 'I');
+        tiff.putShort((short) 0x2A);
+        tiff.putInt(8);
+        // IFD0
+        tiff.putShort((short) 1);
+        tiff.putShort((short) tag).putShort((short) 3).putInt(1).putShort((short) value).putShort((short) 0);
+        int ifd1 = tiff.position() + 4;
+        tiff.putInt(thumbnail ? ifd1 : 0);
+        if (thumbnail) {
+            int data = ifd1 + 2 + 2 * 12 + 4;
+            tiff.putShort((short) 2);
+            tiff.putShort((short) 0x0201).putShort((short) 4).putInt(1).putInt(data);
+            tiff.putShort((short) 0x0202).putShort((short) 4).putInt(1).putInt(THUMBNAIL.length);
+            tiff.putInt(0);
+            tiff.put(THUMBNAIL);
+        }
+        tiff.flip();
+
+        ByteBuffer segment = ByteBuffer.allocate(4 + 6 + tiff.remaining()).order(ByteOrder.BIG_ENDIAN);
+        segment.put((byte) 0xFF).put((byte) 0xE1);
+        segment.putShort((short) (2 + 6 + tiff.remaining()));
+        segment.put(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+        segment.put(tiff);
+        return segment.array();
+    }
+
+    private static byte[] concat(ByteBuffer[] segments) {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer segment : segments) {
+            ByteBuffer copy = segment.duplicate();
+            byte[] data = new byte[copy.remaining()];
+            copy.get(data);
+            out.write(data, 0, data.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertDecodes(byte[] jpeg) throws IOException {
+
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertNotNull(image);
+        assertEquals(32, image.getWidth());
+        assertEquals(24, image.getHeight());
+    }
+
+    /**
+     * 独立于被测代码解析 EXIF 方向, 没有时返回 -1
+     */
+    private static int readOrientation(byte[] jpeg) {
+
+        ByteBuffer buffer = ByteBuffer.wrap(jpeg);
+        assertEquals(0xFFD8, buffer.getShort(0) & 0xFFFF);
+        int pos = 2;
+        while (pos + 4 <= jpeg.length) {
+            int marker = buffer.getShort(pos) & 0xFFFF;
+            int length = buffer.getShort(pos + 2) & 0xFFFF;
+            if (marker == 0xFFDA) {
+                break;
+            }
+            if (marker == 0xFFE1 && jpeg[pos + 4] == 'E' && jpeg[pos + 5] == 'x') {
+                int tiff = pos + 10;
+                ByteBuffer tiffBuffer = ByteBuffer.wrap(jpeg).order(jpeg[tiff] == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+                assertEquals(0x2A, tiffBuffer.getShort(tiff + 2));
+                int ifd0 = tiff + tiffBuffer.getInt(tiff + 4);
+                int count = tiffBuffer.getShort(ifd0);
+                for (int i = 0; i < count; i++) {
+                    int entry = ifd0 + 2 + i * 12;
+                    if ((tiffBuffer.getShort(entry) & 0xFFFF) == TAG_ORIENTATION) {
+                        return tiffBuffer.getShort(entry + 8);
+                    }
+                }
+                return -1;
+            }
+            pos += 2 + length;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,112 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link LatencyHistogram} 测试, 检查分桶误差和百分位
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketUpperBoundWithinOneSixteenth() {
+
+        Random random = new Random(42);
+        int lastIndex = -1;
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            // 桶序号随数值单调不减
+            assertTrue(index >= lastIndex);
+            lastIndex = index;
+            assertBucketContains(value);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertBucketContains(random.nextLong() >>> 1);
+        }
+        assertBucketContains(Long.MAX_VALUE);
+    }
+
+    private static void assertBucketContains(long value) {
+
+        int index = LatencyHistogram.bucketIndex(value);
+        long upper = LatencyHistogram.bucketUpperBound(index);
+        assertTrue(value + " > " + upper, upper >= value);
+        assertTrue(value + " -> " + upper, upper - value <= value / 16);
+        if (index > 0) {
+            assertTrue(LatencyHistogram.bucketUpperBound(index - 1) < value);
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformLatencies() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000L);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMaxMicros());
+        assertWithin(5000, histogram.getPercentileMicros(50));
+        assertWithin(9500, histogram.getPercentileMicros(95));
+        assertWithin(9900, histogram.getPercentileMicros(99));
+        assertEquals(10_000, histogram.getPercentileMicros(100));
+        assertEquals(1, histogram.getPercentileMicros(0));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, actual >= expected && actual - expected <= expected / 16);
+    }
+
+    @Test
+    public void emptyAndReset() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMicros(50));
+
+        histogram.record(5_000_000);
+        // 负数按 0 记录
+        histogram.record(-1);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(50));
+        assertEquals(5000, histogram.getPercentileMicros(99));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+        assertEquals(0, histogram.getPercentileMicros(99));
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 8;
+        final int perThread = 50_000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final long micros = (t + 1) * 100;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.record(micros * 1000);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        assertEquals(threads * perThread, histogram.getCount());
+        assertEquals(threads * 100, histogram.getMaxMicros());
+        assertWithin(400, histogram.getPercentileMicros(50));
+    }
+}
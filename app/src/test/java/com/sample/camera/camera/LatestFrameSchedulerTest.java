@@ -0,0 +1,194 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link LatestFrameScheduler} 测试, 手动执行的 Executor 检查替换顺序, 真实线程检查每帧只释放一次
+ */
+public class LatestFrameSchedulerTest {
+
+    /**
+     * 手动执行提交的任务
+     */
+    private static final class ManualExecutor implements Executor {
+
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+
+    private static class RecordingConsumer implements LatestFrameScheduler.Consumer<Integer> {
+
+        final List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> released = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        public void process(Integer frame) {
+            processed.add(frame);
+        }
+
+        @Override
+        public void release(Integer frame) {
+            released.add(frame);
+        }
+    }
+
+    @Test
+    public void keepsOnlyLatestPendingFrame() {
+
+        ManualExecutor executor = new ManualExecutor();
+        RecordingConsumer consumer = new RecordingConsumer();
+        LatestFrameScheduler<Integer> scheduler = new LatestFrameScheduler<>(executor, consumer);
+
+        scheduler.offer(1);
+        scheduler.offer(2);
+        scheduler.offer(3);
+        // 处理线程还没开始, 只调度一次
+        assertEquals(1, executor.tasks.size());
+        assertEquals(Arrays.asList(1, 2), consumer.released);
+
+        executor.runAll();
+        assertEquals(Collections.singletonList(3), consumer.processed);
+        assertEquals(Arrays.asList(1, 2, 3), consumer.released);
+        assertEquals(1, scheduler.getProcessedCount());
+        assertEquals(2, scheduler.getDroppedCount());
+
+        // 处理完后再提交会重新调度
+        scheduler.offer(4);
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(Arrays.asList(3, 4), consumer.processed);
+    }
+
+    @Test
+    public void frameOfferedWhileProcessingIsHandledInSameTask() {
+
+        ManualExecutor executor = new ManualExecutor();
+        final LatestFrameScheduler<Integer>[] holder = new LatestFrameScheduler[1];
+        RecordingConsumer consumer = new RecordingConsumer() {
+            @Override
+            public void process(Integer frame) {
+                super.process(frame);
+                if (frame < 3) {
+                    holder[0].offer(frame + 1);
+                }
+            }
+        };
+        holder[0] = new LatestFrameScheduler<>(executor, consumer);
+
+        holder[0].offer(1);
+        assertEquals(1, executor.tasks.size());
+        executor.tasks.poll().run();
+
+        assertTrue(executor.tasks.isEmpty());
+        assertEquals(Arrays.asList(1, 2, 3), consumer.processed);
+        assertEquals(0, holder[0].getDroppedCount());
+    }
+
+    @Test
+    public void clearReleasesPendingFrame() {
+
+        ManualExecutor executor = new ManualExecutor();
+        RecordingConsumer consumer = new RecordingConsumer();
+        LatestFrameScheduler<Integer> scheduler = new LatestFrameScheduler<>(executor, consumer);
+
+        scheduler.offer(1);
+        scheduler.clear();
+        executor.runAll();
+
+        assertTrue(consumer.processed.isEmpty());
+        assertEquals(Collections.singletonList(1), consumer.released);
+        assertEquals(1, scheduler.getDroppedCount());
+    }
+
+    @Test
+    public void recoversAfterProcessingThrows() {
+
+        ManualExecutor executor = new ManualExecutor();
+        RecordingConsumer consumer = new RecordingConsumer() {
+            @Override
+            public void process(Integer frame) {
+                if (frame == 1) {
+                    throw new IllegalStateException("analyzer failed");
+                }
+                super.process(frame);
+            }
+        };
+        LatestFrameScheduler<Integer> scheduler = new LatestFrameScheduler<>(executor, consumer);
+
+        scheduler.offer(1);
+        try {
+            executor.runAll();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        scheduler.offer(2);
+        executor.runAll();
+
+        assertEquals(Collections.singletonList(2), consumer.processed);
+        assertEquals(Arrays.asList(1, 2), consumer.released);
+    }
+
+    @Test
+    public void everyFrameReleasedOnceUnderLoad() throws InterruptedException {
+
+        final int frames = 100_000;
+        final AtomicIntegerArray releases = new AtomicIntegerArray(frames);
+        final List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LatestFrameScheduler<Integer> scheduler = new LatestFrameScheduler<>(executor,
+                new LatestFrameScheduler.Consumer<Integer>() {
+                    @Override
+                    public void process(Integer frame) {
+                        processed.add(frame);
+                    }
+
+                    @Override
+                    public void release(Integer frame) {
+                        releases.incrementAndGet(frame);
+                    }
+                });
+
+        for (int i = 0; i < frames; i++) {
+            scheduler.offer(i);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        for (int i = 0; i < frames; i++) {
+            assertEquals("frame " + i, 1, releases.get(i));
+        }
+        assertEquals(frames, scheduler.getProcessedCount() + scheduler.getDroppedCount());
+        // 最新一帧一定会被处理, 处理顺序与提交顺序一致
+        assertEquals(frames - 1, (int) processed.get(processed.size() - 1));
+        for (int i = 1; i < processed.size(); i++) {
+            assertTrue(processed.get(i) > processed.get(i - 1));
+        }
+    }
+}
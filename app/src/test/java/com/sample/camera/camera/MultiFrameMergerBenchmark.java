@@ -0,0 +1,87 @@
+package com.sample.camera.camera;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link MultiFrameMerger} 对齐和合成的耗时, 1080p 合成场景, 每帧随机平移并加高斯噪声
+ * 运行: 在 IDE 中执行 main(), 或把测试类路径交给 org.openjdk.jmh.Main
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiFrameMergerBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    /**
+     * 前 8 帧的平移, 与手持抖动的幅度相当
+     */
+    private static final int[] SHIFTS = {0, 0, 3, -2, -5, 1, 7, 4, -2, -6, 10, -3, -8, 8, 1, 12};
+
+    @Param({"4", "8"})
+    public int frameCount;
+
+    /**
+     * 并行线程数, 1 为单线程
+     */
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private ForkJoinPool mPool;
+    private MultiFrameMerger mMerger;
+    private byte[][] mFrames;
+    private byte[] mOut;
+
+    @Setup
+    public void setUp() {
+
+        int[] shifts = new int[frameCount * 2];
+        System.arraycopy(SHIFTS, 0, shifts, 0, shifts.length);
+        mFrames = MultiFrameMergerTest.noisyFrames(WIDTH, HEIGHT, shifts, 8, 1);
+        mOut = new byte[WIDTH * HEIGHT * 3 / 2];
+        mPool = new ForkJoinPool(parallelism);
+        mMerger = new MultiFrameMerger(mPool);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mPool.shutdown();
+    }
+
+    @Benchmark
+    public int[] align() {
+        return mMerger.align(mFrames, frameCount, WIDTH, HEIGHT);
+    }
+
+    @Benchmark
+    public byte[] merge() {
+        mMerger.merge(mFrames, frameCount, WIDTH, HEIGHT, mOut);
+        return mOut;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MultiFrameMergerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
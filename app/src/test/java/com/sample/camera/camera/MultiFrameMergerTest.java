@@ -0,0 +1,194 @@
+package com.sample.camera.camera;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link MultiFrameMerger} 测试, 输入为合成场景平移后加噪声的 NV21 帧
+ */
+public class MultiFrameMergerTest {
+
+    private static ForkJoinPool sPool;
+
+    @BeforeClass
+    public static void setUpPool() {
+        sPool = new ForkJoinPool(2);
+    }
+
+    @AfterClass
+    public static void tearDownPool() {
+        sPool.shutdown();
+    }
+
+    @Test
+    public void identicalFramesDoNotShift() {
+
+        // 太小, 对齐时没有可比较的区域, 所有平移的差异都相同
+        byte[] frame = noisyFrames(66, 38, new int[]{0, 0}, 0, 1)[0];
+        byte[][] frames = {frame, frame.clone(), frame.clone()};
+
+        int[] offsets = new MultiFrameMerger(sPool).align(frames, frames.length, 66, 38);
+
+        assertArrayEquals(new int[6], offsets);
+    }
+
+    @Test
+    public void findsGlobalShift() {
+
+        int[] shifts = {0, 0, 5, -3, -12, 7, 20, 0, -1, 1};
+        byte[][] frames = noisyFrames(320, 240, shifts, 4, 2);
+
+        int[] offsets = new MultiFrameMerger(sPool).align(frames, frames.length, 320, 240);
+
+        int[] expected = new int[shifts.length];
+        for (int i = 0; i < shifts.length; i++) {
+            expected[i] = -shifts[i];
+        }
+        assertArrayEquals(expected, offsets);
+    }
+
+    @Test
+    public void mergingIdenticalFramesKeepsReference() {
+
+        byte[] frame = noisyFrames(128, 96, new int[]{0, 0}, 6, 3)[0];
+        byte[][] frames = {frame, frame.clone(), frame.clone(), frame.clone()};
+        byte[] out = new byte[frame.length];
+
+        new MultiFrameMerger(sPool).merge(frames, frames.length, 128, 96, out);
+
+        assertArrayEquals(frame, out);
+    }
+
+    @Test
+    public void mergingReducesNoise() {
+
+        int width = 256;
+        int height = 192;
+        int[] shifts = {0, 0, 3, 1, -2, 4, 6, -5, 1, -2, -4, -1};
+        byte[] clean = noisyFrames(width, height, shifts, 0, 4)[0];
+        byte[][] frames = noisyFrames(width, height, shifts, 10, 4);
+        byte[] out = new byte[clean.length];
+
+        new MultiFrameMerger(sPool).merge(frames, frames.length, width, height, out);
+
+        // 边缘 32 像素内平移后会取到重复的边缘像素, 只比较中间区域
+        double single = lumaError(frames[0], clean, width, height, 32);
+        double merged = lumaError(out, clean, width, height, 32);
+        assertTrue("single " + single + " merged " + merged, merged < single * 0.6);
+    }
+
+    @Test
+    public void rejectsInvalidFrames() {
+
+        MultiFrameMerger merger = new MultiFrameMerger(sPool);
+        byte[][] frames = noisyFrames(16, 16, new int[]{0, 0, 0, 0}, 0, 5);
+        int[][] invalid = {{0, 16, 16}, {3, 16, 16}, {2, 15, 16}, {2, 16, 15}};
+        for (int[] args : invalid) {
+            try {
+                merger.merge(frames, args[0], args[1], args[2], new byte[16 * 16 * 3 / 2]);
+                fail("count " + args[0] + " " + args[1] + "x" + args[2]);
+            } catch (IllegalArgumentException expected) {
+                // 期望抛出
+            }
+        }
+        try {
+            merger.merge(frames, 2, 16, 16, new byte[16 * 16]);
+            fail("output too small");
+        } catch (IllegalArgumentException expected) {
+            // 期望抛出
+        }
+    }
+
+    /**
+     * 生成 NV21 帧: 同一个平滑随机纹理场景, 第 i 帧在 (shifts[2i], shifts[2i + 1]) 处裁剪, 再加高斯噪声
+     * @param noise 噪声标准差, 0 时没有噪声
+     * @param seed  场景和噪声的随机种子
+     */
+    static byte[][] noisyFrames(int width, int height, int[] shifts, double noise, long seed) {
+
+        int pad = 0;
+        for (int shift : shifts) {
+            pad = Math.max(pad, Math.abs(shift));
+        }
+        int sceneWidth = width + pad * 2;
+        int sceneHeight = height + pad * 2;
+        int[] scene = valueNoise(sceneWidth, sceneHeight, 8, new Random(seed));
+        Random random = new Random(seed * 31 + 7);
+        byte[][] frames = new byte[shifts.length / 2][];
+        for (int i = 0; i < frames.length; i++) {
+            byte[] frame = new byte[width * height * 3 / 2];
+            int sx = pad + shifts[i * 2];
+            int sy = pad + shifts[i * 2 + 1];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    frame[y * width + x] = clampByte(scene[(y + sy) * sceneWidth + x + sx] + random.nextGaussian() * noise);
+                }
+            }
+            // 色度接近中性
+            for (int j = width * height; j < frame.length; j++) {
+                frame[j] = clampByte(128 + random.nextGaussian() * noise / 2);
+            }
+            frames[i] = frame;
+        }
+        return frames;
+    }
+
+    /**
+     * 间隔 cell 的随机网格双线性插值, 在原图和 1/4 缩小图上都有纹理
+     */
+    private static int[] valueNoise(int width, int height, int cell, Random random) {
+
+        int gridWidth = width / cell + 2;
+        int gridHeight = height / cell + 2;
+        int[] grid = new int[gridWidth * gridHeight];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = 40 + random.nextInt(176);
+        }
+        int[] scene = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int gy = y / cell;
+            int fy = y % cell;
+            for (int x = 0; x < width; x++) {
+                int gx = x / cell;
+                int fx = x % cell;
+                int top = grid[gy * gridWidth + gx] * (cell - fx) + grid[gy * gridWidth + gx + 1] * fx;
+                int bottom = grid[(gy + 1) * gridWidth + gx] * (cell - fx) + grid[(gy + 1) * gridWidth + gx + 1] * fx;
+                scene[y * width + x] = (top * (cell - fy) + bottom * fy) / (cell * cell);
+            }
+        }
+        return scene;
+    }
+
+    private static byte clampByte(double value) {
+
+        long rounded = Math.round(value);
+        return (byte) (rounded < 0 ? 0 : rounded > 255 ? 255 : rounded);
+    }
+
+    /**
+     * 亮度平面中间区域的均方根误差
+     */
+    private static double lumaError(byte[] frame, byte[] clean, int width, int height, int margin) {
+
+        double sum = 0;
+        int samples = 0;
+        for (int y = margin; y < height - margin; y++) {
+            for (int x = margin; x < width - margin; x++) {
+                int diff = (frame[y * width + x] & 0xFF) - (clean[y * width + x] & 0xFF);
+                sum += diff * diff;
+                samples++;
+            }
+        }
+        return Math.sqrt(sum / samples);
+    }
+}
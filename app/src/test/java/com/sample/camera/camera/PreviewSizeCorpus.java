@@ -0,0 +1,55 @@
+package com.sample.camera.camera;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : 几台设备后置摄像头的 SurfaceTexture 输出尺寸表, 保持 HAL 返回的顺序, 供预览尺寸选择的测试和基准使用
+ */
+final class PreviewSizeCorpus {
+
+    static final String[] NAMES = {"pixel3", "galaxyS9", "lowEnd", "only4k"};
+
+    static final int[][][] TABLES = {
+            {
+                    {4032, 3024}, {4000, 3000}, {3840, 2160}, {3264, 2448}, {3200, 2400}, {2688, 1512},
+                    {2592, 1944}, {2048, 1536}, {1920, 1440}, {1920, 1080}, {1600, 1200}, {1440, 1080},
+                    {1280, 960}, {1280, 768}, {1280, 720}, {1024, 768}, {800, 600}, {864, 480},
+                    {800, 480}, {720, 480}, {640, 480}, {640, 360}, {352, 288}, {320, 240}, {176, 144}
+            },
+            {
+                    {4032, 3024}, {4032, 2268}, {3024, 3024}, {2976, 2976}, {3984, 2988}, {3264, 2448},
+                    {3264, 1836}, {2560, 1440}, {2160, 2160}, {2224, 1080}, {2048, 1152}, {1920, 1080},
+                    {1440, 1080}, {1088, 1088}, {1280, 720}, {1056, 704}, {1024, 768}, {960, 720},
+                    {800, 450}, {720, 720}, {720, 480}, {640, 480}, {352, 288}, {320, 240}, {256, 144},
+                    {176, 144}
+            },
+            {
+                    {1920, 1080}, {1440, 1080}, {1280, 960}, {1280, 720}, {960, 720}, {864, 480},
+                    {800, 480}, {768, 432}, {720, 480}, {640, 480}, {576, 432}, {480, 320},
+                    {384, 288}, {352, 288}, {320, 240}, {240, 160}, {176, 144}
+            },
+            {
+                    {4096, 3072}, {3840, 2160}
+            }
+    };
+
+    private PreviewSizeCorpus() {
+    }
+
+    static int[] widths(int[][] table) {
+        return column(table, 0);
+    }
+
+    static int[] heights(int[][] table) {
+        return column(table, 1);
+    }
+
+    private static int[] column(int[][] table, int index) {
+
+        int[] column = new int[table.length];
+        for (int i = 0; i < table.length; i++) {
+            column[i] = table[i][index];
+        }
+        return column;
+    }
+}
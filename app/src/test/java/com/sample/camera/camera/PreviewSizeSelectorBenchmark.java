@@ -0,0 +1,69 @@
+package com.sample.camera.camera;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link PreviewSizeSelector} 在 {@link PreviewSizeCorpus} 尺寸表上的耗时, 每次调用遍历几种常见的控件尺寸
+ * 运行: 在 IDE 中执行 main(), 或把测试类路径交给 org.openjdk.jmh.Main
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreviewSizeSelectorBenchmark {
+
+    /**
+     * 控件宽, 高, 期望的 高/宽
+     */
+    private static final int[][] VIEWS = {{1080, 2340}, {1080, 1440}, {720, 1280}, {1440, 3200}};
+    private static final float[] ASPECTS = {9f / 16, 3f / 4, 9f / 16, 9f / 16};
+
+    @Param({"pixel3", "galaxyS9", "lowEnd", "only4k"})
+    public String device;
+
+    private final PreviewSizeSelector mSelector = new PreviewSizeSelector(1920, 1080);
+    private int[] mWidths;
+    private int[] mHeights;
+
+    @Setup
+    public void setUp() {
+
+        int[][] table = PreviewSizeCorpus.TABLES[Arrays.asList(PreviewSizeCorpus.NAMES).indexOf(device)];
+        mWidths = PreviewSizeCorpus.widths(table);
+        mHeights = PreviewSizeCorpus.heights(table);
+    }
+
+    @Benchmark
+    public int select() {
+
+        int result = 0;
+        for (int i = 0; i < VIEWS.length; i++) {
+            result += mSelector.select(mWidths, mHeights, VIEWS[i][0], VIEWS[i][1], ASPECTS[i], 90f);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PreviewSizeSelectorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
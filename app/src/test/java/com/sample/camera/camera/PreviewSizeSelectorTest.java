@@ -0,0 +1,136 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link PreviewSizeSelector} 测试, 在 {@link PreviewSizeCorpus} 的真实尺寸表上检查选择结果
+ */
+public class PreviewSizeSelectorTest {
+
+    private static final float ASPECT_4_3 = 3f / 4;
+    private static final float ASPECT_16_9 = 9f / 16;
+
+    private final PreviewSizeSelector mSelector = new PreviewSizeSelector(1920, 1080);
+
+    private String select(PreviewSizeSelector selector, int table, int viewWidth, int viewHeight,
+                          float aspectRatio, float refreshRate) {
+
+        int[][] sizes = PreviewSizeCorpus.TABLES[table];
+        int index = selector.select(PreviewSizeCorpus.widths(sizes), PreviewSizeCorpus.heights(sizes),
+                viewWidth, viewHeight, aspectRatio, refreshRate);
+        return sizes[index][0] + "x" + sizes[index][1];
+    }
+
+    @Test
+    public void matchesViewOnEachDevice() {
+
+        for (int table = 0; table < 3; table++) {
+            String name = PreviewSizeCorpus.NAMES[table];
+            assertEquals(name, "1920x1080", select(mSelector, table, 1080, 1920, ASPECT_16_9, 60));
+            assertEquals(name, "1280x720", select(mSelector, table, 720, 1280, ASPECT_16_9, 60));
+            assertEquals(name, "1440x1080", select(mSelector, table, 1080, 1440, ASPECT_4_3, 60));
+            // 控件比例与期望不一致时仍按期望比例, 且不超过上限
+            assertEquals(name, "1440x1080", select(mSelector, table, 1080, 2340, ASPECT_4_3, 60));
+        }
+        assertEquals("640x480", select(mSelector, 0, 480, 640, ASPECT_4_3, 60));
+    }
+
+    @Test
+    public void viewOrientationDoesNotMatter() {
+
+        for (int table = 0; table < PreviewSizeCorpus.TABLES.length; table++) {
+            assertEquals(select(mSelector, table, 1080, 1920, ASPECT_16_9, 60),
+                    select(mSelector, table, 1920, 1080, ASPECT_16_9, 60));
+        }
+    }
+
+    @Test
+    public void fallsBackWhenNothingWithinLimit() {
+
+        // 只有 4K 尺寸时在全部尺寸中选择, 优先纵横比一致
+        assertEquals("3840x2160", select(mSelector, 3, 1080, 1920, ASPECT_16_9, 60));
+        assertEquals("4096x3072", select(mSelector, 3, 1080, 1440, ASPECT_4_3, 60));
+    }
+
+    @Test
+    public void unknownViewSizeUsesLimit() {
+        assertEquals("1920x1080", select(mSelector, 1, 0, 0, ASPECT_16_9, 0));
+    }
+
+    @Test
+    public void higherRefreshRatePrefersSmallerSize() {
+
+        PreviewSizeSelector selector = new PreviewSizeSelector(3840, 2160);
+        int[] widths = {1920, 2560};
+        int[] heights = {1080, 1440};
+        // 偏大的 2560x1440 与偏小的 1920x1080 之间, 刷新率越高过采样的代价越大
+        assertEquals(1, selector.select(widths, heights, 1200, 2100, ASPECT_16_9, 60));
+        assertEquals(0, selector.select(widths, heights, 1200, 2100, ASPECT_16_9, 120));
+    }
+
+    @Test
+    public void resultDoesNotDependOnOrder() {
+
+        Random random = new Random(3);
+        for (int table = 0; table < PreviewSizeCorpus.TABLES.length; table++) {
+            List<int[]> shuffled = new ArrayList<>();
+            Collections.addAll(shuffled, PreviewSizeCorpus.TABLES[table]);
+            for (int round = 0; round < 20; round++) {
+                int viewWidth = 240 + random.nextInt(2000);
+                int viewHeight = 240 + random.nextInt(2000);
+                float aspectRatio = random.nextBoolean() ? ASPECT_4_3 : ASPECT_16_9;
+                String expected = select(mSelector, table, viewWidth, viewHeight, aspectRatio, 60);
+
+                Collections.shuffle(shuffled, random);
+                int[][] sizes = shuffled.toArray(new int[0][]);
+                int index = mSelector.select(PreviewSizeCorpus.widths(sizes), PreviewSizeCorpus.heights(sizes),
+                        viewWidth, viewHeight, aspectRatio, 60);
+                assertEquals(expected, sizes[index][0] + "x" + sizes[index][1]);
+            }
+        }
+    }
+
+    @Test
+    public void staysWithinLimitAndAspect() {
+
+        Random random = new Random(5);
+        for (int table = 0; table < 3; table++) {
+            int[][] sizes = PreviewSizeCorpus.TABLES[table];
+            for (int round = 0; round < 200; round++) {
+                float aspectRatio = random.nextBoolean() ? ASPECT_4_3 : ASPECT_16_9;
+                int index = mSelector.select(PreviewSizeCorpus.widths(sizes), PreviewSizeCorpus.heights(sizes),
+                        random.nextInt(3000), random.nextInt(3000), aspectRatio, 30 + random.nextInt(120));
+                int width = sizes[index][0];
+                int height = sizes[index][1];
+                assertTrue(width <= 1920 && height <= 1080);
+                assertTrue(PreviewSizeSelector.aspectError(width, height, aspectRatio) <= PreviewSizeSelector.ASPECT_TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    public void emptyChoices() {
+
+        assertEquals(-1, mSelector.select(new int[0], new int[0], 1080, 1920, ASPECT_16_9, 60));
+        assertEquals(-1, mSelector.select(null, null, 1080, 1920, ASPECT_16_9, 60));
+    }
+
+    @Test
+    public void aspectError() {
+
+        assertEquals(0f, PreviewSizeSelector.aspectError(1920, 1080, ASPECT_16_9), 1e-6f);
+        assertEquals(0f, PreviewSizeSelector.aspectError(1080, 1920, ASPECT_16_9), 1e-6f);
+        assertTrue(PreviewSizeSelector.aspectError(1920, 1088, ASPECT_16_9) <= PreviewSizeSelector.ASPECT_TOLERANCE);
+        assertEquals(Float.MAX_VALUE, PreviewSizeSelector.aspectError(0, 0, ASPECT_16_9), 0f);
+    }
+}
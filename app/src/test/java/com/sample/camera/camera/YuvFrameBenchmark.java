@@ -0,0 +1,153 @@
+package com.sample.camera.camera;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link YuvFrame} 打包与逐像素循环的对比, 合成的 1080p 平面, 行尾有填充
+ * 运行: 在 IDE 中执行 main(), 或把测试类路径交给 org.openjdk.jmh.Main
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YuvFrameBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int ROW_STRIDE = 2048;
+
+    /**
+     * planar: I420 三个平面, pixelStride 为 1; semiPlanar: 与相机输出一样 VU 交错, pixelStride 为 2
+     */
+    @Param({"planar", "semiPlanar"})
+    public String layout;
+
+    private final YuvFrame mFrame = new YuvFrame();
+    private ByteBuffer mY;
+    private ByteBuffer mU;
+    private ByteBuffer mV;
+    private int mChromaRowStride;
+    private int mChromaPixelStride;
+    private byte[] mOut;
+
+    @Setup
+    public void setUp() {
+
+        Random random = new Random(1);
+        mY = directPlane(random, HEIGHT * ROW_STRIDE);
+        if ("planar".equals(layout)) {
+            mChromaRowStride = ROW_STRIDE / 2;
+            mChromaPixelStride = 1;
+            mU = directPlane(random, HEIGHT / 2 * mChromaRowStride);
+            mV = directPlane(random, HEIGHT / 2 * mChromaRowStride);
+        } else {
+            mChromaRowStride = ROW_STRIDE;
+            mChromaPixelStride = 2;
+            ByteBuffer vu = directPlane(random, HEIGHT / 2 * mChromaRowStride);
+            ByteBuffer v = vu.duplicate();
+            v.limit(vu.capacity() - 1);
+            mV = v.slice();
+            ByteBuffer u = vu.duplicate();
+            u.position(1);
+            mU = u.slice();
+        }
+        mFrame.set(WIDTH, HEIGHT, 0, mY, ROW_STRIDE, 1, mU, mChromaRowStride, mChromaPixelStride,
+                mV, mChromaRowStride, mChromaPixelStride);
+        mOut = new byte[mFrame.getPackedSize()];
+    }
+
+    private static ByteBuffer directPlane(Random random, int size) {
+
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(data).flip();
+        return buffer;
+    }
+
+    @Benchmark
+    public byte[] yuvFrameNV21() {
+        return mFrame.toNV21(mOut);
+    }
+
+    @Benchmark
+    public byte[] yuvFrameI420() {
+        return mFrame.toI420(mOut);
+    }
+
+    /**
+     * 逐像素按 rowStride / pixelStride 读取
+     */
+    @Benchmark
+    public byte[] perPixelNV21() {
+
+        byte[] out = mOut;
+        int offset = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                out[offset++] = mY.get(y * ROW_STRIDE + x);
+            }
+        }
+        for (int y = 0; y < HEIGHT / 2; y++) {
+            for (int x = 0; x < WIDTH / 2; x++) {
+                int index = y * mChromaRowStride + x * mChromaPixelStride;
+                out[offset++] = mV.get(index);
+                out[offset++] = mU.get(index);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 常见写法: 每帧把各平面复制到新的 byte[] 再重排
+     */
+    @Benchmark
+    public byte[] copyPlanesNV21() {
+
+        byte[] y = new byte[mY.remaining()];
+        byte[] u = new byte[mU.remaining()];
+        byte[] v = new byte[mV.remaining()];
+        mY.duplicate().get(y);
+        mU.duplicate().get(u);
+        mV.duplicate().get(v);
+        byte[] out = new byte[mOut.length];
+        int offset = 0;
+        for (int row = 0; row < HEIGHT; row++) {
+            System.arraycopy(y, row * ROW_STRIDE, out, offset, WIDTH);
+            offset += WIDTH;
+        }
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            for (int x = 0; x < WIDTH / 2; x++) {
+                int index = row * mChromaRowStride + x * mChromaPixelStride;
+                out[offset++] = v[index];
+                out[offset++] = u[index];
+            }
+        }
+        return out;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(YuvFrameBenchmark.class.getSimpleName()).build()).run();
+    }
+}
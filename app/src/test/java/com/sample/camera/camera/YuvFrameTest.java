@@ -0,0 +1,199 @@
+package com.sample.camera.camera;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author mzp
+ * date : 2026/10/18
+ * desc : {@link YuvFrame} 测试, 用合成的平面检查各种 stride 和内存布局下的 NV21 / I420 打包
+ */
+public class YuvFrameTest {
+
+    private static final int WIDTH = 7;
+    private static final int HEIGHT = 5;
+    private static final int CHROMA_WIDTH = (WIDTH + 1) / 2;
+    private static final int CHROMA_HEIGHT = (HEIGHT + 1) / 2;
+    private static final int ROW_PADDING = 3;
+
+    private final byte[] mY = new byte[WIDTH * HEIGHT];
+    private final byte[] mU = new byte[CHROMA_WIDTH * CHROMA_HEIGHT];
+    private final byte[] mV = new byte[CHROMA_WIDTH * CHROMA_HEIGHT];
+
+    public YuvFrameTest() {
+        Random random = new Random(7);
+        random.nextBytes(mY);
+        random.nextBytes(mU);
+        random.nextBytes(mV);
+    }
+
+    @Test
+    public void packsPlanarFrame() {
+
+        int chromaStride = CHROMA_WIDTH + ROW_PADDING;
+        YuvFrame frame = new YuvFrame().set(WIDTH, HEIGHT, 1,
+                lumaPlane(true), WIDTH + ROW_PADDING, 1,
+                ByteBuffer.wrap(plane(mU, chromaStride, 1)).asReadOnlyBuffer(), chromaStride, 1,
+                ByteBuffer.wrap(plane(mV, chromaStride, 1)).asReadOnlyBuffer(), chromaStride, 1);
+
+        assertPacked(frame);
+    }
+
+    @Test
+    public void packsSharedNV21HeapMemory() {
+
+        int stride = CHROMA_WIDTH * 2 + ROW_PADDING;
+        byte[] vu = interleave(mV, mU, stride);
+        // V 平面比 U 平面少最后一个字节
+        ByteBuffer v = ByteBuffer.wrap(vu, 0, vu.length - 1).slice();
+        ByteBuffer u = ByteBuffer.wrap(vu, 1, vu.length - 1).slice();
+        YuvFrame frame = new YuvFrame().set(WIDTH, HEIGHT, 1, lumaPlane(false), WIDTH + ROW_PADDING, 1,
+                u, stride, 2, v, stride, 2);
+
+        byte[] before = vu.clone();
+        assertPacked(frame);
+        assertArrayEquals(before, vu);
+    }
+
+    @Test
+    public void packsSharedNV21DirectMemory() {
+
+        int stride = CHROMA_WIDTH * 2 + ROW_PADDING;
+        byte[] vu = interleave(mV, mU, stride);
+        ByteBuffer memory = ByteBuffer.allocateDirect(vu.length);
+        memory.put(vu).flip();
+        // 与 Image 平面一样是直接缓冲区, 而且只读
+        ByteBuffer v = memory.duplicate();
+        v.limit(vu.length - 1);
+        v = v.slice().asReadOnlyBuffer();
+        ByteBuffer u = memory.duplicate();
+        u.position(1);
+        u = u.slice().asReadOnlyBuffer();
+        YuvFrame frame = new YuvFrame().set(WIDTH, HEIGHT, 1, lumaPlane(true), WIDTH + ROW_PADDING, 1,
+                u, stride, 2, v, stride, 2);
+
+        assertPacked(frame);
+    }
+
+    @Test
+    public void packsNV12Memory() {
+
+        int stride = CHROMA_WIDTH * 2 + ROW_PADDING;
+        // UV 交错, V 平面在 U 平面之后一个字节
+        byte[] uv = interleave(mU, mV, stride);
+        ByteBuffer u = ByteBuffer.wrap(uv, 0, uv.length - 1).slice();
+        ByteBuffer v = ByteBuffer.wrap(uv, 1, uv.length - 1).slice();
+        YuvFrame frame = new YuvFrame().set(WIDTH, HEIGHT, 1, lumaPlane(false), WIDTH + ROW_PADDING, 1,
+                u, stride, 2, v, stride, 2);
+
+        assertPacked(frame);
+    }
+
+    @Test
+    public void packsSeparateSemiPlanarPlanes() {
+
+        // pixelStride 为 2 但 U / V 是两块独立的内存, 行跨度也不同
+        int uStride = CHROMA_WIDTH * 2 + 1;
+        int vStride = CHROMA_WIDTH * 2 + 5;
+        YuvFrame frame = new YuvFrame().set(WIDTH, HEIGHT, 1, lumaPlane(false), WIDTH + ROW_PADDING, 1,
+                ByteBuffer.wrap(plane(mU, uStride, 2)), uStride, 2,
+                ByteBuffer.wrap(plane(mV, vStride, 2)), vStride, 2);
+
+        assertPacked(frame);
+    }
+
+    @Test
+    public void reusesOutputArray() {
+
+        int chromaStride = CHROMA_WIDTH;
+        YuvFrame frame = new YuvFrame().set(WIDTH, HEIGHT, 1, ByteBuffer.wrap(mY), WIDTH, 1,
+                ByteBuffer.wrap(mU), chromaStride, 1, ByteBuffer.wrap(mV), chromaStride, 1);
+
+        byte[] small = new byte[frame.getPackedSize() - 1];
+        byte[] out = frame.toNV21(small);
+        assertNotSame(small, out);
+        assertSame(out, frame.toNV21(out));
+        assertSame(out, frame.toI420(out));
+        assertEquals(WIDTH * HEIGHT + 2 * CHROMA_WIDTH * CHROMA_HEIGHT, frame.getPackedSize());
+    }
+
+    private void assertPacked(YuvFrame frame) {
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(mY[y * WIDTH + x] & 0xFF, frame.getY(x, y));
+            }
+        }
+        for (int y = 0; y < CHROMA_HEIGHT; y++) {
+            for (int x = 0; x < CHROMA_WIDTH; x++) {
+                assertEquals(mU[y * CHROMA_WIDTH + x] & 0xFF, frame.getU(x, y));
+                assertEquals(mV[y * CHROMA_WIDTH + x] & 0xFF, frame.getV(x, y));
+            }
+        }
+
+        byte[] nv21 = new byte[frame.getPackedSize()];
+        System.arraycopy(mY, 0, nv21, 0, mY.length);
+        for (int i = 0; i < mU.length; i++) {
+            nv21[mY.length + i * 2] = mV[i];
+            nv21[mY.length + i * 2 + 1] = mU[i];
+        }
+        byte[] i420 = new byte[frame.getPackedSize()];
+        System.arraycopy(mY, 0, i420, 0, mY.length);
+        System.arraycopy(mU, 0, i420, mY.length, mU.length);
+        System.arraycopy(mV, 0, i420, mY.length + mU.length, mV.length);
+
+        assertArrayEquals(nv21, frame.toNV21(null));
+        assertArrayEquals(i420, frame.toI420(null));
+    }
+
+    private ByteBuffer lumaPlane(boolean direct) {
+
+        byte[] luma = plane(mY, WIDTH + ROW_PADDING, 1, WIDTH, HEIGHT);
+        if (!direct) {
+            return ByteBuffer.wrap(luma);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(luma.length);
+        buffer.put(luma).flip();
+        return buffer;
+    }
+
+    private static byte[] plane(byte[] samples, int rowStride, int pixelStride) {
+        return plane(samples, rowStride, pixelStride, CHROMA_WIDTH, CHROMA_HEIGHT);
+    }
+
+    /**
+     * 按行跨度和像素跨度排列, 最后一行只到最后一个像素
+     */
+    private static byte[] plane(byte[] samples, int rowStride, int pixelStride, int width, int height) {
+
+        byte[] plane = new byte[(height - 1) * rowStride + (width - 1) * pixelStride + 1];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                plane[y * rowStride + x * pixelStride] = samples[y * width + x];
+            }
+        }
+        return plane;
+    }
+
+    /**
+     * first 在偶数位置, second 在奇数位置
+     */
+    private static byte[] interleave(byte[] first, byte[] second, int rowStride) {
+
+        byte[] memory = new byte[(CHROMA_HEIGHT - 1) * rowStride + CHROMA_WIDTH * 2];
+        for (int y = 0; y < CHROMA_HEIGHT; y++) {
+            for (int x = 0; x < CHROMA_WIDTH; x++) {
+                memory[y * rowStride + x * 2] = first[y * CHROMA_WIDTH + x];
+                memory[y * rowStride + x * 2 + 1] = second[y * CHROMA_WIDTH + x];
+            }
+        }
+        return memory;
+    }
+}